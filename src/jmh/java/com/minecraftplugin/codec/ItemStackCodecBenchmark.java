@@ -0,0 +1,163 @@
+package com.minecraftplugin.codec;
+
+import com.google.gson.Gson;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The binary item codec against JSON of the same serialized maps, which is what the Gson arrays
+// it replaced amounted to, on a sparse and a full player inventory. Sizes are printed once per
+// trial. ItemStack.deserialize needs a server, so both decoders rebuild items from their maps
+// with the same trivial factory and only the format's own cost is measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ItemStackCodecBenchmark {
+    
+    private static final Gson GSON = new Gson();
+    
+    @Param({"sparse", "full"})
+    public String inventory;
+    
+    private ItemStack[] items;
+    private PayloadCompressor zstd;
+    private String encoded;
+    private String compressed;
+    private String json;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        items = "full".equals(inventory) ? fullInventory() : sparseInventory();
+        zstd = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, Files.createTempDirectory("dictionaries"), null);
+        encoded = ItemStackCodec.encode(items);
+        compressed = ItemStackCodec.encode(items, zstd);
+        json = encodeJson();
+        
+        System.out.printf("%n%s inventory: json %d bytes, codec %d bytes, codec+zstd %d bytes (Base64 included)%n",
+                inventory, json.getBytes(StandardCharsets.UTF_8).length, encoded.length(), compressed.length());
+    }
+    
+    @Benchmark
+    public String encode() {
+        return ItemStackCodec.encode(items);
+    }
+    
+    @Benchmark
+    public String encodeZstd() {
+        return ItemStackCodec.encode(items, zstd);
+    }
+    
+    @Benchmark
+    public String encodeJson() {
+        List<Map<String, Object>> maps = new ArrayList<>(items.length);
+        for (ItemStack item : items) {
+            maps.add(item != null ? item.serialize() : null);
+        }
+        return GSON.toJson(maps);
+    }
+    
+    @Benchmark
+    public ItemStack[] decode() {
+        return ItemStackCodec.decodeBytes(Base64.getDecoder().decode(encoded), FakeItem::new);
+    }
+    
+    @Benchmark
+    public ItemStack[] decodeZstd() {
+        return ItemStackCodec.decodeBytes(zstd.decompress(Base64.getDecoder().decode(compressed)), FakeItem::new);
+    }
+    
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public ItemStack[] decodeJson() {
+        List<Map<String, Object>> maps = GSON.fromJson(json, List.class);
+        ItemStack[] decoded = new ItemStack[maps.size()];
+        for (int slot = 0; slot < decoded.length; slot++) {
+            if (maps.get(slot) != null) {
+                decoded[slot] = new FakeItem(maps.get(slot));
+            }
+        }
+        return decoded;
+    }
+    
+    // A few tools and blocks in the hotbar, everything else empty
+    private static ItemStack[] sparseInventory() {
+        ItemStack[] items = new ItemStack[41];
+        items[0] = item("DIAMOND_SWORD", 1, enchanted("Blade", "sharpness", 5));
+        items[1] = item("DIAMOND_PICKAXE", 1, enchanted(null, "efficiency", 4));
+        items[2] = item("COBBLESTONE", 64, null);
+        items[3] = item("TORCH", 23, null);
+        items[8] = item("COOKED_BEEF", 12, null);
+        return items;
+    }
+    
+    // Every slot used, armor and tools enchanted, storage full of stacks
+    private static ItemStack[] fullInventory() {
+        String[] blocks = {"COBBLESTONE", "DIRT", "OAK_LOG", "IRON_ORE", "COAL", "REDSTONE", "SAND", "GRAVEL"};
+        ItemStack[] items = new ItemStack[41];
+        for (int slot = 0; slot < 36; slot++) {
+            items[slot] = item(blocks[slot % blocks.length], 64 - slot % 7, null);
+        }
+        items[0] = item("NETHERITE_SWORD", 1, enchanted("Heirloom", "sharpness", 5));
+        items[1] = item("NETHERITE_PICKAXE", 1, enchanted(null, "fortune", 3));
+        items[36] = item("NETHERITE_BOOTS", 1, enchanted(null, "protection", 4));
+        items[37] = item("NETHERITE_LEGGINGS", 1, enchanted(null, "protection", 4));
+        items[38] = item("NETHERITE_CHESTPLATE", 1, enchanted(null, "protection", 4));
+        items[39] = item("NETHERITE_HELMET", 1, enchanted(null, "protection", 4));
+        items[40] = item("TOTEM_OF_UNDYING", 1, null);
+        return items;
+    }
+    
+    static Map<String, Object> enchanted(String name, String enchantment, int level) {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("meta-type", "UNSPECIFIC");
+        if (name != null) {
+            meta.put("display-name", "{\"text\":\"" + name + "\",\"italic\":false}");
+        }
+        meta.put("enchants", Map.of(enchantment, level, "unbreaking", 3, "mending", 1));
+        meta.put("Damage", 17);
+        meta.put("repair-cost", 3);
+        return meta;
+    }
+    
+    static ItemStack item(String type, int amount, Map<String, Object> meta) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("v", 3953);
+        fields.put("type", type);
+        if (amount != 1) {
+            fields.put("amount", amount);
+        }
+        if (meta != null) {
+            fields.put("meta", meta);
+        }
+        return new FakeItem(fields);
+    }
+    
+    static final class FakeItem extends ItemStack {
+        private final Map<String, Object> fields;
+        
+        FakeItem(Map<String, Object> fields) {
+            this.fields = fields;
+        }
+        
+        @Override
+        public Map<String, Object> serialize() {
+            return fields;
+        }
+    }
+} 
\ No newline at end of file
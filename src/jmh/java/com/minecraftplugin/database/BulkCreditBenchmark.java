@@ -0,0 +1,152 @@
+package com.minecraftplugin.database;
+
+import com.minecraftplugin.config.ConfigManager;
+import com.minecraftplugin.config.PluginSettings;
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// One payout to many players: addPlayerBalances (one bulkWrite plus one read) against calling
+// updatePlayerBalanceAndGet per player. Mongo is a fake that waits rttMicros per round trip, so the
+// numbers show what the round trips cost at a given network distance; at 0 only the client-side
+// work (building updates, logging events) is left.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BulkCreditBenchmark {
+    
+    private static final String BULK_ID = "benchmark";
+    
+    @Param({"100", "1000"})
+    public int players;
+    
+    @Param({"0", "250"})
+    public long rttMicros;
+    
+    private DatabaseManager databaseManager;
+    private BalanceEventLog eventLog;
+    private Map<UUID, Long> amounts;
+    private List<Document> credited;
+    
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        amounts = new HashMap<>();
+        credited = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            UUID playerUuid = UUID.randomUUID();
+            amounts.put(playerUuid, 500L);
+            credited.add(new Document("player_uuid", playerUuid.toString())
+                    .append("bulk_credits", List.of(new Document("id", BULK_ID).append("seq", 2L).append("balance", 1500L))));
+        }
+        
+        MongoCollection<Document> economy = fake(MongoCollection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findOneAndUpdate" -> {
+                roundTrip();
+                yield new Document("balance", 1500L).append("seq", 2L);
+            }
+            case "bulkWrite" -> {
+                roundTrip();
+                yield BulkWriteResult.acknowledged(0, players, 0, players, List.of());
+            }
+            case "find" -> found();
+            case "getNamespace" -> new MongoNamespace("benchmark", "economy");
+            default -> null;
+        });
+        MongoDatabase database = fake(MongoDatabase.class, (proxy, method, args) -> economy);
+        // Events are queued for a writer that never runs in the measured path
+        eventLog = new BalanceEventLog(database, 100, 3_600_000L, 200_000);
+        
+        ConfigManager configManager = new ConfigManager(null);
+        inject(configManager, "settings", new PluginSettings(
+                new PluginSettings.Economy(1000L, 0L, 0L, "$", "coin", "coins"), null, null, null, null));
+        
+        databaseManager = new DatabaseManager(configManager);
+        inject(databaseManager, "database", database);
+        inject(databaseManager, "eventLog", eventLog);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void drainEvents() {
+        eventLog.flush();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventLog.shutdown();
+    }
+    
+    @Benchmark
+    public Map<UUID, ?> bulk() {
+        return databaseManager.addPlayerBalances(BULK_ID, amounts, 0L);
+    }
+    
+    @Benchmark
+    public Map<UUID, ?> loop() {
+        Map<UUID, Object> applied = new HashMap<>(amounts.size() * 2);
+        for (Map.Entry<UUID, Long> entry : amounts.entrySet()) {
+            applied.put(entry.getKey(), databaseManager.updatePlayerBalanceAndGet(entry.getKey(), entry.getValue()));
+        }
+        return applied;
+    }
+    
+    private FindIterable<Document> found() {
+        return fake(FindIterable.class, (proxy, method, args) -> switch (method.getName()) {
+            case "iterator", "cursor" -> {
+                roundTrip();
+                Iterator<Document> documents = credited.iterator();
+                yield fake(MongoCursor.class, (cursor, cursorMethod, cursorArgs) -> switch (cursorMethod.getName()) {
+                    case "hasNext" -> documents.hasNext();
+                    case "next" -> documents.next();
+                    default -> null;
+                });
+            }
+            default -> proxy;
+        });
+    }
+    
+    private void roundTrip() {
+        if (rttMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(rttMicros));
+        }
+    }
+    
+    // Stands in for connect() and loadConfig(), which need a server and a database
+    private static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+    
+    // Plain proxies rather than mocks: a mock walks the stack on every call, which would swamp the
+    // work being measured
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<?> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BulkCreditBenchmark.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+} 
\ No newline at end of file
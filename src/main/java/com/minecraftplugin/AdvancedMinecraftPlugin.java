@@ -1,7 +1,9 @@
 package com.minecraftplugin;
 
+import com.minecraftplugin.codec.PayloadCompressor;
 import com.minecraftplugin.config.ConfigManager;
 import com.minecraftplugin.economy.EconomyManager;
+import com.minecraftplugin.economy.VaultEconomyProvider;
 import com.minecraftplugin.economy.commands.EconomyCommand;
 import com.minecraftplugin.inventory.InventoryManager;
 import com.minecraftplugin.inventory.commands.InventoryCommand;
@@ -11,6 +13,7 @@ import com.minecraftplugin.commands.PlayerCommand;
 import com.minecraftplugin.database.DatabaseManager;
 import com.minecraftplugin.redis.RedisManager;
 import com.minecraftplugin.grpc.GrpcServer;
+import com.minecraftplugin.login.LoginPreloader;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,9 +25,11 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
     private ConfigManager configManager;
     private DatabaseManager databaseManager;
     private RedisManager redisManager;
+    private PayloadCompressor payloadCompressor;
     private EconomyManager economyManager;
     private InventoryManager inventoryManager;
     private EnderChestManager enderChestManager;
+    private LoginPreloader loginPreloader;
     private GrpcServer grpcServer;
     
     @Override
@@ -49,16 +54,27 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
                 return;
             }
             
+            payloadCompressor = new PayloadCompressor(
+                    PayloadCompressor.Algorithm.fromConfig(configManager.getConfig().getString("plugin.compression.algorithm", "zstd")),
+                    configManager.getConfig().getInt("plugin.compression.level", 0),
+                    configManager.getConfig().getInt("plugin.compression.min_size_bytes", 512),
+                    getDataFolder().toPath().resolve("compression"),
+                    configManager.getConfig().getString("plugin.compression.dictionary", ""),
+                    databaseManager.getCompressionDictionaries());
+            
             economyManager = new EconomyManager(databaseManager, redisManager, this);
             inventoryManager = new InventoryManager(databaseManager, redisManager, this);
             enderChestManager = new EnderChestManager(databaseManager, redisManager, this);
+            loginPreloader = new LoginPreloader(economyManager, inventoryManager, enderChestManager,
+                    configManager.getConfig().getLong("plugin.login.preload_timeout_ms", 3000L));
             
             registerCommands();
             registerEventListeners();
+            registerVaultEconomy();
             
             if (configManager.isGrpcEnabled()) {
                 try {
-                    grpcServer = new GrpcServer(configManager, databaseManager);
+                    grpcServer = new GrpcServer(configManager, databaseManager, economyManager, inventoryManager);
                     grpcServer.start();
                     logger.info("gRPC server started on port {}", configManager.getGrpcPort());
                 } catch (Exception e) {
@@ -84,6 +100,18 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
                 logger.info("gRPC server stopped");
             }
             
+            if (economyManager != null) {
+                economyManager.shutdown();
+            }
+            
+            if (inventoryManager != null) {
+                inventoryManager.shutdown();
+            }
+            
+            if (payloadCompressor != null) {
+                logger.info("Payload compression - {}", payloadCompressor);
+            }
+            
             if (redisManager != null) {
                 redisManager.disconnect();
                 logger.info("Redis connection closed");
@@ -101,6 +129,22 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
         }
     }
     
+    private void registerVaultEconomy() {
+        if (!configManager.getConfig().getBoolean("plugin.economy.vault.enabled", true)) {
+            return;
+        }
+        if (getServer().getPluginManager().getPlugin("Vault") == null) {
+            logger.info("Vault not found, economy provider not registered");
+            return;
+        }
+        
+        try {
+            VaultEconomyProvider.register(economyManager, this);
+        } catch (Exception e) {
+            logger.error("Failed to register Vault economy provider", e);
+        }
+    }
+    
     private void registerCommands() {
         try {
             EconomyCommand economyCommand = new EconomyCommand(economyManager);
@@ -131,6 +175,7 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
             getServer().getPluginManager().registerEvents(economyManager, this);
             getServer().getPluginManager().registerEvents(inventoryManager, this);
             getServer().getPluginManager().registerEvents(enderChestManager, this);
+            getServer().getPluginManager().registerEvents(loginPreloader, this);
             
             logger.info("All event listeners registered successfully");
         } catch (Exception e) {
@@ -158,6 +203,10 @@ public class AdvancedMinecraftPlugin extends JavaPlugin {
         return redisManager;
     }
     
+    public PayloadCompressor getPayloadCompressor() {
+        return payloadCompressor;
+    }
+    
     public ConfigManager getConfigManager() {
         return configManager;
     }
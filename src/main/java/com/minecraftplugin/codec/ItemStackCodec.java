@@ -0,0 +1,590 @@
+package com.minecraftplugin.codec;
+
+import com.google.gson.Gson;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// Binary form of an item array, stored Base64-encoded wherever inventories used to be stored as
+// JSON. Items are written from ItemStack.serialize(), the same maps Bukkit's own YAML round-trips,
+// so item meta survives. Empty slots cost nothing beyond a gap count, plain items are a type and
+// an amount, and every string (material names, meta keys) is written once per payload and then
+// referenced by index.
+//
+// Layout: 'I' 'S' version, slot count, item count, then per item the number of empty slots before
+// it and the item: flags, type, [amount], [data version], [other serialized fields].
+//
+// A delta ('I' 'D' version, base name, slot count, change count, then per change the number of
+// unchanged slots before it, 0 for a cleared slot or 1 and the item) holds only the slots that
+// differ from the array stored under the base name, and is read on top of it.
+//
+// Inventories stored one slot per field keep each item as a standalone record (encodeSlot, its own
+// string table); joinSlots puts them back together as 'I' 'M' version, slot count, item count,
+// then per item the gap, its length and the record.
+public final class ItemStackCodec {
+    
+    private static final byte MAGIC_0 = 'I';
+    private static final byte MAGIC_1 = 'S';
+    private static final byte DELTA_MAGIC_1 = 'D';
+    private static final byte SLOTS_MAGIC_1 = 'M';
+    private static final byte VERSION = 1;
+    
+    private static final int HAS_AMOUNT = 1;
+    private static final int HAS_DATA_VERSION = 2;
+    private static final int HAS_FIELDS = 4;
+    
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int SHORT = 7;
+    private static final int BYTE = 8;
+    private static final int STRING = 9;
+    private static final int LIST = 10;
+    private static final int MAP = 11;
+    private static final int SERIALIZABLE = 12;
+    private static final int JAVA_OBJECT = 13;
+    
+    // Only used to read inventories saved before this format existed
+    private static final Gson LEGACY_GSON = new Gson();
+    
+    private ItemStackCodec() {
+    }
+    
+    public static String encode(ItemStack[] items) {
+        return Base64.getEncoder().encodeToString(encodeBytes(items));
+    }
+    
+    public static ItemStack[] decode(String data) {
+        if (isLegacy(data)) {
+            return LEGACY_GSON.fromJson(data, ItemStack[].class);
+        }
+        return decodeBytes(Base64.getDecoder().decode(data));
+    }
+    
+    // As above, compressed when the payload is large enough to be worth it
+    public static String encode(ItemStack[] items, PayloadCompressor compressor) {
+        return Base64.getEncoder().encodeToString(compressor.compress(encodeBytes(items)));
+    }
+    
+    // Reads compressed and uncompressed payloads alike
+    public static ItemStack[] decode(String data, PayloadCompressor compressor) {
+        if (isLegacy(data)) {
+            return LEGACY_GSON.fromJson(data, ItemStack[].class);
+        }
+        return decodeBytes(compressor.decompress(Base64.getDecoder().decode(data)));
+    }
+    
+    public static String encodeDelta(ItemStack[] previous, ItemStack[] items, String base, PayloadCompressor compressor) {
+        if (previous.length != items.length) {
+            throw new IllegalArgumentException("Delta needs arrays of the same size");
+        }
+        
+        Writer out = new Writer();
+        out.writeByte(MAGIC_0);
+        out.writeByte(DELTA_MAGIC_1);
+        out.writeByte(VERSION);
+        out.writeString(base);
+        
+        int count = 0;
+        for (int slot = 0; slot < items.length; slot++) {
+            if (!Objects.equals(previous[slot], items[slot])) {
+                count++;
+            }
+        }
+        out.writeVarInt(items.length);
+        out.writeVarInt(count);
+        
+        int next = 0;
+        for (int slot = 0; slot < items.length; slot++) {
+            if (!Objects.equals(previous[slot], items[slot])) {
+                out.writeVarInt(slot - next);
+                if (items[slot] == null) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    writeItem(out, items[slot]);
+                }
+                next = slot + 1;
+            }
+        }
+        return Base64.getEncoder().encodeToString(compressor.compress(out.toByteArray()));
+    }
+    
+    // Full arrays and deltas; baseLoader returns the array stored under a delta's base name, or
+    // null if there is none
+    public static ItemStack[] decode(String data, PayloadCompressor compressor, Function<String, ItemStack[]> baseLoader) {
+        if (isLegacy(data)) {
+            return LEGACY_GSON.fromJson(data, ItemStack[].class);
+        }
+        byte[] bytes = compressor.decompress(Base64.getDecoder().decode(data));
+        if (bytes.length < 2 || bytes[0] != MAGIC_0 || bytes[1] != DELTA_MAGIC_1) {
+            return decodeBytes(bytes);
+        }
+        
+        Reader in = new Reader(bytes);
+        in.readByte();
+        in.readByte();
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported item delta version " + version);
+        }
+        String base = in.readString();
+        ItemStack[] previous = baseLoader.apply(base);
+        if (previous == null) {
+            throw new IllegalStateException("Base snapshot '" + base + "' of item delta is missing");
+        }
+        
+        ItemStack[] items = Arrays.copyOf(previous, in.readVarInt());
+        int count = in.readVarInt();
+        int slot = 0;
+        for (int i = 0; i < count; i++) {
+            slot += in.readVarInt();
+            if (slot >= items.length) {
+                throw new IllegalArgumentException("Item slot " + slot + " out of range");
+            }
+            items[slot++] = in.readByte() == 0 ? null : readItem(in, ItemStack::deserialize);
+        }
+        return items;
+    }
+    
+    // True for a delta, which cannot be read without the array stored under its base name
+    public static boolean isDelta(String data, PayloadCompressor compressor) {
+        if (isLegacy(data)) {
+            return false;
+        }
+        byte[] bytes = compressor.decompress(Base64.getDecoder().decode(data));
+        return bytes.length >= 2 && bytes[0] == MAGIC_0 && bytes[1] == DELTA_MAGIC_1;
+    }
+    
+    // Pretty-printed Gson arrays from before the binary format
+    public static boolean isLegacy(String data) {
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[' || data.startsWith("null", i);
+            }
+        }
+        return false;
+    }
+    
+    public static byte[] encodeBytes(ItemStack[] items) {
+        Writer out = new Writer();
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(VERSION);
+        
+        int count = 0;
+        for (ItemStack item : items) {
+            if (item != null) {
+                count++;
+            }
+        }
+        out.writeVarInt(items.length);
+        out.writeVarInt(count);
+        
+        int next = 0;
+        for (int slot = 0; slot < items.length; slot++) {
+            if (items[slot] != null) {
+                out.writeVarInt(slot - next);
+                writeItem(out, items[slot]);
+                next = slot + 1;
+            }
+        }
+        return out.toByteArray();
+    }
+    
+    public static ItemStack[] decodeBytes(byte[] data) {
+        return decodeBytes(data, ItemStack::deserialize);
+    }
+    
+    // itemFactory stands in for ItemStack.deserialize, which needs a running server
+    static ItemStack[] decodeBytes(byte[] data, Function<Map<String, Object>, ItemStack> itemFactory) {
+        Reader in = new Reader(data);
+        int magic0 = in.readByte();
+        int magic1 = in.readByte();
+        if (magic0 != MAGIC_0 || (magic1 != MAGIC_1 && magic1 != SLOTS_MAGIC_1)) {
+            throw new IllegalArgumentException("Not an encoded item array");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported item array version " + version);
+        }
+        
+        ItemStack[] items = new ItemStack[in.readVarInt()];
+        int count = in.readVarInt();
+        int slot = 0;
+        for (int i = 0; i < count; i++) {
+            slot += in.readVarInt();
+            if (slot >= items.length) {
+                throw new IllegalArgumentException("Item slot " + slot + " out of range");
+            }
+            items[slot++] = readItem(magic1 == SLOTS_MAGIC_1 ? new Reader(in.readBytes(in.readVarInt())) : in, itemFactory);
+        }
+        return items;
+    }
+    
+    public static byte[] encodeSlot(ItemStack item) {
+        Writer out = new Writer();
+        writeItem(out, item);
+        return out.toByteArray();
+    }
+    
+    // Slot records from encodeSlot as one uncompressed payload that decode reads like any other
+    public static String joinSlots(int size, Map<Integer, byte[]> slots) {
+        Writer out = new Writer();
+        out.writeByte(MAGIC_0);
+        out.writeByte(SLOTS_MAGIC_1);
+        out.writeByte(VERSION);
+        out.writeVarInt(size);
+        
+        Map<Integer, byte[]> sorted = new TreeMap<>(slots);
+        sorted.keySet().removeIf(slot -> slot < 0 || slot >= size);
+        out.writeVarInt(sorted.size());
+        int next = 0;
+        for (Map.Entry<Integer, byte[]> entry : sorted.entrySet()) {
+            out.writeVarInt(entry.getKey() - next);
+            out.writeVarInt(entry.getValue().length);
+            out.writeBytes(entry.getValue());
+            next = entry.getKey() + 1;
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+    
+    private static void writeItem(Writer out, ItemStack item) {
+        Map<String, Object> fields = new LinkedHashMap<>(item.serialize());
+        Object type = fields.remove("type");
+        Object amount = fields.remove("amount");
+        Object dataVersion = fields.remove("v");
+        
+        int flags = (amount instanceof Number ? HAS_AMOUNT : 0)
+                    | (dataVersion instanceof Number ? HAS_DATA_VERSION : 0)
+                    | (fields.isEmpty() ? 0 : HAS_FIELDS);
+        out.writeByte(flags);
+        out.writeString(String.valueOf(type));
+        if ((flags & HAS_AMOUNT) != 0) {
+            out.writeVarInt(((Number) amount).intValue());
+        }
+        if ((flags & HAS_DATA_VERSION) != 0) {
+            out.writeVarInt(((Number) dataVersion).intValue());
+        }
+        if ((flags & HAS_FIELDS) != 0) {
+            writeFields(out, fields);
+        }
+    }
+    
+    private static ItemStack readItem(Reader in, Function<Map<String, Object>, ItemStack> itemFactory) {
+        int flags = in.readByte();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("type", in.readString());
+        if ((flags & HAS_AMOUNT) != 0) {
+            fields.put("amount", in.readVarInt());
+        }
+        if ((flags & HAS_DATA_VERSION) != 0) {
+            fields.put("v", in.readVarInt());
+        }
+        if ((flags & HAS_FIELDS) != 0) {
+            fields.putAll(readFields(in));
+        }
+        return itemFactory.apply(fields);
+    }
+    
+    private static void writeFields(Writer out, Map<?, ?> fields) {
+        out.writeVarInt(fields.size());
+        for (Map.Entry<?, ?> entry : fields.entrySet()) {
+            out.writeString(String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue());
+        }
+    }
+    
+    private static Map<String, Object> readFields(Reader in) {
+        int size = in.readVarInt();
+        Map<String, Object> fields = new LinkedHashMap<>(Math.max(4, size * 2));
+        for (int i = 0; i < size; i++) {
+            fields.put(in.readString(), readValue(in));
+        }
+        return fields;
+    }
+    
+    private static void writeValue(Writer out, Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeVarLong(zigZag((Short) value));
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeFields(out, (Map<?, ?>) value);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            out.writeByte(SERIALIZABLE);
+            out.writeString(ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeFields(out, serializable.serialize());
+        } else {
+            // Nothing in vanilla item meta gets here; plugin-defined values fall back to Java serialization
+            out.writeByte(JAVA_OBJECT);
+            byte[] bytes = javaSerialize(value);
+            out.writeVarInt(bytes.length);
+            out.writeBytes(bytes);
+        }
+    }
+    
+    private static Object readValue(Reader in) {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) unZigZag(in.readVarLong());
+            case LONG:
+                return unZigZag(in.readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case SHORT:
+                return (short) unZigZag(in.readVarLong());
+            case BYTE:
+                return (byte) in.readByte();
+            case STRING:
+                return in.readString();
+            case LIST: {
+                int size = in.readVarInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP:
+                return readFields(in);
+            case SERIALIZABLE: {
+                String alias = in.readString();
+                Map<String, Object> fields = readFields(in);
+                fields.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+                return ConfigurationSerialization.deserializeObject(fields);
+            }
+            case JAVA_OBJECT:
+                return javaDeserialize(in.readBytes(in.readVarInt()));
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+    
+    private static byte[] javaSerialize(Object value) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(value);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize " + value.getClass().getName(), e);
+        }
+    }
+    
+    private static Object javaDeserialize(byte[] data) {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot deserialize item value", e);
+        }
+    }
+    
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int length;
+        private final Map<String, Integer> strings = new HashMap<>();
+        
+        void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+        
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+        
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+        
+        // 0 and the text for a string not seen yet, otherwise its index + 1
+        void writeString(String value) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(0);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+        
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+    
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final List<String> strings = new ArrayList<>();
+        
+        Reader(byte[] data) {
+            this.data = data;
+        }
+        
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated item array");
+            }
+            return data[position++] & 0xFF;
+        }
+        
+        byte[] readBytes(int count) {
+            if (count < 0 || position + count > data.length) {
+                throw new IllegalArgumentException("Truncated item array");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + count);
+            position += count;
+            return bytes;
+        }
+        
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+        
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+        
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+        
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        
+        String readString() {
+            int reference = readVarInt();
+            if (reference > 0) {
+                if (reference > strings.size()) {
+                    throw new IllegalArgumentException("Bad string reference " + reference);
+                }
+                return strings.get(reference - 1);
+            }
+            String value = new String(readBytes(readVarInt()), StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,491 @@
+package com.minecraftplugin.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compresses encoded item arrays before they go to MongoDB and Redis. A compressed payload starts
+// with 'Z' 'C', the algorithm, the dictionary id (0 for none) and the original length, so every
+// stored value says how to read it back: changing the algorithm or dictionary never breaks
+// existing data, and anything without the header (small payloads, or data saved before
+// compression) is returned as is.
+//
+// Dictionaries are identified by the CRC32 of their contents and shared through a DictionaryStore
+// (MongoDB), so a payload written with a dictionary can be read on any server: ids this server has
+// not seen are fetched from the store on first use. <data folder>/compression/*.dict is a local
+// copy. The configured dictionary is only used to write once the store has it. LZ4 has no
+// dictionary support and ignores it.
+//
+// Without the native Zstd library this server writes Deflate, but still reads Zstd payloads from
+// other servers with a pure Java decoder, except those written with a dictionary. LZ4 falls back
+// to its own pure Java implementation.
+public class PayloadCompressor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCompressor.class);
+    
+    private static final byte MAGIC_0 = 'Z';
+    private static final byte MAGIC_1 = 'C';
+    private static final String DICTIONARY_SUFFIX = ".dict";
+    
+    // Refuse to allocate more than this for one decompressed payload
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    
+    private static final boolean ZSTD_NATIVE = zstdNative();
+    
+    private final Algorithm algorithm;
+    private final int level;
+    private final int minSize;
+    private final Path dictionaryDirectory;
+    private final DictionaryStore store;
+    private final Map<Integer, Dictionary> dictionaries = new ConcurrentHashMap<>();
+    private final Dictionary dictionary;
+    
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+    
+    // Without a store no dictionary is used to write, since no other server could read the result
+    public PayloadCompressor(Algorithm algorithm, int level, int minSize, Path dictionaryDirectory, String dictionaryName) {
+        this(algorithm, level, minSize, dictionaryDirectory, dictionaryName, null);
+    }
+    
+    public PayloadCompressor(Algorithm algorithm, int level, int minSize, Path dictionaryDirectory, String dictionaryName,
+                             DictionaryStore store) {
+        this.algorithm = available(algorithm);
+        this.level = level;
+        this.minSize = Math.max(0, minSize);
+        this.dictionaryDirectory = dictionaryDirectory;
+        this.store = store;
+        
+        loadDictionaries();
+        this.dictionary = dictionaryName == null || dictionaryName.isEmpty() ? null : writableDictionary(dictionaryName);
+        logger.info("Payload compression: {} level {}, dictionary {}, payloads under {} bytes stored raw",
+                this.algorithm, level, dictionary != null ? dictionary.name : "none", this.minSize);
+    }
+    
+    private static boolean zstdNative() {
+        try {
+            Zstd.defaultCompressionLevel();
+            return true;
+        } catch (LinkageError e) {
+            logger.warn("Native Zstd library is not available on this platform", e);
+            return false;
+        }
+    }
+    
+    // Writing Zstd needs the native library; Deflate comes with the JDK
+    private static Algorithm available(Algorithm algorithm) {
+        if (algorithm == Algorithm.ZSTD && !ZSTD_NATIVE) {
+            logger.warn("ZSTD compression is not available on this platform, using DEFLATE");
+            return Algorithm.DEFLATE;
+        }
+        return algorithm;
+    }
+    
+    // The configured dictionary, from the local folder or else the store, as long as the store holds it
+    private Dictionary writableDictionary(String name) {
+        Dictionary found = findDictionary(name);
+        if (found == null && store != null) {
+            byte[] data = store.loadByName(name);
+            if (data != null) {
+                found = addDictionary(name, data);
+            }
+        }
+        if (found == null) {
+            logger.warn("Compression dictionary '{}' not found in {} or the dictionary store, compressing without one",
+                    name, dictionaryDirectory);
+            return null;
+        }
+        if (store == null || !store.save(found.id, found.name, found.data)) {
+            logger.error("Compression dictionary '{}' is not in the dictionary store, compressing without it so every " +
+                         "server can read what this one writes", name);
+            return null;
+        }
+        return found;
+    }
+    
+    private void loadDictionaries() {
+        if (!Files.isDirectory(dictionaryDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dictionaryDirectory, "*" + DICTIONARY_SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                addDictionary(fileName.substring(0, fileName.length() - DICTIONARY_SUFFIX.length()), Files.readAllBytes(path));
+            }
+        } catch (IOException e) {
+            logger.error("Error loading compression dictionaries from {}", dictionaryDirectory, e);
+        }
+    }
+    
+    private Dictionary addDictionary(String name, byte[] data) {
+        Dictionary loaded = new Dictionary(name, data);
+        Dictionary existing = dictionaries.putIfAbsent(loaded.id, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    private Dictionary findDictionary(String name) {
+        for (Dictionary candidate : dictionaries.values()) {
+            if (candidate.name.equals(name)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    public byte[] compress(byte[] data) {
+        if (algorithm == Algorithm.NONE || data.length < minSize) {
+            skipped.increment();
+            return data;
+        }
+        
+        long start = System.nanoTime();
+        Dictionary dict = algorithm == Algorithm.LZ4 ? null : dictionary;
+        byte[] body;
+        try {
+            body = switch (algorithm) {
+                case DEFLATE -> deflate(data, dict);
+                case LZ4 -> lz4(data);
+                case ZSTD -> dict != null ? Zstd.compress(data, dict.zstdCompress(level)) : Zstd.compress(data, zstdLevel());
+                case NONE -> data;
+            };
+        } catch (RuntimeException | LinkageError e) {
+            logger.error("Error compressing payload with {}, storing it raw", algorithm, e);
+            skipped.increment();
+            return data;
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 12);
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(algorithm.id);
+        writeVarInt(out, dict != null ? dict.id : 0);
+        writeVarInt(out, data.length);
+        out.write(body, 0, body.length);
+        
+        compressNanos.add(System.nanoTime() - start);
+        if (out.size() >= data.length) {
+            // Not worth it; the raw bytes are smaller and cheaper to read
+            skipped.increment();
+            return data;
+        }
+        
+        compressed.increment();
+        rawBytes.add(data.length);
+        storedBytes.add(out.size());
+        return out.toByteArray();
+    }
+    
+    public byte[] decompress(byte[] data) {
+        if (!isCompressed(data)) {
+            return data;
+        }
+        
+        long start = System.nanoTime();
+        int[] position = {3};
+        Algorithm stored = Algorithm.byId(data[2]);
+        int dictionaryId = readVarInt(data, position);
+        int length = readVarInt(data, position);
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Invalid decompressed length " + length);
+        }
+        
+        Dictionary dict = dictionaryId != 0 ? readableDictionary(dictionaryId) : null;
+        byte[] body = Arrays.copyOfRange(data, position[0], data.length);
+        byte[] result = switch (stored) {
+            case DEFLATE -> inflate(body, length, dict);
+            case LZ4 -> unlz4(body, length);
+            case ZSTD -> unzstd(body, length, dict, ZSTD_NATIVE);
+            case NONE -> body;
+        };
+        if (result.length != length) {
+            throw new IllegalArgumentException("Decompressed " + result.length + " bytes, expected " + length);
+        }
+        
+        decompressed.increment();
+        decompressNanos.add(System.nanoTime() - start);
+        return result;
+    }
+    
+    // Dictionaries other servers wrote with are fetched from the store the first time they are needed
+    private Dictionary readableDictionary(int id) {
+        Dictionary dict = dictionaries.get(id);
+        if (dict == null && store != null) {
+            byte[] data = store.load(id);
+            if (data != null) {
+                Dictionary loaded = new Dictionary(Integer.toHexString(id), data);
+                if (loaded.id == id) {
+                    dict = addDictionary(loaded.name, data);
+                    logger.info("Loaded compression dictionary {} from the dictionary store", loaded.name);
+                } else {
+                    logger.error("Stored compression dictionary {} does not match its id", Integer.toHexString(id));
+                }
+            }
+        }
+        if (dict == null) {
+            throw new IllegalStateException("Payload needs compression dictionary " + Integer.toHexString(id) +
+                                            ", which is neither in " + dictionaryDirectory + " nor in the dictionary store");
+        }
+        return dict;
+    }
+    
+    public static boolean isCompressed(byte[] data) {
+        return data.length > 2 && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+    
+    private byte[] deflate(byte[] data, Dictionary dict) {
+        Deflater deflater = new Deflater(level > 0 ? Math.min(level, 9) : Deflater.DEFAULT_COMPRESSION);
+        try {
+            if (dict != null) {
+                deflater.setDictionary(dict.data);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] inflate(byte[] body, int length, Dictionary dict) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body);
+            byte[] result = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int count = inflater.inflate(result, read, length - read);
+                if (count == 0) {
+                    if (inflater.needsDictionary() && dict != null) {
+                        inflater.setDictionary(dict.data);
+                    } else {
+                        break;
+                    }
+                }
+                read += count;
+            }
+            return read == length ? result : Arrays.copyOf(result, read);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflate payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private byte[] lz4(byte[] data) {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        LZ4Compressor compressor = level > 0 ? factory.highCompressor(Math.min(level, 17)) : factory.fastCompressor();
+        byte[] buffer = new byte[compressor.maxCompressedLength(data.length)];
+        int length = compressor.compress(data, 0, data.length, buffer, 0, buffer.length);
+        return Arrays.copyOf(buffer, length);
+    }
+    
+    private static byte[] unlz4(byte[] body, int length) {
+        byte[] result = new byte[length];
+        int read = LZ4Factory.fastestInstance().safeDecompressor().decompress(body, 0, body.length, result, 0, length);
+        return read == length ? result : Arrays.copyOf(result, read);
+    }
+    
+    // The pure Java decoder has no dictionary support
+    static byte[] unzstd(byte[] body, int length, Dictionary dict, boolean nativeZstd) {
+        if (nativeZstd) {
+            return dict != null ? Zstd.decompress(body, dict.zstdDecompress(), length) : Zstd.decompress(body, length);
+        }
+        if (dict != null) {
+            throw new IllegalStateException("Payload was compressed with a Zstd dictionary, which needs the native Zstd library");
+        }
+        byte[] result = new byte[length];
+        int read = new ZstdDecompressor().decompress(body, 0, body.length, result, 0, length);
+        return read == length ? result : Arrays.copyOf(result, read);
+    }
+    
+    private int zstdLevel() {
+        return level > 0 ? level : Zstd.defaultCompressionLevel();
+    }
+    
+    // Builds a Zstd dictionary from sample payloads (uncompressed codec bytes), stores it, saves a
+    // local copy as <name>.dict and makes it readable right away. It is only used for writing once
+    // plugin.compression.dictionary names it. Fails if the store does not take it.
+    public boolean trainDictionary(String name, List<byte[]> samples, int dictionarySize) {
+        try {
+            int sampleBytes = 0;
+            for (byte[] sample : samples) {
+                sampleBytes += sample.length;
+            }
+            ZstdDictTrainer trainer = new ZstdDictTrainer(Math.max(sampleBytes, 1), dictionarySize);
+            for (byte[] sample : samples) {
+                trainer.addSample(sample);
+            }
+            byte[] trained = trainer.trainSamples();
+            Dictionary candidate = new Dictionary(name, trained);
+            if (store == null || !store.save(candidate.id, name, trained)) {
+                logger.error("Could not store compression dictionary '{}', discarding it", name);
+                return false;
+            }
+            
+            Files.createDirectories(dictionaryDirectory);
+            Files.write(dictionaryDirectory.resolve(name + DICTIONARY_SUFFIX), trained);
+            Dictionary added = addDictionary(name, trained);
+            logger.info("Trained compression dictionary '{}' ({} bytes, id {}) from {} samples",
+                    name, trained.length, Integer.toHexString(added.id), samples.size());
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            logger.error("Error training compression dictionary '{}'", name, e);
+            return false;
+        }
+    }
+    
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+    
+    // Stored size as a fraction of the original, over compressed payloads only
+    public double getRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1.0 : (double) storedBytes.sum() / raw;
+    }
+    
+    @Override
+    public String toString() {
+        long count = compressed.sum();
+        long reads = decompressed.sum();
+        return String.format(Locale.ROOT,
+                "PayloadCompressor{algorithm=%s, dictionary=%s, compressed=%d, skipped=%d, raw=%dB, stored=%dB, ratio=%.3f, " +
+                "avgCompressUs=%.1f, decompressed=%d, avgDecompressUs=%.1f}",
+                algorithm, dictionary != null ? dictionary.name : "none", count, skipped.sum(), rawBytes.sum(), storedBytes.sum(),
+                getRatio(), count == 0 ? 0.0 : compressNanos.sum() / 1000.0 / count, reads,
+                reads == 0 ? 0.0 : decompressNanos.sum() / 1000.0 / reads);
+    }
+    
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated compression header");
+            }
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed compression header");
+    }
+    
+    public enum Algorithm {
+        NONE(0),
+        DEFLATE(1),
+        LZ4(2),
+        ZSTD(3);
+        
+        private final int id;
+        
+        Algorithm(int id) {
+            this.id = id;
+        }
+        
+        static Algorithm byId(int id) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.id == id) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("Unknown compression algorithm " + id);
+        }
+        
+        public static Algorithm fromConfig(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown compression algorithm '{}', using ZSTD", name);
+                return ZSTD;
+            }
+        }
+    }
+    
+    // Shared storage for dictionaries, keyed by id. save must be idempotent and only return true
+    // once the dictionary is durably stored.
+    public interface DictionaryStore {
+        boolean save(int id, String name, byte[] data);
+        
+        // null if there is no such dictionary
+        byte[] load(int id);
+        
+        // The newest dictionary with that name, or null
+        byte[] loadByName(String name);
+    }
+    
+    // The native Zstd dictionaries are built on first use and kept
+    static final class Dictionary {
+        private final String name;
+        private final byte[] data;
+        private final int id;
+        private volatile ZstdDictCompress zstdCompress;
+        private volatile ZstdDictDecompress zstdDecompress;
+        
+        Dictionary(String name, byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            this.name = name;
+            this.data = data;
+            this.id = Math.max(1, (int) (crc.getValue() & 0x7FFFFFFF));
+        }
+        
+        ZstdDictCompress zstdCompress(int level) {
+            ZstdDictCompress dict = zstdCompress;
+            if (dict == null) {
+                dict = new ZstdDictCompress(data, level > 0 ? level : Zstd.defaultCompressionLevel());
+                zstdCompress = dict;
+            }
+            return dict;
+        }
+        
+        ZstdDictDecompress zstdDecompress() {
+            ZstdDictDecompress dict = zstdDecompress;
+            if (dict == null) {
+                dict = new ZstdDictDecompress(data);
+                zstdDecompress = dict;
+            }
+            return dict;
+        }
+    }
+} 
\ No newline at end of file
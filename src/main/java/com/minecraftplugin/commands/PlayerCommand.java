@@ -1,10 +1,14 @@
 package com.minecraftplugin.commands;
 
 import com.minecraftplugin.AdvancedMinecraftPlugin;
+import com.minecraftplugin.codec.ItemStackCodec;
+import com.minecraftplugin.codec.PayloadCompressor;
 import com.minecraftplugin.economy.EconomyManager;
+import com.minecraftplugin.economy.Money;
 import com.minecraftplugin.inventory.InventoryManager;
 import com.minecraftplugin.enderchest.EnderChestManager;
 import com.minecraftplugin.utils.MessageUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -15,6 +19,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -36,6 +41,16 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
     
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // Console can reload too
+        if (args.length > 0 && args[0].equalsIgnoreCase("reload")) {
+            handleReloadCommand(sender);
+            return true;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("compression")) {
+            handleCompressionCommand(sender, args);
+            return true;
+        }
+        
         if (!(sender instanceof Player)) {
             sender.sendMessage(MessageUtils.formatColors("&cThis command can only be used by players"));
             return true;
@@ -74,11 +89,76 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
+    private void handleReloadCommand(CommandSender sender) {
+        if (!sender.hasPermission("advancedplugin.reload")) {
+            sender.sendMessage(MessageUtils.formatColors(plugin.getConfigManager().getSettings().messages()
+                    .get("errors.no_permission", "&cYou don't have permission to use this command")));
+            return;
+        }
+        
+        if (plugin.getConfigManager().reload()) {
+            sender.sendMessage(MessageUtils.formatColors("&aConfiguration reloaded"));
+        } else {
+            sender.sendMessage(MessageUtils.formatColors("&cFailed to reload configuration, see console"));
+        }
+    }
+    
+    private void handleCompressionCommand(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("advancedplugin.compression")) {
+            sender.sendMessage(MessageUtils.formatColors(plugin.getConfigManager().getSettings().messages()
+                    .get("errors.no_permission", "&cYou don't have permission to use this command")));
+            return;
+        }
+        
+        PayloadCompressor compressor = plugin.getPayloadCompressor();
+        if (args.length < 2 || !args[1].equalsIgnoreCase("train")) {
+            sender.sendMessage(MessageUtils.formatColors("&a" + compressor));
+            sender.sendMessage(MessageUtils.formatColors("&7/plugin compression train <name> [samples] &8- &fTrain a dictionary from saved data"));
+            return;
+        }
+        if (args.length < 3 || !args[2].matches("[A-Za-z0-9_-]{1,32}")) {
+            sender.sendMessage(MessageUtils.formatColors("&cUsage: /plugin compression train <name> [samples]"));
+            return;
+        }
+        
+        String name = args[2];
+        int sampleCount;
+        try {
+            sampleCount = args.length > 3 ? Math.max(10, Math.min(Integer.parseInt(args[3]), 100000)) : 2000;
+        } catch (NumberFormatException e) {
+            sender.sendMessage(MessageUtils.formatColors("&cInvalid sample count: " + args[3]));
+            return;
+        }
+        
+        sender.sendMessage(MessageUtils.formatColors("&7Training dictionary &e" + name + " &7from up to " + sampleCount + " saved payloads..."));
+        plugin.getDatabaseManager().sampleItemDataAsync(sampleCount).thenApply(stored -> {
+            // Trained on the uncompressed codec bytes; old JSON payloads are skipped
+            List<byte[]> samples = new ArrayList<>();
+            for (String data : stored) {
+                try {
+                    if (!ItemStackCodec.isLegacy(data)) {
+                        samples.add(compressor.decompress(Base64.getDecoder().decode(data)));
+                    }
+                } catch (Exception e) {
+                    logger.debug("Skipping unreadable payload while training", e);
+                }
+            }
+            return !samples.isEmpty() && compressor.trainDictionary(name, samples, 112 * 1024);
+        }).whenComplete((trained, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (Boolean.TRUE.equals(trained)) {
+                sender.sendMessage(MessageUtils.formatColors("&aSaved dictionary &e" + name +
+                        "&a; set plugin.compression.dictionary to use it after a restart"));
+            } else {
+                sender.sendMessage(MessageUtils.formatColors("&cCould not train a dictionary, see console"));
+            }
+        }));
+    }
+    
     private void handleBalanceCommand(Player player) {
-        double balance = economyManager.getBalance(player.getUniqueId());
-        String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-        String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance");
-        String formattedMessage = MessageUtils.formatMessage(message, "currency", currencySymbol, "balance", String.format("%.2f", balance));
+        long balance = economyManager.getBalance(player.getUniqueId());
+        String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+        String message = plugin.getConfigManager().getSettings().messages().get("economy.balance");
+        String formattedMessage = MessageUtils.formatMessage(message, "currency", currencySymbol, "balance", Money.format(balance));
         player.sendMessage(MessageUtils.formatColors(formattedMessage));
     }
     
@@ -98,7 +178,7 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
                 }
                 String saveName = args[2];
                 if (inventoryManager.saveInventory(player.getUniqueId(), saveName)) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.inventory.saved_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("inventory.saved_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", saveName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 } else {
@@ -113,11 +193,11 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
                 }
                 String loadName = args[2];
                 if (inventoryManager.loadInventory(player.getUniqueId(), loadName)) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.inventory.loaded_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("inventory.loaded_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", loadName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 } else {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.inventory.not_found_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("inventory.not_found_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", loadName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 }
@@ -126,14 +206,14 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
             case "list":
                 List<String> inventories = inventoryManager.getSavedInventories(player.getUniqueId());
                 if (inventories.isEmpty()) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.inventory.no_saved_inventories_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("inventory.no_saved_inventories_self");
                     player.sendMessage(MessageUtils.formatColors(message));
                 } else {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.inventory.list_header_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("inventory.list_header_self");
                     player.sendMessage(MessageUtils.formatColors(message));
                     
                     for (String inventoryName : inventories) {
-                        String listItem = plugin.getConfigManager().getConfig().getString("messages.inventory.list_item");
+                        String listItem = plugin.getConfigManager().getSettings().messages().get("inventory.list_item");
                         String formattedListItem = MessageUtils.formatMessage(listItem, "name", inventoryName, "date", "");
                         player.sendMessage(MessageUtils.formatColors(formattedListItem));
                     }
@@ -162,7 +242,7 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
                 }
                 String saveName = args[2];
                 if (enderChestManager.saveEnderChest(player.getUniqueId(), saveName)) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.saved_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.saved_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", saveName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 } else {
@@ -177,11 +257,11 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
                 }
                 String loadName = args[2];
                 if (enderChestManager.loadEnderChest(player.getUniqueId(), loadName)) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.loaded_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.loaded_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", loadName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 } else {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.not_found_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.not_found_self");
                     String formattedMessage = MessageUtils.formatMessage(message, "name", loadName);
                     player.sendMessage(MessageUtils.formatColors(formattedMessage));
                 }
@@ -190,14 +270,14 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
             case "list":
                 List<String> enderChests = enderChestManager.getSavedEnderChests(player.getUniqueId());
                 if (enderChests.isEmpty()) {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.no_saved_ender_chests_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.no_saved_ender_chests_self");
                     player.sendMessage(MessageUtils.formatColors(message));
                 } else {
-                    String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.list_header_self");
+                    String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.list_header_self");
                     player.sendMessage(MessageUtils.formatColors(message));
                     
                     for (String enderChestName : enderChests) {
-                        String listItem = plugin.getConfigManager().getConfig().getString("messages.ender_chest.list_item");
+                        String listItem = plugin.getConfigManager().getSettings().messages().get("ender_chest.list_item");
                         String formattedListItem = MessageUtils.formatMessage(listItem, "name", enderChestName, "date", "");
                         player.sendMessage(MessageUtils.formatColors(formattedListItem));
                     }
@@ -219,6 +299,12 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(MessageUtils.formatColors("&7/plugin enderchest save <name> &8- &fSave your ender chest"));
         player.sendMessage(MessageUtils.formatColors("&7/plugin enderchest load <name> &8- &fLoad saved ender chest"));
         player.sendMessage(MessageUtils.formatColors("&7/plugin enderchest list &8- &fList saved ender chests"));
+        if (player.hasPermission("advancedplugin.reload")) {
+            player.sendMessage(MessageUtils.formatColors("&7/plugin reload &8- &fReload the configuration"));
+        }
+        if (player.hasPermission("advancedplugin.compression")) {
+            player.sendMessage(MessageUtils.formatColors("&7/plugin compression [train <name>] &8- &fCompression stats and dictionaries"));
+        }
         player.sendMessage(MessageUtils.formatColors("&7/plugin help &8- &fShow this help message"));
         player.sendMessage(MessageUtils.formatColors("&8&m&l                                                        "));
     }
@@ -230,7 +316,14 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length == 1) {
-            return Arrays.asList("balance", "money", "inventory", "inv", "enderchest", "ec", "help").stream()
+            List<String> subCommands = new ArrayList<>(Arrays.asList("balance", "money", "inventory", "inv", "enderchest", "ec", "help"));
+            if (sender.hasPermission("advancedplugin.reload")) {
+                subCommands.add("reload");
+            }
+            if (sender.hasPermission("advancedplugin.compression")) {
+                subCommands.add("compression");
+            }
+            return subCommands.stream()
                     .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         } else if (args.length == 2) {
@@ -242,6 +335,8 @@ public class PlayerCommand implements CommandExecutor, TabCompleter {
                 return Arrays.asList("save", "load", "list").stream()
                         .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
                         .collect(Collectors.toList());
+            } else if (args[0].equalsIgnoreCase("compression") && sender.hasPermission("advancedplugin.compression")) {
+                return "train".startsWith(args[1].toLowerCase()) ? List.of("train") : new ArrayList<>();
             }
         } else if (args.length == 3) {
             Player player = (Player) sender;
@@ -15,7 +15,8 @@ public class ConfigManager {
     private static final Logger logger = LoggerFactory.getLogger(ConfigManager.class);
     
     private final AdvancedMinecraftPlugin plugin;
-    private FileConfiguration config;
+    private volatile FileConfiguration config;
+    private volatile PluginSettings settings;
     
     private String mongoUri;
     private String mongoDatabase;
@@ -46,10 +47,31 @@ public class ConfigManager {
         loadRedisConfig();
         loadGrpcConfig();
         loadPluginSettings();
+        settings = PluginSettings.from(config);
         
         logger.info("Configuration loaded successfully");
     }
     
+    // Rebuilds the settings snapshot from disk and swaps it in; readers see either the old or the
+    // new snapshot, never a mix. Connection settings and pool sizes still need a restart.
+    public boolean reload() {
+        try {
+            plugin.reloadConfig();
+            FileConfiguration reloaded = plugin.getConfig();
+            PluginSettings reloadedSettings = PluginSettings.from(reloaded);
+            
+            config = reloaded;
+            settings = reloadedSettings;
+            loadPluginSettings();
+            
+            logger.info("Configuration reloaded; connection and pool settings apply after a restart");
+            return true;
+        } catch (Exception e) {
+            logger.error("Error reloading configuration", e);
+            return false;
+        }
+    }
+    
     private void loadEnvironmentVariables() {
         mongoUri = getEnvOrDefault("MONGO_URI", config.getString("database.mongo_uri", "mongodb://localhost:27017"));
         mongoDatabase = getEnvOrDefault("MONGO_DATABASE", config.getString("database.database_name", "minecraft_plugin"));
@@ -162,6 +184,10 @@ public class ConfigManager {
         return debugMode;
     }
     
+    public PluginSettings getSettings() {
+        return settings;
+    }
+    
     public FileConfiguration getConfig() {
         return config;
     }
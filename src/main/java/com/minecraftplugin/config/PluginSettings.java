@@ -0,0 +1,82 @@
+package com.minecraftplugin.config;
+
+import com.minecraftplugin.economy.Money;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Immutable, typed view of config.yml. ConfigManager builds one on load and swaps in a new one on
+// /plugin reload, so hot paths read a final field instead of walking the YAML tree every call.
+public record PluginSettings(Economy economy, Cache cache, Pools pools, AutoSave autoSave, Messages messages) {
+    
+    public static PluginSettings from(FileConfiguration config) {
+        Economy economy = new Economy(
+                Money.ofMajor(config.getDouble("plugin.economy.starting_balance", 1000.0)),
+                Money.ofMajor(config.getDouble("plugin.economy.min_balance", 0.0)),
+                Money.ofMajor(config.getDouble("plugin.economy.max_balance", 0.0)),
+                config.getString("plugin.economy.currency_symbol", "$"),
+                config.getString("plugin.economy.vault.currency_name_singular", "Dollar"),
+                config.getString("plugin.economy.vault.currency_name_plural", "Dollars"));
+        
+        Cache cache = new Cache(
+                config.getInt("redis.cache_ttl_seconds.balance", 3600),
+                config.getInt("redis.cache_ttl_seconds.inventory", 3600));
+        
+        Pools pools = new Pools(
+                config.getInt("redis.pool.max_total", 20),
+                config.getInt("redis.pool.max_idle", 10),
+                config.getInt("redis.pool.min_idle", 5),
+                config.getInt("grpc.threads", 10));
+        
+        AutoSave autoSave = new AutoSave(
+                config.getBoolean("plugin.inventory.auto_save_on_quit", true),
+                config.getBoolean("plugin.ender_chest.auto_save_on_quit", true));
+        
+        Map<String, String> messages = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            for (String key : section.getKeys(true)) {
+                String value = section.getString(key);
+                if (value != null && section.getConfigurationSection(key) == null) {
+                    messages.put(key, value);
+                }
+            }
+        }
+        
+        return new PluginSettings(economy, cache, pools, autoSave, new Messages(Map.copyOf(messages)));
+    }
+    
+    // Amounts in minor units; maxBalance 0 means no limit
+    public record Economy(long startingBalance, long minBalance, long maxBalance, String currencySymbol,
+                          String currencyNameSingular, String currencyNamePlural) {
+        
+        public boolean isValidBalance(long balance) {
+            return balance >= minBalance && (maxBalance <= 0 || balance <= maxBalance);
+        }
+    }
+    
+    public record Cache(int balanceTtlSeconds, int inventoryTtlSeconds) {
+    }
+    
+    // Only read when connections and servers are created; changing them needs a restart
+    public record Pools(int redisMaxTotal, int redisMaxIdle, int redisMinIdle, int grpcThreads) {
+    }
+    
+    // Read on every quit
+    public record AutoSave(boolean inventoryOnQuit, boolean enderChestOnQuit) {
+    }
+    
+    // Keys are relative to messages, e.g. "economy.balance"
+    public record Messages(Map<String, String> values) {
+        
+        public String get(String key) {
+            return values.get(key);
+        }
+        
+        public String get(String key, String defaultValue) {
+            return values.getOrDefault(key, defaultValue);
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,344 @@
+package com.minecraftplugin.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Append-only history of balance changes. Every write to the economy collection bumps the
+// account's seq, and the matching event is queued here and inserted in batches. Every
+// snapshotInterval events the resulting balance is stored as a snapshot, so a balance can be
+// rebuilt from the latest snapshot plus a short tail instead of the whole history.
+//
+// At most MAX_QUEUED events wait for the writer. Past that they are dropped and counted, which
+// leaves a gap in the account's history; the account is then snapshotted at its next known
+// balance so replay works again from there. Pending snapshots are kept per account, only the
+// newest one, since replay only ever starts from the latest.
+public class BalanceEventLog {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceEventLog.class);
+    
+    private static final String EVENT_COLLECTION = "balance_events";
+    private static final String SNAPSHOT_COLLECTION = "balance_snapshots";
+    private static final int MAX_QUEUED = 100000;
+    
+    private final MongoCollection<Document> events;
+    private final MongoCollection<Document> snapshots;
+    private final int snapshotInterval;
+    private final int batchSize;
+    
+    private final ConcurrentLinkedQueue<Document> eventQueue = new ConcurrentLinkedQueue<>();
+    private final Map<String, Document> pendingSnapshots = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Set<UUID> needsSnapshot = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicBoolean dropping = new AtomicBoolean();
+    private final ScheduledExecutorService writer;
+    
+    public BalanceEventLog(MongoDatabase database, int snapshotInterval, long flushIntervalMs, int batchSize) {
+        this.events = database.getCollection(EVENT_COLLECTION);
+        this.snapshots = database.getCollection(SNAPSHOT_COLLECTION);
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.batchSize = Math.max(1, batchSize);
+        
+        events.createIndex(Indexes.ascending("player_uuid", "seq"), new IndexOptions().unique(true));
+        snapshots.createIndex(Indexes.compoundIndex(Indexes.ascending("player_uuid"), Indexes.descending("seq")),
+                new IndexOptions().unique(true));
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-event-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // A relative change that left the account at seq with the given balance
+    public void recordDelta(UUID playerUuid, long seq, long delta, long balance, String operation) {
+        enqueue(playerUuid, new Document("player_uuid", playerUuid.toString())
+                .append("seq", seq)
+                .append("op", operation)
+                .append("delta", delta)
+                .append("created_at", System.currentTimeMillis()));
+        maybeSnapshot(playerUuid, seq, balance);
+    }
+    
+    // A change whose resulting balance is unknown to the writer, e.g. a coalesced batch
+    public void recordDelta(UUID playerUuid, long seq, long delta, String operation) {
+        enqueue(playerUuid, new Document("player_uuid", playerUuid.toString())
+                .append("seq", seq)
+                .append("op", operation)
+                .append("delta", delta)
+                .append("created_at", System.currentTimeMillis()));
+    }
+    
+    public void recordSet(UUID playerUuid, long seq, long balance) {
+        enqueue(playerUuid, new Document("player_uuid", playerUuid.toString())
+                .append("seq", seq)
+                .append("op", "set")
+                .append("balance", balance)
+                .append("created_at", System.currentTimeMillis()));
+        maybeSnapshot(playerUuid, seq, balance);
+    }
+    
+    // New accounts start with a snapshot at seq 0 so their full history is replayable
+    public void recordOpen(UUID playerUuid, long balance) {
+        snapshot(playerUuid, 0L, balance);
+    }
+    
+    public void maybeSnapshot(UUID playerUuid, long seq, long balance) {
+        // Also after a dropped event, which this snapshot covers
+        if (seq % snapshotInterval == 0 || needsSnapshot.remove(playerUuid)) {
+            snapshot(playerUuid, seq, balance);
+        }
+    }
+    
+    private void snapshot(UUID playerUuid, long seq, long balance) {
+        Document snapshot = new Document("player_uuid", playerUuid.toString())
+                .append("seq", seq)
+                .append("balance", balance)
+                .append("created_at", System.currentTimeMillis());
+        pendingSnapshots.merge(snapshot.getString("player_uuid"), snapshot, BalanceEventLog::newer);
+    }
+    
+    private static Document newer(Document a, Document b) {
+        return a.getLong("seq") >= b.getLong("seq") ? a : b;
+    }
+    
+    private void enqueue(UUID playerUuid, Document event) {
+        if (queued.get() >= MAX_QUEUED) {
+            dropped.increment();
+            needsSnapshot.add(playerUuid);
+            if (!dropping.getAndSet(true)) {
+                logger.warn("Balance event queue full, dropping events until it drains; affected accounts are snapshotted at their next change");
+            }
+            return;
+        }
+        eventQueue.add(event);
+        if (queued.incrementAndGet() >= batchSize) {
+            writer.execute(this::flush);
+        }
+    }
+    
+    public synchronized void flush() {
+        drain(eventQueue, events);
+        drainSnapshots();
+        if (queued.get() < MAX_QUEUED && dropping.getAndSet(false)) {
+            logger.warn("Balance event queue drained, {} events dropped so far", dropped.sum());
+        }
+    }
+    
+    private void drain(ConcurrentLinkedQueue<Document> queue, MongoCollection<Document> collection) {
+        while (!queue.isEmpty()) {
+            List<Document> batch = new ArrayList<>(batchSize);
+            Document next;
+            while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            queued.addAndGet(-batch.size());
+            
+            if (!insertBatch(collection, batch)) {
+                // Keep them for the next flush; duplicates from a partial insert are ignored then
+                queue.addAll(batch);
+                queued.addAndGet(batch.size());
+                return;
+            }
+        }
+    }
+    
+    private void drainSnapshots() {
+        List<Document> batch = new ArrayList<>(batchSize);
+        for (Document snapshot : pendingSnapshots.values()) {
+            if (pendingSnapshots.remove(snapshot.getString("player_uuid"), snapshot)) {
+                batch.add(snapshot);
+            }
+            if (batch.size() >= batchSize) {
+                if (!insertSnapshots(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        insertSnapshots(batch);
+    }
+    
+    private boolean insertSnapshots(List<Document> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        if (!insertBatch(snapshots, batch)) {
+            // Keep them for the next flush unless a newer snapshot has replaced them meanwhile
+            for (Document snapshot : batch) {
+                pendingSnapshots.merge(snapshot.getString("player_uuid"), snapshot, BalanceEventLog::newer);
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    // Events dropped because the queue was full since startup
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+    
+    private boolean insertBatch(MongoCollection<Document> collection, List<Document> batch) {
+        try {
+            collection.insertMany(batch, new InsertManyOptions().ordered(false));
+            return true;
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    logger.error("Error writing {} batch", collection.getNamespace().getCollectionName(), e);
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            logger.error("Error writing {} batch", collection.getNamespace().getCollectionName(), e);
+            return false;
+        }
+    }
+    
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    // Latest snapshot plus the events after it. Returns null when there is no snapshot or the tail
+    // has a gap, in which case the caller should trust the economy collection instead.
+    public Replay replay(UUID playerUuid) {
+        Document snapshot = snapshots.find(Filters.eq("player_uuid", playerUuid.toString()))
+                .sort(Sorts.descending("seq"))
+                .first();
+        if (snapshot == null) {
+            return null;
+        }
+        
+        Replay replay = new Replay(playerUuid, snapshot.getLong("seq"), snapshot.getLong("balance"));
+        for (Document event : events.find(Filters.and(Filters.eq("player_uuid", playerUuid.toString()),
+                        Filters.gt("seq", replay.seq)))
+                .sort(Sorts.ascending("seq"))) {
+            if (!replay.apply(event)) {
+                return null;
+            }
+        }
+        return replay;
+    }
+    
+    // Rebuilds a chunk of players with two queries: their latest snapshots, then one cursor over all
+    // of their tails sorted by player and seq. Players that cannot be replayed are reported as null.
+    public void replayChunk(List<UUID> playerUuids, ReplayConsumer consumer) {
+        List<String> ids = new ArrayList<>(playerUuids.size());
+        for (UUID playerUuid : playerUuids) {
+            ids.add(playerUuid.toString());
+        }
+        
+        Map<String, Replay> replays = new HashMap<>();
+        for (Document latest : snapshots.aggregate(Arrays.asList(
+                Aggregates.match(Filters.in("player_uuid", ids)),
+                Aggregates.sort(Sorts.descending("seq")),
+                Aggregates.group("$player_uuid",
+                        Accumulators.first("seq", "$seq"),
+                        Accumulators.first("balance", "$balance"))))) {
+            String id = latest.getString("_id");
+            replays.put(id, new Replay(UUID.fromString(id), latest.getLong("seq"), latest.getLong("balance")));
+        }
+        
+        List<Bson> tails = new ArrayList<>(replays.size());
+        for (Replay replay : replays.values()) {
+            tails.add(Filters.and(Filters.eq("player_uuid", replay.playerUuid.toString()), Filters.gt("seq", replay.seq)));
+        }
+        
+        if (!tails.isEmpty()) {
+            try (MongoCursor<Document> cursor = events.find(Filters.or(tails))
+                    .sort(Sorts.ascending("player_uuid", "seq"))
+                    .batchSize(1000)
+                    .iterator()) {
+                while (cursor.hasNext()) {
+                    Document event = cursor.next();
+                    Replay replay = replays.get(event.getString("player_uuid"));
+                    if (replay != null && !replay.broken && !replay.apply(event)) {
+                        replay.broken = true;
+                    }
+                }
+            }
+        }
+        
+        for (UUID playerUuid : playerUuids) {
+            Replay replay = replays.get(playerUuid.toString());
+            consumer.accept(playerUuid, replay == null || replay.broken ? null : replay);
+        }
+    }
+    
+    @FunctionalInterface
+    public interface ReplayConsumer {
+        void accept(UUID playerUuid, Replay replay);
+    }
+    
+    public static class Replay {
+        private final UUID playerUuid;
+        private long seq;
+        private long balance;
+        private boolean broken;
+        
+        Replay(UUID playerUuid, long seq, long balance) {
+            this.playerUuid = playerUuid;
+            this.seq = seq;
+            this.balance = balance;
+        }
+        
+        // Events must follow on without gaps for the rebuilt balance to be exact
+        boolean apply(Document event) {
+            long eventSeq = event.getLong("seq");
+            if (eventSeq != seq + 1) {
+                return false;
+            }
+            
+            if ("set".equals(event.getString("op"))) {
+                balance = event.getLong("balance");
+            } else {
+                balance += event.getLong("delta");
+            }
+            seq = eventSeq;
+            return true;
+        }
+        
+        public UUID getPlayerUuid() { return playerUuid; }
+        public long getSeq() { return seq; }
+        public long getBalance() { return balance; }
+    }
+} 
\ No newline at end of file
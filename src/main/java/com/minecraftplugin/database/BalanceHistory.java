@@ -0,0 +1,348 @@
+package com.minecraftplugin.database;
+
+import com.minecraftplugin.utils.RingBuffer;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Balance over time for charts. Every change is a point in the balance_history time-series
+// collection, kept only briefly. Each flush also folds its points into minute, hour and day
+// buckets (open, close, low, high), so older ranges are served from a few hundred buckets
+// instead of every change. Points are queued in a ring buffer and written off the hot path;
+// when it is full they are dropped, which only thins the chart.
+public class BalanceHistory {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceHistory.class);
+    
+    private static final String RAW_COLLECTION = "balance_history";
+    private static final long RAW_WINDOW_MS = TimeUnit.HOURS.toMillis(1);
+    
+    public enum Resolution {
+        RAW(0L),
+        MINUTE(TimeUnit.MINUTES.toMillis(1)),
+        HOUR(TimeUnit.HOURS.toMillis(1)),
+        DAY(TimeUnit.DAYS.toMillis(1));
+        
+        private final long bucketMs;
+        
+        Resolution(long bucketMs) {
+            this.bucketMs = bucketMs;
+        }
+        
+        public long getBucketMs() {
+            return bucketMs;
+        }
+    }
+    
+    private static final Resolution[] ROLLUPS = {Resolution.MINUTE, Resolution.HOUR, Resolution.DAY};
+    
+    private final MongoCollection<Document> raw;
+    private final Map<Resolution, MongoCollection<Document>> rollups = new HashMap<>();
+    private final Map<Resolution, Long> retentionMs = new HashMap<>();
+    private final RingBuffer<Point> buffer;
+    private final int batchSize;
+    private final ScheduledExecutorService writer;
+    private final LongAdder dropped = new LongAdder();
+    private long reportedDrops;
+    
+    public BalanceHistory(MongoDatabase database, int bufferSize, int batchSize, long flushIntervalMs,
+                          Map<Resolution, Integer> retentionDays) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.batchSize = Math.max(1, batchSize);
+        for (Resolution resolution : Resolution.values()) {
+            retentionMs.put(resolution, TimeUnit.DAYS.toMillis(Math.max(1, retentionDays.get(resolution))));
+        }
+        
+        this.raw = ensureRawCollection(database);
+        for (Resolution resolution : ROLLUPS) {
+            rollups.put(resolution, ensureRollupCollection(database, resolution));
+        }
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private MongoCollection<Document> ensureRawCollection(MongoDatabase database) {
+        long expireAfterSeconds = TimeUnit.MILLISECONDS.toSeconds(retentionMs.get(Resolution.RAW));
+        if (database.listCollectionNames().into(new ArrayList<>()).contains(RAW_COLLECTION)) {
+            database.runCommand(new Document("collMod", RAW_COLLECTION).append("expireAfterSeconds", expireAfterSeconds));
+        } else {
+            database.createCollection(RAW_COLLECTION, new CreateCollectionOptions()
+                    .timeSeriesOptions(new TimeSeriesOptions("ts")
+                            .metaField("player_uuid")
+                            .granularity(TimeSeriesGranularity.SECONDS))
+                    .expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+        }
+        return database.getCollection(RAW_COLLECTION);
+    }
+    
+    private MongoCollection<Document> ensureRollupCollection(MongoDatabase database, Resolution resolution) {
+        String name = RAW_COLLECTION + "_" + resolution.name().toLowerCase(Locale.ROOT);
+        MongoCollection<Document> collection = database.getCollection(name);
+        long expireAfterSeconds = TimeUnit.MILLISECONDS.toSeconds(retentionMs.get(resolution));
+        
+        collection.createIndex(Indexes.ascending("player_uuid", "ts"), new IndexOptions().unique(true));
+        try {
+            collection.createIndex(Indexes.ascending("ts"), new IndexOptions().expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+        } catch (MongoCommandException e) {
+            // The retention changed since the index was created
+            database.runCommand(new Document("collMod", name)
+                    .append("index", new Document("keyPattern", new Document("ts", 1))
+                            .append("expireAfterSeconds", expireAfterSeconds)));
+        }
+        return collection;
+    }
+    
+    public void record(UUID playerUuid, long balance) {
+        if (!buffer.offer(new Point(playerUuid, balance, System.currentTimeMillis()))) {
+            dropped.increment();
+        }
+    }
+    
+    public synchronized void flush() {
+        while (buffer.size() > 0) {
+            List<Point> points = new ArrayList<>(Math.min(batchSize, buffer.size()));
+            buffer.drainTo(points::add, batchSize);
+            if (points.isEmpty()) {
+                break;
+            }
+            
+            try {
+                writeRaw(points);
+                for (Resolution resolution : ROLLUPS) {
+                    writeRollups(resolution, points);
+                }
+            } catch (Exception e) {
+                logger.error("Error writing {} balance history points", points.size(), e);
+                dropped.add(points.size());
+                break;
+            }
+        }
+        
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            logger.warn("Balance history has dropped {} points", drops);
+            reportedDrops = drops;
+        }
+    }
+    
+    private void writeRaw(List<Point> points) {
+        List<Document> documents = new ArrayList<>(points.size());
+        for (Point point : points) {
+            documents.add(new Document("ts", new Date(point.timestamp))
+                    .append("player_uuid", point.playerUuid.toString())
+                    .append("balance", point.balance));
+        }
+        raw.insertMany(documents, new InsertManyOptions().ordered(false));
+    }
+    
+    // Points are first folded per bucket here, then merged into the stored bucket by a pipeline
+    // update, so buckets written by several servers or several flushes still come out right
+    private void writeRollups(Resolution resolution, List<Point> points) {
+        Map<BucketKey, Bucket> buckets = new HashMap<>();
+        for (Point point : points) {
+            long start = point.timestamp - Math.floorMod(point.timestamp, resolution.bucketMs);
+            buckets.computeIfAbsent(new BucketKey(point.playerUuid, start), key -> new Bucket()).add(point);
+        }
+        
+        List<WriteModel<Document>> writes = new ArrayList<>(buckets.size());
+        for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+            Bson filter = Filters.and(Filters.eq("player_uuid", entry.getKey().playerUuid.toString()),
+                    Filters.eq("ts", new Date(entry.getKey().start)));
+            writes.add(new UpdateOneModel<>(filter, entry.getValue().merge(), new UpdateOptions().upsert(true)));
+        }
+        rollups.get(resolution).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+    
+    // The finest resolution that still covers the start of the range in at most maxPoints buckets
+    public Resolution chooseResolution(long fromMs, long toMs, int maxPoints) {
+        long now = System.currentTimeMillis();
+        long window = Math.max(1L, toMs - fromMs);
+        if (window <= RAW_WINDOW_MS && fromMs >= now - retentionMs.get(Resolution.RAW)) {
+            return Resolution.RAW;
+        }
+        for (Resolution resolution : ROLLUPS) {
+            if (fromMs >= now - retentionMs.get(resolution) && window / resolution.bucketMs <= maxPoints) {
+                return resolution;
+            }
+        }
+        return Resolution.DAY;
+    }
+    
+    // Oldest first; if the range holds more than maxPoints, the newest are kept, since a chart is
+    // read from its most recent end
+    public List<HistoryPoint> query(UUID playerUuid, long fromMs, long toMs, Resolution resolution, int maxPoints) {
+        Bson filter = Filters.and(Filters.eq("player_uuid", playerUuid.toString()),
+                Filters.gte("ts", new Date(fromMs)),
+                Filters.lt("ts", new Date(toMs)));
+        List<HistoryPoint> points = new ArrayList<>();
+        
+        if (resolution == Resolution.RAW) {
+            for (Document doc : raw.find(filter).sort(Sorts.descending("ts")).limit(maxPoints)) {
+                long balance = doc.get("balance", Number.class).longValue();
+                points.add(new HistoryPoint(doc.getDate("ts").getTime(), balance, balance, balance, balance));
+            }
+            Collections.reverse(points);
+            return points;
+        }
+        
+        for (Document doc : rollups.get(resolution).find(filter)
+                .projection(Projections.include("ts", "open", "close", "low", "high"))
+                .sort(Sorts.descending("ts"))
+                .limit(maxPoints)) {
+            points.add(new HistoryPoint(doc.getDate("ts").getTime(),
+                    doc.get("open", Number.class).longValue(),
+                    doc.get("close", Number.class).longValue(),
+                    doc.get("low", Number.class).longValue(),
+                    doc.get("high", Number.class).longValue()));
+        }
+        Collections.reverse(points);
+        return points;
+    }
+    
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    private static final class Point {
+        private final UUID playerUuid;
+        private final long balance;
+        private final long timestamp;
+        
+        Point(UUID playerUuid, long balance, long timestamp) {
+            this.playerUuid = playerUuid;
+            this.balance = balance;
+            this.timestamp = timestamp;
+        }
+    }
+    
+    private static final class BucketKey {
+        private final UUID playerUuid;
+        private final long start;
+        
+        BucketKey(UUID playerUuid, long start) {
+            this.playerUuid = playerUuid;
+            this.start = start;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return start == other.start && playerUuid.equals(other.playerUuid);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(playerUuid, start);
+        }
+    }
+    
+    private static final class Bucket {
+        private long open;
+        private long openTs = Long.MAX_VALUE;
+        private long close;
+        private long closeTs = Long.MIN_VALUE;
+        private long low = Long.MAX_VALUE;
+        private long high = Long.MIN_VALUE;
+        private int count;
+        
+        void add(Point point) {
+            if (point.timestamp < openTs) {
+                open = point.balance;
+                openTs = point.timestamp;
+            }
+            if (point.timestamp >= closeTs) {
+                close = point.balance;
+                closeTs = point.timestamp;
+            }
+            low = Math.min(low, point.balance);
+            high = Math.max(high, point.balance);
+            count++;
+        }
+        
+        // One $set stage sees the stored values as they were, so every field is merged against
+        // the old bucket; an absent bucket is treated as empty
+        List<Bson> merge() {
+            Document earlier = new Document("$lt", List.of(openTs, new Document("$ifNull", List.of("$open_ts", Long.MAX_VALUE))));
+            Document later = new Document("$gte", List.of(closeTs, new Document("$ifNull", List.of("$close_ts", Long.MIN_VALUE))));
+            return List.of(new Document("$set", new Document()
+                    .append("open", new Document("$cond", List.of(earlier, open, "$open")))
+                    .append("open_ts", new Document("$min", List.of(openTs, new Document("$ifNull", List.of("$open_ts", openTs)))))
+                    .append("close", new Document("$cond", List.of(later, close, "$close")))
+                    .append("close_ts", new Document("$max", List.of(closeTs, new Document("$ifNull", List.of("$close_ts", closeTs)))))
+                    .append("low", new Document("$min", List.of(low, new Document("$ifNull", List.of("$low", low)))))
+                    .append("high", new Document("$max", List.of(high, new Document("$ifNull", List.of("$high", high)))))
+                    .append("count", new Document("$add", List.of(count, new Document("$ifNull", List.of("$count", 0)))))));
+        }
+    }
+    
+    public static class HistoryPoint {
+        private final long timestamp;
+        private final long open;
+        private final long close;
+        private final long low;
+        private final long high;
+        
+        HistoryPoint(long timestamp, long open, long close, long low, long high) {
+            this.timestamp = timestamp;
+            this.open = open;
+            this.close = close;
+            this.low = low;
+            this.high = high;
+        }
+        
+        public long getTimestamp() { return timestamp; }
+        public long getOpen() { return open; }
+        public long getClose() { return close; }
+        public long getLow() { return low; }
+        public long getHigh() { return high; }
+    }
+} 
\ No newline at end of file
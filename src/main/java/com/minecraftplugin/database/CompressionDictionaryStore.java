@@ -0,0 +1,70 @@
+package com.minecraftplugin.database;
+
+import com.minecraftplugin.codec.PayloadCompressor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Compression dictionaries shared by every server in compression_dictionaries, keyed by the id
+// each compressed payload carries. Dictionaries are never changed or deleted once stored, since
+// payloads anywhere may still need them.
+public class CompressionDictionaryStore implements PayloadCompressor.DictionaryStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CompressionDictionaryStore.class);
+    
+    private static final String DICTIONARY_COLLECTION = "compression_dictionaries";
+    
+    private final MongoCollection<Document> dictionaries;
+    
+    public CompressionDictionaryStore(MongoDatabase database) {
+        this.dictionaries = database.getCollection(DICTIONARY_COLLECTION);
+    }
+    
+    @Override
+    public boolean save(int id, String name, byte[] data) {
+        try {
+            dictionaries.updateOne(Filters.eq("_id", id),
+                    Updates.combine(
+                            Updates.setOnInsert("name", name),
+                            Updates.setOnInsert("data", new Binary(data)),
+                            Updates.setOnInsert("created_at", System.currentTimeMillis())
+                    ),
+                    new UpdateOptions().upsert(true));
+            return true;
+        } catch (Exception e) {
+            logger.error("Error storing compression dictionary '{}'", name, e);
+            return false;
+        }
+    }
+    
+    @Override
+    public byte[] load(int id) {
+        try {
+            return data(dictionaries.find(Filters.eq("_id", id)).first());
+        } catch (Exception e) {
+            logger.error("Error loading compression dictionary {}", Integer.toHexString(id), e);
+            return null;
+        }
+    }
+    
+    @Override
+    public byte[] loadByName(String name) {
+        try {
+            return data(dictionaries.find(Filters.eq("name", name)).sort(Sorts.descending("created_at")).first());
+        } catch (Exception e) {
+            logger.error("Error loading compression dictionary '{}'", name, e);
+            return null;
+        }
+    }
+    
+    private static byte[] data(Document doc) {
+        return doc != null ? doc.get("data", Binary.class).getData() : null;
+    }
+} 
\ No newline at end of file
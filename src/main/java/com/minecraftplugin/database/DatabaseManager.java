@@ -1,22 +1,53 @@
 package com.minecraftplugin.database;
 
+import com.minecraftplugin.codec.ItemStackCodec;
 import com.minecraftplugin.config.ConfigManager;
+import com.minecraftplugin.economy.BalanceStore;
+import com.minecraftplugin.economy.Money;
+import com.minecraftplugin.economy.VersionedBalance;
 import com.mongodb.client.*;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.client.result.DeleteResult;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
 
 public class DatabaseManager {
     
@@ -25,10 +56,25 @@ public class DatabaseManager {
     private final ConfigManager configManager;
     private MongoClient mongoClient;
     private MongoDatabase database;
+    private TransferLedger transferLedger;
+    private BalanceEventLog eventLog;
+    private EconomySweep economySweep;
+    private EconomyAuditLog auditLog;
+    private BalanceHistory balanceHistory;
+    private ItemBlobStore itemBlobs;
+    private CompressionDictionaryStore compressionDictionaries;
     
     private static final String ECONOMY_COLLECTION = "economy";
     private static final String INVENTORY_COLLECTION = "inventories";
     private static final String ENDER_CHEST_COLLECTION = "ender_chests";
+    private static final String PLAYER_NAME_COLLECTION = "player_names";
+    private static final Collation CASE_INSENSITIVE = Collation.builder()
+            .locale("en")
+            .collationStrength(CollationStrength.SECONDARY)
+            .build();
+    private static final int REPLAY_CHUNK_SIZE = 500;
+    private static final int RECENT_BULK_CREDITS = 8;
+    private static final int RECENT_JOURNAL_BATCHES = 16;
     
     public DatabaseManager(ConfigManager configManager) {
         this.configManager = configManager;
@@ -47,6 +93,44 @@ public class DatabaseManager {
             
             database.runCommand(new Document("ping", 1));
             
+            migrateLegacyBalances();
+            ensureEconomyIndex();
+            ensurePlayerNameIndexes();
+            
+            eventLog = new BalanceEventLog(database,
+                    configManager.getConfig().getInt("plugin.economy.event_log.snapshot_interval", 100),
+                    configManager.getConfig().getLong("plugin.economy.event_log.flush_interval_ms", 250L),
+                    configManager.getConfig().getInt("plugin.economy.event_log.batch_size", 500));
+            
+            transferLedger = new TransferLedger(mongoClient, database, eventLog);
+            transferLedger.recover(getMinimumBalance());
+            economySweep = new EconomySweep(database, eventLog);
+            itemBlobs = new ItemBlobStore(database);
+            compressionDictionaries = new CompressionDictionaryStore(database);
+            ensureItemIndexes();
+            
+            if (configManager.getConfig().getBoolean("plugin.economy.audit.enabled", true)) {
+                auditLog = new EconomyAuditLog(database,
+                        configManager.getConfig().getInt("plugin.economy.audit.buffer_size", 65536),
+                        configManager.getConfig().getInt("plugin.economy.audit.batch_size", 500),
+                        configManager.getConfig().getLong("plugin.economy.audit.flush_interval_ms", 1000L),
+                        configManager.getConfig().getInt("plugin.economy.audit.retention_days", 90));
+            }
+            
+            if (configManager.getConfig().getBoolean("plugin.economy.history.enabled", true)) {
+                String prefix = "plugin.economy.history.";
+                Map<BalanceHistory.Resolution, Integer> retentionDays = new EnumMap<>(BalanceHistory.Resolution.class);
+                retentionDays.put(BalanceHistory.Resolution.RAW, configManager.getConfig().getInt(prefix + "retention_days.raw", 2));
+                retentionDays.put(BalanceHistory.Resolution.MINUTE, configManager.getConfig().getInt(prefix + "retention_days.minute", 7));
+                retentionDays.put(BalanceHistory.Resolution.HOUR, configManager.getConfig().getInt(prefix + "retention_days.hour", 90));
+                retentionDays.put(BalanceHistory.Resolution.DAY, configManager.getConfig().getInt(prefix + "retention_days.day", 730));
+                balanceHistory = new BalanceHistory(database,
+                        configManager.getConfig().getInt(prefix + "buffer_size", 65536),
+                        configManager.getConfig().getInt(prefix + "batch_size", 1000),
+                        configManager.getConfig().getLong(prefix + "flush_interval_ms", 5000L),
+                        retentionDays);
+            }
+            
             logger.info("Successfully connected to MongoDB database: {}", configManager.getMongoDatabase());
             return true;
             
@@ -57,6 +141,26 @@ public class DatabaseManager {
     }
     
     public void disconnect() {
+        if (economySweep != null) {
+            economySweep.stop();
+        }
+        
+        if (auditLog != null) {
+            auditLog.shutdown();
+        }
+        
+        if (balanceHistory != null) {
+            balanceHistory.shutdown();
+        }
+        
+        if (eventLog != null) {
+            eventLog.shutdown();
+        }
+        
+        if (itemBlobs != null) {
+            logger.info("Item blobs - {}", itemBlobs);
+        }
+        
         if (mongoClient != null) {
             try {
                 mongoClient.close();
@@ -67,202 +171,633 @@ public class DatabaseManager {
         }
     }
     
-    public double getPlayerBalance(UUID playerUuid) {
+    public TransferLedger getTransferLedger() {
+        return transferLedger;
+    }
+    
+    public EconomySweep getEconomySweep() {
+        return economySweep;
+    }
+    
+    public CompressionDictionaryStore getCompressionDictionaries() {
+        return compressionDictionaries;
+    }
+    
+    // Null when auditing is disabled
+    public EconomyAuditLog getAuditLog() {
+        return auditLog;
+    }
+    
+    // Null when balance history is disabled
+    public BalanceHistory getBalanceHistory() {
+        return balanceHistory;
+    }
+    
+    // Balances used to be stored as doubles in major units; convert them to int64 minor units in place
+    private void migrateLegacyBalances() {
         try {
             MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
-            Document doc = collection.find(Filters.eq("player_uuid", playerUuid.toString())).first();
             
-            if (doc != null) {
-                return doc.getDouble("balance");
-            }
+            Document toMinorUnits = new Document("$toLong", new Document("$round",
+                    List.of(new Document("$multiply", List.of("$balance", Money.UNIT)), 0)));
             
-            double defaultBalance = configManager.getConfig().getDouble("plugin.economy.starting_balance", 1000.0);
-            Document newDoc = new Document()
-                    .append("player_uuid", playerUuid.toString())
-                    .append("balance", defaultBalance)
-                    .append("created_at", System.currentTimeMillis());
-            
-            collection.insertOne(newDoc);
-            return defaultBalance;
+            UpdateResult result = collection.updateMany(Filters.type("balance", BsonType.DOUBLE),
+                    List.of(Updates.set("balance", toMinorUnits)));
             
+            if (result.getModifiedCount() > 0) {
+                logger.info("Migrated {} legacy balances to minor units", result.getModifiedCount());
+            }
         } catch (Exception e) {
-            logger.error("Error getting player balance for {}", playerUuid, e);
-            return 0.0;
+            logger.error("Error migrating legacy balances", e);
+        }
+    }
+    
+    // One account per player; with the unique index concurrent first lookups cannot create duplicates
+    private void ensureEconomyIndex() {
+        try {
+            database.getCollection(ECONOMY_COLLECTION)
+                    .createIndex(Indexes.ascending("player_uuid"), new IndexOptions().unique(true));
+        } catch (MongoException e) {
+            logger.warn("Could not create unique player_uuid index on {}; remove duplicate accounts and restart", ECONOMY_COLLECTION, e);
         }
     }
     
-    public boolean setPlayerBalance(UUID playerUuid, double balance) {
+    // Names are matched case-insensitively through the collation, as Minecraft does
+    private void ensurePlayerNameIndexes() {
+        try {
+            MongoCollection<Document> collection = database.getCollection(PLAYER_NAME_COLLECTION);
+            collection.createIndex(Indexes.ascending("player_uuid"), new IndexOptions().unique(true));
+            collection.createIndex(Indexes.ascending("name"), new IndexOptions().collation(CASE_INSENSITIVE));
+        } catch (MongoException e) {
+            logger.warn("Could not create indexes on {}", PLAYER_NAME_COLLECTION, e);
+        }
+    }
+    
+    private void ensureItemIndexes() {
+        for (String collectionName : List.of(INVENTORY_COLLECTION, ENDER_CHEST_COLLECTION)) {
+            try {
+                database.getCollection(collectionName).createIndex(Indexes.ascending("player_uuid", "name"));
+                database.getCollection(collectionName).createIndex(
+                        Indexes.compoundIndex(Indexes.ascending("player_uuid"), Indexes.descending("created_at")));
+            } catch (MongoException e) {
+                logger.warn("Could not create indexes on {}", collectionName, e);
+            }
+        }
+    }
+    
+    private long getStartingBalance() {
+        return configManager.getSettings().economy().startingBalance();
+    }
+    
+    public long getMinimumBalance() {
+        return configManager.getSettings().economy().minBalance();
+    }
+    
+    private static long readSeq(Document doc) {
+        Object seq = doc.get("seq");
+        return seq instanceof Number ? ((Number) seq).longValue() : 0L;
+    }
+    
+    private static FindOneAndUpdateOptions afterWrite() {
+        return new FindOneAndUpdateOptions()
+                .returnDocument(ReturnDocument.AFTER)
+                .projection(Projections.include("balance", "seq"));
+    }
+    
+    private long readBalance(Document doc) {
+        Object balance = doc.get("balance");
+        if (balance instanceof Double) {
+            return Money.ofMajor((Double) balance);
+        }
+        return balance instanceof Number ? ((Number) balance).longValue() : 0L;
+    }
+    
+    public long getPlayerBalance(UUID playerUuid) {
+        VersionedBalance stored = loadPlayerBalance(playerUuid);
+        return stored != null ? stored.getBalance() : 0L;
+    }
+    
+    // Balance and seq of the account, creating it if needed. Returns null on error.
+    public VersionedBalance loadPlayerBalance(UUID playerUuid) {
         try {
             MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
-            
             Bson filter = Filters.eq("player_uuid", playerUuid.toString());
-            Bson update = Updates.combine(
-                    Updates.set("balance", balance),
-                    Updates.set("updated_at", System.currentTimeMillis())
-            );
+            long defaultBalance = getStartingBalance();
             
-            UpdateResult result = collection.updateOne(filter, update);
+            // Find-or-create in one round trip; the document from before the upsert is null only for the caller that created it
+            Document existing;
+            try {
+                existing = collection.findOneAndUpdate(filter,
+                        Updates.combine(
+                                Updates.setOnInsert("balance", defaultBalance),
+                                Updates.setOnInsert("seq", 0L),
+                                Updates.setOnInsert("created_at", System.currentTimeMillis())),
+                        new FindOneAndUpdateOptions()
+                                .upsert(true)
+                                .returnDocument(ReturnDocument.BEFORE)
+                                .projection(Projections.include("balance", "seq")));
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                // Lost an upsert race against another server; the winner's document is there now
+                existing = collection.find(filter).projection(Projections.include("balance", "seq")).first();
+            }
             
-            if (result.getMatchedCount() == 0) {
-                Document doc = new Document()
-                        .append("player_uuid", playerUuid.toString())
-                        .append("balance", balance)
-                        .append("created_at", System.currentTimeMillis())
-                        .append("updated_at", System.currentTimeMillis());
-                
-                collection.insertOne(doc);
+            if (existing != null) {
+                return new VersionedBalance(readBalance(existing), readSeq(existing));
             }
             
-            return true;
+            eventLog.recordOpen(playerUuid, defaultBalance);
+            return new VersionedBalance(defaultBalance, 0L);
             
         } catch (Exception e) {
-            logger.error("Error setting player balance for {}", playerUuid, e);
-            return false;
+            logger.error("Error getting player balance for {}", playerUuid, e);
+            return null;
         }
     }
     
-    public boolean updatePlayerBalance(UUID playerUuid, double amount) {
+    public boolean setPlayerBalance(UUID playerUuid, long balance) {
+        return setPlayerBalanceAndGet(playerUuid, balance) != null;
+    }
+    
+    // Returns the written balance with the seq it landed on, or null on error
+    public VersionedBalance setPlayerBalanceAndGet(UUID playerUuid, long balance) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
-            
-            Bson filter = Filters.eq("player_uuid", playerUuid.toString());
-            Bson update = Updates.combine(
-                    Updates.inc("balance", amount),
-                    Updates.set("updated_at", System.currentTimeMillis())
-            );
-            
-            UpdateResult result = collection.updateOne(filter, update);
-            
-            if (result.getMatchedCount() == 0) {
-                double defaultBalance = configManager.getConfig().getDouble("plugin.economy.starting_balance", 1000.0);
-                Document doc = new Document()
-                        .append("player_uuid", playerUuid.toString())
-                        .append("balance", defaultBalance + amount)
-                        .append("created_at", System.currentTimeMillis())
-                        .append("updated_at", System.currentTimeMillis());
-                
-                collection.insertOne(doc);
+            Document result = upsertBalance(playerUuid, balance);
+            if (readSeq(result) == 0L) {
+                eventLog.recordOpen(playerUuid, balance);
+                return new VersionedBalance(balance, 0L);
             }
             
-            return true;
+            eventLog.recordSet(playerUuid, readSeq(result), balance);
+            return new VersionedBalance(balance, readSeq(result));
             
         } catch (Exception e) {
-            logger.error("Error updating player balance for {}", playerUuid, e);
-            return false;
+            logger.error("Error setting player balance for {}", playerUuid, e);
+            return null;
         }
     }
     
-    public boolean saveInventory(UUID playerUuid, String inventoryName, String inventoryData) {
+    public boolean updatePlayerBalance(UUID playerUuid, long amount) {
+        return updatePlayerBalanceAndGet(playerUuid, amount) != null;
+    }
+    
+    // Returns the resulting balance with the seq it landed on, or null on error
+    public VersionedBalance updatePlayerBalanceAndGet(UUID playerUuid, long amount) {
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
+            Document current = new Document("$ifNull", List.of("$balance", getStartingBalance()));
+            Document result = upsertBalance(playerUuid, new Document("$add", List.of(current, amount)));
+            long newBalance = readBalance(result);
+            if (readSeq(result) == 0L) {
+                eventLog.recordOpen(playerUuid, newBalance);
+                return new VersionedBalance(newBalance, 0L);
+            }
             
-            Document doc = new Document()
-                    .append("player_uuid", playerUuid.toString())
-                    .append("name", inventoryName)
-                    .append("inventory_data", inventoryData)
-                    .append("created_at", System.currentTimeMillis());
-            
-            collection.insertOne(doc);
-            return true;
+            eventLog.recordDelta(playerUuid, readSeq(result), amount, newBalance, amount >= 0 ? "credit" : "debit");
+            return new VersionedBalance(newBalance, readSeq(result));
             
         } catch (Exception e) {
-            logger.error("Error saving inventory for {}", playerUuid, e);
-            return false;
+            logger.error("Error updating player balance for {}", playerUuid, e);
+            return null;
         }
     }
     
-    public String loadInventory(UUID playerUuid, String inventoryName) {
+    // Writes the balance (a value or an expression over the stored one), creating the account in the
+    // same atomic write if needed. A created account lands on seq 0, an existing one on seq + 1.
+    private Document upsertBalance(UUID playerUuid, Object balance) {
+        MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+        Bson filter = Filters.eq("player_uuid", playerUuid.toString());
+        long now = System.currentTimeMillis();
+        List<Bson> update = List.of(Updates.combine(
+                Updates.set("balance", balance),
+                Updates.set("seq", new Document("$add", List.of(new Document("$ifNull", List.of("$seq", -1L)), 1L))),
+                Updates.set("created_at", new Document("$ifNull", List.of("$created_at", now))),
+                Updates.set("updated_at", now)));
+        FindOneAndUpdateOptions options = afterWrite().upsert(true);
+        
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
+            return collection.findOneAndUpdate(filter, update, options);
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            // Lost an upsert race against another writer; the account exists now, so this one updates it
+            return collection.findOneAndUpdate(filter, update, options);
+        }
+    }
+    
+    // Single round trip: the balance check and the decrement happen in one atomic write, so concurrent
+    // debits from any server can never take the balance below the floor. Returns null when refused.
+    public Long debitPlayerBalance(UUID playerUuid, long amount, long floor) {
+        VersionedBalance result = debitPlayerBalanceAndGet(playerUuid, amount, floor);
+        return result != null ? result.getBalance() : null;
+    }
+    
+    public VersionedBalance debitPlayerBalanceAndGet(UUID playerUuid, long amount, long floor) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
             
             Bson filter = Filters.and(
                     Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", inventoryName)
+                    Filters.gte("balance", Money.add(floor, amount))
+            );
+            Bson update = Updates.combine(
+                    Updates.inc("balance", -amount),
+                    Updates.inc("seq", 1L),
+                    Updates.set("updated_at", System.currentTimeMillis())
             );
             
-            Document doc = collection.find(filter).first();
-            return doc != null ? doc.getString("inventory_data") : null;
+            Document doc = collection.findOneAndUpdate(filter, update, afterWrite());
+            if (doc == null) {
+                return null;
+            }
+            
+            long balance = readBalance(doc);
+            eventLog.recordDelta(playerUuid, readSeq(doc), -amount, balance, "debit");
+            return new VersionedBalance(balance, readSeq(doc));
             
         } catch (Exception e) {
-            logger.error("Error loading inventory for {}", playerUuid, e);
+            logger.error("Error debiting player balance for {}", playerUuid, e);
             return null;
         }
     }
     
-    public List<String> getSavedInventories(UUID playerUuid) {
+    // Credits many accounts in one bulkWrite, creating missing ones with the starting balance. A
+    // credit that would exceed maxBalance (0 = no limit) is skipped. Each applied write appends
+    // the balance and seq it produced to the account's last few bulk_credits, which one follow-up
+    // read collects. Returns the applied credits, or null if the write failed.
+    public Map<UUID, VersionedBalance> addPlayerBalances(String bulkId, Map<UUID, Long> amounts, long maxBalance) {
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
+            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+            List<WriteModel<Document>> writes = new ArrayList<>(amounts.size());
+            List<UUID> players = new ArrayList<>(amounts.size());
+            long startingBalance = getStartingBalance();
+            long now = System.currentTimeMillis();
             
-            Bson filter = Filters.eq("player_uuid", playerUuid.toString());
-            List<String> inventories = new ArrayList<>();
+            for (Map.Entry<UUID, Long> entry : amounts.entrySet()) {
+                Document current = new Document("$ifNull", List.of("$balance", startingBalance));
+                Document credited = new Document("$add", List.of(current, entry.getValue()));
+                Document allowed = maxBalance > 0
+                        ? new Document("$lte", List.of(credited, maxBalance))
+                        : new Document("$literal", true);
+                Document seq = new Document("$ifNull", List.of("$seq", 0L));
+                Document nextSeq = new Document("$add", List.of(seq, 1L));
+                Document credit = new Document("id", bulkId).append("seq", nextSeq).append("balance", credited);
+                Document credits = new Document("$slice", List.of(new Document("$concatArrays", List.of(
+                        new Document("$ifNull", List.of("$bulk_credits", List.of())), List.of(credit))), -RECENT_BULK_CREDITS));
+                
+                List<Bson> update = List.of(
+                        Updates.set("bulk_allowed", allowed),
+                        Updates.combine(
+                                Updates.set("balance", cond("$bulk_allowed", credited, current)),
+                                Updates.set("seq", cond("$bulk_allowed", nextSeq, seq)),
+                                Updates.set("bulk_credits", cond("$bulk_allowed", credits, "$bulk_credits")),
+                                Updates.set("created_at", new Document("$ifNull", List.of("$created_at", now))),
+                                Updates.set("updated_at", now)),
+                        new Document("$unset", "bulk_allowed")
+                );
+                writes.add(new UpdateOneModel<>(Filters.eq("player_uuid", entry.getKey().toString()), update,
+                        new UpdateOptions().upsert(true)));
+                players.add(entry.getKey());
+            }
             
-            collection.find(filter).forEach(doc -> 
-                inventories.add(doc.getString("name"))
-            );
+            if (writes.isEmpty()) {
+                return new HashMap<>();
+            }
             
-            return inventories;
+            BulkWriteResult result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                // Created by this write: open its history at seq 0 before the credit at seq 1
+                eventLog.recordOpen(players.get(upsert.getIndex()), startingBalance);
+            }
+            
+            Map<UUID, VersionedBalance> applied = new HashMap<>(amounts.size() * 2);
+            List<String> playerIds = new ArrayList<>(players.size());
+            for (UUID playerUuid : players) {
+                playerIds.add(playerUuid.toString());
+            }
+            
+            Bson filter = Filters.and(Filters.in("player_uuid", playerIds), Filters.eq("bulk_credits.id", bulkId));
+            for (Document doc : collection.find(filter).projection(Projections.include("player_uuid", "bulk_credits"))) {
+                UUID playerUuid = UUID.fromString(doc.getString("player_uuid"));
+                for (Document credit : doc.getList("bulk_credits", Document.class)) {
+                    if (bulkId.equals(credit.getString("id"))) {
+                        long creditSeq = credit.get("seq", Number.class).longValue();
+                        long creditBalance = credit.get("balance", Number.class).longValue();
+                        
+                        eventLog.recordDelta(playerUuid, creditSeq, amounts.get(playerUuid), creditBalance, "credit");
+                        applied.put(playerUuid, new VersionedBalance(creditBalance, creditSeq));
+                    }
+                }
+            }
+            
+            logger.debug("Bulk credit {}: {} accounts, {} applied, {} created", bulkId, writes.size(), applied.size(), result.getUpserts().size());
+            return applied;
             
         } catch (Exception e) {
-            logger.error("Error getting saved inventories for {}", playerUuid, e);
-            return new ArrayList<>();
+            logger.error("Error applying bulk credit {}", bulkId, e);
+            return null;
         }
     }
     
-    public boolean deleteInventory(UUID playerUuid, String inventoryName) {
+    private static Document cond(String condition, Object then, Object otherwise) {
+        return new Document("$cond", List.of(condition, then, otherwise));
+    }
+    
+    // Applies coalesced deltas in one round trip. Each account remembers the last few batch ids of
+    // every journal that wrote to it, so a replay of a batch (after a crash between write and
+    // journal commit) is a no-op even if other servers flushed the account in between. A journal's
+    // batches arrive in order, so a short list per journal is enough.
+    // batch_seq remembers the seq this batch assigned, so its events can be logged afterwards.
+    public boolean bulkUpdateBalances(String journalId, String batchId, BalanceStore deltas) {
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
+            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            List<String> playerIds = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            String appliedField = "journal_batches." + journalId;
+            Document appliedBatches = new Document("$slice", List.of(
+                    new Document("$concatArrays", List.of(
+                            new Document("$ifNull", List.of("$" + appliedField, List.of())),
+                            List.of(batchId))),
+                    -RECENT_JOURNAL_BATCHES));
             
-            Bson filter = Filters.and(
-                    Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", inventoryName)
-            );
+            deltas.forEach((msb, lsb, delta) -> {
+                if (delta == 0) {
+                    return;
+                }
+                
+                String playerId = new UUID(msb, lsb).toString();
+                Bson filter = Filters.and(
+                        Filters.eq("player_uuid", playerId),
+                        Filters.ne(appliedField, batchId)
+                );
+                List<Bson> update = List.of(
+                        Updates.set("balance", new Document("$add", List.of("$balance", delta))),
+                        Updates.set("seq", new Document("$add", List.of(new Document("$ifNull", List.of("$seq", 0L)), 1L))),
+                        Updates.set("batch_seq", "$seq"),
+                        Updates.set(appliedField, appliedBatches),
+                        Updates.set("updated_at", now)
+                );
+                writes.add(new UpdateOneModel<>(filter, update));
+                playerIds.add(playerId);
+            });
+            
+            if (writes.isEmpty()) {
+                return true;
+            }
+            
+            BulkWriteResult result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            logger.debug("Flushed economy batch {}: {} writes, {} modified", batchId, writes.size(), result.getModifiedCount());
             
-            collection.deleteOne(filter);
+            recordBatchEvents(collection, appliedField, batchId, playerIds, deltas);
             return true;
             
         } catch (Exception e) {
-            logger.error("Error deleting inventory for {}", playerUuid, e);
+            logger.error("Error flushing economy batch {}", batchId, e);
             return false;
         }
     }
     
-    public boolean saveEnderChest(UUID playerUuid, String enderChestName, String enderChestData) {
+    private void recordBatchEvents(MongoCollection<Document> collection, String appliedField, String batchId,
+                                   List<String> playerIds, BalanceStore deltas) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
+            Bson filter = Filters.and(Filters.in("player_uuid", playerIds), Filters.eq(appliedField, batchId));
+            for (Document doc : collection.find(filter).projection(Projections.include("player_uuid", "balance", "seq", "batch_seq"))) {
+                UUID playerUuid = UUID.fromString(doc.getString("player_uuid"));
+                long batchSeq = doc.get("batch_seq", Number.class).longValue();
+                
+                eventLog.recordDelta(playerUuid, batchSeq, deltas.get(playerUuid, 0L), "batch");
+                // The balance only belongs to our seq if nothing else wrote in between
+                if (readSeq(doc) == batchSeq) {
+                    eventLog.maybeSnapshot(playerUuid, batchSeq, readBalance(doc));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error logging balance events for economy batch {}", batchId, e);
+        }
+    }
+    
+    // Balance and last persisted Redis version, read together so a Redis ledger seeded from them
+    // continues the version sequence. Creates the account if needed. Returns null on error.
+    public long[] getRedisSeed(UUID playerUuid) {
+        try {
+            getPlayerBalance(playerUuid);
+            Document doc = database.getCollection(ECONOMY_COLLECTION)
+                    .find(Filters.eq("player_uuid", playerUuid.toString()))
+                    .projection(Projections.include("balance", "redis_version"))
+                    .first();
+            if (doc == null) {
+                return null;
+            }
             
-            Document doc = new Document()
-                    .append("player_uuid", playerUuid.toString())
-                    .append("name", enderChestName)
-                    .append("ender_chest_data", enderChestData)
-                    .append("created_at", System.currentTimeMillis());
+            Object version = doc.get("redis_version");
+            return new long[] {readBalance(doc), version instanceof Number ? ((Number) version).longValue() : 0L};
+        } catch (Exception e) {
+            logger.error("Error reading Redis seed for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
+    // Writes balances owned by the Redis ledger. A write only applies if its version is newer than
+    // the one stored, so redelivered or reordered stream entries are harmless.
+    public boolean persistRedisBalances(BalanceStore balances, BalanceStore versions) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            List<String> playerIds = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            
+            balances.forEach((msb, lsb, balance) -> {
+                String playerId = new UUID(msb, lsb).toString();
+                long version = versions.get(msb, lsb, 0L);
+                Bson filter = Filters.and(
+                        Filters.eq("player_uuid", playerId),
+                        Filters.or(Filters.lt("redis_version", version), Filters.exists("redis_version", false))
+                );
+                List<Bson> update = List.of(
+                        Updates.set("balance", balance),
+                        Updates.set("seq", new Document("$add", List.of(new Document("$ifNull", List.of("$seq", 0L)), 1L))),
+                        Updates.set("batch_seq", "$seq"),
+                        Updates.set("redis_version", version),
+                        Updates.set("updated_at", now)
+                );
+                writes.add(new UpdateOneModel<>(filter, update));
+                playerIds.add(playerId);
+            });
+            
+            if (writes.isEmpty()) {
+                return true;
+            }
+            
+            BulkWriteResult result = collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            logger.debug("Persisted {} Redis ledger balances, {} modified", writes.size(), result.getModifiedCount());
             
-            collection.insertOne(doc);
+            recordRedisEvents(collection, playerIds, balances, versions);
             return true;
             
         } catch (Exception e) {
-            logger.error("Error saving ender chest for {}", playerUuid, e);
+            logger.error("Error persisting Redis ledger balances", e);
             return false;
         }
     }
     
-    public String loadEnderChest(UUID playerUuid, String enderChestName) {
+    private void recordRedisEvents(MongoCollection<Document> collection, List<String> playerIds, BalanceStore balances, BalanceStore versions) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
+            Bson filter = Filters.in("player_uuid", playerIds);
+            for (Document doc : collection.find(filter).projection(Projections.include("player_uuid", "batch_seq", "redis_version"))) {
+                UUID playerUuid = UUID.fromString(doc.getString("player_uuid"));
+                Number version = doc.get("redis_version", Number.class);
+                // Only the writer whose version is stored knows which seq its set landed on
+                if (version != null && version.longValue() == versions.get(playerUuid, 0L) && doc.get("batch_seq") != null) {
+                    eventLog.recordSet(playerUuid, doc.get("batch_seq", Number.class).longValue(), balances.get(playerUuid, 0L));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error logging balance events for Redis ledger batch", e);
+        }
+    }
+    
+    // Streams every stored balance without loading the whole collection into memory
+    public void forEachPlayerBalance(ObjLongConsumer<UUID> consumer) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+            for (Document doc : collection.find().projection(Projections.include("player_uuid", "balance")).batchSize(5000)) {
+                consumer.accept(UUID.fromString(doc.getString("player_uuid")), readBalance(doc));
+            }
+        } catch (Exception e) {
+            logger.error("Error streaming player balances", e);
+        }
+    }
+    
+    // Rebuilds one balance from its latest snapshot and event tail, falling back to the stored balance
+    public long replayPlayerBalance(UUID playerUuid) {
+        try {
+            BalanceEventLog.Replay replay = eventLog.replay(playerUuid);
+            if (replay != null) {
+                return replay.getBalance();
+            }
+        } catch (Exception e) {
+            logger.error("Error replaying balance events for {}", playerUuid, e);
+        }
+        return getPlayerBalance(playerUuid);
+    }
+    
+    // Streams rebuilt balances for many players, replaying chunks in parallel. Players whose history
+    // cannot be replayed (no snapshot yet, or a gap in the tail) get the stored balance instead.
+    public CompletableFuture<Void> replayPlayerBalancesAsync(Collection<UUID> playerUuids, ObjLongConsumer<UUID> consumer) {
+        List<UUID> players = new ArrayList<>(playerUuids);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        
+        for (int start = 0; start < players.size(); start += REPLAY_CHUNK_SIZE) {
+            List<UUID> chunk = players.subList(start, Math.min(players.size(), start + REPLAY_CHUNK_SIZE));
+            chunks.add(CompletableFuture.runAsync(() -> replayChunk(chunk, consumer)));
+        }
+        
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
+    }
+    
+    private void replayChunk(List<UUID> chunk, ObjLongConsumer<UUID> consumer) {
+        try {
+            List<String> fallback = new ArrayList<>();
+            eventLog.replayChunk(chunk, (playerUuid, replay) -> {
+                if (replay != null) {
+                    consumer.accept(playerUuid, replay.getBalance());
+                } else {
+                    fallback.add(playerUuid.toString());
+                }
+            });
             
-            Bson filter = Filters.and(
-                    Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", enderChestName)
+            if (!fallback.isEmpty()) {
+                MongoCollection<Document> collection = database.getCollection(ECONOMY_COLLECTION);
+                for (Document doc : collection.find(Filters.in("player_uuid", fallback)).projection(Projections.include("player_uuid", "balance"))) {
+                    consumer.accept(UUID.fromString(doc.getString("player_uuid")), readBalance(doc));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error replaying balance events for {} players", chunk.size(), e);
+        }
+    }
+    
+    public boolean saveInventory(UUID playerUuid, String inventoryName, String inventoryData) {
+        return saveItems(INVENTORY_COLLECTION, playerUuid, inventoryName, inventoryData, null, null);
+    }
+    
+    // A backup or auto-save. depth is the number of deltas between it and its keyframe; base names
+    // the snapshot a delta applies to and is null for a keyframe.
+    public boolean saveInventorySnapshot(UUID playerUuid, String inventoryName, String inventoryData, String base, int depth) {
+        return saveItems(INVENTORY_COLLECTION, playerUuid, inventoryName, inventoryData, base, depth);
+    }
+    
+    // The record's slot_version, 0 if it was never rewritten; -1 if it does not exist
+    public long getInventoryVersion(UUID playerUuid, String inventoryName) {
+        try {
+            Document doc = database.getCollection(INVENTORY_COLLECTION)
+                    .find(itemFilter(playerUuid, inventoryName))
+                    .projection(Projections.include("slot_version"))
+                    .first();
+            if (doc == null) {
+                return -1L;
+            }
+            Object version = doc.get("slot_version");
+            return version instanceof Number number ? number.longValue() : 0L;
+            
+        } catch (Exception e) {
+            logger.error("Error reading version of inventory '{}' for {}", inventoryName, playerUuid, e);
+            return -1L;
+        }
+    }
+    
+    // Snapshots stored as deltas on top of base
+    public List<String> getInventoriesBasedOn(UUID playerUuid, String base) {
+        List<String> names = new ArrayList<>();
+        try {
+            database.getCollection(INVENTORY_COLLECTION)
+                    .find(Filters.and(Filters.eq("player_uuid", playerUuid.toString()), Filters.eq("base", base)))
+                    .projection(Projections.include("name"))
+                    .forEach(doc -> names.add(doc.getString("name")));
+        } catch (Exception e) {
+            logger.error("Error finding inventories based on '{}' for {}", base, playerUuid, e);
+        }
+        return names;
+    }
+    
+    public String loadInventory(UUID playerUuid, String inventoryName) {
+        return loadItems(INVENTORY_COLLECTION, "inventory_data", playerUuid, inventoryName);
+    }
+    
+    public List<String> getSavedInventories(UUID playerUuid) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
+            
+            Bson filter = Filters.eq("player_uuid", playerUuid.toString());
+            List<String> inventories = new ArrayList<>();
+            
+            collection.find(filter).projection(Projections.include("name")).forEach(doc -> 
+                inventories.add(doc.getString("name"))
             );
             
-            Document doc = collection.find(filter).first();
-            return doc != null ? doc.getString("ender_chest_data") : null;
+            return inventories;
             
         } catch (Exception e) {
-            logger.error("Error loading ender chest for {}", playerUuid, e);
-            return null;
+            logger.error("Error getting saved inventories for {}", playerUuid, e);
+            return new ArrayList<>();
         }
     }
     
+    public boolean deleteInventory(UUID playerUuid, String inventoryName) {
+        return deleteItems(INVENTORY_COLLECTION, playerUuid, inventoryName);
+    }
+    
+    public boolean saveEnderChest(UUID playerUuid, String enderChestName, String enderChestData) {
+        return saveItems(ENDER_CHEST_COLLECTION, playerUuid, enderChestName, enderChestData, null, null);
+    }
+    
+    public String loadEnderChest(UUID playerUuid, String enderChestName) {
+        return loadItems(ENDER_CHEST_COLLECTION, "ender_chest_data", playerUuid, enderChestName);
+    }
+    
     public List<String> getSavedEnderChests(UUID playerUuid) {
         try {
             MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
@@ -270,7 +805,7 @@ public class DatabaseManager {
             Bson filter = Filters.eq("player_uuid", playerUuid.toString());
             List<String> enderChests = new ArrayList<>();
             
-            collection.find(filter).forEach(doc -> 
+            collection.find(filter).projection(Projections.include("name")).forEach(doc -> 
                 enderChests.add(doc.getString("name"))
             );
             
@@ -283,111 +818,312 @@ public class DatabaseManager {
     }
     
     public boolean deleteEnderChest(UUID playerUuid, String enderChestName) {
+        return deleteItems(ENDER_CHEST_COLLECTION, playerUuid, enderChestName);
+    }
+    
+    public boolean updateInventory(UUID playerUuid, String inventoryName, String inventoryData) {
+        return updateItems(INVENTORY_COLLECTION, "inventory_data", playerUuid, inventoryName, inventoryData);
+    }
+    
+    // Inventories written through updateInventory are stored one slot per field (slots.<index>,
+    // an ItemStackCodec slot record) so later updates only touch the slots that changed.
+    // slot_version is bumped on every write; a partial update only applies to the version the
+    // caller last wrote, and returns -1 otherwise so the caller writes every slot instead.
+    public long updateInventorySlots(UUID playerUuid, String inventoryName, Map<Integer, byte[]> changed,
+                                     Collection<Integer> cleared, long expectedVersion) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
+            List<Bson> updates = new ArrayList<>();
+            changed.forEach((slot, item) -> updates.add(Updates.set("slots." + slot, new Binary(item))));
+            cleared.forEach(slot -> updates.add(Updates.unset("slots." + slot)));
+            updates.add(Updates.inc("slot_version", 1L));
+            updates.add(Updates.set("updated_at", System.currentTimeMillis()));
             
-            Bson filter = Filters.and(
-                    Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", enderChestName)
+            Bson filter = Filters.and(itemFilter(playerUuid, inventoryName), Filters.exists("slots"),
+                                      Filters.eq("slot_version", expectedVersion));
+            UpdateResult result = database.getCollection(INVENTORY_COLLECTION).updateOne(filter, Updates.combine(updates));
+            return result.getMatchedCount() > 0 ? expectedVersion + 1 : -1L;
+            
+        } catch (Exception e) {
+            logger.error("Error updating slots of inventory '{}' for {}", inventoryName, playerUuid, e);
+            return -1L;
+        }
+    }
+    
+    // Replaces the whole contents, converting the record to the slot layout; -1 if it does not exist
+    public long writeInventorySlots(UUID playerUuid, String inventoryName, int size, Map<Integer, byte[]> items) {
+        try {
+            Document slots = new Document();
+            items.forEach((slot, item) -> slots.append(String.valueOf(slot), new Binary(item)));
+            
+            Bson update = Updates.combine(
+                    Updates.set("slots", slots),
+                    Updates.set("size", size),
+                    Updates.inc("slot_version", 1L),
+                    Updates.unset("blob"),
+                    Updates.unset("inventory_data"),
+                    Updates.unset("base"),
+                    Updates.set("updated_at", System.currentTimeMillis())
             );
             
-            collection.deleteOne(filter);
-            return true;
+            Document previous = database.getCollection(INVENTORY_COLLECTION).findOneAndUpdate(itemFilter(playerUuid, inventoryName), update,
+                    new FindOneAndUpdateOptions().projection(Projections.include("blob", "slot_version")).returnDocument(ReturnDocument.BEFORE));
+            if (previous == null) {
+                return -1L;
+            }
+            releaseBlob(previous);
+            Object version = previous.get("slot_version");
+            return (version instanceof Number number ? number.longValue() : 0L) + 1;
             
         } catch (Exception e) {
-            logger.error("Error deleting ender chest for {}", playerUuid, e);
-            return false;
+            logger.error("Error writing slots of inventory '{}' for {}", inventoryName, playerUuid, e);
+            return -1L;
         }
     }
     
-    public boolean updateInventory(UUID playerUuid, String inventoryName, String inventoryData) {
+    // Only replaces data that is still what the caller read, so a save in between is never undone
+    public boolean replaceInventoryData(UUID playerUuid, String inventoryName, String expectedData, String inventoryData) {
+        return replaceData(INVENTORY_COLLECTION, "inventory_data", playerUuid, inventoryName, expectedData, inventoryData);
+    }
+    
+    public boolean replaceEnderChestData(UUID playerUuid, String enderChestName, String expectedData, String enderChestData) {
+        return replaceData(ENDER_CHEST_COLLECTION, "ender_chest_data", playerUuid, enderChestName, expectedData, enderChestData);
+    }
+    
+    private boolean replaceData(String collectionName, String field, UUID playerUuid, String name, String expectedData, String data) {
+        String blob = null;
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
-            
+            blob = itemBlobs.acquire(data);
             Bson filter = Filters.and(
                     Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", inventoryName)
+                    Filters.eq("name", name),
+                    Filters.eq(field, expectedData)
             );
+            Bson update = Updates.combine(Updates.set("blob", blob), Updates.unset(field));
+            if (database.getCollection(collectionName).updateOne(filter, update).getModifiedCount() > 0) {
+                return true;
+            }
+            itemBlobs.release(blob);
+            return false;
+        } catch (Exception e) {
+            if (blob != null) {
+                itemBlobs.release(blob);
+            }
+            logger.error("Error replacing {} '{}' for {}", field, name, playerUuid, e);
+            return false;
+        }
+    }
+    
+    // Saved inventories and ender chests reference their contents in item_blobs by hash.
+    // Records saved before that hold the data inline in their data field, which is still read
+    // and is moved to a blob the next time the record is written.
+    private boolean saveItems(String collectionName, UUID playerUuid, String name, String data, String base, Integer depth) {
+        String blob = null;
+        try {
+            blob = itemBlobs.acquire(data);
             
-            Bson update = Updates.combine(
-                    Updates.set("inventory_data", inventoryData),
-                    Updates.set("updated_at", System.currentTimeMillis())
-            );
+            Document doc = new Document()
+                    .append("player_uuid", playerUuid.toString())
+                    .append("name", name)
+                    .append("blob", blob)
+                    .append("created_at", System.currentTimeMillis());
+            if (base != null) {
+                doc.append("base", base);
+            }
+            if (depth != null) {
+                doc.append("depth", depth);
+            }
             
-            UpdateResult result = collection.updateOne(filter, update);
-            return result.getMatchedCount() > 0;
+            database.getCollection(collectionName).insertOne(doc);
+            return true;
             
         } catch (Exception e) {
-            logger.error("Error updating inventory for {}", playerUuid, e);
+            if (blob != null) {
+                itemBlobs.release(blob);
+            }
+            logger.error("Error saving {} '{}' for {}", collectionName, name, playerUuid, e);
             return false;
         }
     }
-
-    public boolean updateEnderChest(UUID playerUuid, String enderChestName, String enderChestData) {
+    
+    private String loadItems(String collectionName, String field, UUID playerUuid, String name) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
+            Document doc = database.getCollection(collectionName)
+                    .find(itemFilter(playerUuid, name))
+                    .projection(Projections.include(field, "blob", "slots", "size"))
+                    .first();
+            if (doc == null) {
+                return null;
+            }
+            Document slots = doc.get("slots", Document.class);
+            if (slots != null) {
+                Map<Integer, byte[]> items = new HashMap<>();
+                for (Map.Entry<String, Object> entry : slots.entrySet()) {
+                    items.put(Integer.parseInt(entry.getKey()), ((Binary) entry.getValue()).getData());
+                }
+                return ItemStackCodec.joinSlots(doc.getInteger("size", 0), items);
+            }
+            String blob = doc.getString("blob");
+            return blob != null ? itemBlobs.load(blob) : doc.getString(field);
             
-            Bson filter = Filters.and(
-                    Filters.eq("player_uuid", playerUuid.toString()),
-                    Filters.eq("name", enderChestName)
-            );
+        } catch (Exception e) {
+            logger.error("Error loading {} '{}' for {}", collectionName, name, playerUuid, e);
+            return null;
+        }
+    }
+    
+    private boolean updateItems(String collectionName, String field, UUID playerUuid, String name, String data) {
+        String blob = null;
+        try {
+            blob = itemBlobs.acquire(data);
             
+            // Always full contents, so the record stops being a delta or slot record if it was one
             Bson update = Updates.combine(
-                    Updates.set("ender_chest_data", enderChestData),
+                    Updates.set("blob", blob),
+                    Updates.unset(field),
+                    Updates.unset("base"),
+                    Updates.unset("slots"),
+                    Updates.unset("size"),
+                    Updates.inc("slot_version", 1L),
                     Updates.set("updated_at", System.currentTimeMillis())
             );
             
-            UpdateResult result = collection.updateOne(filter, update);
-            return result.getMatchedCount() > 0;
+            Document previous = database.getCollection(collectionName).findOneAndUpdate(itemFilter(playerUuid, name), update,
+                    new FindOneAndUpdateOptions().projection(Projections.include("blob")).returnDocument(ReturnDocument.BEFORE));
+            if (previous == null) {
+                itemBlobs.release(blob);
+                return false;
+            }
+            releaseBlob(previous);
+            return true;
             
         } catch (Exception e) {
-            logger.error("Error updating ender chest for {}", playerUuid, e);
+            if (blob != null) {
+                itemBlobs.release(blob);
+            }
+            logger.error("Error updating {} '{}' for {}", collectionName, name, playerUuid, e);
             return false;
         }
     }
     
-    public boolean deleteAllInventories(UUID playerUuid) {
+    private boolean deleteItems(String collectionName, UUID playerUuid, String name) {
         try {
-            MongoCollection<Document> collection = database.getCollection(INVENTORY_COLLECTION);
-            
-            Bson filter = Filters.eq("player_uuid", playerUuid.toString());
-            
-            DeleteResult result = collection.deleteMany(filter);
-            return result.getDeletedCount() > 0;
+            Document deleted = database.getCollection(collectionName).findOneAndDelete(itemFilter(playerUuid, name),
+                    new FindOneAndDeleteOptions().projection(Projections.include("blob")));
+            if (deleted != null) {
+                releaseBlob(deleted);
+            }
+            return true;
             
         } catch (Exception e) {
-            logger.error("Error deleting all inventories for {}", playerUuid, e);
+            logger.error("Error deleting {} '{}' for {}", collectionName, name, playerUuid, e);
             return false;
         }
     }
     
-    public boolean deleteAllEnderChests(UUID playerUuid) {
+    private boolean deleteAllItems(String collectionName, UUID playerUuid) {
         try {
-            MongoCollection<Document> collection = database.getCollection(ENDER_CHEST_COLLECTION);
-            
+            MongoCollection<Document> collection = database.getCollection(collectionName);
             Bson filter = Filters.eq("player_uuid", playerUuid.toString());
             
-            DeleteResult result = collection.deleteMany(filter);
-            return result.getDeletedCount() > 0;
+            List<Document> records = collection.find(filter).projection(Projections.include("blob")).into(new ArrayList<>());
+            if (records.isEmpty()) {
+                return false;
+            }
+            
+            // One at a time, so a record saved in between is neither deleted nor left without its blob
+            boolean deletedAny = false;
+            for (Document record : records) {
+                if (collection.deleteOne(Filters.eq("_id", record.get("_id"))).getDeletedCount() > 0) {
+                    releaseBlob(record);
+                    deletedAny = true;
+                }
+            }
+            return deletedAny;
             
         } catch (Exception e) {
-            logger.error("Error deleting all ender chests for {}", playerUuid, e);
+            logger.error("Error deleting all {} for {}", collectionName, playerUuid, e);
             return false;
         }
     }
     
-    public CompletableFuture<Double> getPlayerBalanceAsync(UUID playerUuid) {
+    private void releaseBlob(Document record) {
+        String blob = record.getString("blob");
+        if (blob != null) {
+            itemBlobs.release(blob);
+        }
+    }
+    
+    private static Bson itemFilter(UUID playerUuid, String name) {
+        return Filters.and(
+                Filters.eq("player_uuid", playerUuid.toString()),
+                Filters.eq("name", name)
+        );
+    }
+    
+    // Random stored inventory and ender chest payloads, for training a compression dictionary
+    public List<String> sampleItemData(int limit) {
+        List<String> samples = new ArrayList<>();
+        try {
+            itemBlobs.sample(limit, samples);
+            // Records not moved to item_blobs yet
+            sampleField(INVENTORY_COLLECTION, "inventory_data", (limit - samples.size()) / 2, samples);
+            sampleField(ENDER_CHEST_COLLECTION, "ender_chest_data", limit - samples.size(), samples);
+        } catch (Exception e) {
+            logger.error("Error sampling item data", e);
+        }
+        return samples;
+    }
+    
+    private void sampleField(String collectionName, String field, int limit, List<String> samples) {
+        if (limit <= 0) {
+            return;
+        }
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.type(field, BsonType.STRING)),
+                Aggregates.sample(limit),
+                Aggregates.project(Projections.include(field))
+        );
+        for (Document doc : database.getCollection(collectionName).aggregate(pipeline)) {
+            samples.add(doc.getString(field));
+        }
+    }
+    
+    public CompletableFuture<List<String>> sampleItemDataAsync(int limit) {
+        return CompletableFuture.supplyAsync(() -> sampleItemData(limit));
+    }
+    
+    public boolean updateEnderChest(UUID playerUuid, String enderChestName, String enderChestData) {
+        return updateItems(ENDER_CHEST_COLLECTION, "ender_chest_data", playerUuid, enderChestName, enderChestData);
+    }
+    
+    public boolean deleteAllInventories(UUID playerUuid) {
+        return deleteAllItems(INVENTORY_COLLECTION, playerUuid);
+    }
+    
+    public boolean deleteAllEnderChests(UUID playerUuid) {
+        return deleteAllItems(ENDER_CHEST_COLLECTION, playerUuid);
+    }
+    
+    public CompletableFuture<Long> getPlayerBalanceAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> getPlayerBalance(playerUuid));
     }
     
-    public CompletableFuture<Boolean> setPlayerBalanceAsync(UUID playerUuid, double balance) {
+    public CompletableFuture<Boolean> setPlayerBalanceAsync(UUID playerUuid, long balance) {
         return CompletableFuture.supplyAsync(() -> setPlayerBalance(playerUuid, balance));
     }
     
-    public CompletableFuture<Boolean> updatePlayerBalanceAsync(UUID playerUuid, double amount) {
+    public CompletableFuture<Boolean> updatePlayerBalanceAsync(UUID playerUuid, long amount) {
         return CompletableFuture.supplyAsync(() -> updatePlayerBalance(playerUuid, amount));
     }
     
+    public CompletableFuture<VersionedBalance> loadPlayerBalanceAsync(UUID playerUuid) {
+        return CompletableFuture.supplyAsync(() -> loadPlayerBalance(playerUuid));
+    }
+    
+    public CompletableFuture<Long> debitPlayerBalanceAsync(UUID playerUuid, long amount, long floor) {
+        return CompletableFuture.supplyAsync(() -> debitPlayerBalance(playerUuid, amount, floor));
+    }
+    
     public CompletableFuture<Boolean> saveInventoryAsync(UUID playerUuid, String inventoryName, String inventoryData) {
         return CompletableFuture.supplyAsync(() -> saveInventory(playerUuid, inventoryName, inventoryData));
     }
@@ -427,4 +1163,54 @@ public class DatabaseManager {
     public CompletableFuture<Boolean> deleteAllEnderChestsAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> deleteAllEnderChests(playerUuid));
     }
+    
+    // A name belongs to whoever used it last; an older holder who has since renamed loses it
+    public boolean savePlayerName(UUID playerUuid, String name) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(PLAYER_NAME_COLLECTION);
+            collection.deleteMany(Filters.and(Filters.eq("name", name), Filters.ne("player_uuid", playerUuid.toString())),
+                    new DeleteOptions().collation(CASE_INSENSITIVE));
+            collection.updateOne(Filters.eq("player_uuid", playerUuid.toString()),
+                    Updates.combine(Updates.set("name", name), Updates.set("updated_at", System.currentTimeMillis())),
+                    new UpdateOptions().upsert(true));
+            return true;
+        } catch (Exception e) {
+            logger.error("Error saving name {} for {}", name, playerUuid, e);
+            return false;
+        }
+    }
+    
+    public UUID findPlayerUuidByName(String name) {
+        try {
+            Document doc = database.getCollection(PLAYER_NAME_COLLECTION)
+                    .find(Filters.eq("name", name))
+                    .collation(CASE_INSENSITIVE)
+                    .sort(Sorts.descending("updated_at"))
+                    .projection(Projections.include("player_uuid"))
+                    .first();
+            return doc != null ? UUID.fromString(doc.getString("player_uuid")) : null;
+        } catch (Exception e) {
+            logger.error("Error looking up player name {}", name, e);
+            return null;
+        }
+    }
+    
+    public void forEachPlayerName(BiConsumer<UUID, String> consumer) {
+        try {
+            MongoCollection<Document> collection = database.getCollection(PLAYER_NAME_COLLECTION);
+            for (Document doc : collection.find().projection(Projections.include("player_uuid", "name")).batchSize(5000)) {
+                consumer.accept(UUID.fromString(doc.getString("player_uuid")), doc.getString("name"));
+            }
+        } catch (Exception e) {
+            logger.error("Error streaming player names", e);
+        }
+    }
+    
+    public CompletableFuture<Boolean> savePlayerNameAsync(UUID playerUuid, String name) {
+        return CompletableFuture.supplyAsync(() -> savePlayerName(playerUuid, name));
+    }
+    
+    public CompletableFuture<UUID> findPlayerUuidByNameAsync(String name) {
+        return CompletableFuture.supplyAsync(() -> findPlayerUuidByName(name));
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,220 @@
+package com.minecraftplugin.database;
+
+import com.minecraftplugin.utils.RingBuffer;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Who changed which balance, by how much and through what, for fraud investigations. Callers
+// only put an entry in a ring buffer; a background thread inserts them in batches of batchSize or
+// every flushIntervalMs. When the buffer is full or Mongo is failing, entries are dropped and
+// counted rather than slowing down the economy. Entries expire after retentionDays.
+public class EconomyAuditLog {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EconomyAuditLog.class);
+    
+    private static final String AUDIT_COLLECTION = "economy_audit";
+    
+    private final MongoCollection<Document> audit;
+    private final RingBuffer<Entry> buffer;
+    private final int batchSize;
+    private final ScheduledExecutorService writer;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long reportedLosses;
+    
+    public EconomyAuditLog(MongoDatabase database, int bufferSize, int batchSize, long flushIntervalMs, int retentionDays) {
+        this.audit = database.getCollection(AUDIT_COLLECTION);
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.batchSize = Math.max(1, batchSize);
+        
+        ensureIndexes(database, Math.max(1, retentionDays));
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "economy-audit-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private void ensureIndexes(MongoDatabase database, int retentionDays) {
+        long expireAfterSeconds = TimeUnit.DAYS.toSeconds(retentionDays);
+        try {
+            audit.createIndex(Indexes.ascending("created_at"),
+                    new IndexOptions().expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+        } catch (MongoCommandException e) {
+            // The retention changed since the index was created
+            database.runCommand(new Document("collMod", AUDIT_COLLECTION)
+                    .append("index", new Document("keyPattern", new Document("created_at", 1))
+                            .append("expireAfterSeconds", expireAfterSeconds)));
+        }
+        audit.createIndex(Indexes.compoundIndex(Indexes.ascending("player_uuid"), Indexes.descending("created_at")));
+    }
+    
+    public void record(Origin origin, String operation, UUID playerUuid, UUID counterparty, Long amount,
+                       Long balance, boolean success) {
+        recorded.increment();
+        if (!buffer.offer(new Entry(System.currentTimeMillis(), origin, operation, playerUuid, counterparty,
+                                    amount, balance, success))) {
+            dropped.increment();
+            return;
+        }
+        
+        if (buffer.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            writer.execute(this::flush);
+        }
+    }
+    
+    public synchronized void flush() {
+        flushRequested.set(false);
+        
+        while (buffer.size() > 0) {
+            List<Document> batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+            buffer.drainTo(entry -> batch.add(entry.toDocument()), batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            
+            try {
+                audit.insertMany(batch, new InsertManyOptions().ordered(false));
+                written.add(batch.size());
+            } catch (Exception e) {
+                // Not retried: holding on to failed batches would only fill the buffer faster
+                failed.add(batch.size());
+                logger.error("Error writing {} audit entries", batch.size(), e);
+                break;
+            }
+        }
+        
+        long losses = dropped.sum() + failed.sum();
+        if (losses > reportedLosses) {
+            logger.warn("Economy audit log has lost {} entries ({} dropped, {} failed)", losses, getDroppedCount(), getFailedCount());
+            reportedLosses = losses;
+        }
+    }
+    
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("Economy audit log closed - {}", this);
+    }
+    
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+    
+    public long getWrittenCount() {
+        return written.sum();
+    }
+    
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    @Override
+    public String toString() {
+        return "EconomyAuditLog{recorded=" + getRecordedCount() + ", written=" + getWrittenCount() +
+               ", dropped=" + getDroppedCount() + ", failed=" + getFailedCount() + ", buffered=" + buffer.size() + "}";
+    }
+    
+    public enum Source {
+        COMMAND,
+        GRPC,
+        API,
+        JOB
+    }
+    
+    // Where a change came from; actor is the player, console, remote address or job behind it
+    public record Origin(Source source, String actor) {
+        
+        public static final Origin API = new Origin(Source.API, null);
+        
+        public static Origin command(String actor) {
+            return new Origin(Source.COMMAND, actor);
+        }
+        
+        public static Origin grpc(String actor) {
+            return new Origin(Source.GRPC, actor);
+        }
+        
+        public static Origin job(String name) {
+            return new Origin(Source.JOB, name);
+        }
+    }
+    
+    // Kept as plain fields until the writer thread turns it into a document
+    private static final class Entry {
+        private final long createdAt;
+        private final Origin origin;
+        private final String operation;
+        private final UUID playerUuid;
+        private final UUID counterparty;
+        private final Long amount;
+        private final Long balance;
+        private final boolean success;
+        
+        Entry(long createdAt, Origin origin, String operation, UUID playerUuid, UUID counterparty, Long amount,
+              Long balance, boolean success) {
+            this.createdAt = createdAt;
+            this.origin = origin;
+            this.operation = operation;
+            this.playerUuid = playerUuid;
+            this.counterparty = counterparty;
+            this.amount = amount;
+            this.balance = balance;
+            this.success = success;
+        }
+        
+        Document toDocument() {
+            Document doc = new Document("created_at", new Date(createdAt))
+                    .append("player_uuid", playerUuid.toString())
+                    .append("op", operation)
+                    .append("source", origin.source().name().toLowerCase(Locale.ROOT))
+                    .append("success", success);
+            if (origin.actor() != null) {
+                doc.append("actor", origin.actor());
+            }
+            if (counterparty != null) {
+                doc.append("counterparty", counterparty.toString());
+            }
+            if (amount != null) {
+                doc.append("amount", amount);
+            }
+            if (balance != null) {
+                doc.append("balance", balance);
+            }
+            return doc;
+        }
+    }
+} 
\ No newline at end of file
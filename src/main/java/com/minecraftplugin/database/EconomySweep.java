@@ -0,0 +1,379 @@
+package com.minecraftplugin.database;
+
+import com.minecraftplugin.economy.Money;
+import com.minecraftplugin.economy.VersionedBalance;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+
+// Applies a balance adjustment (interest, tax) to every account without loading the collection.
+// The collection is split into _id ranges, one per worker; each worker walks its range with a
+// cursor and writes every batch as one unordered bulkWrite. Progress is checkpointed per range in
+// economy_jobs, so a run interrupted by a restart resumes where it stopped. Accounts are tagged
+// with the run id, which makes a batch replayed after a crash (or swept twice) a no-op, and
+// every write is conditional on the seq that was read, so a concurrent live update is never lost.
+public class EconomySweep {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EconomySweep.class);
+    
+    private static final String JOB_COLLECTION = "economy_jobs";
+    private static final String ECONOMY_COLLECTION = "economy";
+    private static final int SAMPLES_PER_RANGE = 32;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long LEASE_MS = 300000L;
+    
+    private final MongoCollection<Document> jobs;
+    private final MongoCollection<Document> accounts;
+    private final BalanceEventLog eventLog;
+    private final String owner = UUID.randomUUID().toString();
+    private volatile boolean stopping;
+    
+    public EconomySweep(MongoDatabase database, BalanceEventLog eventLog) {
+        this.jobs = database.getCollection(JOB_COLLECTION);
+        this.accounts = database.getCollection(ECONOMY_COLLECTION);
+        this.eventLog = eventLog;
+    }
+    
+    public boolean isFinished(String jobName, String runId) {
+        Document state = jobs.find(Filters.eq("_id", jobName)).first();
+        return state != null && runId.equals(state.getString("run_id")) && state.get("finished_at") != null;
+    }
+    
+    // Runs (or resumes) runId of the job. Returns null if another server holds the job or the run
+    // failed; onBatch receives the balances each batch wrote, with their new seq.
+    public Result run(String jobName, String runId, int workers, int batchSize, int maxAccountsPerSecond,
+                      LongUnaryOperator adjustment, Consumer<Map<UUID, VersionedBalance>> onBatch) {
+        try {
+            if (!claim(jobName)) {
+                logger.debug("Economy job {} is running on another server", jobName);
+                return null;
+            }
+            
+            Document state = jobs.find(Filters.eq("_id", jobName)).first();
+            if (state == null || !runId.equals(state.getString("run_id"))) {
+                state = startRun(jobName, runId, Math.max(1, workers));
+            }
+            
+            List<Document> ranges = state.getList("ranges", Document.class);
+            Result result = new Result();
+            Throttle throttle = new Throttle(maxAccountsPerSecond);
+            ExecutorService pool = Executors.newFixedThreadPool(ranges.size(), runnable -> {
+                Thread thread = new Thread(runnable, "economy-sweep-" + jobName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            
+            try {
+                List<CompletableFuture<Boolean>> tasks = new ArrayList<>(ranges.size());
+                for (int i = 0; i < ranges.size(); i++) {
+                    int index = i;
+                    Document range = ranges.get(i);
+                    tasks.add(CompletableFuture.supplyAsync(() -> sweepRange(jobName, runId, index, range, Math.max(1, batchSize),
+                            throttle, adjustment, onBatch, result), pool));
+                }
+                
+                boolean complete = true;
+                for (CompletableFuture<Boolean> task : tasks) {
+                    complete &= task.join();
+                }
+                
+                Bson release = complete
+                        ? Updates.combine(Updates.set("finished_at", System.currentTimeMillis()), Updates.unset("lease_until"))
+                        : Updates.unset("lease_until");
+                jobs.updateOne(Filters.and(Filters.eq("_id", jobName), Filters.eq("owner", owner)), release);
+                result.completed = complete;
+                return result;
+            } finally {
+                pool.shutdown();
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error running economy job {} ({})", jobName, runId, e);
+            return null;
+        }
+    }
+    
+    // Stops running sweeps after their current batch; they resume from the checkpoint next time
+    public void stop() {
+        stopping = true;
+    }
+    
+    // One server runs a job at a time; the lease is renewed with every checkpoint
+    private boolean claim(String jobName) {
+        long now = System.currentTimeMillis();
+        if (jobs.find(Filters.eq("_id", jobName)).first() == null) {
+            try {
+                jobs.insertOne(new Document("_id", jobName).append("owner", owner).append("lease_until", now + LEASE_MS));
+                return true;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+        
+        Bson claimable = Filters.or(Filters.exists("lease_until", false), Filters.lt("lease_until", now), Filters.eq("owner", owner));
+        return jobs.updateOne(Filters.and(Filters.eq("_id", jobName), claimable),
+                Updates.combine(Updates.set("owner", owner), Updates.set("lease_until", now + LEASE_MS))).getMatchedCount() > 0;
+    }
+    
+    private Document startRun(String jobName, String runId, int workers) {
+        List<Document> ranges = new ArrayList<>(workers);
+        Object lower = null;
+        for (Object boundary : splitPoints(workers)) {
+            ranges.add(new Document("min", lower).append("max", boundary).append("last_id", null));
+            lower = boundary;
+        }
+        ranges.add(new Document("min", lower).append("max", null).append("last_id", null));
+        
+        jobs.updateOne(Filters.and(Filters.eq("_id", jobName), Filters.eq("owner", owner)), Updates.combine(
+                Updates.set("run_id", runId),
+                Updates.set("started_at", System.currentTimeMillis()),
+                Updates.set("finished_at", null),
+                Updates.set("ranges", ranges),
+                Updates.set("scanned", 0L),
+                Updates.set("updated", 0L)));
+        logger.info("Starting economy job {} ({}) over {} ranges", jobName, runId, ranges.size());
+        return jobs.find(Filters.eq("_id", jobName)).first();
+    }
+    
+    // Range boundaries are quantiles of a random sample of _ids, so ranges hold similar numbers of accounts
+    private List<Object> splitPoints(int workers) {
+        List<Object> points = new ArrayList<>();
+        if (workers <= 1) {
+            return points;
+        }
+        
+        List<Object> sample = new ArrayList<>();
+        for (Document doc : accounts.aggregate(List.of(
+                Aggregates.sample(workers * SAMPLES_PER_RANGE),
+                Aggregates.project(Projections.include("_id")),
+                Aggregates.sort(Sorts.ascending("_id"))))) {
+            sample.add(doc.get("_id"));
+        }
+        
+        for (int i = 1; i < workers && !sample.isEmpty(); i++) {
+            Object point = sample.get(i * sample.size() / workers);
+            if (points.isEmpty() || !points.get(points.size() - 1).equals(point)) {
+                points.add(point);
+            }
+        }
+        return points;
+    }
+    
+    private boolean sweepRange(String jobName, String runId, int index, Document range, int batchSize, Throttle throttle,
+                               LongUnaryOperator adjustment, Consumer<Map<UUID, VersionedBalance>> onBatch, Result result) {
+        List<Bson> bounds = new ArrayList<>();
+        if (range.get("min") != null) {
+            bounds.add(Filters.gte("_id", range.get("min")));
+        }
+        if (range.get("max") != null) {
+            bounds.add(Filters.lt("_id", range.get("max")));
+        }
+        if (range.get("last_id") != null) {
+            bounds.add(Filters.gt("_id", range.get("last_id")));
+        }
+        bounds.add(Filters.ne("jobs." + jobName, runId));
+        Bson filter = Filters.and(bounds);
+        
+        try (MongoCursor<Document> cursor = accounts.find(filter)
+                .projection(Projections.include("player_uuid", "balance", "seq"))
+                .sort(Sorts.ascending("_id"))
+                .batchSize(batchSize)
+                .iterator()) {
+            
+            List<Document> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() < batchSize && cursor.hasNext()) {
+                    continue;
+                }
+                if (stopping) {
+                    return false;
+                }
+                
+                throttle.acquire(batch.size());
+                Map<UUID, VersionedBalance> written = applyBatch(jobName, runId, batch, adjustment);
+                if (!checkpoint(jobName, runId, index, batch.get(batch.size() - 1).get("_id"), batch.size(), written.size())) {
+                    logger.warn("Economy job {} lost its lease, stopping", jobName);
+                    return false;
+                }
+                
+                result.scanned.addAndGet(batch.size());
+                result.updated.addAndGet(written.size());
+                if (!written.isEmpty()) {
+                    onBatch.accept(written);
+                }
+                batch.clear();
+            }
+            return true;
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Error sweeping range {} of economy job {}", index, jobName, e);
+            return false;
+        }
+    }
+    
+    // Accounts changed since they were read are re-read and retried a few times
+    private Map<UUID, VersionedBalance> applyBatch(String jobName, String runId, List<Document> batch, LongUnaryOperator adjustment) {
+        String tag = "jobs." + jobName;
+        Map<UUID, VersionedBalance> written = new HashMap<>(batch.size() * 2);
+        List<Document> pending = batch;
+        
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<WriteModel<Document>> writes = new ArrayList<>(pending.size());
+            Map<Object, Document> attempted = new HashMap<>(pending.size() * 2);
+            long now = System.currentTimeMillis();
+            
+            for (Document doc : pending) {
+                Object balance = doc.get("balance");
+                if (!(balance instanceof Number) || doc.getString("player_uuid") == null) {
+                    continue;
+                }
+                long current = balance instanceof Double ? Money.ofMajor((Double) balance) : ((Number) balance).longValue();
+                long adjusted = adjustment.applyAsLong(current);
+                if (adjusted == current) {
+                    continue;
+                }
+                
+                Object seq = doc.get("seq");
+                Bson filter = Filters.and(Filters.eq("_id", doc.get("_id")), Filters.eq("seq", seq), Filters.ne(tag, runId));
+                writes.add(new UpdateOneModel<>(filter, Updates.combine(
+                        Updates.set("balance", adjusted),
+                        Updates.inc("seq", 1L),
+                        Updates.set(tag, runId),
+                        Updates.set("updated_at", now))));
+                attempted.put(doc.get("_id"), doc.append("adjusted", adjusted));
+            }
+            
+            if (writes.isEmpty()) {
+                break;
+            }
+            
+            BulkWriteResult result = accounts.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            List<Object> lost = new ArrayList<>();
+            if (result.getModifiedCount() == writes.size()) {
+                for (Document doc : attempted.values()) {
+                    record(jobName, doc, written);
+                }
+            } else {
+                // Find out which writes landed; the rest lost a race or were applied by an earlier attempt
+                List<Object> ids = new ArrayList<>(attempted.keySet());
+                for (Document doc : accounts.find(Filters.and(Filters.in("_id", ids), Filters.eq(tag, runId)))
+                        .projection(Projections.include("seq"))) {
+                    Document mine = attempted.remove(doc.get("_id"));
+                    Object seq = mine.get("seq");
+                    if ((seq instanceof Number ? ((Number) seq).longValue() : 0L) + 1 == readSeq(doc)) {
+                        record(jobName, mine, written);
+                    }
+                }
+                lost.addAll(attempted.keySet());
+            }
+            
+            pending = new ArrayList<>();
+            if (!lost.isEmpty()) {
+                accounts.find(Filters.and(Filters.in("_id", lost), Filters.ne(tag, runId)))
+                        .projection(Projections.include("player_uuid", "balance", "seq"))
+                        .into(pending);
+            }
+        }
+        
+        if (!pending.isEmpty()) {
+            logger.warn("Economy job {} skipped {} accounts that kept changing", jobName, pending.size());
+        }
+        return written;
+    }
+    
+    private void record(String jobName, Document doc, Map<UUID, VersionedBalance> written) {
+        UUID playerUuid = UUID.fromString(doc.getString("player_uuid"));
+        Object balance = doc.get("balance");
+        long before = balance instanceof Double ? Money.ofMajor((Double) balance) : ((Number) balance).longValue();
+        long adjusted = doc.getLong("adjusted");
+        long seq = readSeq(doc) + 1;
+        
+        eventLog.recordDelta(playerUuid, seq, adjusted - before, adjusted, jobName);
+        written.put(playerUuid, new VersionedBalance(adjusted, seq));
+    }
+    
+    private static long readSeq(Document doc) {
+        Object seq = doc.get("seq");
+        return seq instanceof Number ? ((Number) seq).longValue() : 0L;
+    }
+    
+    private boolean checkpoint(String jobName, String runId, int index, Object lastId, int scanned, int updated) {
+        Bson filter = Filters.and(Filters.eq("_id", jobName), Filters.eq("run_id", runId), Filters.eq("owner", owner));
+        return jobs.updateOne(filter, Updates.combine(
+                Updates.set("ranges." + index + ".last_id", lastId),
+                Updates.inc("scanned", (long) scanned),
+                Updates.inc("updated", (long) updated),
+                Updates.set("lease_until", System.currentTimeMillis() + LEASE_MS))).getMatchedCount() > 0;
+    }
+    
+    // Shared by all workers of a run: each batch reserves its slot in a steady accounts-per-second schedule
+    private static final class Throttle {
+        private final long nanosPerAccount;
+        private long next = System.nanoTime();
+        
+        Throttle(int accountsPerSecond) {
+            this.nanosPerAccount = accountsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / accountsPerSecond : 0L;
+        }
+        
+        void acquire(int accounts) throws InterruptedException {
+            if (nanosPerAccount == 0L) {
+                return;
+            }
+            
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, next);
+                next = start + accounts * nanosPerAccount;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+    
+    public static class Result {
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private volatile boolean completed;
+        
+        public long getScanned() { return scanned.get(); }
+        public long getUpdated() { return updated.get(); }
+        public boolean isCompleted() { return completed; }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.minecraftplugin.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Inventory and ender chest contents stored once per distinct payload in item_blobs, keyed by the
+// SHA-256 of the stored data. Saved inventories only hold the hash, so saving contents that are
+// already stored (an unchanged inventory on every quit, or the same kit for many players) writes
+// no item data at all. Each blob counts the records that use it and is deleted when the last one
+// goes.
+//
+// Hashes this server has recently stored or read are remembered, so for those a save is a bare
+// reference increment; if the blob was deleted in the meantime it is written again in full.
+public class ItemBlobStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ItemBlobStore.class);
+    
+    private static final String BLOB_COLLECTION = "item_blobs";
+    private static final int KNOWN_HASHES = 4096;
+    
+    private final MongoCollection<Document> blobs;
+    private final Set<String> knownHashes = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > KNOWN_HASHES;
+                }
+            }));
+    
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    
+    public ItemBlobStore(MongoDatabase database) {
+        this.blobs = database.getCollection(BLOB_COLLECTION);
+    }
+    
+    public static String hash(String data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    // Adds a reference to the blob holding data, storing it if needed, and returns its hash.
+    // Every successful call must be paired with a release once the reference is dropped.
+    public String acquire(String data) {
+        String hash = hash(data);
+        if (knownHashes.contains(hash)
+                && blobs.updateOne(Filters.eq("_id", hash), Updates.inc("refs", 1)).getMatchedCount() > 0) {
+            deduplicated.increment();
+            return hash;
+        }
+        
+        boolean inserted = blobs.updateOne(Filters.eq("_id", hash),
+                Updates.combine(
+                        Updates.inc("refs", 1),
+                        Updates.setOnInsert("data", data),
+                        Updates.setOnInsert("created_at", System.currentTimeMillis())
+                ),
+                new UpdateOptions().upsert(true)).getUpsertedId() != null;
+        if (inserted) {
+            stored.increment();
+        } else {
+            deduplicated.increment();
+        }
+        knownHashes.add(hash);
+        return hash;
+    }
+    
+    public String load(String hash) {
+        Document doc = blobs.find(Filters.eq("_id", hash)).projection(Projections.include("data")).first();
+        if (doc == null) {
+            logger.warn("Item blob {} is missing", hash);
+            return null;
+        }
+        knownHashes.add(hash);
+        return doc.getString("data");
+    }
+    
+    public void release(String hash) {
+        try {
+            Document doc = blobs.findOneAndUpdate(Filters.eq("_id", hash), Updates.inc("refs", -1),
+                    new FindOneAndUpdateOptions().projection(Projections.include("refs")).returnDocument(ReturnDocument.AFTER));
+            if (doc == null || doc.getInteger("refs", 0) > 0) {
+                return;
+            }
+            
+            // Only if nothing acquired it again since the decrement
+            if (blobs.deleteOne(Filters.and(Filters.eq("_id", hash), Filters.lte("refs", 0))).getDeletedCount() > 0) {
+                knownHashes.remove(hash);
+                deleted.increment();
+            }
+        } catch (Exception e) {
+            // The blob outlives its last reference; harmless apart from the space
+            logger.error("Error releasing item blob {}", hash, e);
+        }
+    }
+    
+    // Random stored payloads, e.g. for training a compression dictionary
+    public void sample(int limit, List<String> samples) {
+        if (limit <= 0) {
+            return;
+        }
+        for (Document doc : blobs.aggregate(List.of(Aggregates.sample(limit), Aggregates.project(Projections.include("data"))))) {
+            samples.add(doc.getString("data"));
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "ItemBlobStore{stored=" + stored.sum() + ", deduplicated=" + deduplicated.sum() + ", deleted=" + deleted.sum() + "}";
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,379 @@
+package com.minecraftplugin.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Every transfer is recorded in economy_transfers under its transfer id before any balance moves,
+// so a retried or crashed transfer is applied exactly once. On a replica set the ledger entry and
+// both balance updates commit in one transaction; on a standalone server the accounts are tagged
+// with the transfer id (pending_transfers) and the transfer is rolled forward or back from the ledger.
+// Nothing here takes a lock wider than the two account documents involved.
+//
+// A pending entry is applied only by the caller holding its lease (owner, lease_until), which is
+// checked again before each account step, so a retry, another server and recovery never apply it
+// side by side. The tags stay on the accounts until the entry is done, and a done entry can no
+// longer be claimed, so a step that does run twice finds its tag and changes nothing.
+public class TransferLedger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TransferLedger.class);
+    
+    private static final String TRANSFER_COLLECTION = "economy_transfers";
+    private static final String ECONOMY_COLLECTION = "economy";
+    private static final long RECOVERY_AGE_MS = 30000L;
+    private static final long LEASE_MS = 15000L;
+    
+    private static final String STATE_PENDING = "pending";
+    private static final String STATE_APPLIED = "applied";
+    private static final String STATE_DONE = "done";
+    private static final String STATE_CANCELED = "canceled";
+    
+    private final MongoClient mongoClient;
+    private final MongoCollection<Document> transfers;
+    private final MongoCollection<Document> accounts;
+    private final BalanceEventLog eventLog;
+    private final boolean transactional;
+    
+    public TransferLedger(MongoClient mongoClient, MongoDatabase database, BalanceEventLog eventLog) {
+        this.mongoClient = mongoClient;
+        this.eventLog = eventLog;
+        this.transfers = database.getCollection(TRANSFER_COLLECTION);
+        this.accounts = database.getCollection(ECONOMY_COLLECTION);
+        this.transactional = supportsTransactions(database);
+        
+        transfers.createIndex(Indexes.ascending("state", "created_at"));
+        logger.info("Transfer ledger using {}", transactional ? "multi-document transactions" : "two-phase commit");
+    }
+    
+    private static boolean supportsTransactions(MongoDatabase database) {
+        try {
+            Document hello = database.runCommand(new Document("hello", 1));
+            return hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+        } catch (Exception e) {
+            logger.warn("Could not detect replica set, falling back to two-phase transfers", e);
+            return false;
+        }
+    }
+    
+    public boolean isTransactional() {
+        return transactional;
+    }
+    
+    // floor is the lowest balance the sender may be left with, as stored in Mongo
+    public TransferResult transfer(String transferId, UUID fromUuid, UUID toUuid, long amount, long floor) {
+        if (amount <= 0 || fromUuid.equals(toUuid)) {
+            return TransferResult.of(TransferStatus.REJECTED);
+        }
+        
+        try {
+            return transactional
+                    ? transferInTransaction(transferId, fromUuid, toUuid, amount, floor)
+                    : transferTwoPhase(transferId, fromUuid, toUuid, amount, floor);
+        } catch (Exception e) {
+            logger.error("Error applying transfer {} from {} to {}", transferId, fromUuid, toUuid, e);
+            return TransferResult.of(TransferStatus.FAILED);
+        }
+    }
+    
+    public CompletableFuture<TransferResult> transferAsync(String transferId, UUID fromUuid, UUID toUuid, long amount, long floor) {
+        return CompletableFuture.supplyAsync(() -> transfer(transferId, fromUuid, toUuid, amount, floor));
+    }
+    
+    // Refused transfers abort and leave no ledger entry, so a retry of one is evaluated afresh
+    private TransferResult transferInTransaction(String transferId, UUID fromUuid, UUID toUuid, long amount, long floor) {
+        if (transfers.find(Filters.eq("_id", transferId)).projection(Projections.include("_id")).first() != null) {
+            return TransferResult.of(TransferStatus.ALREADY_APPLIED);
+        }
+        
+        try (ClientSession session = mongoClient.startSession()) {
+            TransferResult result = session.withTransaction(() -> {
+                transfers.insertOne(session, newEntry(transferId, fromUuid, toUuid, amount, STATE_DONE));
+                
+                Document from = accounts.findOneAndUpdate(session,
+                        Filters.and(account(fromUuid), Filters.gte("balance", floor + amount)),
+                        balanceChange(-amount), afterBalance());
+                if (from == null) {
+                    session.abortTransaction();
+                    return TransferResult.of(TransferStatus.INSUFFICIENT_FUNDS);
+                }
+                
+                Document to = accounts.findOneAndUpdate(session, account(toUuid), balanceChange(amount), afterBalance());
+                if (to == null) {
+                    session.abortTransaction();
+                    return TransferResult.of(TransferStatus.UNKNOWN_ACCOUNT);
+                }
+                
+                return TransferResult.applied(readBalance(from), readSeq(from), readBalance(to), readSeq(to));
+            });
+            
+            // Logged only once the transaction has committed
+            if (result.getStatus() == TransferStatus.APPLIED) {
+                eventLog.recordDelta(fromUuid, result.fromSeq, -amount, result.fromBalance, "transfer_out");
+                eventLog.recordDelta(toUuid, result.toSeq, amount, result.toBalance, "transfer_in");
+            }
+            return result;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                return TransferResult.of(TransferStatus.ALREADY_APPLIED);
+            }
+            throw e;
+        }
+    }
+    
+    private TransferResult transferTwoPhase(String transferId, UUID fromUuid, UUID toUuid, long amount, long floor) {
+        String owner = UUID.randomUUID().toString();
+        try {
+            transfers.insertOne(newEntry(transferId, fromUuid, toUuid, amount, STATE_PENDING)
+                    .append("owner", owner)
+                    .append("lease_until", System.currentTimeMillis() + LEASE_MS));
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            
+            // A retry of a transfer we have already seen: finish it if it was interrupted, otherwise
+            // report its outcome. What was read may be stale by now, so only a successful claim counts.
+            if (!claim(transferId, owner)) {
+                return outcome(transferId, fromUuid, toUuid);
+            }
+        }
+        
+        return applyPending(transferId, owner, fromUuid, toUuid, amount, floor);
+    }
+    
+    // Takes over a pending entry whose lease is free or has run out
+    private boolean claim(String transferId, String owner) {
+        long now = System.currentTimeMillis();
+        return transfers.updateOne(Filters.and(Filters.eq("_id", transferId), Filters.eq("state", STATE_PENDING),
+                        Filters.or(Filters.exists("lease_until", false), Filters.lt("lease_until", now))),
+                Updates.combine(Updates.set("owner", owner), Updates.set("lease_until", now + LEASE_MS),
+                        Updates.set("updated_at", now))).getModifiedCount() > 0;
+    }
+    
+    // False once the entry has left pending or another caller has claimed it
+    private boolean renew(String transferId, String owner) {
+        long now = System.currentTimeMillis();
+        return transfers.updateOne(Filters.and(Filters.eq("_id", transferId), Filters.eq("state", STATE_PENDING), Filters.eq("owner", owner)),
+                Updates.combine(Updates.set("lease_until", now + LEASE_MS), Updates.set("updated_at", now))).getModifiedCount() > 0;
+    }
+    
+    // For a caller that could not claim the entry. One still pending is being applied by someone
+    // else; the caller is told it failed and may retry.
+    private TransferResult outcome(String transferId, UUID fromUuid, UUID toUuid) {
+        Document existing = transfers.find(Filters.eq("_id", transferId)).first();
+        if (existing == null || STATE_PENDING.equals(existing.getString("state"))) {
+            return TransferResult.of(TransferStatus.FAILED);
+        }
+        if (STATE_CANCELED.equals(existing.getString("state"))) {
+            return TransferResult.of(TransferStatus.valueOf(existing.getString("reason")));
+        }
+        finish(transferId, fromUuid, toUuid);
+        return TransferResult.of(TransferStatus.ALREADY_APPLIED);
+    }
+    
+    // Each account step is guarded by the transfer id on the account, so re-running it after a
+    // crash is a no-op, and is only taken while owner still holds the lease
+    private TransferResult applyPending(String transferId, String owner, UUID fromUuid, UUID toUuid, long amount, long floor) {
+        if (!renew(transferId, owner)) {
+            return outcome(transferId, fromUuid, toUuid);
+        }
+        Document from = accounts.findOneAndUpdate(
+                Filters.and(account(fromUuid), Filters.gte("balance", floor + amount), Filters.ne("pending_transfers", transferId)),
+                Updates.combine(balanceChange(-amount), Updates.push("pending_transfers", transferId)),
+                afterBalance());
+        if (from == null && !isTagged(fromUuid, transferId)) {
+            cancel(transferId, owner, TransferStatus.INSUFFICIENT_FUNDS);
+            return TransferResult.of(TransferStatus.INSUFFICIENT_FUNDS);
+        }
+        if (from != null) {
+            eventLog.recordDelta(fromUuid, readSeq(from), -amount, readBalance(from), "transfer_out");
+        }
+        
+        if (!renew(transferId, owner)) {
+            return outcome(transferId, fromUuid, toUuid);
+        }
+        Document to = accounts.findOneAndUpdate(
+                Filters.and(account(toUuid), Filters.ne("pending_transfers", transferId)),
+                Updates.combine(balanceChange(amount), Updates.push("pending_transfers", transferId)),
+                afterBalance());
+        if (to == null && !isTagged(toUuid, transferId)) {
+            Document refunded = accounts.findOneAndUpdate(Filters.and(account(fromUuid), Filters.eq("pending_transfers", transferId)),
+                    Updates.combine(balanceChange(amount), Updates.pull("pending_transfers", transferId)),
+                    afterBalance());
+            if (refunded != null) {
+                eventLog.recordDelta(fromUuid, readSeq(refunded), amount, readBalance(refunded), "transfer_refund");
+            }
+            cancel(transferId, owner, TransferStatus.UNKNOWN_ACCOUNT);
+            return TransferResult.of(TransferStatus.UNKNOWN_ACCOUNT);
+        }
+        if (to != null) {
+            eventLog.recordDelta(toUuid, readSeq(to), amount, readBalance(to), "transfer_in");
+        }
+        
+        transfers.updateOne(Filters.and(Filters.eq("_id", transferId), Filters.eq("state", STATE_PENDING), Filters.eq("owner", owner)),
+                Updates.combine(Updates.set("state", STATE_APPLIED), Updates.unset("owner"), Updates.unset("lease_until"),
+                        Updates.set("updated_at", System.currentTimeMillis())));
+        finish(transferId, fromUuid, toUuid);
+        
+        if (from == null || to == null) {
+            return TransferResult.of(TransferStatus.ALREADY_APPLIED);
+        }
+        return TransferResult.applied(readBalance(from), readSeq(from), readBalance(to), readSeq(to));
+    }
+    
+    // The entry is marked done before the tags go, so nothing can claim and re-apply it once they
+    // are gone. A crash in between only leaves tags that block this same transfer id.
+    private void finish(String transferId, UUID fromUuid, UUID toUuid) {
+        transfers.updateOne(Filters.and(Filters.eq("_id", transferId), Filters.eq("state", STATE_APPLIED)),
+                Updates.combine(Updates.set("state", STATE_DONE), Updates.set("updated_at", System.currentTimeMillis())));
+        accounts.updateMany(Filters.and(Filters.in("player_uuid", fromUuid.toString(), toUuid.toString()),
+                        Filters.eq("pending_transfers", transferId)),
+                Updates.pull("pending_transfers", transferId));
+    }
+    
+    private void cancel(String transferId, String owner, TransferStatus reason) {
+        transfers.updateOne(Filters.and(Filters.eq("_id", transferId), Filters.eq("state", STATE_PENDING), Filters.eq("owner", owner)),
+                Updates.combine(Updates.set("state", STATE_CANCELED), Updates.set("reason", reason.name()),
+                        Updates.unset("owner"), Updates.unset("lease_until"), Updates.set("updated_at", System.currentTimeMillis())));
+    }
+    
+    // Rolls forward transfers a crashed server left half-done. Recent entries are skipped as they may
+    // still be in flight, and so is any entry that was finished or claimed after it was listed.
+    public void recover(long floor) {
+        if (transactional) {
+            return;
+        }
+        
+        try {
+            long cutoff = System.currentTimeMillis() - RECOVERY_AGE_MS;
+            List<Document> stale = transfers.find(Filters.and(
+                    Filters.in("state", STATE_PENDING, STATE_APPLIED),
+                    Filters.lt("created_at", cutoff))).into(new ArrayList<>());
+            
+            String owner = UUID.randomUUID().toString();
+            int recovered = 0;
+            for (Document entry : stale) {
+                String transferId = entry.getString("_id");
+                UUID fromUuid = UUID.fromString(entry.getString("from_uuid"));
+                UUID toUuid = UUID.fromString(entry.getString("to_uuid"));
+                
+                if (STATE_APPLIED.equals(entry.getString("state"))) {
+                    finish(transferId, fromUuid, toUuid);
+                    recovered++;
+                } else if (claim(transferId, owner)) {
+                    applyPending(transferId, owner, fromUuid, toUuid, entry.getLong("amount"), floor);
+                    recovered++;
+                }
+            }
+            
+            if (recovered > 0) {
+                logger.info("Recovered {} interrupted transfer(s)", recovered);
+            }
+        } catch (MongoException e) {
+            logger.error("Error recovering interrupted transfers", e);
+        }
+    }
+    
+    private boolean isTagged(UUID playerUuid, String transferId) {
+        return accounts.find(Filters.and(account(playerUuid), Filters.eq("pending_transfers", transferId)))
+                .projection(Projections.include("_id"))
+                .first() != null;
+    }
+    
+    private static Document newEntry(String transferId, UUID fromUuid, UUID toUuid, long amount, String state) {
+        long now = System.currentTimeMillis();
+        return new Document("_id", transferId)
+                .append("from_uuid", fromUuid.toString())
+                .append("to_uuid", toUuid.toString())
+                .append("amount", amount)
+                .append("state", state)
+                .append("created_at", now)
+                .append("updated_at", now);
+    }
+    
+    private static Bson account(UUID playerUuid) {
+        return Filters.eq("player_uuid", playerUuid.toString());
+    }
+    
+    private static Bson balanceChange(long delta) {
+        return Updates.combine(Updates.inc("balance", delta), Updates.inc("seq", 1L),
+                Updates.set("updated_at", System.currentTimeMillis()));
+    }
+    
+    private static FindOneAndUpdateOptions afterBalance() {
+        return new FindOneAndUpdateOptions()
+                .returnDocument(ReturnDocument.AFTER)
+                .projection(Projections.include("balance", "seq"));
+    }
+    
+    private static long readSeq(Document doc) {
+        Object seq = doc.get("seq");
+        return seq instanceof Number ? ((Number) seq).longValue() : 0L;
+    }
+    
+    private static long readBalance(Document doc) {
+        Object balance = doc.get("balance");
+        return balance instanceof Number ? ((Number) balance).longValue() : 0L;
+    }
+    
+    public enum TransferStatus {
+        APPLIED,
+        ALREADY_APPLIED,
+        INSUFFICIENT_FUNDS,
+        UNKNOWN_ACCOUNT,
+        REJECTED,
+        FAILED
+    }
+    
+    public static class TransferResult {
+        private final TransferStatus status;
+        private final long fromBalance;
+        private final long fromSeq;
+        private final long toBalance;
+        private final long toSeq;
+        
+        private TransferResult(TransferStatus status, long fromBalance, long fromSeq, long toBalance, long toSeq) {
+            this.status = status;
+            this.fromBalance = fromBalance;
+            this.fromSeq = fromSeq;
+            this.toBalance = toBalance;
+            this.toSeq = toSeq;
+        }
+        
+        static TransferResult of(TransferStatus status) {
+            return new TransferResult(status, 0L, 0L, 0L, 0L);
+        }
+        
+        static TransferResult applied(long fromBalance, long fromSeq, long toBalance, long toSeq) {
+            return new TransferResult(TransferStatus.APPLIED, fromBalance, fromSeq, toBalance, toSeq);
+        }
+        
+        public TransferStatus getStatus() { return status; }
+        // Balances are only known when this call applied the transfer itself
+        public boolean hasBalances() { return status == TransferStatus.APPLIED; }
+        public boolean isSuccess() { return status == TransferStatus.APPLIED || status == TransferStatus.ALREADY_APPLIED; }
+        public long getFromBalance() { return fromBalance; }
+        public long getToBalance() { return toBalance; }
+        public long getFromSeq() { return fromSeq; }
+        public long getToSeq() { return toSeq; }
+    }
+} 
\ No newline at end of file
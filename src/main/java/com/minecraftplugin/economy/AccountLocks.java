@@ -0,0 +1,87 @@
+package com.minecraftplugin.economy;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped locks that linearize mutations of one account while different accounts proceed in
+// parallel. Two accounts are always locked in stripe order, so transfers cannot deadlock.
+public class AccountLocks {
+    
+    private static final int DEFAULT_STRIPES = 1024;
+    
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    
+    public AccountLocks() {
+        this(DEFAULT_STRIPES);
+    }
+    
+    public AccountLocks(int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    public void lock(UUID playerUuid) {
+        stripes[indexFor(playerUuid)].lock();
+    }
+    
+    public void unlock(UUID playerUuid) {
+        stripes[indexFor(playerUuid)].unlock();
+    }
+    
+    public boolean isHeldByCurrentThread(UUID playerUuid) {
+        return stripes[indexFor(playerUuid)].isHeldByCurrentThread();
+    }
+    
+    public void lockBoth(UUID first, UUID second) {
+        int a = indexFor(first);
+        int b = indexFor(second);
+        if (a == b) {
+            stripes[a].lock();
+            return;
+        }
+        
+        stripes[Math.min(a, b)].lock();
+        stripes[Math.max(a, b)].lock();
+    }
+    
+    public void unlockBoth(UUID first, UUID second) {
+        int a = indexFor(first);
+        int b = indexFor(second);
+        if (a == b) {
+            stripes[a].unlock();
+            return;
+        }
+        
+        stripes[Math.max(a, b)].unlock();
+        stripes[Math.min(a, b)].unlock();
+    }
+    
+    // Locks every stripe the players map to, in stripe order; returns the stripes for unlockAll
+    public int[] lockAll(Collection<UUID> playerUuids) {
+        int[] indexes = playerUuids.stream().mapToInt(this::indexFor).distinct().sorted().toArray();
+        for (int index : indexes) {
+            stripes[index].lock();
+        }
+        return indexes;
+    }
+    
+    public void unlockAll(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+    
+    private int indexFor(UUID playerUuid) {
+        long h = playerUuid.getMostSignificantBits() ^ playerUuid.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+} 
\ No newline at end of file
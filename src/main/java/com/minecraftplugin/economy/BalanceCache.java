@@ -0,0 +1,328 @@
+package com.minecraftplugin.economy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded L1 balance cache. Values and last-access times live in two BalanceStores. Once the
+// cache is full a new entry must beat a sampled victim on estimated access frequency
+// (TinyLFU admission), so one-off lookups of offline players cannot flush out active players.
+// Entries idle for longer than expireAfterAccessMs are dropped. Each entry also remembers the
+// version it was written at, so a late update from another server cannot replace a newer one.
+public class BalanceCache {
+    
+    private static final int SAMPLE_SIZE = 8;
+    private static final int SAMPLE_ATTEMPTS = 3;
+    private static final int LOCK_STRIPES = 64;
+    private static final long ACCESS_GRANULARITY_MS = 1000L;
+    
+    private final int maximumSize;
+    private final long expireAfterAccessMs;
+    private final BalanceStore values;
+    private final BalanceStore accessTimes;
+    private final BalanceStore versions;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final FrequencySketch sketch;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    
+    public BalanceCache(int maximumSize, long expireAfterAccessMs) {
+        this.maximumSize = Math.max(1, maximumSize);
+        this.expireAfterAccessMs = expireAfterAccessMs;
+        this.values = new BalanceStore(32, this.maximumSize);
+        this.accessTimes = new BalanceStore(32, this.maximumSize);
+        this.versions = new BalanceStore(32, this.maximumSize);
+        this.sketch = new FrequencySketch(this.maximumSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    public long get(UUID playerUuid, long defaultValue) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        sketch.increment(msb, lsb);
+        
+        long value = values.get(msb, lsb, BalanceStore.ABSENT);
+        if (value == BalanceStore.ABSENT) {
+            misses.increment();
+            return defaultValue;
+        }
+        
+        long now = System.currentTimeMillis();
+        long lastAccess = accessTimes.get(msb, lsb, now);
+        if (expireAfterAccessMs > 0 && now - lastAccess > expireAfterAccessMs) {
+            remove(playerUuid);
+            evictions.increment();
+            misses.increment();
+            return defaultValue;
+        }
+        
+        // Coarse access times keep most reads free of segment write locks
+        if (now - lastAccess > ACCESS_GRANULARITY_MS) {
+            accessTimes.put(playerUuid, now);
+        }
+        hits.increment();
+        return value;
+    }
+    
+    public boolean containsKey(UUID playerUuid) {
+        return values.containsKey(playerUuid);
+    }
+    
+    // Stores the balance unless a newer version is already cached. Returns false only when the
+    // balance was stale; a balance the admission policy turned away still counts as current.
+    public boolean put(UUID playerUuid, VersionedBalance balance) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        
+        ReentrantLock lock = lockFor(msb, lsb);
+        lock.lock();
+        try {
+            boolean present = values.containsKey(playerUuid);
+            if (present && isStale(msb, lsb, balance.getVersion())) {
+                return false;
+            }
+            
+            if (!present && values.size() >= maximumSize && !makeRoomFor(msb, lsb)) {
+                rejections.increment();
+                return true;
+            }
+            
+            values.put(playerUuid, balance.getBalance());
+            versions.put(playerUuid, balance.getVersion());
+            accessTimes.put(playerUuid, System.currentTimeMillis());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Updates an entry only if it is already cached, e.g. for changes announced by other servers.
+    // Returns false only when the balance was stale.
+    public boolean putIfPresent(UUID playerUuid, VersionedBalance balance) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        
+        ReentrantLock lock = lockFor(msb, lsb);
+        lock.lock();
+        try {
+            if (!values.containsKey(playerUuid)) {
+                return true;
+            }
+            if (isStale(msb, lsb, balance.getVersion())) {
+                return false;
+            }
+            
+            values.put(playerUuid, balance.getBalance());
+            versions.put(playerUuid, balance.getVersion());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Applies a delta to a cached balance in place, keeping its version, as long as the result stays
+    // within [minBalance, maxBalance] (maxBalance 0 = no limit). Returns the new balance, or ABSENT if
+    // the player is not cached or the change is out of bounds. Never touches Redis or Mongo.
+    public long adjustIfPresent(UUID playerUuid, long delta, long minBalance, long maxBalance) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        
+        ReentrantLock lock = lockFor(msb, lsb);
+        lock.lock();
+        try {
+            long current = values.get(msb, lsb, BalanceStore.ABSENT);
+            if (current == BalanceStore.ABSENT) {
+                return BalanceStore.ABSENT;
+            }
+            
+            long adjusted = current + delta;
+            if (adjusted < minBalance || (delta > 0 && maxBalance > 0 && adjusted > maxBalance)) {
+                return BalanceStore.ABSENT;
+            }
+            values.put(playerUuid, adjusted);
+            return adjusted;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Version 0 is unknown and always applies
+    private boolean isStale(long msb, long lsb, long version) {
+        return version != 0L && versions.get(msb, lsb, 0L) > version;
+    }
+    
+    public void remove(UUID playerUuid) {
+        ReentrantLock lock = lockFor(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+        lock.lock();
+        try {
+            removeEntry(playerUuid);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void removeEntry(UUID playerUuid) {
+        values.remove(playerUuid);
+        accessTimes.remove(playerUuid);
+        versions.remove(playerUuid);
+    }
+    
+    public void clear() {
+        values.clear();
+        accessTimes.clear();
+        versions.clear();
+    }
+    
+    private ReentrantLock lockFor(long msb, long lsb) {
+        long h = msb ^ lsb;
+        return locks[(int) (h ^ (h >>> 32)) & (LOCK_STRIPES - 1)];
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    // Called under the new entry's stripe. The victim's stripe is only tried, never waited for, so
+    // two puts evicting each other's entries cannot deadlock; a busy victim means another sample.
+    private boolean makeRoomFor(long msb, long lsb) {
+        for (int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++) {
+            long[] victim = new long[3];
+            int[] victimFrequency = {Integer.MAX_VALUE};
+            int[] sampled = {0};
+            
+            accessTimes.sample(SAMPLE_SIZE, (sampleMsb, sampleLsb, lastAccess) -> {
+                int frequency = sketch.frequency(sampleMsb, sampleLsb);
+                if (frequency < victimFrequency[0] || (frequency == victimFrequency[0] && lastAccess < victim[2])) {
+                    victimFrequency[0] = frequency;
+                    victim[0] = sampleMsb;
+                    victim[1] = sampleLsb;
+                    victim[2] = lastAccess;
+                }
+                sampled[0]++;
+            });
+            
+            if (sampled[0] == 0) {
+                return true;
+            }
+            if (sketch.frequency(msb, lsb) <= victimFrequency[0]) {
+                return false;
+            }
+            
+            ReentrantLock victimLock = lockFor(victim[0], victim[1]);
+            if (!victimLock.tryLock()) {
+                continue;
+            }
+            try {
+                removeEntry(new UUID(victim[0], victim[1]));
+            } finally {
+                victimLock.unlock();
+            }
+            evictions.increment();
+            return true;
+        }
+        return false;
+    }
+    
+    // Drops idle entries; called periodically so the heap stays flat between lookups
+    public int expireEntries() {
+        if (expireAfterAccessMs <= 0) {
+            return 0;
+        }
+        
+        long cutoff = System.currentTimeMillis() - expireAfterAccessMs;
+        List<UUID> expired = new ArrayList<>();
+        accessTimes.forEach((msb, lsb, lastAccess) -> {
+            if (lastAccess < cutoff) {
+                expired.add(new UUID(msb, lsb));
+            }
+        });
+        
+        for (UUID playerUuid : expired) {
+            remove(playerUuid);
+        }
+        evictions.add(expired.size());
+        return expired.size();
+    }
+    
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+    public long getRejectionCount() { return rejections.sum(); }
+    
+    @Override
+    public String toString() {
+        return "BalanceCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+               ", evictions=" + getEvictionCount() + ", rejections=" + getRejectionCount() + "}";
+    }
+    
+    // Count-min sketch of 4-bit counters, 16 per long, halved periodically so old popularity fades.
+    // Updates are not synchronized; a racing increment may be lost, which only blurs the estimate.
+    private static final class FrequencySketch {
+        
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+        
+        FrequencySketch(int maximumSize) {
+            int size = Integer.highestOneBit(Math.max(64, maximumSize - 1) << 1);
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * maximumSize;
+        }
+        
+        void increment(long msb, long lsb) {
+            long hash = msb ^ Long.rotateLeft(lsb, 32);
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = mix(hash, i);
+                int index = (int) (h >>> 32) & tableMask;
+                int shift = ((int) h & 15) << 2;
+                if (((table[index] >>> shift) & 0xfL) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+        
+        int frequency(long msb, long lsb) {
+            long hash = msb ^ Long.rotateLeft(lsb, 32);
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = mix(hash, i);
+                int index = (int) (h >>> 32) & tableMask;
+                int shift = ((int) h & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xfL));
+            }
+            return frequency;
+        }
+        
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+        
+        private static long mix(long hash, int i) {
+            long h = (hash + SEEDS[i]) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 29;
+            h *= 0xbf58476d1ce4e5b9L;
+            return h ^ (h >>> 32);
+        }
+    }
+} 
\ No newline at end of file
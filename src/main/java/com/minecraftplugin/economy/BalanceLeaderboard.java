@@ -0,0 +1,265 @@
+package com.minecraftplugin.economy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Ranked view of every known balance, highest first. An indexed skip list (each link records how
+// many entries it jumps) gives O(log n) rank lookups, updates and page starts; the BalanceStore
+// index maps a player to the balance the list is currently ordered by.
+public class BalanceLeaderboard {
+    
+    private static final int MAX_LEVEL = 32;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BalanceStore index = new BalanceStore();
+    private final Node head = new Node(MAX_LEVEL, 0L, 0L, 0L);
+    private int level = 1;
+    private int length;
+    
+    public void update(UUID playerUuid, long balance) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        
+        lock.writeLock().lock();
+        try {
+            long current = index.get(msb, lsb, BalanceStore.ABSENT);
+            if (current == balance) {
+                return;
+            }
+            if (current != BalanceStore.ABSENT) {
+                delete(msb, lsb, current);
+            }
+            insert(msb, lsb, balance);
+            index.put(playerUuid, balance);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Used while loading, so a bulk load never overwrites a newer live update
+    public void updateIfAbsent(UUID playerUuid, long balance) {
+        lock.writeLock().lock();
+        try {
+            if (!index.containsKey(playerUuid)) {
+                insert(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits(), balance);
+                index.put(playerUuid, balance);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(UUID playerUuid) {
+        lock.writeLock().lock();
+        try {
+            long current = index.get(playerUuid, BalanceStore.ABSENT);
+            if (current != BalanceStore.ABSENT) {
+                delete(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits(), current);
+                index.remove(playerUuid);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // 1-based rank, or 0 if the player is not on the board
+    public long getRank(UUID playerUuid) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        
+        lock.readLock().lock();
+        try {
+            long balance = index.get(msb, lsb, BalanceStore.ABSENT);
+            if (balance == BalanceStore.ABSENT) {
+                return 0L;
+            }
+            
+            long rank = 0L;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && !after(x.next[i], balance, msb, lsb)) {
+                    rank += x.span[i];
+                    x = x.next[i];
+                }
+                if (x != head && x.msb == msb && x.lsb == lsb) {
+                    return rank;
+                }
+            }
+            return 0L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long getBalance(UUID playerUuid) {
+        return index.get(playerUuid, BalanceStore.ABSENT);
+    }
+    
+    // Entries ranked offset + 1 to offset + limit
+    public List<Entry> getTop(int offset, int limit) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, 1000)));
+        if (offset < 0 || limit <= 0) {
+            return entries;
+        }
+        
+        lock.readLock().lock();
+        try {
+            long traversed = 0L;
+            long target = (long) offset + 1;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && traversed + x.span[i] <= target) {
+                    traversed += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            if (traversed != target) {
+                return entries;
+            }
+            
+            long rank = target;
+            while (x != null && entries.size() < limit) {
+                entries.add(new Entry(new UUID(x.msb, x.lsb), x.balance, rank++));
+                x = x.next[0];
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void insert(long msb, long lsb, long balance) {
+        Node[] update = new Node[MAX_LEVEL];
+        long[] rank = new long[MAX_LEVEL];
+        Node x = head;
+        
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], balance, msb, lsb)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = length;
+            }
+            level = nodeLevel;
+        }
+        
+        x = new Node(nodeLevel, msb, lsb, balance);
+        for (int i = 0; i < nodeLevel; i++) {
+            x.next[i] = update[i].next[i];
+            update[i].next[i] = x;
+            x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        length++;
+    }
+    
+    private void delete(long msb, long lsb, long balance) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], balance, msb, lsb)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        x = x.next[0];
+        if (x == null || x.msb != msb || x.lsb != lsb) {
+            return;
+        }
+        
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        length--;
+    }
+    
+    // Highest balance first; ties broken by UUID so the order is total
+    private static boolean before(Node node, long balance, long msb, long lsb) {
+        if (node.balance != balance) {
+            return node.balance > balance;
+        }
+        if (node.msb != msb) {
+            return node.msb < msb;
+        }
+        return node.lsb < lsb;
+    }
+    
+    private static boolean after(Node node, long balance, long msb, long lsb) {
+        return !before(node, balance, msb, lsb) && (node.msb != msb || node.lsb != lsb);
+    }
+    
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextInt(4) == 0) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+    
+    private static final class Node {
+        private final long msb;
+        private final long lsb;
+        private final long balance;
+        private final Node[] next;
+        private final long[] span;
+        
+        Node(int nodeLevel, long msb, long lsb, long balance) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.balance = balance;
+            this.next = new Node[nodeLevel];
+            this.span = new long[nodeLevel];
+        }
+    }
+    
+    public static class Entry {
+        private final UUID playerUuid;
+        private final long balance;
+        private final long rank;
+        
+        public Entry(UUID playerUuid, long balance, long rank) {
+            this.playerUuid = playerUuid;
+            this.balance = balance;
+            this.rank = rank;
+        }
+        
+        public UUID getPlayerUuid() { return playerUuid; }
+        public long getBalance() { return balance; }
+        public long getRank() { return rank; }
+    }
+} 
\ No newline at end of file
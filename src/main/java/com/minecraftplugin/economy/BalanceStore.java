@@ -0,0 +1,358 @@
+package com.minecraftplugin.economy;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+// Concurrent open-addressing map from a UUID's two longs to a primitive balance.
+// Lookups and updates never allocate; readers take an optimistic stamp and only
+// fall back to the segment read lock when a writer raced them.
+public class BalanceStore {
+    
+    public static final long ABSENT = Long.MIN_VALUE;
+    
+    private static final int DEFAULT_SEGMENTS = 32;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    
+    private final Segment[] segments;
+    private final int segmentMask;
+    
+    public BalanceStore() {
+        this(DEFAULT_SEGMENTS, 2048);
+    }
+    
+    public BalanceStore(int segmentCount, int expectedSize) {
+        int count = Integer.highestOneBit(Math.max(1, segmentCount - 1) << 1);
+        int perSegment = Math.max(MIN_SEGMENT_CAPACITY, tableSizeFor((expectedSize / count) * 4 / 3 + 1));
+        
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+    
+    public long get(UUID playerUuid, long defaultValue) {
+        return get(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits(), defaultValue);
+    }
+    
+    public long get(long msb, long lsb, long defaultValue) {
+        int hash = hash(msb, lsb);
+        return segmentFor(hash).get(msb, lsb, hash, defaultValue);
+    }
+    
+    public boolean containsKey(UUID playerUuid) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        return segmentFor(hash).contains(msb, lsb, hash);
+    }
+    
+    public void put(UUID playerUuid, long value) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        segmentFor(hash).put(msb, lsb, hash, value);
+    }
+    
+    public long addAndGet(UUID playerUuid, long delta, long initialValue) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        return segmentFor(hash).addAndGet(msb, lsb, hash, delta, initialValue);
+    }
+    
+    public boolean remove(UUID playerUuid) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        return segmentFor(hash).remove(msb, lsb, hash);
+    }
+    
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+    
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size;
+        }
+        return total;
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    // Visits a consistent view of each segment; entries written concurrently may or may not be seen
+    public void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+    
+    // Visits up to count entries starting near a random position; used to pick eviction candidates
+    public void sample(int count, EntryConsumer consumer) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(segments.length);
+        int visited = 0;
+        for (int i = 0; i < segments.length && visited < count; i++) {
+            visited += segments[(start + i) & segmentMask].sample(random.nextInt(Integer.MAX_VALUE), count - visited, consumer);
+        }
+    }
+    
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 16) & segmentMask];
+    }
+    
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+    }
+    
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long msb, long lsb, long value);
+    }
+    
+    private static final class Segment extends StampedLock {
+        
+        private long[] msbs;
+        private long[] lsbs;
+        private long[] values;
+        private byte[] states;
+        private volatile int size;
+        private int used;
+        
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+        
+        private void allocate(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            values = new long[capacity];
+            states = new byte[capacity];
+            size = 0;
+            used = 0;
+        }
+        
+        long get(long msb, long lsb, int hash, long defaultValue) {
+            long stamp = tryOptimisticRead();
+            long result = find(msb, lsb, hash, defaultValue);
+            if (validate(stamp)) {
+                return result;
+            }
+            
+            stamp = readLock();
+            try {
+                return find(msb, lsb, hash, defaultValue);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        
+        boolean contains(long msb, long lsb, int hash) {
+            long stamp = tryOptimisticRead();
+            boolean found = indexOf(msb, lsb, hash) >= 0;
+            if (validate(stamp)) {
+                return found;
+            }
+            
+            stamp = readLock();
+            try {
+                return indexOf(msb, lsb, hash) >= 0;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        
+        private long find(long msb, long lsb, int hash, long defaultValue) {
+            long[] currentValues = values;
+            int index = indexOf(msb, lsb, hash);
+            return index >= 0 && index < currentValues.length ? currentValues[index] : defaultValue;
+        }
+        
+        // Safe to call without the lock: a torn read is discarded by the caller's stamp validation.
+        private int indexOf(long msb, long lsb, int hash) {
+            long[] currentMsbs = msbs;
+            long[] currentLsbs = lsbs;
+            byte[] currentStates = states;
+            int capacity = Math.min(currentStates.length, Math.min(currentMsbs.length, currentLsbs.length));
+            int mask = capacity - 1;
+            int index = hash & mask;
+            
+            for (int probes = 0; probes < capacity; probes++) {
+                byte state = currentStates[index];
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == FULL && currentMsbs[index] == msb && currentLsbs[index] == lsb) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+        
+        void put(long msb, long lsb, int hash, long value) {
+            long stamp = writeLock();
+            try {
+                int index = slotFor(msb, lsb, hash);
+                values[index] = value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+        
+        long addAndGet(long msb, long lsb, int hash, long delta, long initialValue) {
+            long stamp = writeLock();
+            try {
+                int index = indexOf(msb, lsb, hash);
+                if (index < 0) {
+                    index = slotFor(msb, lsb, hash);
+                    values[index] = initialValue;
+                }
+                long updated = values[index] + delta;
+                values[index] = updated;
+                return updated;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+        
+        boolean remove(long msb, long lsb, int hash) {
+            long stamp = writeLock();
+            try {
+                int index = indexOf(msb, lsb, hash);
+                if (index < 0) {
+                    return false;
+                }
+                states[index] = DELETED;
+                size--;
+                return true;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+        
+        void forEach(EntryConsumer consumer) {
+            long stamp = readLock();
+            try {
+                for (int i = 0; i < states.length; i++) {
+                    if (states[i] == FULL) {
+                        consumer.accept(msbs[i], lsbs[i], values[i]);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        
+        int sample(int start, int count, EntryConsumer consumer) {
+            long stamp = readLock();
+            try {
+                int capacity = states.length;
+                int visited = 0;
+                for (int probes = 0; probes < capacity && visited < count; probes++) {
+                    int index = (start + probes) & (capacity - 1);
+                    if (states[index] == FULL) {
+                        consumer.accept(msbs[index], lsbs[index], values[index]);
+                        visited++;
+                    }
+                }
+                return visited;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        
+        void clear() {
+            long stamp = writeLock();
+            try {
+                allocate(MIN_SEGMENT_CAPACITY);
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+        
+        // Caller must hold the write lock. Returns the slot holding the key, claiming one if needed.
+        private int slotFor(long msb, long lsb, int hash) {
+            int existing = indexOf(msb, lsb, hash);
+            if (existing >= 0) {
+                return existing;
+            }
+            
+            if ((used + 1) * 4 > states.length * 3) {
+                rehash(size * 8 > states.length * 3 ? states.length * 2 : states.length);
+            }
+            
+            int mask = states.length - 1;
+            int index = hash & mask;
+            while (states[index] == FULL) {
+                index = (index + 1) & mask;
+            }
+            if (states[index] == EMPTY) {
+                used++;
+            }
+            states[index] = FULL;
+            msbs[index] = msb;
+            lsbs[index] = lsb;
+            size++;
+            return index;
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldValues = values;
+            byte[] oldStates = states;
+            
+            long[] newMsbs = new long[capacity];
+            long[] newLsbs = new long[capacity];
+            long[] newValues = new long[capacity];
+            byte[] newStates = new byte[capacity];
+            int mask = capacity - 1;
+            int count = 0;
+            
+            for (int i = 0; i < oldStates.length; i++) {
+                if (oldStates[i] != FULL) {
+                    continue;
+                }
+                int index = hash(oldMsbs[i], oldLsbs[i]) & mask;
+                while (newStates[index] == FULL) {
+                    index = (index + 1) & mask;
+                }
+                newStates[index] = FULL;
+                newMsbs[index] = oldMsbs[i];
+                newLsbs[index] = oldLsbs[i];
+                newValues[index] = oldValues[i];
+                count++;
+            }
+            
+            // States last so a racing optimistic reader sees either the old or new table shape
+            msbs = newMsbs;
+            lsbs = newLsbs;
+            values = newValues;
+            states = newStates;
+            size = count;
+            used = count;
+        }
+    }
+} 
\ No newline at end of file
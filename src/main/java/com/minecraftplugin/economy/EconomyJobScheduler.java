@@ -0,0 +1,132 @@
+package com.minecraftplugin.economy;
+
+import com.minecraftplugin.database.EconomySweep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongUnaryOperator;
+
+// Periodic jobs over every account, online or not. Each job runs once per interval; the run id is
+// derived from the interval number, so a run is resumed (not repeated) after a restart and two
+// servers can never apply the same period twice.
+public class EconomyJobScheduler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EconomyJobScheduler.class);
+    
+    private static final long CHECK_INTERVAL_MS = 60000L;
+    private static final long PPM = 1000000L;
+    
+    private final EconomySweep sweep;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAccountsPerSecond;
+    private final BiConsumer<String, Map<UUID, VersionedBalance>> onBatch;
+    private final List<Job> jobs = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    
+    public EconomyJobScheduler(EconomySweep sweep, int workers, int batchSize, int maxAccountsPerSecond,
+                               BiConsumer<String, Map<UUID, VersionedBalance>> onBatch) {
+        this.sweep = sweep;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAccountsPerSecond = maxAccountsPerSecond;
+        this.onBatch = onBatch;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "economy-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void addJob(String name, long intervalMs, LongUnaryOperator adjustment) {
+        jobs.add(new Job(name, Math.max(CHECK_INTERVAL_MS, intervalMs), adjustment));
+    }
+    
+    public boolean hasJobs() {
+        return !jobs.isEmpty();
+    }
+    
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::runDueJobs, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private void runDueJobs() {
+        for (Job job : jobs) {
+            try {
+                String runId = job.name + "-" + System.currentTimeMillis() / job.intervalMs;
+                if (sweep.isFinished(job.name, runId)) {
+                    continue;
+                }
+                
+                long start = System.currentTimeMillis();
+                EconomySweep.Result result = sweep.run(job.name, runId, workers, batchSize, maxAccountsPerSecond,
+                        job.adjustment, balances -> onBatch.accept(job.name, balances));
+                if (result != null) {
+                    logger.info("Economy job {} ({}) {}: {} accounts scanned, {} updated in {}ms", job.name, runId,
+                                result.isCompleted() ? "finished" : "paused", result.getScanned(), result.getUpdated(),
+                                System.currentTimeMillis() - start);
+                }
+            } catch (Exception e) {
+                logger.error("Error running economy job {}", job.name, e);
+            }
+        }
+    }
+    
+    public void shutdown() {
+        sweep.stop();
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Positive balances grow by ratePpm parts per million, never past maxBalance (0 = no limit)
+    public static LongUnaryOperator interest(long ratePpm, long maxBalance) {
+        return balance -> {
+            if (balance <= 0) {
+                return balance;
+            }
+            long credited = Money.add(balance, portion(balance, ratePpm));
+            if (maxBalance > 0 && credited > maxBalance) {
+                return Math.max(balance, maxBalance);
+            }
+            return credited;
+        };
+    }
+    
+    // Only the part of a balance above threshold is taxed
+    public static LongUnaryOperator tax(long ratePpm, long threshold) {
+        return balance -> balance > threshold ? balance - portion(balance - threshold, ratePpm) : balance;
+    }
+    
+    // amount * ppm / 1,000,000 rounded down, without overflowing for any balance
+    private static long portion(long amount, long ppm) {
+        return amount / PPM * ppm + amount % PPM * ppm / PPM;
+    }
+    
+    public static long toPpm(double percent) {
+        return Math.round(percent * 10000.0);
+    }
+    
+    private static final class Job {
+        private final String name;
+        private final long intervalMs;
+        private final LongUnaryOperator adjustment;
+        
+        Job(String name, long intervalMs, LongUnaryOperator adjustment) {
+            this.name = name;
+            this.intervalMs = intervalMs;
+            this.adjustment = adjustment;
+        }
+    }
+} 
\ No newline at end of file
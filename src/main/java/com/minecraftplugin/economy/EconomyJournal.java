@@ -0,0 +1,216 @@
+package com.minecraftplugin.economy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+// Append-only local log of balance deltas that have not reached Mongo yet.
+// Each segment is named after the batch id it will be flushed under, so a segment
+// found on startup can be replayed idempotently against the economy collection.
+//
+// Appends reach the OS at once, so a crash of the server process loses nothing. They are forced
+// to disk by sync (group commit, called on a timer) and whenever a segment is sealed, so an OS
+// crash or power loss loses at most the changes since the last sync.
+public class EconomyJournal {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EconomyJournal.class);
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_SIZE = 24;
+    private static final String ID_FILE = "journal.id";
+    
+    private final Path directory;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(RECORD_SIZE);
+    
+    private FileChannel channel;
+    private Segment currentSegment;
+    private boolean dirty;
+    private String journalId;
+    
+    public EconomyJournal(Path directory) {
+        this.directory = directory;
+    }
+    
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        journalId = readJournalId();
+        currentSegment = newSegment();
+        channel = FileChannel.open(currentSegment.getPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+    
+    public synchronized void append(UUID playerUuid, long delta) throws IOException {
+        recordBuffer.clear();
+        recordBuffer.putLong(playerUuid.getMostSignificantBits())
+                .putLong(playerUuid.getLeastSignificantBits())
+                .putLong(delta)
+                .flip();
+        while (recordBuffer.hasRemaining()) {
+            channel.write(recordBuffer);
+        }
+        dirty = true;
+    }
+    
+    // Forces appended records to disk. Appends carry on meanwhile; they land in the next sync.
+    public void sync() throws IOException {
+        FileChannel current;
+        synchronized (this) {
+            if (!dirty || channel == null) {
+                return;
+            }
+            dirty = false;
+            current = channel;
+        }
+        
+        try {
+            current.force(false);
+        } catch (ClosedChannelException e) {
+            // Sealed or closed in the meantime, which forced it
+        }
+    }
+    
+    // Identifies this journal across restarts. Its batches reach Mongo in order, so Mongo only has
+    // to remember the last few batch ids per journal to recognise a replayed one.
+    public String getJournalId() {
+        return journalId;
+    }
+    
+    private String readJournalId() throws IOException {
+        Path path = directory.resolve(ID_FILE);
+        if (Files.exists(path)) {
+            String id = Files.readString(path, StandardCharsets.UTF_8).trim();
+            if (!id.isEmpty()) {
+                return id;
+            }
+        }
+        
+        String id = UUID.randomUUID().toString();
+        Files.writeString(path, id, StandardCharsets.UTF_8);
+        return id;
+    }
+    
+    // Seals the current segment and starts a new one. The sealed segment is deleted once its batch is in Mongo.
+    public synchronized Segment rotate() throws IOException {
+        Segment sealed = currentSegment;
+        channel.force(false);
+        channel.close();
+        dirty = false;
+        
+        currentSegment = newSegment();
+        channel = FileChannel.open(currentSegment.getPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return sealed;
+    }
+    
+    public void commit(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            logger.error("Error deleting committed journal segment {}", segment.getPath(), e);
+        }
+    }
+    
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        
+        try {
+            channel.force(false);
+            channel.close();
+            dirty = false;
+            if (Files.size(currentSegment.getPath()) == 0) {
+                Files.deleteIfExists(currentSegment.getPath());
+            }
+        } catch (IOException e) {
+            logger.error("Error closing economy journal", e);
+        }
+    }
+    
+    // Segments left behind by a previous run, oldest first, with their deltas coalesced per player
+    public List<RecoveredSegment> recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                if (currentSegment == null || !path.equals(currentSegment.getPath())) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort(Comparator.comparing(this::lastModified));
+        
+        List<RecoveredSegment> recovered = new ArrayList<>();
+        for (Path path : paths) {
+            String fileName = path.getFileName().toString();
+            String batchId = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+            BalanceStore deltas = new BalanceStore(4, 256);
+            
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (buffer.remaining() >= RECORD_SIZE) {
+                UUID playerUuid = new UUID(buffer.getLong(), buffer.getLong());
+                deltas.addAndGet(playerUuid, buffer.getLong(), 0L);
+            }
+            if (buffer.hasRemaining()) {
+                logger.warn("Ignoring truncated record at the end of journal segment {}", path);
+            }
+            
+            recovered.add(new RecoveredSegment(new Segment(batchId, path), deltas));
+        }
+        return recovered;
+    }
+    
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+    
+    private Segment newSegment() {
+        String batchId = UUID.randomUUID().toString();
+        return new Segment(batchId, directory.resolve(SEGMENT_PREFIX + batchId + SEGMENT_SUFFIX));
+    }
+    
+    public static class Segment {
+        private final String batchId;
+        private final Path path;
+        
+        public Segment(String batchId, Path path) {
+            this.batchId = batchId;
+            this.path = path;
+        }
+        
+        public String getBatchId() { return batchId; }
+        public Path getPath() { return path; }
+    }
+    
+    public static class RecoveredSegment {
+        private final Segment segment;
+        private final BalanceStore deltas;
+        
+        public RecoveredSegment(Segment segment, BalanceStore deltas) {
+            this.segment = segment;
+            this.deltas = deltas;
+        }
+        
+        public Segment getSegment() { return segment; }
+        public BalanceStore getDeltas() { return deltas; }
+    }
+} 
\ No newline at end of file
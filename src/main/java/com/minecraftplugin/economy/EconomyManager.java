@@ -1,39 +1,240 @@
 package com.minecraftplugin.economy;
 
 import com.minecraftplugin.AdvancedMinecraftPlugin;
+import com.minecraftplugin.database.BalanceHistory;
 import com.minecraftplugin.database.DatabaseManager;
+import com.minecraftplugin.database.EconomyAuditLog;
+import com.minecraftplugin.database.TransferLedger;
 import com.minecraftplugin.redis.RedisManager;
 import com.minecraftplugin.utils.MessageUtils;
+import com.minecraftplugin.utils.SingleFlight;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class EconomyManager implements Listener {
     
     private static final Logger logger = LoggerFactory.getLogger(EconomyManager.class);
     
+    // Vault does not say which plugin is calling
+    private static final EconomyAuditLog.Origin VAULT = new EconomyAuditLog.Origin(EconomyAuditLog.Source.API, "vault");
+    private static final int VAULT_LANES = 8;
+    
     private final AdvancedMinecraftPlugin plugin;
     private final DatabaseManager databaseManager;
     private final RedisManager redisManager;
     
-    private final ConcurrentHashMap<UUID, Double> balanceCache;
+    private final BalanceCache balanceCache;
+    private final AccountLocks accountLocks = new AccountLocks();
+    private final SingleFlight<UUID, Long> balanceLoads = new SingleFlight<>();
+    private final SingleFlight<UUID, Void> balancePreloads = new SingleFlight<>();
+    private final BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+    private final PlayerNameIndex playerNames;
+    private final EconomyAuditLog auditLog;
+    private final BalanceHistory balanceHistory;
+    // Vault changes for one player are persisted one at a time, in the order they were made
+    private final ExecutorService[] vaultLanes = new ExecutorService[VAULT_LANES];
+    private EconomyWriteBehind writeBehind;
+    private RedisLedgerPersister redisLedger;
+    private EconomyJobScheduler economyJobs;
     
     public EconomyManager(DatabaseManager databaseManager, RedisManager redisManager, AdvancedMinecraftPlugin plugin) {
         this.databaseManager = databaseManager;
         this.redisManager = redisManager;
         this.plugin = plugin;
-        this.balanceCache = new ConcurrentHashMap<>();
+        this.playerNames = new PlayerNameIndex(databaseManager);
+        this.auditLog = databaseManager.getAuditLog();
+        this.balanceHistory = databaseManager.getBalanceHistory();
+        this.balanceCache = new BalanceCache(
+                plugin.getConfigManager().getConfig().getInt("plugin.economy.cache.max_size", 10000),
+                plugin.getConfigManager().getConfig().getLong("plugin.economy.cache.expire_after_access_seconds", 1800L) * 1000L);
+        
+        for (int i = 0; i < vaultLanes.length; i++) {
+            String name = "economy-vault-" + i;
+            vaultLanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         
+        setupCacheExpiry();
+        setupRedisLedger();
+        setupWriteBehind();
+        setupEconomyJobs();
         setupRedisSubscriptions();
+        loadLeaderboardAsync();
+        playerNames.loadAsync();
+    }
+    
+    // Prefer the shared Redis leaderboard; the first server to start builds it from Mongo
+    private void loadLeaderboardAsync() {
+        CompletableFuture.runAsync(() -> {
+            if (redisManager.loadLeaderboard(leaderboard::updateIfAbsent)) {
+                logger.info("Loaded {} leaderboard entries from Redis", leaderboard.size());
+                return;
+            }
+            
+            Map<UUID, Long> batch = new HashMap<>();
+            databaseManager.forEachPlayerBalance((playerUuid, balance) -> {
+                leaderboard.updateIfAbsent(playerUuid, balance);
+                batch.put(playerUuid, balance);
+                if (batch.size() >= 5000) {
+                    redisManager.addToLeaderboard(batch);
+                    batch.clear();
+                }
+            });
+            redisManager.addToLeaderboard(batch);
+            logger.info("Built leaderboard with {} entries from MongoDB", leaderboard.size());
+        });
+    }
+    
+    private void setupCacheExpiry() {
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            int expired = balanceCache.expireEntries();
+            logger.debug("Expired {} idle balances, {}", expired, balanceCache);
+        }, 1200L, 1200L);
+    }
+    
+    // Redis holds the authoritative balances and Mongo is written behind from the change stream
+    private void setupRedisLedger() {
+        if (!plugin.getConfigManager().getConfig().getBoolean("plugin.economy.redis_ledger.enabled", false)) {
+            return;
+        }
+        
+        String consumerName = plugin.getConfigManager().getConfig().getString("plugin.economy.redis_ledger.consumer_name", "");
+        if (consumerName == null || consumerName.isEmpty()) {
+            consumerName = UUID.randomUUID().toString();
+        }
+        int batchSize = plugin.getConfigManager().getConfig().getInt("plugin.economy.redis_ledger.batch_size", 500);
+        long persistIntervalMs = plugin.getConfigManager().getConfig().getLong("plugin.economy.redis_ledger.persist_interval_ms", 500L);
+        
+        redisLedger = new RedisLedgerPersister(redisManager, databaseManager, consumerName, batchSize, persistIntervalMs);
+        redisLedger.start();
+        logger.info("Economy Redis ledger enabled - persisting to MongoDB as consumer {}", consumerName);
+    }
+    
+    private void setupWriteBehind() {
+        if (!plugin.getConfigManager().getConfig().getBoolean("plugin.economy.write_behind.enabled", false)) {
+            return;
+        }
+        if (redisLedger != null) {
+            logger.warn("Economy write-behind is ignored while the Redis ledger is enabled");
+            return;
+        }
+        
+        long flushIntervalMs = plugin.getConfigManager().getConfig().getLong("plugin.economy.write_behind.flush_interval_ms", 1000L);
+        int maxPendingChanges = plugin.getConfigManager().getConfig().getInt("plugin.economy.write_behind.max_pending_changes", 5000);
+        long syncIntervalMs = plugin.getConfigManager().getConfig().getLong("plugin.economy.write_behind.journal_sync_ms", 50L);
+        
+        try {
+            writeBehind = new EconomyWriteBehind(databaseManager, plugin.getDataFolder().toPath().resolve("economy-journal"),
+                                                 flushIntervalMs, maxPendingChanges, syncIntervalMs);
+            writeBehind.start();
+            logger.info("Economy write-behind enabled - flush every {}ms or {} changes", flushIntervalMs, maxPendingChanges);
+        } catch (IOException e) {
+            logger.error("Failed to open economy journal, falling back to synchronous writes", e);
+            writeBehind = null;
+        }
+    }
+    
+    // Interest and wealth tax are swept over the economy collection in MongoDB
+    private void setupEconomyJobs() {
+        String prefix = "plugin.economy.jobs.";
+        economyJobs = new EconomyJobScheduler(databaseManager.getEconomySweep(),
+                plugin.getConfigManager().getConfig().getInt(prefix + "workers", 4),
+                plugin.getConfigManager().getConfig().getInt(prefix + "batch_size", 500),
+                plugin.getConfigManager().getConfig().getInt(prefix + "max_accounts_per_second", 5000),
+                this::applySweptBalances);
+        
+        if (plugin.getConfigManager().getConfig().getBoolean(prefix + "interest.enabled", false)) {
+            economyJobs.addJob("interest",
+                    plugin.getConfigManager().getConfig().getLong(prefix + "interest.interval_minutes", 1440L) * 60000L,
+                    EconomyJobScheduler.interest(EconomyJobScheduler.toPpm(
+                            plugin.getConfigManager().getConfig().getDouble(prefix + "interest.rate_percent", 0.0)), getMaxBalance()));
+        }
+        if (plugin.getConfigManager().getConfig().getBoolean(prefix + "tax.enabled", false)) {
+            economyJobs.addJob("tax",
+                    plugin.getConfigManager().getConfig().getLong(prefix + "tax.interval_minutes", 1440L) * 60000L,
+                    EconomyJobScheduler.tax(EconomyJobScheduler.toPpm(
+                            plugin.getConfigManager().getConfig().getDouble(prefix + "tax.rate_percent", 0.0)),
+                            Money.ofMajor(plugin.getConfigManager().getConfig().getDouble(prefix + "tax.threshold", 0.0))));
+        }
+        
+        if (!economyJobs.hasJobs()) {
+            economyJobs = null;
+            return;
+        }
+        if (redisLedger != null) {
+            // Balances live in Redis; a sweep of MongoDB would be overwritten by the ledger
+            logger.warn("Economy interest and tax jobs are not supported with the Redis ledger and are disabled");
+            economyJobs = null;
+            return;
+        }
+        
+        economyJobs.start();
+        logger.info("Economy jobs enabled");
+    }
+    
+    // Each swept batch reaches this server's cache and every other server in one round trip
+    private void applySweptBalances(String operation, Map<UUID, VersionedBalance> balances) {
+        Map<UUID, VersionedBalance> published = new HashMap<>(balances.size() * 2);
+        for (Map.Entry<UUID, VersionedBalance> entry : balances.entrySet()) {
+            VersionedBalance balance = withPending(entry.getKey(), entry.getValue());
+            cacheChangedBalance(entry.getKey(), balance);
+            published.put(entry.getKey(), balance);
+            if (auditLog != null) {
+                auditLog.record(EconomyAuditLog.Origin.job(operation), operation, entry.getKey(), null, null,
+                                balance.getBalance(), true);
+            }
+        }
+        redisManager.publishEconomyUpdates(published, operation);
+    }
+    
+    public void shutdown() {
+        if (economyJobs != null) {
+            economyJobs.shutdown();
+        }
+        
+        // Queued Vault changes go out before the ledger and journal are drained
+        for (ExecutorService lane : vaultLanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : vaultLanes) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Gave up waiting for queued Vault balance changes");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (redisLedger != null) {
+            redisLedger.shutdown();
+            logger.info("Economy Redis ledger persisted");
+        }
+        
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            logger.info("Economy write-behind drained");
+        }
     }
     
     private void setupRedisSubscriptions() {
@@ -41,15 +242,21 @@ public class EconomyManager implements Listener {
             try {
                 UUID playerUuid = message.getPlayerUuid();
                 String operation = message.getOperation();
-                double newBalance = Double.parseDouble(message.getData());
+                VersionedBalance update = RedisManager.parseVersionedBalance(message.getData());
+                long newBalance = update.getBalance();
                 
-                balanceCache.put(playerUuid, newBalance);
+                // Messages from different servers can arrive out of order; keep whichever is newer
+                if (!balanceCache.putIfPresent(playerUuid, update)) {
+                    logger.debug("Ignored stale economy update: {} {} {}", playerUuid, operation, update);
+                    return;
+                }
+                leaderboard.update(playerUuid, newBalance);
                 
                 Player player = Bukkit.getPlayer(playerUuid);
                 if (player != null && player.isOnline()) {
-                    String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getConfig().getString("messages.economy.balance"), 
-                                                                  "currency", currencySymbol, "balance", String.format("%.2f", newBalance));
+                    String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getSettings().messages().get("economy.balance"), 
+                                                                  "currency", currencySymbol, "balance", Money.format(newBalance));
                     player.sendMessage(messageText);
                 }
                 
@@ -61,133 +268,624 @@ public class EconomyManager implements Listener {
         });
     }
     
-    public double getBalance(UUID playerUuid) {
-        Double cachedBalance = balanceCache.get(playerUuid);
-        if (cachedBalance != null) {
+    public long getBalance(UUID playerUuid) {
+        long cachedBalance = balanceCache.get(playerUuid, BalanceStore.ABSENT);
+        if (cachedBalance != BalanceStore.ABSENT) {
             return cachedBalance;
         }
         
-        Double redisBalance = redisManager.getCachedBalance(playerUuid);
+        // A caller already holding the account lock must not wait on a load that needs that lock
+        if (accountLocks.isHeldByCurrentThread(playerUuid)) {
+            return loadBalance(playerUuid);
+        }
+        
+        // Concurrent misses share one load, which runs under the account lock so a slow load
+        // cannot overwrite a concurrent update
+        return balanceLoads.load(playerUuid, () -> {
+            accountLocks.lock(playerUuid);
+            try {
+                return loadBalance(playerUuid);
+            } finally {
+                accountLocks.unlock(playerUuid);
+            }
+        });
+    }
+    
+    private long loadBalance(UUID playerUuid) {
+        long cachedBalance = balanceCache.get(playerUuid, BalanceStore.ABSENT);
+        if (cachedBalance != BalanceStore.ABSENT) {
+            return cachedBalance;
+        }
+        
+        if (redisLedger != null) {
+            return loadLedgerBalance(playerUuid);
+        }
+        
+        VersionedBalance redisBalance = redisManager.getCachedBalance(playerUuid);
         if (redisBalance != null) {
             balanceCache.put(playerUuid, redisBalance);
-            return redisBalance;
+            leaderboard.update(playerUuid, redisBalance.getBalance());
+            return redisBalance.getBalance();
         }
         
-        double balance = databaseManager.getPlayerBalance(playerUuid);
+        VersionedBalance stored = databaseManager.loadPlayerBalance(playerUuid);
+        if (stored == null) {
+            return 0L;
+        }
+        VersionedBalance balance = withPending(playerUuid, stored);
         balanceCache.put(playerUuid, balance);
+        leaderboard.update(playerUuid, balance.getBalance());
         
-        redisManager.setCachedBalance(playerUuid, balance, 3600);
+        redisManager.setCachedBalance(playerUuid, balance, plugin.getConfigManager().getSettings().cache().balanceTtlSeconds());
         
-        return balance;
+        return balance.getBalance();
     }
     
-    public boolean setBalance(UUID playerUuid, double balance) {
-        if (!isValidBalance(balance)) {
-            return false;
+    // Write-behind balances include changes Mongo has not seen yet, so their seq says nothing
+    private VersionedBalance withPending(UUID playerUuid, VersionedBalance stored) {
+        if (writeBehind == null) {
+            return stored;
         }
-        
-        if (!databaseManager.setPlayerBalance(playerUuid, balance)) {
-            return false;
+        return VersionedBalance.unversioned(stored.getBalance() + writeBehind.pendingDelta(playerUuid));
+    }
+    
+    // Mongo is only read here to load an account into Redis the first time it is used
+    private long loadLedgerBalance(UUID playerUuid) {
+        VersionedBalance balance = redisManager.getAccountBalance(playerUuid);
+        if (balance == null) {
+            balance = seedLedgerAccount(playerUuid);
+        }
+        if (balance == null) {
+            return 0L;
         }
         
-        balanceCache.put(playerUuid, balance);
-        redisManager.setCachedBalance(playerUuid, balance, 3600);
-        redisManager.publishEconomyUpdate(playerUuid, balance, "set");
+        cacheBalance(playerUuid, balance);
+        return balance.getBalance();
+    }
+    
+    private VersionedBalance seedLedgerAccount(UUID playerUuid) {
+        long[] seed = databaseManager.getRedisSeed(playerUuid);
+        return seed != null ? redisManager.seedAccount(playerUuid, seed[0], seed[1]) : null;
+    }
+    
+    // Runs a ledger script, loading the accounts into Redis and retrying once if one was missing
+    private RedisManager.EconomyScriptResult runLedgerScript(Supplier<RedisManager.EconomyScriptResult> script, UUID... playerUuids) {
+        RedisManager.EconomyScriptResult result = script.get();
+        if (result == null || !result.isMissingAccount()) {
+            return result;
+        }
         
-        logger.info("Set balance for {} to {}", playerUuid, balance);
-        return true;
+        for (UUID playerUuid : playerUuids) {
+            if (seedLedgerAccount(playerUuid) == null) {
+                return null;
+            }
+        }
+        return script.get();
     }
     
-    public boolean addBalance(UUID playerUuid, double amount) {
-        if (amount <= 0) {
-            return false;
+    // The script already checked bounds, updated the shared leaderboard and published the change.
+    // Returns the new balance, or null if the change was not applied.
+    private Long applyLedgerChange(UUID playerUuid, Supplier<RedisManager.EconomyScriptResult> script, String operation) {
+        RedisManager.EconomyScriptResult result = runLedgerScript(script, playerUuid);
+        if (result == null || !result.isApplied()) {
+            return null;
         }
         
-        double currentBalance = getBalance(playerUuid);
-        double newBalance = currentBalance + amount;
+        cacheChangedBalance(playerUuid, new VersionedBalance(result.getBalance(), result.getVersion()));
+        logger.info("Applied {} for {} in the Redis ledger, new balance: {}", operation, playerUuid, Money.format(result.getBalance()));
+        return result.getBalance();
+    }
+    
+    private void cacheBalance(UUID playerUuid, VersionedBalance balance) {
+        if (balanceCache.put(playerUuid, balance)) {
+            leaderboard.update(playerUuid, balance.getBalance());
+        }
+    }
+    
+    // Only changes made on this server are charted, so no point is recorded twice across servers
+    private void cacheChangedBalance(UUID playerUuid, VersionedBalance balance) {
+        cacheBalance(playerUuid, balance);
+        if (balanceHistory != null) {
+            balanceHistory.record(playerUuid, balance.getBalance());
+        }
+    }
+    
+    // As applyTransfer
+    private Long transferInLedger(String transferId, UUID fromUuid, UUID toUuid, long amount) {
+        RedisManager.EconomyScriptResult result = runLedgerScript(() -> redisManager.transferAccountBalance(
+                transferId, fromUuid, toUuid, amount, getMinBalance(), getMaxBalance()), fromUuid, toUuid);
+        if (result == null) {
+            return null;
+        }
         
-        if (!isValidBalance(newBalance)) {
-            return false;
+        if (result.getStatus() == RedisManager.EconomyScriptResult.ALREADY_APPLIED) {
+            balanceCache.remove(fromUuid);
+            balanceCache.remove(toUuid);
+            return BalanceStore.ABSENT;
+        }
+        if (!result.isApplied()) {
+            return null;
         }
         
-        if (!databaseManager.updatePlayerBalance(playerUuid, amount)) {
+        cacheChangedBalance(fromUuid, new VersionedBalance(result.getBalance(), result.getVersion()));
+        cacheChangedBalance(toUuid, new VersionedBalance(result.getToBalance(), result.getToVersion()));
+        logger.info("Transferred {} from {} to {} in the Redis ledger", Money.format(amount), fromUuid, toUuid);
+        return result.getBalance();
+    }
+    
+    public boolean setBalance(UUID playerUuid, long balance) {
+        return setBalance(playerUuid, balance, EconomyAuditLog.Origin.API);
+    }
+    
+    public boolean setBalance(UUID playerUuid, long balance, EconomyAuditLog.Origin origin) {
+        boolean success = applySetBalance(playerUuid, balance);
+        audit(origin, "set", playerUuid, null, balance, success ? balance : null, success);
+        return success;
+    }
+    
+    private boolean applySetBalance(UUID playerUuid, long balance) {
+        if (!isValidBalance(balance)) {
             return false;
         }
+        if (redisLedger != null) {
+            return applyLedgerChange(playerUuid, () -> redisManager.setAccountBalance(playerUuid, balance, "set"), "set") != null;
+        }
         
-        balanceCache.put(playerUuid, newBalance);
-        redisManager.setCachedBalance(playerUuid, newBalance, 3600);
-        redisManager.publishEconomyUpdate(playerUuid, newBalance, "add");
-        
-        logger.info("Added {} to balance for {}, new balance: {}", amount, playerUuid, newBalance);
-        return true;
+        accountLocks.lock(playerUuid);
+        try {
+            VersionedBalance written = writeBehind != null
+                    ? persistDelta(playerUuid, balance - getBalance(playerUuid), balance)
+                    : databaseManager.setPlayerBalanceAndGet(playerUuid, balance);
+            if (written == null) {
+                return false;
+            }
+            
+            publishBalance(playerUuid, written, "set");
+            
+            logger.info("Set balance for {} to {}", playerUuid, Money.format(balance));
+            return true;
+        } finally {
+            accountLocks.unlock(playerUuid);
+        }
+    }
+    
+    public boolean addBalance(UUID playerUuid, long amount) {
+        return addBalance(playerUuid, amount, EconomyAuditLog.Origin.API);
+    }
+    
+    public boolean addBalance(UUID playerUuid, long amount, EconomyAuditLog.Origin origin) {
+        return addBalanceAndGet(playerUuid, amount, origin) != null;
     }
     
-    public boolean removeBalance(UUID playerUuid, double amount) {
+    // The balance this credit produced, which later changes by others do not affect, or null if
+    // it was not applied
+    public Long addBalanceAndGet(UUID playerUuid, long amount, EconomyAuditLog.Origin origin) {
+        Long newBalance = applyAddBalance(playerUuid, amount);
+        audit(origin, "add", playerUuid, null, amount, newBalance, newBalance != null);
+        return newBalance;
+    }
+    
+    private Long applyAddBalance(UUID playerUuid, long amount) {
         if (amount <= 0) {
-            return false;
+            return null;
+        }
+        if (redisLedger != null) {
+            return applyLedgerChange(playerUuid, () -> redisManager.adjustAccountBalance(
+                    playerUuid, amount, getMinBalance(), getMaxBalance(), "add"), "add");
         }
         
-        double currentBalance = getBalance(playerUuid);
-        if (currentBalance < amount) {
-            return false;
+        accountLocks.lock(playerUuid);
+        try {
+            long currentBalance = getBalance(playerUuid);
+            long newBalance = Money.add(currentBalance, amount);
+            
+            if (!isValidBalance(newBalance)) {
+                return null;
+            }
+            
+            VersionedBalance written = persistDelta(playerUuid, amount, newBalance);
+            if (written == null) {
+                return null;
+            }
+            
+            publishBalance(playerUuid, written, "add");
+            
+            logger.info("Added {} to balance for {}, new balance: {}", Money.format(amount), playerUuid, Money.format(written.getBalance()));
+            return written.getBalance();
+        } finally {
+            accountLocks.unlock(playerUuid);
+        }
+    }
+    
+    // Credits many players at once, e.g. event rewards: one Mongo bulkWrite, one Redis pipeline and
+    // one batched notification. Non-positive amounts and credits that would exceed max_balance are
+    // skipped. Returns the new balance of every player that was credited.
+    public Map<UUID, Long> addBalances(Map<UUID, Long> amounts) {
+        return addBalances(amounts, EconomyAuditLog.Origin.API);
+    }
+    
+    public Map<UUID, Long> addBalances(Map<UUID, Long> amounts, EconomyAuditLog.Origin origin) {
+        Map<UUID, Long> newBalances = applyCredits(amounts);
+        if (auditLog != null) {
+            for (Map.Entry<UUID, Long> entry : amounts.entrySet()) {
+                Long newBalance = newBalances.get(entry.getKey());
+                auditLog.record(origin, "add", entry.getKey(), null, entry.getValue(), newBalance, newBalance != null);
+            }
+        }
+        return newBalances;
+    }
+    
+    private Map<UUID, Long> applyCredits(Map<UUID, Long> amounts) {
+        Map<UUID, Long> credits = new HashMap<>(amounts.size() * 2);
+        for (Map.Entry<UUID, Long> entry : amounts.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                credits.put(entry.getKey(), entry.getValue());
+            }
         }
         
-        double newBalance = currentBalance - amount;
+        Map<UUID, Long> newBalances = new HashMap<>(credits.size() * 2);
+        if (credits.isEmpty()) {
+            return newBalances;
+        }
+        if (redisLedger != null) {
+            return addBalancesInLedger(credits);
+        }
         
-        if (!databaseManager.updatePlayerBalance(playerUuid, -amount)) {
-            return false;
+        int[] locked = accountLocks.lockAll(credits.keySet());
+        try {
+            Map<UUID, VersionedBalance> applied = writeBehind != null
+                    ? journalCredits(credits)
+                    : databaseManager.addPlayerBalances(UUID.randomUUID().toString(), credits, getMaxBalance());
+            if (applied == null) {
+                return newBalances;
+            }
+            
+            for (Map.Entry<UUID, VersionedBalance> entry : applied.entrySet()) {
+                cacheChangedBalance(entry.getKey(), entry.getValue());
+                newBalances.put(entry.getKey(), entry.getValue().getBalance());
+            }
+            
+            if (writeBehind != null) {
+                redisManager.publishEconomyUpdatesAsync(applied, "add");
+            } else {
+                redisManager.publishEconomyUpdates(applied, "add");
+            }
+            
+            logger.info("Credited {} of {} players in one batch", applied.size(), credits.size());
+            return newBalances;
+        } finally {
+            accountLocks.unlockAll(locked);
         }
+    }
+    
+    // The journal is local, so write-behind credits are simply recorded one by one
+    private Map<UUID, VersionedBalance> journalCredits(Map<UUID, Long> credits) {
+        Map<UUID, VersionedBalance> applied = new HashMap<>(credits.size() * 2);
+        for (Map.Entry<UUID, Long> entry : credits.entrySet()) {
+            long newBalance = Money.add(getBalance(entry.getKey()), entry.getValue());
+            if (!isValidBalance(newBalance)) {
+                continue;
+            }
+            
+            VersionedBalance written = persistDelta(entry.getKey(), entry.getValue(), newBalance);
+            if (written != null) {
+                applied.put(entry.getKey(), written);
+            }
+        }
+        return applied;
+    }
+    
+    private Map<UUID, Long> addBalancesInLedger(Map<UUID, Long> credits) {
+        long minBalance = getMinBalance();
+        long maxBalance = getMaxBalance();
+        Map<UUID, RedisManager.EconomyScriptResult> results = redisManager.adjustAccountBalances(credits, minBalance, maxBalance, "add");
         
-        balanceCache.put(playerUuid, newBalance);
-        redisManager.setCachedBalance(playerUuid, newBalance, 3600);
-        redisManager.publishEconomyUpdate(playerUuid, newBalance, "remove");
+        // Accounts not in Redis yet are loaded and retried together
+        Map<UUID, Long> retry = new HashMap<>();
+        for (Map.Entry<UUID, RedisManager.EconomyScriptResult> entry : results.entrySet()) {
+            if (entry.getValue().isMissingAccount() && seedLedgerAccount(entry.getKey()) != null) {
+                retry.put(entry.getKey(), credits.get(entry.getKey()));
+            }
+        }
+        results.putAll(redisManager.adjustAccountBalances(retry, minBalance, maxBalance, "add"));
+        
+        Map<UUID, VersionedBalance> applied = new HashMap<>(results.size() * 2);
+        Map<UUID, Long> newBalances = new HashMap<>(results.size() * 2);
+        for (Map.Entry<UUID, RedisManager.EconomyScriptResult> entry : results.entrySet()) {
+            if (entry.getValue().isApplied()) {
+                VersionedBalance balance = new VersionedBalance(entry.getValue().getBalance(), entry.getValue().getVersion());
+                cacheChangedBalance(entry.getKey(), balance);
+                applied.put(entry.getKey(), balance);
+                newBalances.put(entry.getKey(), balance.getBalance());
+            }
+        }
         
-        logger.info("Removed {} from balance for {}, new balance: {}", amount, playerUuid, newBalance);
-        return true;
+        redisManager.publishEconomyBatch(applied, "add");
+        logger.info("Credited {} of {} players in one batch in the Redis ledger", applied.size(), credits.size());
+        return newBalances;
     }
     
-    public boolean hasBalance(UUID playerUuid, double amount) {
-        return getBalance(playerUuid) >= amount;
+    // Balance from memory only, for callers on the server thread. Returns null if the player's
+    // balance is not loaded; a load is started so the next call can answer.
+    public Long getBalanceIfLoaded(UUID playerUuid) {
+        long cachedBalance = balanceCache.get(playerUuid, BalanceStore.ABSENT);
+        if (cachedBalance != BalanceStore.ABSENT) {
+            return cachedBalance;
+        }
+        
+        getBalanceAsync(playerUuid);
+        long ranked = leaderboard.getBalance(playerUuid);
+        return ranked != BalanceStore.ABSENT ? ranked : null;
     }
     
-    public boolean transfer(UUID fromUuid, UUID toUuid, double amount) {
+    private ExecutorService vaultLane(UUID playerUuid) {
+        return vaultLanes[(playerUuid.hashCode() & 0x7fffffff) % vaultLanes.length];
+    }
+    
+    // Credits the in-memory balance at once and persists the credit on the player's Vault lane, so
+    // callers on the server thread never wait on Redis or Mongo. A credit to a player whose balance
+    // is not loaded is only queued; the returned balance is then the best estimate available.
+    // Returns null if the credit would exceed max_balance as far as this server knows.
+    public Long creditFromVault(UUID playerUuid, long amount) {
         if (amount <= 0) {
-            return false;
+            return null;
         }
         
-        if (!hasBalance(fromUuid, amount)) {
-            return false;
+        long newBalance = balanceCache.adjustIfPresent(playerUuid, amount, getMinBalance(), getMaxBalance());
+        if (newBalance != BalanceStore.ABSENT) {
+            leaderboard.update(playerUuid, newBalance);
+            vaultLane(playerUuid).execute(() -> persistVaultChange(playerUuid, amount));
+            return newBalance;
+        }
+        if (balanceCache.containsKey(playerUuid)) {
+            return null;
         }
         
-        if (!removeBalance(fromUuid, amount)) {
-            return false;
+        long ranked = leaderboard.getBalance(playerUuid);
+        long estimate = Money.add(ranked != BalanceStore.ABSENT ? ranked : getStartingBalance(), amount);
+        if (!isValidBalance(estimate)) {
+            return null;
+        }
+        vaultLane(playerUuid).execute(() -> {
+            if (addBalanceAndGet(playerUuid, amount, VAULT) == null) {
+                logger.warn("Could not persist Vault credit of {} for {}", Money.format(amount), playerUuid);
+            }
+        });
+        return estimate;
+    }
+    
+    // Debits the in-memory balance at once, refusing anything below min_balance, and persists the
+    // debit on the player's Vault lane like a credit. A player whose balance is not loaded is
+    // refused and a load is started, so a later attempt can be decided from memory.
+    // Returns the new balance, or null if refused.
+    public Long debitFromVault(UUID playerUuid, long amount) {
+        if (amount <= 0) {
+            return null;
         }
         
-        if (!addBalance(toUuid, amount)) {
-            addBalance(fromUuid, amount);
-            return false;
+        long newBalance = balanceCache.adjustIfPresent(playerUuid, -amount, getMinBalance(), getMaxBalance());
+        if (newBalance != BalanceStore.ABSENT) {
+            leaderboard.update(playerUuid, newBalance);
+            vaultLane(playerUuid).execute(() -> persistVaultChange(playerUuid, -amount));
+            return newBalance;
+        }
+        if (!balanceCache.containsKey(playerUuid)) {
+            getBalanceAsync(playerUuid);
+        }
+        return null;
+    }
+    
+    // The cache already holds the change. Debits are checked against the floor again by the store,
+    // since another server may have spent the money first; if the store rejects either kind of
+    // change the balance is reloaded.
+    private void persistVaultChange(UUID playerUuid, long delta) {
+        String operation = delta > 0 ? "add" : "remove";
+        Long newBalance = null;
+        if (redisLedger != null) {
+            // Only the floor applies to debits, as with the Mongo path
+            newBalance = applyLedgerChange(playerUuid, () -> redisManager.adjustAccountBalance(
+                    playerUuid, delta, getMinBalance(), delta > 0 ? getMaxBalance() : 0L, operation), operation);
+        } else {
+            accountLocks.lock(playerUuid);
+            try {
+                VersionedBalance written = delta > 0
+                        ? persistDelta(playerUuid, delta, balanceCache.get(playerUuid, 0L))
+                        : debit(playerUuid, -delta);
+                if (written != null) {
+                    publishBalance(playerUuid, written, operation);
+                    newBalance = written.getBalance();
+                }
+            } finally {
+                accountLocks.unlock(playerUuid);
+            }
+        }
+        
+        boolean persisted = newBalance != null;
+        audit(VAULT, operation, playerUuid, null, Math.abs(delta), newBalance, persisted);
+        if (!persisted) {
+            logger.warn("Could not persist Vault {} of {} for {}, reloading balance",
+                    delta > 0 ? "credit" : "debit", Money.format(Math.abs(delta)), playerUuid);
+            balanceCache.remove(playerUuid);
+            getBalanceAsync(playerUuid);
+        }
+    }
+    
+    public boolean removeBalance(UUID playerUuid, long amount) {
+        return removeBalance(playerUuid, amount, EconomyAuditLog.Origin.API);
+    }
+    
+    public boolean removeBalance(UUID playerUuid, long amount, EconomyAuditLog.Origin origin) {
+        return removeBalanceAndGet(playerUuid, amount, origin) != null;
+    }
+    
+    // The balance this debit left, or null if it was refused or not applied
+    public Long removeBalanceAndGet(UUID playerUuid, long amount, EconomyAuditLog.Origin origin) {
+        Long newBalance = applyRemoveBalance(playerUuid, amount);
+        audit(origin, "remove", playerUuid, null, amount, newBalance, newBalance != null);
+        return newBalance;
+    }
+    
+    private Long applyRemoveBalance(UUID playerUuid, long amount) {
+        if (amount <= 0) {
+            return null;
+        }
+        if (redisLedger != null) {
+            // Only the floor applies to debits, as with the Mongo path
+            return applyLedgerChange(playerUuid, () -> redisManager.adjustAccountBalance(
+                    playerUuid, -amount, getMinBalance(), 0L, "remove"), "remove");
         }
         
-        logger.info("Transferred {} from {} to {}", amount, fromUuid, toUuid);
-        return true;
+        accountLocks.lock(playerUuid);
+        try {
+            VersionedBalance newBalance = debit(playerUuid, amount);
+            if (newBalance == null && !balanceCache.containsKey(playerUuid)) {
+                // The account may not exist yet; getBalance creates it with the starting balance
+                getBalance(playerUuid);
+                newBalance = debit(playerUuid, amount);
+            }
+            if (newBalance == null) {
+                return null;
+            }
+            
+            publishBalance(playerUuid, newBalance, "remove");
+            
+            logger.info("Removed {} from balance for {}, new balance: {}", Money.format(amount), playerUuid, Money.format(newBalance.getBalance()));
+            return newBalance.getBalance();
+        } finally {
+            accountLocks.unlock(playerUuid);
+        }
     }
     
-    private boolean isValidBalance(double balance) {
-        double maxBalance = plugin.getConfigManager().getConfig().getDouble("plugin.economy.max_balance", 0.0);
-        double minBalance = plugin.getConfigManager().getConfig().getDouble("plugin.economy.min_balance", 0.0);
+    // The debit is checked and applied by Mongo itself. Deltas still waiting in the write-behind
+    // journal are folded into the floor so the check sees the same balance players do.
+    private VersionedBalance debit(UUID playerUuid, long amount) {
+        long pending = writeBehind != null ? writeBehind.pendingDelta(playerUuid) : 0L;
+        VersionedBalance stored = databaseManager.debitPlayerBalanceAndGet(playerUuid, amount, databaseManager.getMinimumBalance() - pending);
+        return stored != null ? withPending(playerUuid, stored) : null;
+    }
+    
+    // Returns the balance to publish, or null if the change was not persisted. With write-behind
+    // the balance is the one this server expects, since Mongo has not applied the change yet.
+    private VersionedBalance persistDelta(UUID playerUuid, long delta, long expectedBalance) {
+        if (writeBehind == null) {
+            return databaseManager.updatePlayerBalanceAndGet(playerUuid, delta);
+        }
         
-        if (maxBalance > 0 && balance > maxBalance) {
-            return false;
+        try {
+            writeBehind.record(playerUuid, delta);
+            return VersionedBalance.unversioned(expectedBalance);
+        } catch (IOException e) {
+            logger.error("Error journaling balance change for {}", playerUuid, e);
+            return null;
         }
+    }
+    
+    // publishEconomyUpdate also refreshes the Redis cache entry, so this is one round trip
+    private void publishBalance(UUID playerUuid, VersionedBalance newBalance, String operation) {
+        cacheChangedBalance(playerUuid, newBalance);
         
-        if (balance < minBalance) {
-            return false;
+        if (writeBehind != null) {
+            redisManager.publishEconomyUpdateAsync(playerUuid, newBalance, operation);
+        } else {
+            redisManager.publishEconomyUpdate(playerUuid, newBalance, operation);
+        }
+    }
+    
+    public boolean hasBalance(UUID playerUuid, long amount) {
+        return getBalance(playerUuid) >= amount;
+    }
+    
+    public boolean transfer(UUID fromUuid, UUID toUuid, long amount) {
+        return transfer(UUID.randomUUID().toString(), fromUuid, toUuid, amount, EconomyAuditLog.Origin.API);
+    }
+    
+    public boolean transfer(UUID fromUuid, UUID toUuid, long amount, EconomyAuditLog.Origin origin) {
+        return transfer(UUID.randomUUID().toString(), fromUuid, toUuid, amount, origin);
+    }
+    
+    // Retrying with the same transfer id never moves the money twice
+    public boolean transfer(String transferId, UUID fromUuid, UUID toUuid, long amount) {
+        return transfer(transferId, fromUuid, toUuid, amount, EconomyAuditLog.Origin.API);
+    }
+    
+    public boolean transfer(String transferId, UUID fromUuid, UUID toUuid, long amount, EconomyAuditLog.Origin origin) {
+        Long fromBalance = applyTransfer(transferId, fromUuid, toUuid, amount);
+        boolean success = fromBalance != null;
+        audit(origin, "transfer", fromUuid, toUuid, amount,
+              success && fromBalance != BalanceStore.ABSENT ? fromBalance : null, success);
+        return success;
+    }
+    
+    // The sender's balance after the transfer, ABSENT if an earlier attempt applied it, or null if
+    // it was refused or failed
+    private Long applyTransfer(String transferId, UUID fromUuid, UUID toUuid, long amount) {
+        if (amount <= 0) {
+            return null;
+        }
+        if (redisLedger != null) {
+            return transferInLedger(transferId, fromUuid, toUuid, amount);
         }
         
-        return true;
+        // Loads (and creates) both accounts; a no-op for players already in the cache
+        getBalance(fromUuid);
+        getBalance(toUuid);
+        
+        accountLocks.lockBoth(fromUuid, toUuid);
+        try {
+            long fromPending = writeBehind != null ? writeBehind.pendingDelta(fromUuid) : 0L;
+            TransferLedger.TransferResult result = databaseManager.getTransferLedger()
+                    .transfer(transferId, fromUuid, toUuid, amount, databaseManager.getMinimumBalance() - fromPending);
+            if (!result.isSuccess()) {
+                return null;
+            }
+            
+            long fromBalance = BalanceStore.ABSENT;
+            if (result.hasBalances()) {
+                VersionedBalance from = withPending(fromUuid, new VersionedBalance(result.getFromBalance(), result.getFromSeq()));
+                publishBalance(fromUuid, from, "remove");
+                publishBalance(toUuid, withPending(toUuid, new VersionedBalance(result.getToBalance(), result.getToSeq())), "add");
+                fromBalance = from.getBalance();
+            } else {
+                // Applied by an earlier attempt; reload rather than guess the balances
+                balanceCache.remove(fromUuid);
+                balanceCache.remove(toUuid);
+            }
+            
+            logger.info("Transferred {} from {} to {}", Money.format(amount), fromUuid, toUuid);
+            return fromBalance;
+        } finally {
+            accountLocks.unlockBoth(fromUuid, toUuid);
+        }
     }
     
-    @SuppressWarnings("deprecation")
+    // balance is the one the operation itself left, null when it is not known or nothing was
+    // applied; read back from the cache it could already include a later operation
+    private void audit(EconomyAuditLog.Origin origin, String operation, UUID playerUuid, UUID counterparty,
+                       long amount, Long balance, boolean success) {
+        if (auditLog == null) {
+            return;
+        }
+        auditLog.record(origin, operation, playerUuid, counterparty, amount, balance, success);
+    }
+    
+    private long getStartingBalance() {
+        return plugin.getConfigManager().getSettings().economy().startingBalance();
+    }
+    
+    private long getMaxBalance() {
+        return plugin.getConfigManager().getSettings().economy().maxBalance();
+    }
+    
+    private long getMinBalance() {
+        return plugin.getConfigManager().getSettings().economy().minBalance();
+    }
+    
+    private boolean isValidBalance(long balance) {
+        return plugin.getConfigManager().getSettings().economy().isValidBalance(balance);
+    }
+    
+    // Memory only, so it is safe on the server thread; null if the name is not indexed yet,
+    // in which case resolvePlayerAsync can look further
     public OfflinePlayer getPlayer(String identifier) {
         if (identifier == null || identifier.trim().isEmpty()) {
             return null;
@@ -197,11 +895,19 @@ public class EconomyManager implements Listener {
             UUID uuid = UUID.fromString(identifier);
             return Bukkit.getOfflinePlayer(uuid);
         } catch (IllegalArgumentException e) {
-            // Use the newer API method to avoid deprecation warning
-            return Bukkit.getOfflinePlayer(identifier);
+            UUID uuid = playerNames.getUuid(identifier);
+            return uuid != null ? Bukkit.getOfflinePlayer(uuid) : null;
         }
     }
     
+    public CompletableFuture<UUID> resolvePlayerAsync(String name) {
+        return playerNames.resolveAsync(name);
+    }
+    
+    public PlayerNameIndex getPlayerNames() {
+        return playerNames;
+    }
+    
     public void clearCache(UUID playerUuid) {
         balanceCache.remove(playerUuid);
     }
@@ -210,40 +916,120 @@ public class EconomyManager implements Listener {
         balanceCache.clear();
     }
     
+    // Evict once the player's changes are safely in Mongo; with write-behind that means after the next flush
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerUuid = event.getPlayer().getUniqueId();
+        
+        if (writeBehind == null || writeBehind.pendingDelta(playerUuid) == 0) {
+            balanceCache.remove(playerUuid);
+            return;
+        }
+        
+        writeBehind.flushAsync().thenRun(() -> {
+            if (writeBehind.pendingDelta(playerUuid) == 0 && Bukkit.getPlayer(playerUuid) == null) {
+                balanceCache.remove(playerUuid);
+            }
+        });
+    }
+    
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         UUID playerUuid = player.getUniqueId();
+        playerNames.record(playerUuid, player.getName());
+        
+        // Normally loaded at pre-login; if that timed out, finish loading off the main thread
+        if (!balanceCache.containsKey(playerUuid)) {
+            getBalanceAsync(playerUuid);
+            logger.debug("Balance for {} was not preloaded, loading in the background", player.getName());
+        }
+    }
+    
+    // Redis and Mongo are queried in parallel; a Redis hit completes without waiting for Mongo
+    public CompletableFuture<Void> preloadBalanceAsync(UUID playerUuid) {
+        if (balanceCache.containsKey(playerUuid)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (redisLedger != null) {
+            return getBalanceAsync(playerUuid).thenAccept(balance -> { });
+        }
         
-        getBalance(playerUuid);
+        return balancePreloads.loadAsync(playerUuid, () -> raceBalanceSources(playerUuid));
+    }
+    
+    private CompletableFuture<Void> raceBalanceSources(UUID playerUuid) {
+        CompletableFuture<VersionedBalance> cached = redisManager.getCachedBalanceAsync(playerUuid);
+        CompletableFuture<VersionedBalance> stored = databaseManager.loadPlayerBalanceAsync(playerUuid);
         
-        logger.debug("Loaded balance for player: {}", player.getName());
+        return cached.thenCompose(redisBalance -> {
+            if (redisBalance != null) {
+                cacheLoadedBalance(playerUuid, redisBalance);
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            return stored.thenAccept(storedBalance -> {
+                if (storedBalance == null) {
+                    return;
+                }
+                VersionedBalance balance = withPending(playerUuid, storedBalance);
+                if (cacheLoadedBalance(playerUuid, balance)) {
+                    redisManager.setCachedBalance(playerUuid, balance, plugin.getConfigManager().getSettings().cache().balanceTtlSeconds());
+                }
+            });
+        });
     }
     
-    public CompletableFuture<Double> getBalanceAsync(UUID playerUuid) {
+    // A balance that changed while the load was in flight is newer than what was loaded
+    private boolean cacheLoadedBalance(UUID playerUuid, VersionedBalance balance) {
+        accountLocks.lock(playerUuid);
+        try {
+            if (balanceCache.containsKey(playerUuid)) {
+                return false;
+            }
+            cacheBalance(playerUuid, balance);
+            return true;
+        } finally {
+            accountLocks.unlock(playerUuid);
+        }
+    }
+    
+    public CompletableFuture<Long> getBalanceAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> getBalance(playerUuid));
     }
     
-    public CompletableFuture<Boolean> setBalanceAsync(UUID playerUuid, double balance) {
+    public CompletableFuture<Boolean> setBalanceAsync(UUID playerUuid, long balance) {
         return CompletableFuture.supplyAsync(() -> setBalance(playerUuid, balance));
     }
     
-    public CompletableFuture<Boolean> addBalanceAsync(UUID playerUuid, double amount) {
+    public CompletableFuture<Boolean> addBalanceAsync(UUID playerUuid, long amount) {
         return CompletableFuture.supplyAsync(() -> addBalance(playerUuid, amount));
     }
     
-    public CompletableFuture<Boolean> removeBalanceAsync(UUID playerUuid, double amount) {
+    public CompletableFuture<Map<UUID, Long>> addBalancesAsync(Map<UUID, Long> amounts) {
+        return CompletableFuture.supplyAsync(() -> addBalances(amounts));
+    }
+    
+    public CompletableFuture<Boolean> removeBalanceAsync(UUID playerUuid, long amount) {
         return CompletableFuture.supplyAsync(() -> removeBalance(playerUuid, amount));
     }
     
-    public CompletableFuture<Boolean> transferAsync(UUID fromUuid, UUID toUuid, double amount) {
+    public CompletableFuture<Boolean> transferAsync(UUID fromUuid, UUID toUuid, long amount) {
         return CompletableFuture.supplyAsync(() -> transfer(fromUuid, toUuid, amount));
     }
     
-    public CompletableFuture<Boolean> hasBalanceAsync(UUID playerUuid, double amount) {
+    public CompletableFuture<Boolean> hasBalanceAsync(UUID playerUuid, long amount) {
         return CompletableFuture.supplyAsync(() -> hasBalance(playerUuid, amount));
     }
     
+    public BalanceCache getBalanceCache() {
+        return balanceCache;
+    }
+    
+    public BalanceLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+    
     public AdvancedMinecraftPlugin getPlugin() {
         return plugin;
     }
@@ -0,0 +1,199 @@
+package com.minecraftplugin.economy;
+
+import com.minecraftplugin.database.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Applies balance changes in memory immediately and persists the net delta per player
+// to Mongo in one bulkWrite per flush. Every change is journaled locally first, so a
+// crash of the server loses nothing that was acknowledged; an OS crash or power loss
+// loses at most the last journal sync interval.
+public class EconomyWriteBehind {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EconomyWriteBehind.class);
+    
+    private final DatabaseManager databaseManager;
+    private final EconomyJournal journal;
+    private final long flushIntervalMs;
+    private final int maxPendingChanges;
+    private final long syncIntervalMs;
+    
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Deque<Batch> unflushed = new ArrayDeque<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final ScheduledExecutorService syncer;
+    
+    private volatile BalanceStore pending = new BalanceStore();
+    
+    public EconomyWriteBehind(DatabaseManager databaseManager, Path journalDirectory, long flushIntervalMs, int maxPendingChanges,
+                              long syncIntervalMs) {
+        this.databaseManager = databaseManager;
+        this.journal = new EconomyJournal(journalDirectory);
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPendingChanges = maxPendingChanges;
+        this.syncIntervalMs = Math.max(1L, syncIntervalMs);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "economy-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Separate from the flusher so a slow bulkWrite never stretches the sync interval
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "economy-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void start() throws IOException {
+        List<EconomyJournal.RecoveredSegment> recovered = journal.recover();
+        journal.open();
+        
+        for (EconomyJournal.RecoveredSegment segment : recovered) {
+            unflushed.addLast(new Batch(segment.getSegment(), segment.getDeltas()));
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Replaying {} economy journal segment(s) from the previous run", recovered.size());
+            flushUnflushed();
+        }
+        
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        syncer.scheduleWithFixedDelay(this::syncJournal, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private void syncJournal() {
+        try {
+            journal.sync();
+        } catch (Exception e) {
+            logger.error("Error syncing economy journal", e);
+        }
+    }
+    
+    public void record(UUID playerUuid, long delta) throws IOException {
+        swapLock.readLock().lock();
+        try {
+            journal.append(playerUuid, delta);
+            pending.addAndGet(playerUuid, delta, 0L);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        
+        if (pendingChanges.incrementAndGet() >= maxPendingChanges && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+    
+    // Net change for the player that Mongo has not seen yet, including batches that are mid-flush
+    public long pendingDelta(UUID playerUuid) {
+        long delta = pending.get(playerUuid, 0L);
+        synchronized (unflushed) {
+            for (Batch batch : unflushed) {
+                delta += batch.deltas.get(playerUuid, 0L);
+            }
+        }
+        return delta;
+    }
+    
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            
+            if (pendingChanges.get() > 0) {
+                swapLock.writeLock().lock();
+                try {
+                    Batch batch = new Batch(journal.rotate(), pending);
+                    pending = new BalanceStore();
+                    pendingChanges.set(0);
+                    synchronized (unflushed) {
+                        unflushed.addLast(batch);
+                    }
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+            }
+            
+            flushUnflushed();
+        } catch (Exception e) {
+            logger.error("Error flushing economy write-behind batch", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    // Completes once everything recorded before the call has been offered to Mongo
+    public CompletableFuture<Void> flushAsync() {
+        return CompletableFuture.runAsync(this::flush, flusher);
+    }
+    
+    // Batches go out strictly in order; a failed batch is retried with the same id on the next flush
+    private void flushUnflushed() {
+        while (true) {
+            Batch batch;
+            synchronized (unflushed) {
+                batch = unflushed.peekFirst();
+            }
+            if (batch == null) {
+                return;
+            }
+            
+            if (!batch.deltas.isEmpty() && !databaseManager.bulkUpdateBalances(journal.getJournalId(), batch.segment.getBatchId(), batch.deltas)) {
+                logger.warn("Economy batch {} could not be written, will retry", batch.segment.getBatchId());
+                return;
+            }
+            
+            synchronized (unflushed) {
+                unflushed.pollFirst();
+            }
+            journal.commit(batch.segment);
+        }
+    }
+    
+    public void shutdown() {
+        flusher.shutdown();
+        syncer.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            syncer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        flush();
+        
+        synchronized (unflushed) {
+            if (!unflushed.isEmpty()) {
+                logger.warn("{} economy batch(es) left in the journal, they will be replayed on next start", unflushed.size());
+            }
+        }
+        journal.close();
+    }
+    
+    private static class Batch {
+        private final EconomyJournal.Segment segment;
+        private final BalanceStore deltas;
+        
+        Batch(EconomyJournal.Segment segment, BalanceStore deltas) {
+            this.segment = segment;
+            this.deltas = deltas;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.minecraftplugin.economy;
+
+import java.math.BigDecimal;
+
+// Balances are carried as a long count of minor units (cents) everywhere: in memory,
+// in Mongo (int64), in Redis and over gRPC. These helpers convert at the edges.
+public final class Money {
+    
+    public static final int SCALE = 2;
+    public static final long UNIT = 100L;
+    
+    private Money() {
+    }
+    
+    public static long ofMajor(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new ArithmeticException("Not a finite amount: " + amount);
+        }
+        double scaled = amount * UNIT;
+        if (scaled >= Long.MAX_VALUE || scaled <= Long.MIN_VALUE) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return Math.round(scaled);
+    }
+    
+    public static double toMajor(long minorUnits) {
+        return (double) minorUnits / UNIT;
+    }
+    
+    public static long parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new NumberFormatException("Empty amount");
+        }
+        
+        try {
+            return new BigDecimal(text.trim()).movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount has more than " + SCALE + " decimals or is out of range: " + text);
+        }
+    }
+    
+    public static String format(long minorUnits) {
+        StringBuilder builder = new StringBuilder(24);
+        if (minorUnits < 0) {
+            builder.append('-');
+        }
+        
+        long major = Math.abs(minorUnits / UNIT);
+        long minor = Math.abs(minorUnits % UNIT);
+        builder.append(major).append('.');
+        if (minor < 10) {
+            builder.append('0');
+        }
+        return builder.append(minor).toString();
+    }
+    
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.minecraftplugin.economy;
+
+import com.minecraftplugin.database.DatabaseManager;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Name -> UUID for every player who has joined, kept in player_names and mirrored here so command
+// lookups and tab completion never leave memory. Names are keyed in lower case, like Minecraft
+// treats them; the sorted map serves prefix completion. Names missing here are resolved
+// asynchronously, never on the server thread.
+public class PlayerNameIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PlayerNameIndex.class);
+    
+    private final DatabaseManager databaseManager;
+    private final ConcurrentHashMap<UUID, String> names = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, UUID> uuids = new ConcurrentSkipListMap<>();
+    
+    public PlayerNameIndex(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+    
+    public CompletableFuture<Void> loadAsync() {
+        return CompletableFuture.runAsync(() -> {
+            databaseManager.forEachPlayerName(this::putIfAbsent);
+            logger.info("Loaded {} player names", names.size());
+        });
+    }
+    
+    // Called on join; only a new or changed name is written to Mongo
+    public void record(UUID playerUuid, String name) {
+        if (name == null || name.equals(names.get(playerUuid))) {
+            return;
+        }
+        
+        put(playerUuid, name);
+        databaseManager.savePlayerNameAsync(playerUuid, name);
+    }
+    
+    public UUID getUuid(String name) {
+        return name != null ? uuids.get(name.toLowerCase(Locale.ROOT)) : null;
+    }
+    
+    public String getName(UUID playerUuid) {
+        return names.get(playerUuid);
+    }
+    
+    public List<String> complete(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<String, UUID> entry : uuids.tailMap(key).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(key)) {
+                break;
+            }
+            String name = names.get(entry.getValue());
+            if (name != null) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+    
+    // Memory, then Mongo, then the server's own player data. The last step may contact Mojang,
+    // which is why this never runs on the server thread.
+    public CompletableFuture<UUID> resolveAsync(String name) {
+        UUID known = getUuid(name);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        
+        return databaseManager.findPlayerUuidByNameAsync(name).thenApply(playerUuid -> {
+            if (playerUuid != null) {
+                putIfAbsent(playerUuid, name);
+                return playerUuid;
+            }
+            
+            @SuppressWarnings("deprecation")
+            OfflinePlayer player = Bukkit.getOfflinePlayer(name);
+            if (player == null || !player.hasPlayedBefore()) {
+                return null;
+            }
+            record(player.getUniqueId(), player.getName() != null ? player.getName() : name);
+            return player.getUniqueId();
+        });
+    }
+    
+    private synchronized void put(UUID playerUuid, String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        String previous = names.put(playerUuid, name);
+        if (previous != null) {
+            uuids.remove(previous.toLowerCase(Locale.ROOT), playerUuid);
+        }
+        
+        // Someone who renamed away from this name no longer owns it
+        UUID holder = uuids.put(key, playerUuid);
+        if (holder != null && !holder.equals(playerUuid)) {
+            names.computeIfPresent(holder, (uuid, held) -> held.equalsIgnoreCase(name) ? null : held);
+        }
+    }
+    
+    // Loaded names never replace ones recorded since startup
+    private synchronized void putIfAbsent(UUID playerUuid, String name) {
+        if (name == null || names.containsKey(playerUuid) || uuids.containsKey(name.toLowerCase(Locale.ROOT))) {
+            return;
+        }
+        put(playerUuid, name);
+    }
+    
+    public int size() {
+        return names.size();
+    }
+} 
\ No newline at end of file
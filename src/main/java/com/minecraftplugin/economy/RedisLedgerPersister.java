@@ -0,0 +1,123 @@
+package com.minecraftplugin.economy;
+
+import com.minecraftplugin.database.DatabaseManager;
+import com.minecraftplugin.redis.RedisManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// In Redis ledger mode the Lua scripts append every balance change to a Redis stream. Each server
+// runs one of these in a shared consumer group, so every change is persisted to Mongo by exactly
+// one server. A batch is collapsed to the newest version per player and acknowledged only after
+// Mongo accepted it; entries left behind by a stopped server are claimed after CLAIM_IDLE_MS.
+public class RedisLedgerPersister {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RedisLedgerPersister.class);
+    
+    private static final long CLAIM_IDLE_MS = 30000L;
+    
+    private final RedisManager redisManager;
+    private final DatabaseManager databaseManager;
+    private final String consumerName;
+    private final int batchSize;
+    private final long persistIntervalMs;
+    private final ScheduledExecutorService persister;
+    
+    public RedisLedgerPersister(RedisManager redisManager, DatabaseManager databaseManager, String consumerName,
+                                int batchSize, long persistIntervalMs) {
+        this.redisManager = redisManager;
+        this.databaseManager = databaseManager;
+        this.consumerName = consumerName;
+        this.batchSize = Math.max(1, batchSize);
+        this.persistIntervalMs = persistIntervalMs;
+        this.persister = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "economy-redis-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void start() {
+        redisManager.createEconomyChangeGroup();
+        persister.scheduleWithFixedDelay(this::persist, 0L, persistIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // Our own unacknowledged entries first, then abandoned ones, then new ones until the stream is drained
+    private void persist() {
+        try {
+            if (!persistAll(() -> redisManager.readEconomyChanges(consumerName, batchSize, true))) {
+                return;
+            }
+            if (!persistAll(() -> redisManager.claimEconomyChanges(consumerName, CLAIM_IDLE_MS, batchSize))) {
+                return;
+            }
+            persistAll(() -> redisManager.readEconomyChanges(consumerName, batchSize, false));
+        } catch (Exception e) {
+            logger.error("Error persisting Redis ledger changes", e);
+        }
+    }
+    
+    private boolean persistAll(Supplier<List<StreamEntry>> source) {
+        List<StreamEntry> entries = source.get();
+        while (!entries.isEmpty()) {
+            if (!persistBatch(entries)) {
+                return false;
+            }
+            if (entries.size() < batchSize) {
+                return true;
+            }
+            entries = source.get();
+        }
+        return true;
+    }
+    
+    private boolean persistBatch(List<StreamEntry> entries) {
+        BalanceStore balances = new BalanceStore();
+        BalanceStore versions = new BalanceStore();
+        List<StreamEntryID> ids = new ArrayList<>(entries.size());
+        
+        for (StreamEntry entry : entries) {
+            ids.add(entry.getID());
+            
+            Map<String, String> fields = entry.getFields();
+            try {
+                UUID playerUuid = UUID.fromString(fields.get("player_uuid"));
+                long version = Long.parseLong(fields.get("version"));
+                if (version > versions.get(playerUuid, 0L)) {
+                    versions.put(playerUuid, version);
+                    balances.put(playerUuid, Long.parseLong(fields.get("balance")));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Skipping malformed economy change {}: {}", entry.getID(), fields);
+            }
+        }
+        
+        if (!databaseManager.persistRedisBalances(balances, versions)) {
+            // Left pending; the next run reads them again
+            return false;
+        }
+        
+        redisManager.acknowledgeEconomyChanges(ids);
+        return true;
+    }
+    
+    public void shutdown() {
+        persister.shutdown();
+        try {
+            persister.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,323 @@
+package com.minecraftplugin.economy;
+
+import com.minecraftplugin.AdvancedMinecraftPlugin;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import net.milkbowl.vault.economy.EconomyResponse.ResponseType;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.ServicePriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+// Vault economy for other plugins. Shops and the like call this on the server thread, often many
+// times per tick, so reads are served from memory and deposits and withdrawals are applied to the
+// in-memory balance and persisted in the background. A player whose balance is not loaded yet
+// (normally only offline players) reads from the leaderboard and cannot be withdrawn from.
+// Names are resolved through the in-memory name index, never through a Mojang lookup.
+public class VaultEconomyProvider implements Economy {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VaultEconomyProvider.class);
+    
+    private final EconomyManager economyManager;
+    private final AdvancedMinecraftPlugin plugin;
+    
+    public VaultEconomyProvider(EconomyManager economyManager, AdvancedMinecraftPlugin plugin) {
+        this.economyManager = economyManager;
+        this.plugin = plugin;
+    }
+    
+    // Only called when Vault is installed, so this class is never loaded without it
+    public static void register(EconomyManager economyManager, AdvancedMinecraftPlugin plugin) {
+        plugin.getServer().getServicesManager().register(Economy.class, new VaultEconomyProvider(economyManager, plugin),
+                                                         plugin, ServicePriority.Normal);
+        logger.info("Registered Vault economy provider");
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return plugin.isEnabled();
+    }
+    
+    @Override
+    public String getName() {
+        return plugin.getName();
+    }
+    
+    @Override
+    public boolean hasBankSupport() {
+        return false;
+    }
+    
+    @Override
+    public int fractionalDigits() {
+        return Money.SCALE;
+    }
+    
+    @Override
+    public String format(double amount) {
+        return plugin.getConfigManager().getSettings().economy().currencySymbol() + Money.format(Money.ofMajor(amount));
+    }
+    
+    @Override
+    public String currencyNamePlural() {
+        return plugin.getConfigManager().getSettings().economy().currencyNamePlural();
+    }
+    
+    @Override
+    public String currencyNameSingular() {
+        return plugin.getConfigManager().getSettings().economy().currencyNameSingular();
+    }
+    
+    @Override
+    public boolean hasAccount(OfflinePlayer player) {
+        return economyManager.getBalanceIfLoaded(player.getUniqueId()) != null;
+    }
+    
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        Long balance = economyManager.getBalanceIfLoaded(player.getUniqueId());
+        return balance != null ? Money.toMajor(balance) : 0.0;
+    }
+    
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        Long balance = economyManager.getBalanceIfLoaded(player.getUniqueId());
+        return balance != null && balance >= Money.ofMajor(amount);
+    }
+    
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, double amount) {
+        return adjust(player.getUniqueId(), amount, false);
+    }
+    
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, double amount) {
+        return adjust(player.getUniqueId(), amount, true);
+    }
+    
+    private EconomyResponse adjust(UUID playerUuid, double amount, boolean deposit) {
+        if (amount < 0) {
+            return new EconomyResponse(0.0, getBalance(playerUuid), ResponseType.FAILURE,
+                                       deposit ? "Cannot deposit negative funds" : "Cannot withdraw negative funds");
+        }
+        
+        long cents = Money.ofMajor(amount);
+        if (cents == 0) {
+            return new EconomyResponse(0.0, getBalance(playerUuid), ResponseType.SUCCESS, null);
+        }
+        
+        Long newBalance = deposit
+                ? economyManager.creditFromVault(playerUuid, cents)
+                : economyManager.debitFromVault(playerUuid, cents);
+        if (newBalance != null) {
+            return new EconomyResponse(amount, Money.toMajor(newBalance), ResponseType.SUCCESS, null);
+        }
+        return new EconomyResponse(0.0, getBalance(playerUuid), ResponseType.FAILURE,
+                                   deposit ? "Balance limit reached" : "Insufficient funds or balance not loaded yet");
+    }
+    
+    private double getBalance(UUID playerUuid) {
+        Long balance = economyManager.getBalanceIfLoaded(playerUuid);
+        return balance != null ? Money.toMajor(balance) : 0.0;
+    }
+    
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player) {
+        // Accounts are created on first load; this starts that load without waiting for it
+        economyManager.getBalanceAsync(player.getUniqueId());
+        return true;
+    }
+    
+    // Worlds share one economy
+    
+    @Override
+    public boolean hasAccount(OfflinePlayer player, String worldName) {
+        return hasAccount(player);
+    }
+    
+    @Override
+    public double getBalance(OfflinePlayer player, String world) {
+        return getBalance(player);
+    }
+    
+    @Override
+    public boolean has(OfflinePlayer player, String worldName, double amount) {
+        return has(player, amount);
+    }
+    
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, String worldName, double amount) {
+        return withdrawPlayer(player, amount);
+    }
+    
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, String worldName, double amount) {
+        return depositPlayer(player, amount);
+    }
+    
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player, String worldName) {
+        return createPlayerAccount(player);
+    }
+    
+    // Deprecated name-based methods
+    
+    private OfflinePlayer lookup(String playerName) {
+        return economyManager.getPlayer(playerName);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean hasAccount(String playerName) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null && hasAccount(player);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean hasAccount(String playerName, String worldName) {
+        return hasAccount(playerName);
+    }
+    
+    @Deprecated
+    @Override
+    public double getBalance(String playerName) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null ? getBalance(player) : 0.0;
+    }
+    
+    @Deprecated
+    @Override
+    public double getBalance(String playerName, String world) {
+        return getBalance(playerName);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean has(String playerName, double amount) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null && has(player, amount);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean has(String playerName, String worldName, double amount) {
+        return has(playerName, amount);
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, double amount) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null ? withdrawPlayer(player, amount) : unknownPlayer(playerName);
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, String worldName, double amount) {
+        return withdrawPlayer(playerName, amount);
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse depositPlayer(String playerName, double amount) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null ? depositPlayer(player, amount) : unknownPlayer(playerName);
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse depositPlayer(String playerName, String worldName, double amount) {
+        return depositPlayer(playerName, amount);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean createPlayerAccount(String playerName) {
+        OfflinePlayer player = lookup(playerName);
+        return player != null && createPlayerAccount(player);
+    }
+    
+    @Deprecated
+    @Override
+    public boolean createPlayerAccount(String playerName, String worldName) {
+        return createPlayerAccount(playerName);
+    }
+    
+    private static EconomyResponse unknownPlayer(String playerName) {
+        return new EconomyResponse(0.0, 0.0, ResponseType.FAILURE, "Unknown player: " + playerName);
+    }
+    
+    // Banks are not supported
+    
+    @Deprecated
+    @Override
+    public EconomyResponse createBank(String name, String player) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse createBank(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse deleteBank(String name) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse bankBalance(String name) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse bankHas(String name, double amount) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse bankWithdraw(String name, double amount) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse bankDeposit(String name, double amount) {
+        return noBanks();
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse isBankOwner(String name, String playerName) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse isBankOwner(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+    
+    @Deprecated
+    @Override
+    public EconomyResponse isBankMember(String name, String playerName) {
+        return noBanks();
+    }
+    
+    @Override
+    public EconomyResponse isBankMember(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+    
+    @Override
+    public List<String> getBanks() {
+        return Collections.emptyList();
+    }
+    
+    private static EconomyResponse noBanks() {
+        return new EconomyResponse(0.0, 0.0, ResponseType.NOT_IMPLEMENTED, "Banks are not supported");
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.minecraftplugin.economy;
+
+// A balance together with the per-account version it was written at. Versions come from the
+// account's seq in Mongo, or from the account hash in Redis ledger mode; 0 means unknown.
+public class VersionedBalance {
+    
+    private final long balance;
+    private final long version;
+    
+    public VersionedBalance(long balance, long version) {
+        this.balance = balance;
+        this.version = version;
+    }
+    
+    public static VersionedBalance unversioned(long balance) {
+        return new VersionedBalance(balance, 0L);
+    }
+    
+    public long getBalance() { return balance; }
+    public long getVersion() { return version; }
+    
+    @Override
+    public String toString() {
+        return balance + "@" + version;
+    }
+} 
\ No newline at end of file
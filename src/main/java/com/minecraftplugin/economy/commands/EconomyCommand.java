@@ -1,7 +1,10 @@
 package com.minecraftplugin.economy.commands;
 
 import com.minecraftplugin.AdvancedMinecraftPlugin;
+import com.minecraftplugin.database.EconomyAuditLog;
+import com.minecraftplugin.economy.BalanceLeaderboard;
 import com.minecraftplugin.economy.EconomyManager;
+import com.minecraftplugin.economy.Money;
 import com.minecraftplugin.utils.MessageUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -17,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class EconomyCommand implements CommandExecutor, TabCompleter {
@@ -34,7 +38,7 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!sender.hasPermission("advancedplugin.economy")) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.no_permission");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.no_permission");
             sender.sendMessage(MessageUtils.formatColors(message));
             return true;
         }
@@ -44,6 +48,35 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
             return true;
         }
         
+        // Names not in the index are looked up off the server thread, then the command runs again
+        List<String> unresolved = unresolvedNames(args);
+        if (!unresolved.isEmpty()) {
+            CompletableFuture.allOf(unresolved.stream().map(economyManager::resolvePlayerAsync).toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, error) -> Bukkit.getScheduler().runTask(plugin, () -> dispatch(sender, args)));
+            return true;
+        }
+        
+        dispatch(sender, args);
+        return true;
+    }
+    
+    private List<String> unresolvedNames(String[] args) {
+        List<String> names = new ArrayList<>();
+        String subCommand = args[0].toLowerCase();
+        int last = subCommand.equals("transfer") ? 2 : 1;
+        if (!Arrays.asList("get", "set", "add", "remove", "transfer").contains(subCommand)) {
+            return names;
+        }
+        
+        for (int i = 1; i <= last && i < args.length; i++) {
+            if (economyManager.getPlayer(args[i]) == null) {
+                names.add(args[i]);
+            }
+        }
+        return names;
+    }
+    
+    private void dispatch(CommandSender sender, String[] args) {
         String subCommand = args[0].toLowerCase();
         
             switch (subCommand) {
@@ -62,6 +95,9 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
                 case "transfer":
                     handleTransferCommand(sender, args);
                     break;
+                case "top":
+                    handleTopCommand(sender, args);
+                    break;
                 case "help":
                     sendHelpMessage(sender);
                     break;
@@ -69,18 +105,16 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
                     sendHelpMessage(sender);
                     break;
         }
-        
-        return true;
     }
     
     private void handleGetCommand(CommandSender sender, String[] args) {
         if (args.length < 2) {
             if (sender instanceof Player) {
                 Player player = (Player) sender;
-                double balance = economyManager.getBalance(player.getUniqueId());
-                String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance");
-                String formattedMessage = MessageUtils.formatMessage(message, "currency", currencySymbol, "balance", String.format("%.2f", balance));
+                long balance = economyManager.getBalance(player.getUniqueId());
+                String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                String message = plugin.getConfigManager().getSettings().messages().get("economy.balance");
+                String formattedMessage = MessageUtils.formatMessage(message, "currency", currencySymbol, "balance", Money.format(balance));
                 sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             } else {
                 sender.sendMessage(MessageUtils.formatColors("&cThis command can only be used by players"));
@@ -88,16 +122,16 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         } else {
         OfflinePlayer targetPlayer = economyManager.getPlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
                 String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
                 sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
-        double balance = economyManager.getBalance(targetPlayer.getUniqueId());
-            String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance_other");
-            String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "balance", String.format("%.2f", balance));
+        long balance = economyManager.getBalance(targetPlayer.getUniqueId());
+            String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.balance_other");
+            String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "balance", Money.format(balance));
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
     }
@@ -110,24 +144,24 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = economyManager.getPlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         try {
-            double amount = Double.parseDouble(args[2]);
-            if (economyManager.setBalance(targetPlayer.getUniqueId(), amount)) {
-                String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance_set");
-                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "balance", String.format("%.2f", amount));
+            long amount = Money.parse(args[2]);
+            if (economyManager.setBalance(targetPlayer.getUniqueId(), amount, origin(sender))) {
+                String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                String message = plugin.getConfigManager().getSettings().messages().get("economy.balance_set");
+                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "balance", Money.format(amount));
                 sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             } else {
                 sender.sendMessage(MessageUtils.formatColors("&cFailed to set balance"));
             }
         } catch (NumberFormatException e) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.invalid_amount");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.invalid_amount");
             String formattedMessage = MessageUtils.formatMessage(message, "amount", args[2]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -141,24 +175,24 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = economyManager.getPlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         try {
-            double amount = Double.parseDouble(args[2]);
-            if (economyManager.addBalance(targetPlayer.getUniqueId(), amount)) {
-                String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance_added");
-                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "amount", String.format("%.2f", amount));
+            long amount = Money.parse(args[2]);
+            if (economyManager.addBalance(targetPlayer.getUniqueId(), amount, origin(sender))) {
+                String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                String message = plugin.getConfigManager().getSettings().messages().get("economy.balance_added");
+                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "amount", Money.format(amount));
                 sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             } else {
                 sender.sendMessage(MessageUtils.formatColors("&cFailed to add balance"));
             }
         } catch (NumberFormatException e) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.invalid_amount");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.invalid_amount");
             String formattedMessage = MessageUtils.formatMessage(message, "amount", args[2]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -172,24 +206,24 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = economyManager.getPlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         try {
-            double amount = Double.parseDouble(args[2]);
-            if (economyManager.removeBalance(targetPlayer.getUniqueId(), amount)) {
-                String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                String message = plugin.getConfigManager().getConfig().getString("messages.economy.balance_removed");
-                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "amount", String.format("%.2f", amount));
+            long amount = Money.parse(args[2]);
+            if (economyManager.removeBalance(targetPlayer.getUniqueId(), amount, origin(sender))) {
+                String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                String message = plugin.getConfigManager().getSettings().messages().get("economy.balance_removed");
+                String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "currency", currencySymbol, "amount", Money.format(amount));
                 sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             } else {
                 sender.sendMessage(MessageUtils.formatColors("&cFailed to remove balance"));
             }
         } catch (NumberFormatException e) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.invalid_amount");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.invalid_amount");
             String formattedMessage = MessageUtils.formatMessage(message, "amount", args[2]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -205,35 +239,73 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         OfflinePlayer toPlayer = economyManager.getPlayer(args[2]);
         
         if (fromPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         if (toPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.player_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.player_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[2]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         try {
-            double amount = Double.parseDouble(args[3]);
-            if (economyManager.transfer(fromPlayer.getUniqueId(), toPlayer.getUniqueId(), amount)) {
-                String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                sender.sendMessage(MessageUtils.formatColors(String.format("&aTransferred &e%s%.2f &afrom &e%s &ato &e%s", 
-                    currencySymbol, amount, fromPlayer.getName(), toPlayer.getName())));
+            long amount = Money.parse(args[3]);
+            if (economyManager.transfer(fromPlayer.getUniqueId(), toPlayer.getUniqueId(), amount, origin(sender))) {
+                String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+                sender.sendMessage(MessageUtils.formatColors(String.format("&aTransferred &e%s%s &afrom &e%s &ato &e%s", 
+                    currencySymbol, Money.format(amount), fromPlayer.getName(), toPlayer.getName())));
             } else {
                 sender.sendMessage(MessageUtils.formatColors("&cFailed to transfer money"));
             }
         } catch (NumberFormatException e) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.economy.invalid_amount");
+            String message = plugin.getConfigManager().getSettings().messages().get("economy.invalid_amount");
             String formattedMessage = MessageUtils.formatMessage(message, "amount", args[3]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
     }
     
+    private void handleTopCommand(CommandSender sender, String[] args) {
+        int page = 1;
+        if (args.length >= 2) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[1]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(MessageUtils.formatColors("&cUsage: /money top [page]"));
+                return;
+            }
+        }
+        
+        int pageSize = 10;
+        List<BalanceLeaderboard.Entry> entries = economyManager.getLeaderboard().getTop((page - 1) * pageSize, pageSize);
+        String currencySymbol = plugin.getConfigManager().getSettings().economy().currencySymbol();
+        
+        String header = plugin.getConfigManager().getSettings().messages().get("economy.leaderboard_header");
+        sender.sendMessage(MessageUtils.formatColors(MessageUtils.formatMessage(header, "page", String.valueOf(page))));
+        
+        if (entries.isEmpty()) {
+            sender.sendMessage(MessageUtils.formatColors(plugin.getConfigManager().getSettings().messages().get("economy.leaderboard_empty")));
+            return;
+        }
+        
+        String entryMessage = plugin.getConfigManager().getSettings().messages().get("economy.leaderboard_entry");
+        for (BalanceLeaderboard.Entry entry : entries) {
+            String name = economyManager.getPlayerNames().getName(entry.getPlayerUuid());
+            String formattedMessage = MessageUtils.formatMessage(entryMessage, "rank", String.valueOf(entry.getRank()),
+                    "player", name != null ? name : entry.getPlayerUuid().toString(), "currency", currencySymbol, "balance", Money.format(entry.getBalance()));
+            sender.sendMessage(MessageUtils.formatColors(formattedMessage));
+        }
+    }
+    
+    private static EconomyAuditLog.Origin origin(CommandSender sender) {
+        return EconomyAuditLog.Origin.command(sender instanceof Player
+                ? ((Player) sender).getUniqueId().toString()
+                : sender.getName());
+    }
+    
     private void sendHelpMessage(CommandSender sender) {
         sender.sendMessage(MessageUtils.formatColors("&8&m&l                    &r &bEconomy Commands &8&m&l                    "));
         sender.sendMessage(MessageUtils.formatColors("&7/money get [player] &8- &fCheck balance"));
@@ -241,6 +313,7 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(MessageUtils.formatColors("&7/money add <player> <amount> &8- &fAdd to player balance"));
         sender.sendMessage(MessageUtils.formatColors("&7/money remove <player> <amount> &8- &fRemove from player balance"));
         sender.sendMessage(MessageUtils.formatColors("&7/money transfer <from> <to> <amount> &8- &fTransfer money"));
+        sender.sendMessage(MessageUtils.formatColors("&7/money top [page] &8- &fShow the richest players"));
         sender.sendMessage(MessageUtils.formatColors("&7/money help &8- &fShow this help message"));
         sender.sendMessage(MessageUtils.formatColors("&8&m&l                                                        "));
     }
@@ -252,29 +325,27 @@ public class EconomyCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length == 1) {
-            return Arrays.asList("get", "set", "add", "remove", "transfer", "help").stream()
+            return Arrays.asList("get", "set", "add", "remove", "transfer", "top", "help").stream()
                     .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         } else if (args.length == 2) {
             if (args[0].equalsIgnoreCase("get")) {
-                return getOnlinePlayerNames(args[1]);
+                return getPlayerNames(args[1]);
             } else if (args[0].equalsIgnoreCase("set") || args[0].equalsIgnoreCase("add") || 
                        args[0].equalsIgnoreCase("remove") || args[0].equalsIgnoreCase("transfer")) {
-                return getOnlinePlayerNames(args[1]);
+                return getPlayerNames(args[1]);
             }
         } else if (args.length == 3) {
             if (args[0].equalsIgnoreCase("transfer")) {
-                return getOnlinePlayerNames(args[2]);
+                return getPlayerNames(args[2]);
             }
         }
         
         return new ArrayList<>();
     }
     
-    private List<String> getOnlinePlayerNames(String partial) {
-        return Bukkit.getOnlinePlayers().stream()
-                .map(Player::getName)
-                .filter(name -> name.toLowerCase().startsWith(partial.toLowerCase()))
-                .collect(Collectors.toList());
+    // Every player who has joined, not just those online
+    private List<String> getPlayerNames(String partial) {
+        return economyManager.getPlayerNames().complete(partial, 50);
     }
 } 
\ No newline at end of file
@@ -1,18 +1,18 @@
 package com.minecraftplugin.enderchest;
 
 import com.minecraftplugin.AdvancedMinecraftPlugin;
+import com.minecraftplugin.codec.ItemStackCodec;
+import com.minecraftplugin.codec.PayloadCompressor;
 import com.minecraftplugin.database.DatabaseManager;
 import com.minecraftplugin.redis.RedisManager;
 import com.minecraftplugin.utils.MessageUtils;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.minecraftplugin.utils.SingleFlight;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +23,8 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EnderChestManager implements Listener {
     
@@ -31,13 +33,20 @@ public class EnderChestManager implements Listener {
     private final AdvancedMinecraftPlugin plugin;
     private final DatabaseManager databaseManager;
     private final RedisManager redisManager;
-    private final Gson gson;
+    private final PayloadCompressor compressor;
+    
+    // Names of saved ender chests for players on this server, filled at login
+    private final Map<UUID, List<String>> savedEnderChests = new ConcurrentHashMap<>();
+    
+    // Concurrent lookups of the same data share one Redis/Mongo round trip
+    private final SingleFlight<String, String> enderChestLoads = new SingleFlight<>();
+    private final SingleFlight<UUID, List<String>> savedEnderChestsLoads = new SingleFlight<>();
     
     public EnderChestManager(DatabaseManager databaseManager, RedisManager redisManager, AdvancedMinecraftPlugin plugin) {
         this.databaseManager = databaseManager;
         this.redisManager = redisManager;
         this.plugin = plugin;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.compressor = plugin.getPayloadCompressor();
         
         setupRedisSubscriptions();
     }
@@ -49,12 +58,17 @@ public class EnderChestManager implements Listener {
                 String operation = message.getOperation();
                 String enderChestName = message.getData();
                 
+                // The list may have changed elsewhere; reload it on next use
+                if ("save".equals(operation) || "delete".equals(operation)) {
+                    savedEnderChests.remove(playerUuid);
+                }
+                
                 logger.debug("Received ender chest update: {} {} {}", playerUuid, operation, enderChestName);
                 
                 // Notify online players about ender chest changes
                 Player player = Bukkit.getPlayer(playerUuid);
                 if (player != null && player.isOnline()) {
-                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getConfig().getString("messages.ender_chest.updated"), 
+                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getSettings().messages().get("ender_chest.updated"), 
                                                                   "operation", operation, "name", enderChestName);
                     player.sendMessage(messageText);
                 }
@@ -83,9 +97,15 @@ public class EnderChestManager implements Listener {
                 return false;
             }
             
-            redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, 3600);
+            redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
             redisManager.publishEnderChestUpdate(playerUuid, enderChestName, "save");
             
+            savedEnderChests.computeIfPresent(playerUuid, (uuid, names) -> {
+                List<String> updated = new ArrayList<>(names);
+                updated.add(enderChestName);
+                return updated;
+            });
+            
             logger.info("Saved ender chest '{}' for player {}", enderChestName, playerUuid);
             return true;
             
@@ -102,8 +122,7 @@ public class EnderChestManager implements Listener {
                 return false;
             }
             
-            String cachedData = redisManager.getCachedEnderChest(playerUuid, enderChestName);
-            String enderChestData = cachedData != null ? cachedData : databaseManager.loadEnderChest(playerUuid, enderChestName);
+            String enderChestData = fetchEnderChestData(playerUuid, enderChestName);
             
             if (enderChestData == null) {
                 return false;
@@ -112,10 +131,6 @@ public class EnderChestManager implements Listener {
             Inventory enderChest = player.getEnderChest();
             deserializeInventory(enderChest, enderChestData);
             
-            if (cachedData == null) {
-                redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, 3600);
-            }
-            
             redisManager.publishEnderChestUpdate(playerUuid, enderChestName, "load");
             
             logger.info("Loaded ender chest '{}' for player {}", enderChestName, playerUuid);
@@ -147,7 +162,7 @@ public class EnderChestManager implements Listener {
                 return false;
             }
             
-            redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, 3600);
+            redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
             redisManager.publishEnderChestUpdate(playerUuid, enderChestName, "update");
             
             logger.info("Updated ender chest '{}' for player {}", enderChestName, playerUuid);
@@ -243,8 +258,13 @@ public class EnderChestManager implements Listener {
     }
     
     public List<String> getSavedEnderChests(UUID playerUuid) {
+        List<String> cached = savedEnderChests.get(playerUuid);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+        
         try {
-            return databaseManager.getSavedEnderChests(playerUuid);
+            return new ArrayList<>(loadSavedEnderChests(playerUuid));
         } catch (Exception e) {
             logger.error("Error getting saved ender chests for {}", playerUuid, e);
             return List.of();
@@ -259,6 +279,12 @@ public class EnderChestManager implements Listener {
             
             redisManager.publishEnderChestUpdate(playerUuid, enderChestName, "delete");
             
+            savedEnderChests.computeIfPresent(playerUuid, (uuid, names) -> {
+                List<String> updated = new ArrayList<>(names);
+                updated.removeIf(enderChestName::equals);
+                return updated;
+            });
+            
             logger.info("Deleted ender chest '{}' for player {}", enderChestName, playerUuid);
             return true;
             
@@ -287,6 +313,46 @@ public class EnderChestManager implements Listener {
         }
     }
     
+    // Redis first, then Mongo, repopulating Redis on a miss
+    private String fetchEnderChestData(UUID playerUuid, String enderChestName) {
+        return enderChestLoads.load(playerUuid + ":" + enderChestName, () -> {
+            String cachedData = redisManager.getCachedEnderChest(playerUuid, enderChestName);
+            if (cachedData != null) {
+                return cachedData;
+            }
+            
+            String enderChestData = databaseManager.loadEnderChest(playerUuid, enderChestName);
+            if (enderChestData != null && ItemStackCodec.isLegacy(enderChestData)) {
+                enderChestData = migrateEnderChestData(playerUuid, enderChestName, enderChestData);
+            }
+            if (enderChestData != null) {
+                redisManager.setCachedEnderChest(playerUuid, enderChestName, enderChestData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
+            }
+            return enderChestData;
+        });
+    }
+    
+    // The returned list is shared with every caller that joined the load, so callers copy it
+    private List<String> loadSavedEnderChests(UUID playerUuid) {
+        return savedEnderChestsLoads.load(playerUuid, () -> databaseManager.getSavedEnderChests(playerUuid));
+    }
+    
+    public void preloadSavedEnderChests(UUID playerUuid) {
+        try {
+            savedEnderChests.put(playerUuid, new ArrayList<>(loadSavedEnderChests(playerUuid)));
+        } catch (Exception e) {
+            logger.error("Error preloading saved ender chests for {}", playerUuid, e);
+        }
+    }
+    
+    // Drops what a login preload cached once it turns out the player is not online, e.g. the login
+    // was refused or the preload finished after quit
+    public void discardPreload(UUID playerUuid) {
+        if (Bukkit.getPlayer(playerUuid) == null) {
+            savedEnderChests.remove(playerUuid);
+        }
+    }
+    
     private boolean isValidEnderChestName(String name) {
         if (name == null || name.trim().isEmpty()) {
             return false;
@@ -305,10 +371,24 @@ public class EnderChestManager implements Listener {
         return true;
     }
     
+    // Saved before the binary format; rewritten the first time it is read. The JSON is kept if
+    // it cannot be converted, since it still loads.
+    private String migrateEnderChestData(UUID playerUuid, String enderChestName, String legacyData) {
+        try {
+            String migrated = ItemStackCodec.encode(ItemStackCodec.decode(legacyData), compressor);
+            if (databaseManager.replaceEnderChestData(playerUuid, enderChestName, legacyData, migrated)) {
+                logger.info("Migrated ender chest '{}' for {} to the binary format", enderChestName, playerUuid);
+            }
+            return migrated;
+        } catch (Exception e) {
+            logger.warn("Could not migrate ender chest '{}' for {}", enderChestName, playerUuid, e);
+            return legacyData;
+        }
+    }
+    
     private String serializeInventory(Inventory inventory) {
         try {
-            ItemStack[] contents = inventory.getContents();
-            return gson.toJson(contents);
+            return ItemStackCodec.encode(inventory.getContents(), compressor);
         } catch (Exception e) {
             logger.error("Error serializing inventory", e);
             return null;
@@ -317,8 +397,7 @@ public class EnderChestManager implements Listener {
     
     private void deserializeInventory(Inventory inventory, String data) {
         try {
-            ItemStack[] contents = gson.fromJson(data, ItemStack[].class);
-            inventory.setContents(contents);
+            inventory.setContents(ItemStackCodec.decode(data, compressor));
         } catch (Exception e) {
             logger.error("Error deserializing inventory", e);
         }
@@ -329,12 +408,14 @@ public class EnderChestManager implements Listener {
         Player player = event.getPlayer();
         UUID playerUuid = player.getUniqueId();
         
-        if (plugin.getConfigManager().getConfig().getBoolean("plugin.ender_chest.auto_save_on_quit", true)) {
+        if (plugin.getConfigManager().getSettings().autoSave().enderChestOnQuit()) {
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
             String autoSaveName = "auto_" + timestamp;
             
             saveEnderChest(playerUuid, autoSaveName);
         }
+        
+        savedEnderChests.remove(playerUuid);
     }
     
     // Async methods
@@ -362,6 +443,10 @@ public class EnderChestManager implements Listener {
         return CompletableFuture.supplyAsync(() -> restoreEnderChest(playerUuid, backupName));
     }
     
+    public CompletableFuture<Void> preloadSavedEnderChestsAsync(UUID playerUuid) {
+        return CompletableFuture.runAsync(() -> preloadSavedEnderChests(playerUuid));
+    }
+    
     public CompletableFuture<List<String>> getSavedEnderChestsAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> getSavedEnderChests(playerUuid));
     }
@@ -35,7 +35,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!sender.hasPermission("advancedplugin.enderchest")) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.no_permission");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.no_permission");
             sender.sendMessage(MessageUtils.formatColors(message));
             return true;
         }
@@ -98,7 +98,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -113,11 +113,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String enderChestName = args.length > 2 ? args[2] : "default";
         
         if (enderChestManager.saveEnderChest(targetPlayer.getUniqueId(), enderChestName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.saved");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.saved");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -131,7 +131,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -146,11 +146,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String enderChestName = args.length > 2 ? args[2] : "default";
         
         if (enderChestManager.loadEnderChest(targetPlayer.getUniqueId(), enderChestName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.loaded");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.loaded");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -165,7 +165,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -180,11 +180,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String enderChestName = args[2];
         
         if (enderChestManager.updateEnderChest(targetPlayer.getUniqueId(), enderChestName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.updated");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.updated");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", enderChestName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -198,7 +198,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -211,11 +211,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         }
         
         if (enderChestManager.clearEnderChest(targetPlayer.getUniqueId())) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.cleared");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.cleared");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -228,7 +228,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -243,11 +243,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String backupName = args[2];
         
         if (enderChestManager.backupEnderChest(targetPlayer.getUniqueId(), backupName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.backed_up");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.backed_up");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -260,7 +260,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -275,11 +275,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String backupName = args[2];
         
         if (enderChestManager.restoreEnderChest(targetPlayer.getUniqueId(), backupName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.restored");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.restored");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.backup_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.backup_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -293,7 +293,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -309,7 +309,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(MessageUtils.formatColors("&7Created: &f" + info.get("created")));
             sender.sendMessage(MessageUtils.formatColors("&8&m&l                                                        "));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -324,7 +324,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -333,11 +333,11 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         String enderChestName = args[2];
         
         if (enderChestManager.deleteEnderChest(targetPlayer.getUniqueId(), enderChestName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.deleted");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.deleted");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -350,18 +350,18 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         if (enderChestManager.deleteAllEnderChests(targetPlayer.getUniqueId())) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.all_deleted");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.all_deleted");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -375,7 +375,7 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -384,15 +384,15 @@ public class EnderChestCommand implements CommandExecutor, TabCompleter {
         List<String> enderChests = enderChestManager.getSavedEnderChests(targetPlayer.getUniqueId());
         
         if (enderChests.isEmpty()) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.no_saved_ender_chests");
+            String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.no_saved_ender_chests");
             sender.sendMessage(MessageUtils.formatColors(message));
         } else {
-        String message = plugin.getConfigManager().getConfig().getString("messages.ender_chest.list_header");
+        String message = plugin.getConfigManager().getSettings().messages().get("ender_chest.list_header");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         
         for (String enderChestName : enderChests) {
-            String listItem = plugin.getConfigManager().getConfig().getString("messages.ender_chest.list_item");
+            String listItem = plugin.getConfigManager().getSettings().messages().get("ender_chest.list_item");
                 String formattedListItem = MessageUtils.formatMessage(listItem, "name", enderChestName, "date", "");
                 sender.sendMessage(MessageUtils.formatColors(formattedListItem));
             }
@@ -1,13 +1,22 @@
 package com.minecraftplugin.grpc;
 
 import com.minecraftplugin.config.ConfigManager;
+import com.minecraftplugin.config.PluginSettings;
+import com.minecraftplugin.database.BalanceHistory;
 import com.minecraftplugin.database.DatabaseManager;
+import com.minecraftplugin.database.EconomyAuditLog;
+import com.minecraftplugin.economy.BalanceLeaderboard;
+import com.minecraftplugin.economy.EconomyManager;
+import com.minecraftplugin.economy.Money;
+import com.minecraftplugin.inventory.InventoryManager;
 import io.grpc.*;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 
@@ -15,13 +24,25 @@ public class GrpcServer {
     
     private static final Logger logger = LoggerFactory.getLogger(GrpcServer.class);
     
+    // Remote address of the caller, for the audit log
+    private static final Context.Key<String> CALLER = Context.key("caller");
+    
     private final ConfigManager configManager;
     private final DatabaseManager databaseManager;
+    private final EconomyManager economyManager;
+    private final InventoryManager inventoryManager;
+    private final BalanceLeaderboard leaderboard;
     private Server server;
     
-    public GrpcServer(ConfigManager configManager, DatabaseManager databaseManager) {
+    // Inventory writes and deletes go through InventoryManager, which rewrites snapshots stored as
+    // deltas on top of the changed inventory first
+    public GrpcServer(ConfigManager configManager, DatabaseManager databaseManager, EconomyManager economyManager,
+                      InventoryManager inventoryManager) {
         this.configManager = configManager;
         this.databaseManager = databaseManager;
+        this.economyManager = economyManager;
+        this.inventoryManager = inventoryManager;
+        this.leaderboard = economyManager.getLeaderboard();
     }
     
     public void start() {
@@ -30,7 +51,7 @@ public class GrpcServer {
             
             server = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create())
                     .addService(new MinecraftServiceImpl())
-                    .executor(Executors.newFixedThreadPool(10))
+                    .executor(Executors.newFixedThreadPool(configManager.getSettings().pools().grpcThreads()))
                     .intercept(new AuthenticationInterceptor())
                     .build()
                     .start();
@@ -70,21 +91,36 @@ public class GrpcServer {
                 return new ServerCall.Listener<ReqT>() {};
             }
             
-            return next.startCall(call, headers);
+            Object remoteAddress = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+            Context context = Context.current().withValue(CALLER, remoteAddress != null ? remoteAddress.toString() : null);
+            return Contexts.interceptCall(context, call, headers, next);
         }
     }
     
+    private static EconomyAuditLog.Origin origin() {
+        return EconomyAuditLog.Origin.grpc(CALLER.get());
+    }
+    
+    private String balanceRangeError() {
+        PluginSettings.Economy economy = configManager.getSettings().economy();
+        return economy.maxBalance() > 0
+                ? "Balance must be between " + Money.format(economy.minBalance()) + " and " + Money.format(economy.maxBalance())
+                : "Balance must be at least " + Money.format(economy.minBalance());
+    }
+    
+    // Balance reads and writes go through the economy manager, like in-game ones, so they see and
+    // update the same caches, ledger and write-behind journal, and are audited and charted there
     private class MinecraftServiceImpl extends MinecraftServiceGrpc.MinecraftServiceImplBase {
         
         @Override
         public void getBalance(GetBalanceRequest request, StreamObserver<GetBalanceResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                double balance = databaseManager.getPlayerBalance(playerUuid);
+                long balance = economyManager.getBalance(playerUuid);
                 
                 GetBalanceResponse response = GetBalanceResponse.newBuilder()
                         .setSuccess(true)
-                        .setBalance(balance)
+                        .setBalanceCents(balance)
                         .build();
                 
                 responseObserver.onNext(response);
@@ -107,11 +143,23 @@ public class GrpcServer {
         public void setBalance(SetBalanceRequest request, StreamObserver<SetBalanceResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.setPlayerBalance(playerUuid, request.getBalance());
+                if (!configManager.getSettings().economy().isValidBalance(request.getBalanceCents())) {
+                    responseObserver.onNext(SetBalanceResponse.newBuilder()
+                            .setSuccess(false)
+                            .setErrorMessage(balanceRangeError())
+                            .build());
+                    responseObserver.onCompleted();
+                    return;
+                }
                 
-                SetBalanceResponse response = SetBalanceResponse.newBuilder()
-                        .setSuccess(success)
-                        .build();
+                boolean success = economyManager.setBalance(playerUuid, request.getBalanceCents(), origin());
+                
+                SetBalanceResponse.Builder builder = SetBalanceResponse.newBuilder()
+                        .setSuccess(success);
+                if (!success) {
+                    builder.setErrorMessage("Not applied: the change could not be saved");
+                }
+                SetBalanceResponse response = builder.build();
                 
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
@@ -133,17 +181,26 @@ public class GrpcServer {
         public void addBalance(AddBalanceRequest request, StreamObserver<AddBalanceResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.updatePlayerBalance(playerUuid, request.getAmount());
-                
-                double newBalance = 0.0;
-                if (success) {
-                    newBalance = databaseManager.getPlayerBalance(playerUuid);
+                if (request.getAmountCents() <= 0) {
+                    responseObserver.onNext(AddBalanceResponse.newBuilder()
+                            .setSuccess(false)
+                            .setErrorMessage("Amount must be positive")
+                            .build());
+                    responseObserver.onCompleted();
+                    return;
                 }
                 
-                AddBalanceResponse response = AddBalanceResponse.newBuilder()
-                        .setSuccess(success)
-                        .setNewBalance(newBalance)
-                        .build();
+                // One write that returns the balance it produced
+                Long newBalance = economyManager.addBalanceAndGet(playerUuid, request.getAmountCents(), origin());
+                
+                AddBalanceResponse.Builder builder = AddBalanceResponse.newBuilder()
+                        .setSuccess(newBalance != null);
+                if (newBalance != null) {
+                    builder.setNewBalanceCents(newBalance);
+                } else {
+                    builder.setErrorMessage("Not applied: balance limit reached or the change could not be saved");
+                }
+                AddBalanceResponse response = builder.build();
                 
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
@@ -161,24 +218,84 @@ public class GrpcServer {
             }
         }
         
+        // Mass payouts go through the economy manager so caches and other servers see them in one batch
         @Override
-        public void removeBalance(RemoveBalanceRequest request, StreamObserver<RemoveBalanceResponse> responseObserver) {
+        public void addBalances(AddBalancesRequest request, StreamObserver<AddBalancesResponse> responseObserver) {
             try {
-                UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.updatePlayerBalance(playerUuid, -request.getAmount());
+                Map<UUID, Long> amounts = new HashMap<>(request.getCreditsCount() * 2);
+                AddBalancesResponse.Builder response = AddBalancesResponse.newBuilder().setSuccess(true);
+                
+                for (BalanceCredit credit : request.getCreditsList()) {
+                    UUID playerUuid;
+                    try {
+                        playerUuid = UUID.fromString(credit.getPlayerUuid());
+                    } catch (IllegalArgumentException e) {
+                        response.addResults(BalanceCreditResult.newBuilder()
+                                .setPlayerUuid(credit.getPlayerUuid())
+                                .setSuccess(false)
+                                .setErrorMessage("Invalid player UUID")
+                                .build());
+                        continue;
+                    }
+                    // Credits to the same player are summed; a sum that overflows rejects the whole batch
+                    try {
+                        amounts.merge(playerUuid, credit.getAmountCents(), Money::add);
+                    } catch (ArithmeticException e) {
+                        responseObserver.onError(Status.INVALID_ARGUMENT
+                                .withDescription("Credits for " + playerUuid + " overflow")
+                                .asRuntimeException());
+                        return;
+                    }
+                }
                 
-                double newBalance = 0.0;
-                if (success) {
-                    newBalance = databaseManager.getPlayerBalance(playerUuid);
+                Map<UUID, Long> newBalances = economyManager.addBalances(amounts, origin());
+                for (UUID playerUuid : amounts.keySet()) {
+                    Long newBalance = newBalances.get(playerUuid);
+                    BalanceCreditResult.Builder result = BalanceCreditResult.newBuilder()
+                            .setPlayerUuid(playerUuid.toString())
+                            .setSuccess(newBalance != null);
+                    if (newBalance != null) {
+                        result.setNewBalanceCents(newBalance);
+                    } else {
+                        result.setErrorMessage("Rejected: invalid amount or balance limit");
+                    }
+                    response.addResults(result.build());
                 }
                 
-                RemoveBalanceResponse response = RemoveBalanceResponse.newBuilder()
-                        .setSuccess(success)
-                        .setNewBalance(newBalance)
+                responseObserver.onNext(response.build());
+                responseObserver.onCompleted();
+                
+            } catch (Exception e) {
+                logger.error("Error adding balances for {} credits", request.getCreditsCount(), e);
+                
+                AddBalancesResponse response = AddBalancesResponse.newBuilder()
+                        .setSuccess(false)
+                        .setErrorMessage("Failed to add balances: " + e.getMessage())
                         .build();
                 
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
+            }
+        }
+        
+        @Override
+        public void removeBalance(RemoveBalanceRequest request, StreamObserver<RemoveBalanceResponse> responseObserver) {
+            try {
+                UUID playerUuid = UUID.fromString(request.getPlayerUuid());
+                long amount = request.getAmountCents();
+                Long newBalance = amount > 0 ? economyManager.removeBalanceAndGet(playerUuid, amount, origin()) : null;
+                
+                RemoveBalanceResponse.Builder builder = RemoveBalanceResponse.newBuilder()
+                        .setSuccess(newBalance != null);
+                if (newBalance != null) {
+                    builder.setNewBalanceCents(newBalance);
+                } else {
+                    builder.setErrorMessage(amount > 0 ? "Insufficient funds" : "Amount must be positive");
+                }
+                RemoveBalanceResponse response = builder.build();
+                
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
                 
             } catch (Exception e) {
                 logger.error("Error removing balance for {}", request.getPlayerUuid(), e);
@@ -193,36 +310,144 @@ public class GrpcServer {
             }
         }
         
+        @Override
+        public void getLeaderboard(GetLeaderboardRequest request, StreamObserver<GetLeaderboardResponse> responseObserver) {
+            try {
+                int limit = Math.min(Math.max(request.getLimit(), 1), 1000);
+                
+                GetLeaderboardResponse.Builder builder = GetLeaderboardResponse.newBuilder()
+                        .setSuccess(true)
+                        .setTotal(leaderboard.size());
+                for (BalanceLeaderboard.Entry entry : leaderboard.getTop(Math.max(request.getOffset(), 0), limit)) {
+                    builder.addEntries(LeaderboardEntry.newBuilder()
+                            .setPlayerUuid(entry.getPlayerUuid().toString())
+                            .setBalanceCents(entry.getBalance())
+                            .setRank(entry.getRank()));
+                }
+                
+                responseObserver.onNext(builder.build());
+                responseObserver.onCompleted();
+                
+            } catch (Exception e) {
+                logger.error("Error getting leaderboard", e);
+                
+                GetLeaderboardResponse response = GetLeaderboardResponse.newBuilder()
+                        .setSuccess(false)
+                        .setErrorMessage("Failed to get leaderboard: " + e.getMessage())
+                        .build();
+                
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }
+        
+        @Override
+        public void getRank(GetRankRequest request, StreamObserver<GetRankResponse> responseObserver) {
+            try {
+                UUID playerUuid = UUID.fromString(request.getPlayerUuid());
+                long rank = leaderboard.getRank(playerUuid);
+                
+                GetRankResponse.Builder builder = GetRankResponse.newBuilder()
+                        .setSuccess(true)
+                        .setRank(rank);
+                if (rank > 0) {
+                    builder.setBalanceCents(leaderboard.getBalance(playerUuid));
+                }
+                
+                responseObserver.onNext(builder.build());
+                responseObserver.onCompleted();
+                
+            } catch (Exception e) {
+                logger.error("Error getting rank for {}", request.getPlayerUuid(), e);
+                
+                GetRankResponse response = GetRankResponse.newBuilder()
+                        .setSuccess(false)
+                        .setErrorMessage("Failed to get rank: " + e.getMessage())
+                        .build();
+                
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }
+        
+        // The resolution is picked so a chart of any window gets at most max_points buckets
+        @Override
+        public void getBalanceHistory(GetBalanceHistoryRequest request, StreamObserver<GetBalanceHistoryResponse> responseObserver) {
+            try {
+                BalanceHistory balanceHistory = databaseManager.getBalanceHistory();
+                if (balanceHistory == null) {
+                    responseObserver.onNext(GetBalanceHistoryResponse.newBuilder()
+                            .setSuccess(false)
+                            .setErrorMessage("Balance history is disabled")
+                            .build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                
+                UUID playerUuid = UUID.fromString(request.getPlayerUuid());
+                long toMs = request.getToMs() > 0 ? request.getToMs() : System.currentTimeMillis();
+                long fromMs = Math.min(request.getFromMs(), toMs);
+                int maxPoints = request.getMaxPoints() > 0 ? Math.min(request.getMaxPoints(), 2000) : 500;
+                
+                BalanceHistory.Resolution resolution = balanceHistory.chooseResolution(fromMs, toMs, maxPoints);
+                GetBalanceHistoryResponse.Builder builder = GetBalanceHistoryResponse.newBuilder()
+                        .setSuccess(true)
+                        .setResolution(resolution.name().toLowerCase())
+                        .setBucketMs(resolution.getBucketMs());
+                for (BalanceHistory.HistoryPoint point : balanceHistory.query(playerUuid, fromMs, toMs, resolution, maxPoints)) {
+                    builder.addPoints(BalanceHistoryPoint.newBuilder()
+                            .setTimestampMs(point.getTimestamp())
+                            .setOpenCents(point.getOpen())
+                            .setCloseCents(point.getClose())
+                            .setLowCents(point.getLow())
+                            .setHighCents(point.getHigh()));
+                }
+                
+                responseObserver.onNext(builder.build());
+                responseObserver.onCompleted();
+                
+            } catch (Exception e) {
+                logger.error("Error getting balance history for {}", request.getPlayerUuid(), e);
+                
+                GetBalanceHistoryResponse response = GetBalanceHistoryResponse.newBuilder()
+                        .setSuccess(false)
+                        .setErrorMessage("Failed to get balance history: " + e.getMessage())
+                        .build();
+                
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }
+        
         @Override
         public void transferBalance(TransferBalanceRequest request, StreamObserver<TransferBalanceResponse> responseObserver) {
             try {
                 UUID fromPlayerUuid = UUID.fromString(request.getFromPlayerUuid());
                 UUID toPlayerUuid = UUID.fromString(request.getToPlayerUuid());
-                double amount = request.getAmount();
-                
-                // Check if from player has enough balance
-                double fromBalance = databaseManager.getPlayerBalance(fromPlayerUuid);
-                if (fromBalance < amount) {
-                    TransferBalanceResponse response = TransferBalanceResponse.newBuilder()
+                long amount = request.getAmountCents();
+                if (amount <= 0 || fromPlayerUuid.equals(toPlayerUuid)) {
+                    responseObserver.onNext(TransferBalanceResponse.newBuilder()
                             .setSuccess(false)
-                            .setErrorMessage("Insufficient funds")
-                            .build();
-                    
-                    responseObserver.onNext(response);
+                            .setErrorMessage("Amount must be positive and players must differ")
+                            .build());
                     responseObserver.onCompleted();
                     return;
                 }
                 
-                // Remove from source player
-                boolean success1 = databaseManager.updatePlayerBalance(fromPlayerUuid, -amount);
-                // Add to target player
-                boolean success2 = databaseManager.updatePlayerBalance(toPlayerUuid, amount);
+                // Clients should send a transfer id so a retried call is applied only once
+                String transferId = request.getTransferId().isEmpty()
+                        ? UUID.randomUUID().toString()
+                        : request.getTransferId();
                 
-                boolean success = success1 && success2;
+                boolean success = economyManager.transfer(transferId, fromPlayerUuid, toPlayerUuid, amount, origin());
                 
-                TransferBalanceResponse response = TransferBalanceResponse.newBuilder()
+                TransferBalanceResponse.Builder builder = TransferBalanceResponse.newBuilder()
                         .setSuccess(success)
-                        .build();
+                        .setTransferId(transferId);
+                if (!success) {
+                    builder.setErrorMessage("Not applied: insufficient funds or the transfer could not be saved");
+                }
+                TransferBalanceResponse response = builder.build();
                 
                 responseObserver.onNext(response);
                 responseObserver.onCompleted();
@@ -244,7 +469,7 @@ public class GrpcServer {
         public void getInventory(GetInventoryRequest request, StreamObserver<GetInventoryResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                String inventoryData = databaseManager.loadInventory(playerUuid, request.getInventoryName());
+                String inventoryData = inventoryManager.getInventoryData(playerUuid, request.getInventoryName());
                 
                 GetInventoryResponse response = GetInventoryResponse.newBuilder()
                         .setSuccess(inventoryData != null)
@@ -404,7 +629,7 @@ public class GrpcServer {
         public void updateInventory(UpdateInventoryRequest request, StreamObserver<UpdateInventoryResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.updateInventory(playerUuid, request.getInventoryName(), request.getInventoryData());
+                boolean success = inventoryManager.updateInventoryData(playerUuid, request.getInventoryName(), request.getInventoryData());
                 
                 UpdateInventoryResponse response = UpdateInventoryResponse.newBuilder()
                         .setSuccess(success)
@@ -534,7 +759,7 @@ public class GrpcServer {
         public void deleteInventory(DeleteInventoryRequest request, StreamObserver<DeleteInventoryResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.deleteInventory(playerUuid, request.getInventoryName());
+                boolean success = inventoryManager.deleteInventory(playerUuid, request.getInventoryName());
                 
                 DeleteInventoryResponse response = DeleteInventoryResponse.newBuilder()
                         .setSuccess(success)
@@ -560,7 +785,7 @@ public class GrpcServer {
         public void deleteAllInventories(DeleteAllInventoriesRequest request, StreamObserver<DeleteAllInventoriesResponse> responseObserver) {
             try {
                 UUID playerUuid = UUID.fromString(request.getPlayerUuid());
-                boolean success = databaseManager.deleteAllInventories(playerUuid);
+                boolean success = inventoryManager.deleteAllInventories(playerUuid);
                 
                 DeleteAllInventoriesResponse response = DeleteAllInventoriesResponse.newBuilder()
                         .setSuccess(success)
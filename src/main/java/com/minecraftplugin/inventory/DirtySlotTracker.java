@@ -0,0 +1,65 @@
+package com.minecraftplugin.inventory;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers, per player, the named inventory last written by updateInventory, so the next update
+// of the same name only writes the slots that differ from it. Slots are found by comparing with
+// the copy taken at that write rather than from inventory events: plugins and commands change
+// inventories without any event, so marked slots could never be trusted alone, and events that
+// cannot name a slot (pickups, deaths) would mark every one. Comparing 41 slots per update is
+// cheaper than both.
+public class DirtySlotTracker {
+    
+    private final Map<UUID, Tracked> tracked = new ConcurrentHashMap<>();
+    
+    // contents must not be modified afterwards
+    public void track(UUID playerUuid, String inventoryName, ItemStack[] contents, long version) {
+        tracked.put(playerUuid, new Tracked(inventoryName, contents, version));
+    }
+    
+    public void forget(UUID playerUuid) {
+        tracked.remove(playerUuid);
+    }
+    
+    public void forget(UUID playerUuid, String inventoryName) {
+        tracked.computeIfPresent(playerUuid, (uuid, entry) -> entry.inventoryName.equals(inventoryName) ? null : entry);
+    }
+    
+    // Slots that differ from the last write of inventoryName, or null if that write is not known
+    public Changes changes(UUID playerUuid, String inventoryName, ItemStack[] contents) {
+        Tracked entry = tracked.get(playerUuid);
+        if (entry == null || !entry.inventoryName.equals(inventoryName) || entry.contents.length != contents.length) {
+            return null;
+        }
+        
+        BitSet changed = new BitSet(contents.length);
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (!Objects.equals(entry.contents[slot], contents[slot])) {
+                changed.set(slot);
+            }
+        }
+        return new Changes(changed, entry.version);
+    }
+    
+    public static final class Changes {
+        private final BitSet slots;
+        private final long version;
+        
+        Changes(BitSet slots, long version) {
+            this.slots = slots;
+            this.version = version;
+        }
+        
+        public BitSet getSlots() { return slots; }
+        public long getVersion() { return version; }
+    }
+    
+    private record Tracked(String inventoryName, ItemStack[] contents, long version) {
+    }
+}
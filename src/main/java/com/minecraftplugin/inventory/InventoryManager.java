@@ -1,11 +1,12 @@
 package com.minecraftplugin.inventory;
 
 import com.minecraftplugin.AdvancedMinecraftPlugin;
+import com.minecraftplugin.codec.ItemStackCodec;
+import com.minecraftplugin.codec.PayloadCompressor;
 import com.minecraftplugin.database.DatabaseManager;
 import com.minecraftplugin.redis.RedisManager;
 import com.minecraftplugin.utils.MessageUtils;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.minecraftplugin.utils.SingleFlight;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -24,21 +25,68 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class InventoryManager implements Listener {
     
     private static final Logger logger = LoggerFactory.getLogger(InventoryManager.class);
     
+    private static final int SAVE_LANES = 4;
+    
     private final AdvancedMinecraftPlugin plugin;
     private final DatabaseManager databaseManager;
     private final RedisManager redisManager;
-    private final Gson gson;
+    private final PayloadCompressor compressor;
+    
+    // Names of saved inventories for players on this server, filled at login
+    private final Map<UUID, List<String>> savedInventories = new ConcurrentHashMap<>();
+    
+    // Concurrent lookups of the same data share one Redis/Mongo round trip
+    private final SingleFlight<String, String> inventoryLoads = new SingleFlight<>();
+    private final SingleFlight<UUID, List<String>> savedInventoriesLoads = new SingleFlight<>();
+    
+    // Backups and auto-saves form chains: every keyframeInterval-th snapshot is stored in full and
+    // the ones between only as the slots that changed since the previous one, so restoring one
+    // reads at most keyframeInterval records. Chains continue from the last snapshot saved here,
+    // kept in memory for recently seen players, as long as its record still has the slot_version
+    // it was written with; any rewrite, e.g. /inv update on another server, bumps it.
+    private static final int MAX_TRACKED_SNAPSHOTS = 2000;
+    // Guards against a corrupt chain that loops, or one built with a larger interval
+    private static final int MAX_CHAIN_READS = 256;
+    private final int keyframeInterval;
+    private final DirtySlotTracker dirtySlots = new DirtySlotTracker();
+    private final Map<UUID, Snapshot> lastSnapshots = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Snapshot> eldest) {
+            return size() > MAX_TRACKED_SNAPSHOTS;
+        }
+    });
+    
+    // Quit saves are written here rather than on the main thread, one lane per player so a
+    // player's snapshots are still chained in the order they were taken
+    private final ExecutorService[] saveLanes = new ExecutorService[SAVE_LANES];
     
     public InventoryManager(DatabaseManager databaseManager, RedisManager redisManager, AdvancedMinecraftPlugin plugin) {
         this.databaseManager = databaseManager;
         this.redisManager = redisManager;
         this.plugin = plugin;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.compressor = plugin.getPayloadCompressor();
+        this.keyframeInterval = Math.max(1, plugin.getConfigManager().getConfig().getInt("plugin.inventory.snapshots.keyframe_interval", 10));
+        for (int i = 0; i < saveLanes.length; i++) {
+            String name = "inventory-save-" + i;
+            saveLanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         
         setupRedisSubscriptions();
     }
@@ -50,13 +98,21 @@ public class InventoryManager implements Listener {
                 String operation = message.getOperation();
                 String inventoryName = message.getData();
                 
+                // The list may have changed elsewhere; reload it on next use
+                if ("save".equals(operation) || "delete".equals(operation)) {
+                    savedInventories.remove(playerUuid);
+                }
+                // Saves chained on it would no longer apply; the version check catches a missed message
+                if ("update".equals(operation) || "delete".equals(operation)) {
+                    forgetSnapshot(playerUuid, inventoryName);
+                }
+                
                 logger.debug("Received inventory update: {} {} {}", playerUuid, operation, inventoryName);
                 
                 // Notify online players about inventory changes
                 Player player = Bukkit.getPlayer(playerUuid);
                 if (player != null && player.isOnline()) {
-                    String currencySymbol = plugin.getConfigManager().getConfig().getString("plugin.economy.currency_symbol", "$");
-                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getConfig().getString("messages.inventory.updated"), 
+                    String messageText = MessageUtils.formatMessage(plugin.getConfigManager().getSettings().messages().get("inventory.updated"), 
                                                                   "operation", operation, "name", inventoryName);
                     player.sendMessage(messageText);
                 }
@@ -85,9 +141,7 @@ public class InventoryManager implements Listener {
                 return false;
             }
             
-            redisManager.setCachedInventory(playerUuid, inventoryName, inventoryData, 3600);
-            redisManager.publishInventoryUpdate(playerUuid, inventoryName, "save");
-            
+            onSaved(playerUuid, inventoryName, inventoryData);
             logger.info("Saved inventory '{}' for player {}", inventoryName, playerUuid);
             return true;
             
@@ -97,27 +151,94 @@ public class InventoryManager implements Listener {
         }
     }
     
-    public boolean loadInventory(UUID playerUuid, String inventoryName) {
+    private boolean saveSnapshot(UUID playerUuid, String snapshotName) {
         try {
             Player player = Bukkit.getPlayer(playerUuid);
             if (player == null || !player.isOnline()) {
                 return false;
             }
             
-            String cachedData = redisManager.getCachedInventory(playerUuid, inventoryName);
-            String inventoryData = cachedData != null ? cachedData : databaseManager.loadInventory(playerUuid, inventoryName);
+            if (!isValidInventoryName(snapshotName)) {
+                return false;
+            }
             
-            if (inventoryData == null) {
+            return writeSnapshot(playerUuid, snapshotName, copyContents(player.getInventory().getContents()));
+            
+        } catch (Exception e) {
+            logger.error("Error saving inventory snapshot for {}", playerUuid, e);
+            return false;
+        }
+    }
+    
+    // Does not touch the player, so it can run off the main thread with contents taken on it
+    private boolean writeSnapshot(UUID playerUuid, String snapshotName, ItemStack[] contents) {
+        try {
+            Snapshot previous = lastSnapshots.get(playerUuid);
+            if (previous != null && (previous.depth() + 1 >= keyframeInterval
+                                     || previous.contents().length != contents.length
+                                     || previous.name().equals(snapshotName)
+                                     || databaseManager.getInventoryVersion(playerUuid, previous.name()) != previous.version())) {
+                previous = null;
+            }
+            
+            String snapshotData = previous != null
+                    ? ItemStackCodec.encodeDelta(previous.contents(), contents, previous.name(), compressor)
+                    : ItemStackCodec.encode(contents, compressor);
+            int depth = previous != null ? previous.depth() + 1 : 0;
+            if (!databaseManager.saveInventorySnapshot(playerUuid, snapshotName, snapshotData,
+                                                       previous != null ? previous.name() : null, depth)) {
                 return false;
             }
             
-            PlayerInventory playerInventory = player.getInventory();
-            deserializeInventory(playerInventory, inventoryData);
+            // A new record has no slot_version yet
+            lastSnapshots.put(playerUuid, new Snapshot(snapshotName, depth, 0L, contents));
+            onSaved(playerUuid, snapshotName, snapshotData);
+            logger.info("Saved inventory snapshot '{}' for player {} ({})", snapshotName, playerUuid,
+                    depth == 0 ? "keyframe" : "delta " + depth);
+            return true;
+            
+        } catch (Exception e) {
+            logger.error("Error saving inventory snapshot for {}", playerUuid, e);
+            return false;
+        }
+    }
+    
+    private void onSaved(UUID playerUuid, String inventoryName, String inventoryData) {
+        redisManager.setCachedInventory(playerUuid, inventoryName, inventoryData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
+        redisManager.publishInventoryUpdate(playerUuid, inventoryName, "save");
+        
+        savedInventories.computeIfPresent(playerUuid, (uuid, names) -> {
+            List<String> updated = new ArrayList<>(names);
+            updated.add(inventoryName);
+            return updated;
+        });
+    }
+    
+    // getContents may return live mirrors of the items; the previous snapshot must not change
+    private static ItemStack[] copyContents(ItemStack[] contents) {
+        ItemStack[] copy = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            copy[i] = contents[i] != null ? contents[i].clone() : null;
+        }
+        return copy;
+    }
+    
+    public boolean loadInventory(UUID playerUuid, String inventoryName) {
+        try {
+            Player player = Bukkit.getPlayer(playerUuid);
+            if (player == null || !player.isOnline()) {
+                return false;
+            }
+            
+            ItemStack[] contents = loadContents(playerUuid, inventoryName, MAX_CHAIN_READS);
             
-            if (cachedData == null) {
-                redisManager.setCachedInventory(playerUuid, inventoryName, inventoryData, 3600);
+            if (contents == null) {
+                return false;
             }
             
+            PlayerInventory playerInventory = player.getInventory();
+            playerInventory.setContents(contents);
+            
             redisManager.publishInventoryUpdate(playerUuid, inventoryName, "load");
             
             logger.info("Loaded inventory '{}' for player {}", inventoryName, playerUuid);
@@ -136,20 +257,40 @@ public class InventoryManager implements Listener {
                 return false;
             }
             
-            // Check if inventory exists
-            String existingData = databaseManager.loadInventory(playerUuid, inventoryName);
-            if (existingData == null) {
+            ItemStack[] contents = copyContents(player.getInventory().getContents());
+            
+            rebaseDependents(playerUuid, inventoryName);
+            // Also tells whether the inventory exists: -1 when there is nothing to update
+            long version = writeSlots(playerUuid, inventoryName, contents);
+            if (version < 0) {
                 return false;
             }
+            dirtySlots.track(playerUuid, inventoryName, contents, version);
+            forgetSnapshot(playerUuid, inventoryName);
             
-            PlayerInventory playerInventory = player.getInventory();
-            String inventoryData = serializeInventory(playerInventory);
+            redisManager.deleteCachedInventory(playerUuid, inventoryName);
+            redisManager.publishInventoryUpdate(playerUuid, inventoryName, "update");
             
+            logger.info("Updated inventory '{}' for player {}", inventoryName, playerUuid);
+            return true;
+            
+        } catch (Exception e) {
+            logger.error("Error updating inventory for {}", playerUuid, e);
+            return false;
+        }
+    }
+    
+    // Replaces a stored inventory with contents from outside the game, e.g. over gRPC
+    public boolean updateInventoryData(UUID playerUuid, String inventoryName, String inventoryData) {
+        try {
+            rebaseDependents(playerUuid, inventoryName);
             if (!databaseManager.updateInventory(playerUuid, inventoryName, inventoryData)) {
                 return false;
             }
+            dirtySlots.forget(playerUuid, inventoryName);
+            forgetSnapshot(playerUuid, inventoryName);
             
-            redisManager.setCachedInventory(playerUuid, inventoryName, inventoryData, 3600);
+            redisManager.deleteCachedInventory(playerUuid, inventoryName);
             redisManager.publishInventoryUpdate(playerUuid, inventoryName, "update");
             
             logger.info("Updated inventory '{}' for player {}", inventoryName, playerUuid);
@@ -161,6 +302,23 @@ public class InventoryManager implements Listener {
         }
     }
     
+    // The stored payload, with a delta snapshot resolved to the full contents so callers outside
+    // the plugin never need its base; null if there is no such inventory
+    public String getInventoryData(UUID playerUuid, String inventoryName) {
+        try {
+            String inventoryData = fetchInventoryData(playerUuid, inventoryName);
+            if (inventoryData == null || !ItemStackCodec.isDelta(inventoryData, compressor)) {
+                return inventoryData;
+            }
+            ItemStack[] contents = loadContents(playerUuid, inventoryName, MAX_CHAIN_READS);
+            return contents != null ? ItemStackCodec.encode(contents, compressor) : null;
+            
+        } catch (Exception e) {
+            logger.error("Error loading inventory data for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
     public boolean clearInventory(UUID playerUuid) {
         try {
             Player player = Bukkit.getPlayer(playerUuid);
@@ -192,7 +350,7 @@ public class InventoryManager implements Listener {
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
             String backupInventoryName = "backup_" + backupName + "_" + timestamp;
             
-            return saveInventory(playerUuid, backupInventoryName);
+            return saveSnapshot(playerUuid, backupInventoryName);
             
         } catch (Exception e) {
             logger.error("Error backing up inventory for {}", playerUuid, e);
@@ -245,8 +403,13 @@ public class InventoryManager implements Listener {
     }
     
     public List<String> getSavedInventories(UUID playerUuid) {
+        List<String> cached = savedInventories.get(playerUuid);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+        
         try {
-            return databaseManager.getSavedInventories(playerUuid);
+            return new ArrayList<>(loadSavedInventories(playerUuid));
         } catch (Exception e) {
             logger.error("Error getting saved inventories for {}", playerUuid, e);
             return List.of();
@@ -254,13 +417,28 @@ public class InventoryManager implements Listener {
     }
     
     public boolean deleteInventory(UUID playerUuid, String inventoryName) {
+        return deleteInventory(playerUuid, inventoryName, true);
+    }
+    
+    private boolean deleteInventory(UUID playerUuid, String inventoryName, boolean rebase) {
         try {
+            if (rebase) {
+                rebaseDependents(playerUuid, inventoryName);
+            }
             if (!databaseManager.deleteInventory(playerUuid, inventoryName)) {
                 return false;
             }
+            forgetSnapshot(playerUuid, inventoryName);
+            dirtySlots.forget(playerUuid, inventoryName);
             
             redisManager.publishInventoryUpdate(playerUuid, inventoryName, "delete");
             
+            savedInventories.computeIfPresent(playerUuid, (uuid, names) -> {
+                List<String> updated = new ArrayList<>(names);
+                updated.removeIf(inventoryName::equals);
+                return updated;
+            });
+            
             logger.info("Deleted inventory '{}' for player {}", inventoryName, playerUuid);
             return true;
             
@@ -275,8 +453,9 @@ public class InventoryManager implements Listener {
             List<String> inventories = getSavedInventories(playerUuid);
             boolean allDeleted = true;
             
+            // Everything goes, so there is nothing to rebase
             for (String inventoryName : inventories) {
-                if (!deleteInventory(playerUuid, inventoryName)) {
+                if (!deleteInventory(playerUuid, inventoryName, false)) {
                     allDeleted = false;
                 }
             }
@@ -289,6 +468,117 @@ public class InventoryManager implements Listener {
         }
     }
     
+    // Redis first, then Mongo, repopulating Redis on a miss
+    private String fetchInventoryData(UUID playerUuid, String inventoryName) {
+        return inventoryLoads.load(playerUuid + ":" + inventoryName, () -> {
+            String cachedData = redisManager.getCachedInventory(playerUuid, inventoryName);
+            if (cachedData != null) {
+                return cachedData;
+            }
+            
+            String inventoryData = databaseManager.loadInventory(playerUuid, inventoryName);
+            if (inventoryData != null && ItemStackCodec.isLegacy(inventoryData)) {
+                inventoryData = migrateInventoryData(playerUuid, inventoryName, inventoryData);
+            }
+            if (inventoryData != null) {
+                redisManager.setCachedInventory(playerUuid, inventoryName, inventoryData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
+            }
+            return inventoryData;
+        });
+    }
+    
+    // Follows a delta back through its bases to the keyframe
+    private ItemStack[] loadContents(UUID playerUuid, String inventoryName, int remainingReads) {
+        String inventoryData = fetchInventoryData(playerUuid, inventoryName);
+        if (inventoryData == null) {
+            return null;
+        }
+        return ItemStackCodec.decode(inventoryData, compressor, base -> {
+            if (remainingReads <= 1) {
+                throw new IllegalStateException("Snapshot chain of '" + inventoryName + "' is too long");
+            }
+            return loadContents(playerUuid, base, remainingReads - 1);
+        });
+    }
+    
+    // Snapshots stored as deltas on top of inventoryName are rewritten in full before it changes
+    private void rebaseDependents(UUID playerUuid, String inventoryName) {
+        for (String dependent : databaseManager.getInventoriesBasedOn(playerUuid, inventoryName)) {
+            try {
+                ItemStack[] contents = loadContents(playerUuid, dependent, MAX_CHAIN_READS);
+                if (contents == null) {
+                    continue;
+                }
+                String inventoryData = ItemStackCodec.encode(contents, compressor);
+                if (databaseManager.updateInventory(playerUuid, dependent, inventoryData)) {
+                    redisManager.setCachedInventory(playerUuid, dependent, inventoryData, plugin.getConfigManager().getSettings().cache().inventoryTtlSeconds());
+                }
+            } catch (Exception e) {
+                logger.error("Error rewriting inventory snapshot '{}' for {}", dependent, playerUuid, e);
+            }
+        }
+    }
+    
+    // Only the slots changed since this server last wrote the inventory, when it still holds
+    // that write; otherwise every slot
+    private long writeSlots(UUID playerUuid, String inventoryName, ItemStack[] contents) {
+        DirtySlotTracker.Changes changes = dirtySlots.changes(playerUuid, inventoryName, contents);
+        if (changes != null) {
+            Map<Integer, byte[]> changed = new HashMap<>();
+            List<Integer> cleared = new ArrayList<>();
+            BitSet slots = changes.getSlots();
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                if (contents[slot] != null) {
+                    changed.put(slot, ItemStackCodec.encodeSlot(contents[slot]));
+                } else {
+                    cleared.add(slot);
+                }
+            }
+            long version = databaseManager.updateInventorySlots(playerUuid, inventoryName, changed, cleared, changes.getVersion());
+            if (version >= 0) {
+                logger.debug("Updated {} slots of inventory '{}' for {}", slots.cardinality(), inventoryName, playerUuid);
+                return version;
+            }
+        }
+        
+        Map<Integer, byte[]> items = new HashMap<>();
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (contents[slot] != null) {
+                items.put(slot, ItemStackCodec.encodeSlot(contents[slot]));
+            }
+        }
+        return databaseManager.writeInventorySlots(playerUuid, inventoryName, contents.length, items);
+    }
+    
+    private ExecutorService saveLane(UUID playerUuid) {
+        return saveLanes[(playerUuid.hashCode() & 0x7fffffff) % saveLanes.length];
+    }
+    
+    private void forgetSnapshot(UUID playerUuid, String inventoryName) {
+        lastSnapshots.computeIfPresent(playerUuid, (uuid, snapshot) -> snapshot.name().equals(inventoryName) ? null : snapshot);
+    }
+    
+    // The returned list is shared with every caller that joined the load, so callers copy it
+    private List<String> loadSavedInventories(UUID playerUuid) {
+        return savedInventoriesLoads.load(playerUuid, () -> databaseManager.getSavedInventories(playerUuid));
+    }
+    
+    public void preloadSavedInventories(UUID playerUuid) {
+        try {
+            savedInventories.put(playerUuid, new ArrayList<>(loadSavedInventories(playerUuid)));
+        } catch (Exception e) {
+            logger.error("Error preloading saved inventories for {}", playerUuid, e);
+        }
+    }
+    
+    // Drops what a login preload cached once it turns out the player is not online, e.g. the login
+    // was refused or the preload finished after quit
+    public void discardPreload(UUID playerUuid) {
+        if (Bukkit.getPlayer(playerUuid) == null) {
+            savedInventories.remove(playerUuid);
+        }
+    }
+    
     private boolean isValidInventoryName(String name) {
         if (name == null || name.trim().isEmpty()) {
             return false;
@@ -307,22 +597,27 @@ public class InventoryManager implements Listener {
         return true;
     }
     
-    private String serializeInventory(PlayerInventory inventory) {
+    // Saved before the binary format; rewritten the first time it is read. The JSON is kept if
+    // it cannot be converted, since it still loads.
+    private String migrateInventoryData(UUID playerUuid, String inventoryName, String legacyData) {
         try {
-            ItemStack[] contents = inventory.getContents();
-            return gson.toJson(contents);
+            String migrated = ItemStackCodec.encode(ItemStackCodec.decode(legacyData), compressor);
+            if (databaseManager.replaceInventoryData(playerUuid, inventoryName, legacyData, migrated)) {
+                logger.info("Migrated inventory '{}' for {} to the binary format", inventoryName, playerUuid);
+            }
+            return migrated;
         } catch (Exception e) {
-            logger.error("Error serializing inventory", e);
-            return null;
+            logger.warn("Could not migrate inventory '{}' for {}", inventoryName, playerUuid, e);
+            return legacyData;
         }
     }
     
-    private void deserializeInventory(PlayerInventory inventory, String data) {
+    private String serializeInventory(PlayerInventory inventory) {
         try {
-            ItemStack[] contents = gson.fromJson(data, ItemStack[].class);
-            inventory.setContents(contents);
+            return ItemStackCodec.encode(inventory.getContents(), compressor);
         } catch (Exception e) {
-            logger.error("Error deserializing inventory", e);
+            logger.error("Error serializing inventory", e);
+            return null;
         }
     }
     
@@ -331,12 +626,17 @@ public class InventoryManager implements Listener {
         Player player = event.getPlayer();
         UUID playerUuid = player.getUniqueId();
         
-        if (plugin.getConfigManager().getConfig().getBoolean("plugin.inventory.auto_save_on_quit", true)) {
+        if (plugin.getConfigManager().getSettings().autoSave().inventoryOnQuit()) {
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
             String autoSaveName = "auto_" + timestamp;
             
-            saveInventory(playerUuid, autoSaveName);
+            // Read now, while the player is still there; written on the player's save lane
+            ItemStack[] contents = copyContents(player.getInventory().getContents());
+            saveLane(playerUuid).execute(() -> writeSnapshot(playerUuid, autoSaveName, contents));
         }
+        
+        savedInventories.remove(playerUuid);
+        dirtySlots.forget(playerUuid);
     }
     
     // Async methods
@@ -364,6 +664,10 @@ public class InventoryManager implements Listener {
         return CompletableFuture.supplyAsync(() -> restoreInventory(playerUuid, backupName));
     }
     
+    public CompletableFuture<Void> preloadSavedInventoriesAsync(UUID playerUuid) {
+        return CompletableFuture.runAsync(() -> preloadSavedInventories(playerUuid));
+    }
+    
     public CompletableFuture<List<String>> getSavedInventoriesAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> getSavedInventories(playerUuid));
     }
@@ -380,7 +684,26 @@ public class InventoryManager implements Listener {
         return CompletableFuture.supplyAsync(() -> getInventoryInfo(playerUuid, inventoryName));
     }
     
+    // Queued quit saves go out before the database connection closes
+    public void shutdown() {
+        for (ExecutorService lane : saveLanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : saveLanes) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Gave up waiting for queued inventory saves");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     public AdvancedMinecraftPlugin getPlugin() {
         return plugin;
     }
+    
+    private record Snapshot(String name, int depth, long version, ItemStack[] contents) {
+    }
 } 
\ No newline at end of file
@@ -35,7 +35,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!sender.hasPermission("advancedplugin.inventory")) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.no_permission");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.no_permission");
             sender.sendMessage(MessageUtils.formatColors(message));
             return true;
         }
@@ -98,7 +98,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -113,11 +113,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String inventoryName = args.length > 2 ? args[2] : "default";
         
         if (inventoryManager.saveInventory(targetPlayer.getUniqueId(), inventoryName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.saved");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.saved");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -131,7 +131,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -146,11 +146,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String inventoryName = args.length > 2 ? args[2] : "default";
         
         if (inventoryManager.loadInventory(targetPlayer.getUniqueId(), inventoryName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.loaded");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.loaded");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -165,7 +165,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -174,11 +174,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String inventoryName = args[2];
         
         if (inventoryManager.deleteInventory(targetPlayer.getUniqueId(), inventoryName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.deleted");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.deleted");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -192,7 +192,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -201,15 +201,15 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         List<String> inventories = inventoryManager.getSavedInventories(targetPlayer.getUniqueId());
         
         if (inventories.isEmpty()) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.no_saved_inventories");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.no_saved_inventories");
             sender.sendMessage(MessageUtils.formatColors(message));
         } else {
-        String message = plugin.getConfigManager().getConfig().getString("messages.inventory.list_header");
+        String message = plugin.getConfigManager().getSettings().messages().get("inventory.list_header");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         
         for (String inventoryName : inventories) {
-            String listItem = plugin.getConfigManager().getConfig().getString("messages.inventory.list_item");
+            String listItem = plugin.getConfigManager().getSettings().messages().get("inventory.list_item");
                 String formattedListItem = MessageUtils.formatMessage(listItem, "name", inventoryName, "date", "");
                 sender.sendMessage(MessageUtils.formatColors(formattedListItem));
             }
@@ -224,7 +224,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -239,11 +239,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String inventoryName = args[2];
         
         if (inventoryManager.updateInventory(targetPlayer.getUniqueId(), inventoryName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.updated");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.updated");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", inventoryName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -257,7 +257,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -270,11 +270,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         }
         
         if (inventoryManager.clearInventory(targetPlayer.getUniqueId())) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.cleared");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.cleared");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -287,7 +287,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -302,11 +302,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String backupName = args[2];
         
         if (inventoryManager.backupInventory(targetPlayer.getUniqueId(), backupName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.backed_up");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.backed_up");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -319,7 +319,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -334,11 +334,11 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         String backupName = args[2];
         
         if (inventoryManager.restoreInventory(targetPlayer.getUniqueId(), backupName)) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.restored");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.restored");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.backup_not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.backup_not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName(), "name", backupName);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -352,7 +352,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
@@ -368,7 +368,7 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(MessageUtils.formatColors("&7Created: &f" + info.get("created")));
             sender.sendMessage(MessageUtils.formatColors("&8&m&l                                                        "));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.not_found");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.not_found");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         }
@@ -382,18 +382,18 @@ public class InventoryCommand implements CommandExecutor, TabCompleter {
         
         OfflinePlayer targetPlayer = Bukkit.getOfflinePlayer(args[1]);
         if (targetPlayer == null) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.player_not_found", "&cPlayer not found: {player}");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.player_not_found", "&cPlayer not found: {player}");
             String formattedMessage = MessageUtils.formatMessage(message, "player", args[1]);
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
             return;
         }
         
         if (inventoryManager.deleteAllInventories(targetPlayer.getUniqueId())) {
-            String message = plugin.getConfigManager().getConfig().getString("messages.inventory.all_deleted");
+            String message = plugin.getConfigManager().getSettings().messages().get("inventory.all_deleted");
             String formattedMessage = MessageUtils.formatMessage(message, "player", targetPlayer.getName());
             sender.sendMessage(MessageUtils.formatColors(formattedMessage));
         } else {
-            String message = plugin.getConfigManager().getConfig().getString("messages.errors.database_error");
+            String message = plugin.getConfigManager().getSettings().messages().get("errors.database_error");
             sender.sendMessage(MessageUtils.formatColors(message));
         }
     }
@@ -0,0 +1,105 @@
+package com.minecraftplugin.login;
+
+import com.minecraftplugin.economy.EconomyManager;
+import com.minecraftplugin.enderchest.EnderChestManager;
+import com.minecraftplugin.inventory.InventoryManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Loads a player's balance and saved inventory / ender chest names while the login is still on
+// an async thread, so PlayerJoinEvent finds everything cached. A slow database never holds a
+// login past the timeout; whatever is still loading finishes in the background.
+//
+// A preload that ends up with no online player (the login was refused later, or the player quit
+// before it finished) must not leave its entries behind, so those are discarded once it completes.
+public class LoginPreloader implements Listener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoginPreloader.class);
+    
+    private final EconomyManager economyManager;
+    private final InventoryManager inventoryManager;
+    private final EnderChestManager enderChestManager;
+    private final long timeoutMs;
+    private final Map<UUID, CompletableFuture<Void>> preloads = new ConcurrentHashMap<>();
+    
+    public LoginPreloader(EconomyManager economyManager, InventoryManager inventoryManager,
+                          EnderChestManager enderChestManager, long timeoutMs) {
+        this.economyManager = economyManager;
+        this.inventoryManager = inventoryManager;
+        this.enderChestManager = enderChestManager;
+        this.timeoutMs = timeoutMs;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        
+        UUID playerUuid = event.getUniqueId();
+        long startTime = System.nanoTime();
+        
+        CompletableFuture<Void> preload = CompletableFuture.allOf(
+                economyManager.preloadBalanceAsync(playerUuid),
+                inventoryManager.preloadSavedInventoriesAsync(playerUuid),
+                enderChestManager.preloadSavedEnderChestsAsync(playerUuid)
+        );
+        preloads.put(playerUuid, preload);
+        
+        try {
+            preload.get(timeoutMs, TimeUnit.MILLISECONDS);
+            logger.debug("Preloaded data for {} in {}ms", event.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (TimeoutException e) {
+            logger.warn("Preloading data for {} took longer than {}ms, finishing in the background", event.getName(), timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Error preloading data for {}", event.getName(), e.getCause());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            discardWhenDone(event.getPlayer().getUniqueId());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        preloads.computeIfPresent(event.getPlayer().getUniqueId(), (uuid, preload) -> preload.isDone() ? null : preload);
+    }
+    
+    // Runs after the managers' own quit handlers have dropped what was cached
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        discardWhenDone(event.getPlayer().getUniqueId());
+    }
+    
+    private void discardWhenDone(UUID playerUuid) {
+        CompletableFuture<Void> preload = preloads.remove(playerUuid);
+        if (preload == null) {
+            return;
+        }
+        preload.whenComplete((result, error) -> {
+            inventoryManager.discardPreload(playerUuid);
+            enderChestManager.discardPreload(playerUuid);
+        });
+    }
+} 
\ No newline at end of file
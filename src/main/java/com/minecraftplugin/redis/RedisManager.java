@@ -1,18 +1,36 @@
 package com.minecraftplugin.redis;
 
 import com.minecraftplugin.config.ConfigManager;
+import com.minecraftplugin.config.PluginSettings;
+import com.minecraftplugin.economy.VersionedBalance;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.XAutoClaimParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamEntry;
+import redis.clients.jedis.resps.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 public class RedisManager {
     
@@ -20,16 +38,102 @@ public class RedisManager {
     
     private final ConfigManager configManager;
     private JedisPool jedisPool;
-    private Jedis subscriberJedis;
+    // One blocking connection per subscribed channel; all of them are closed on disconnect
+    private final List<JedisPubSub> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Jedis> subscriberConnections = new CopyOnWriteArrayList<>();
     private final ExecutorService executorService;
     
     private static final String ECONOMY_CHANNEL = "minecraft:economy";
     private static final String INVENTORY_CHANNEL = "minecraft:inventory";
     private static final String ENDER_CHEST_CHANNEL = "minecraft:ender_chest";
+    // One message per bulk operation, one economy update per line
+    private static final String ECONOMY_BATCH_CHANNEL = "minecraft:economy:batch";
     
     private static final String ECONOMY_CACHE_PREFIX = "economy:";
     private static final String INVENTORY_CACHE_PREFIX = "inventory:";
     private static final String ENDER_CHEST_CACHE_PREFIX = "ender_chest:";
+    private static final String LEADERBOARD_KEY = "economy:leaderboard";
+    private static final int LEADERBOARD_PAGE = 10000;
+    
+    // Redis ledger mode: accounts are hashes of balance and version, every change is appended to
+    // the stream and persisted to Mongo by a consumer group
+    private static final String ACCOUNT_PREFIX = "economy:account:";
+    private static final String TRANSFER_PREFIX = "economy:transfer:";
+    private static final String CHANGE_STREAM = "economy:changes";
+    private static final String CHANGE_GROUP = "economy-persist";
+    private static final int TRANSFER_MARKER_TTL = 86400;
+    
+    // Balances go through HINCRBY and are passed around as strings, since Lua numbers are doubles.
+    // Bounds are compared as doubles, which is exact for balances below 2^53 minor units.
+    private static final String ADJUST_SCRIPT =
+            "local current = redis.call('HGET', KEYS[1], 'balance')\n" +
+            "if not current then return {-1, '0', 0} end\n" +
+            "local projected = tonumber(current) + tonumber(ARGV[2])\n" +
+            "local max = tonumber(ARGV[4])\n" +
+            "if projected < tonumber(ARGV[3]) or (max > 0 and projected > max) then return {0, current, 0} end\n" +
+            "redis.call('HINCRBY', KEYS[1], 'balance', ARGV[2])\n" +
+            "local version = redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+            "local balance = redis.call('HGET', KEYS[1], 'balance')\n" +
+            "redis.call('XADD', KEYS[2], '*', 'player_uuid', ARGV[1], 'balance', balance, 'version', version)\n" +
+            "redis.call('ZADD', KEYS[3], balance, ARGV[1])\n" +
+            "if ARGV[6] ~= '' then redis.call('PUBLISH', ARGV[6], ARGV[1] .. ':' .. ARGV[5] .. ':' .. balance .. ':' .. version) end\n" +
+            "return {1, balance, version}";
+    
+    private static final String SET_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {-1, '0', 0} end\n" +
+            "redis.call('HSET', KEYS[1], 'balance', ARGV[2])\n" +
+            "local version = redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+            "redis.call('XADD', KEYS[2], '*', 'player_uuid', ARGV[1], 'balance', ARGV[2], 'version', version)\n" +
+            "redis.call('ZADD', KEYS[3], ARGV[2], ARGV[1])\n" +
+            "redis.call('PUBLISH', ARGV[4], ARGV[1] .. ':' .. ARGV[3] .. ':' .. ARGV[2] .. ':' .. version)\n" +
+            "return {1, ARGV[2], version}";
+    
+    private static final String TRANSFER_SCRIPT =
+            "if redis.call('EXISTS', KEYS[3]) == 1 then return {2, '0', 0, '0', 0} end\n" +
+            "local from = redis.call('HGET', KEYS[1], 'balance')\n" +
+            "local to = redis.call('HGET', KEYS[2], 'balance')\n" +
+            "if not from or not to then return {-1, '0', 0, '0', 0} end\n" +
+            "local amount = tonumber(ARGV[3])\n" +
+            "local max = tonumber(ARGV[5])\n" +
+            "if tonumber(from) - amount < tonumber(ARGV[4]) or (max > 0 and tonumber(to) + amount > max) then\n" +
+            "  return {0, from, 0, to, 0}\n" +
+            "end\n" +
+            "redis.call('HINCRBY', KEYS[1], 'balance', '-' .. ARGV[3])\n" +
+            "redis.call('HINCRBY', KEYS[2], 'balance', ARGV[3])\n" +
+            "local fromVersion = redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+            "local toVersion = redis.call('HINCRBY', KEYS[2], 'version', 1)\n" +
+            "from = redis.call('HGET', KEYS[1], 'balance')\n" +
+            "to = redis.call('HGET', KEYS[2], 'balance')\n" +
+            "redis.call('XADD', KEYS[4], '*', 'player_uuid', ARGV[1], 'balance', from, 'version', fromVersion)\n" +
+            "redis.call('XADD', KEYS[4], '*', 'player_uuid', ARGV[2], 'balance', to, 'version', toVersion)\n" +
+            "redis.call('ZADD', KEYS[5], from, ARGV[1], to, ARGV[2])\n" +
+            "redis.call('PUBLISH', ARGV[6], ARGV[1] .. ':remove:' .. from .. ':' .. fromVersion)\n" +
+            "redis.call('PUBLISH', ARGV[6], ARGV[2] .. ':add:' .. to .. ':' .. toVersion)\n" +
+            "redis.call('SET', KEYS[3], '1', 'EX', ARGV[7])\n" +
+            "return {1, from, fromVersion, to, toVersion}";
+    
+    // Loads an account from Mongo unless another server already did; the existing balance wins
+    private static final String SEED_SCRIPT =
+            "if redis.call('HSETNX', KEYS[1], 'balance', ARGV[2]) == 1 then\n" +
+            "  redis.call('HSET', KEYS[1], 'version', ARGV[3])\n" +
+            "  redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])\n" +
+            "  return {ARGV[2], ARGV[3]}\n" +
+            "end\n" +
+            "return redis.call('HMGET', KEYS[1], 'balance', 'version')";
+    
+    // Cache entries are "balance:version"; an older version never replaces a newer one. Version 0
+    // (unknown, e.g. write-behind) always applies.
+    private static final String CACHE_SCRIPT =
+            "local current = redis.call('GET', KEYS[1])\n" +
+            "local currentVersion = current and tonumber(string.match(current, ':(%d+)$'))\n" +
+            "if ARGV[3] == '0' or not currentVersion or currentVersion <= tonumber(ARGV[3]) then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2] .. ':' .. ARGV[3], 'EX', ARGV[4])\n" +
+            "  redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])\n" +
+            "end\n" +
+            "if ARGV[5] ~= '' then redis.call('PUBLISH', ARGV[5], ARGV[6]) end\n" +
+            "return 1";
+    
+    private final Map<String, String> scriptShas = new ConcurrentHashMap<>();
     
     public RedisManager(ConfigManager configManager) {
         this.configManager = configManager;
@@ -41,9 +145,10 @@ public class RedisManager {
             logger.info("Connecting to Redis...");
             
             JedisPoolConfig poolConfig = new JedisPoolConfig();
-            poolConfig.setMaxTotal(20);
-            poolConfig.setMaxIdle(10);
-            poolConfig.setMinIdle(5);
+            PluginSettings.Pools pools = configManager.getSettings().pools();
+            poolConfig.setMaxTotal(pools.redisMaxTotal());
+            poolConfig.setMaxIdle(pools.redisMaxIdle());
+            poolConfig.setMinIdle(pools.redisMinIdle());
             poolConfig.setTestOnBorrow(true);
             poolConfig.setTestOnReturn(true);
             poolConfig.setTestWhileIdle(true);
@@ -69,14 +174,33 @@ public class RedisManager {
     }
     
     public void disconnect() {
-        if (subscriberJedis != null) {
+        for (JedisPubSub subscriber : subscribers) {
+            try {
+                if (subscriber.isSubscribed()) {
+                    subscriber.unsubscribe();
+                }
+            } catch (Exception e) {
+                logger.error("Error unsubscribing from Redis", e);
+            }
+        }
+        subscribers.clear();
+        
+        // Any connection still blocked in subscribe; whoever removes a connection closes it
+        int closed = 0;
+        for (Jedis connection : subscriberConnections) {
+            if (!subscriberConnections.remove(connection)) {
+                continue;
+            }
             try {
-                subscriberJedis.close();
-                logger.info("Redis subscriber connection closed");
+                connection.close();
+                closed++;
             } catch (Exception e) {
                 logger.error("Error closing Redis subscriber connection", e);
             }
         }
+        if (closed > 0) {
+            logger.info("Closed {} Redis subscriber connections", closed);
+        }
         
         if (jedisPool != null) {
             try {
@@ -92,12 +216,12 @@ public class RedisManager {
         }
     }
     
-    public void publishEconomyUpdate(UUID playerUuid, double newBalance, String operation) {
+    // Publish, cache refresh and leaderboard score go out in one round trip. Messages are
+    // uuid:operation:balance:version so receivers can drop updates older than what they hold.
+    public void publishEconomyUpdate(UUID playerUuid, VersionedBalance newBalance, String operation) {
         try (Jedis jedis = jedisPool.getResource()) {
-            String message = String.format("%s:%s:%.2f", playerUuid.toString(), operation, newBalance);
-            jedis.publish(ECONOMY_CHANNEL, message);
-            
-            jedis.setex(ECONOMY_CACHE_PREFIX + playerUuid.toString(), 3600, String.valueOf(newBalance));
+            String message = playerUuid.toString() + ':' + operation + ':' + newBalance.getBalance() + ':' + newBalance.getVersion();
+            writeCachedBalance(jedis, playerUuid, newBalance, configManager.getSettings().cache().balanceTtlSeconds(), message);
             
             logger.debug("Published economy update: {}", message);
         } catch (Exception e) {
@@ -107,6 +231,66 @@ public class RedisManager {
     
     public void subscribeToEconomyUpdates(Consumer<RedisMessage> callback) {
         subscribeToChannel(ECONOMY_CHANNEL, callback);
+        subscribeToRawChannel(ECONOMY_BATCH_CHANNEL, message -> {
+            for (String line : message.split("\n")) {
+                RedisMessage redisMessage = parseMessage(ECONOMY_CHANNEL, line);
+                if (redisMessage != null) {
+                    callback.accept(redisMessage);
+                }
+            }
+        });
+    }
+    
+    // Cache refreshes for every player and a single batch notification, all in one pipeline
+    public void publishEconomyUpdates(Map<UUID, VersionedBalance> balances, String operation) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            // Loading is idempotent and makes sure the pipelined EVALSHAs cannot hit NOSCRIPT
+            String sha = jedis.scriptLoad(CACHE_SCRIPT);
+            scriptShas.put(CACHE_SCRIPT, sha);
+            
+            String ttl = Integer.toString(configManager.getSettings().cache().balanceTtlSeconds());
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<UUID, VersionedBalance> entry : balances.entrySet()) {
+                String playerId = entry.getKey().toString();
+                pipeline.evalsha(sha, List.of(ECONOMY_CACHE_PREFIX + playerId, LEADERBOARD_KEY),
+                        List.of(playerId, Long.toString(entry.getValue().getBalance()), Long.toString(entry.getValue().getVersion()),
+                                ttl, "", ""));
+            }
+            pipeline.publish(ECONOMY_BATCH_CHANNEL, batchMessage(balances, operation));
+            pipeline.sync();
+            
+            logger.debug("Published {} economy updates in one batch", balances.size());
+        } catch (Exception e) {
+            logger.error("Error publishing batched economy updates", e);
+        }
+    }
+    
+    public void publishEconomyBatch(Map<UUID, VersionedBalance> balances, String operation) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(ECONOMY_BATCH_CHANNEL, batchMessage(balances, operation));
+        } catch (Exception e) {
+            logger.error("Error publishing batched economy updates", e);
+        }
+    }
+    
+    private static String batchMessage(Map<UUID, VersionedBalance> balances, String operation) {
+        StringBuilder message = new StringBuilder(balances.size() * 64);
+        for (Map.Entry<UUID, VersionedBalance> entry : balances.entrySet()) {
+            if (message.length() > 0) {
+                message.append('\n');
+            }
+            message.append(entry.getKey()).append(':').append(operation).append(':')
+                   .append(entry.getValue().getBalance()).append(':').append(entry.getValue().getVersion());
+        }
+        return message.toString();
     }
     
     public void publishInventoryUpdate(UUID playerUuid, String inventoryName, String operation) {
@@ -149,24 +333,254 @@ public class RedisManager {
         subscribeToChannel(ENDER_CHEST_CHANNEL, callback);
     }
     
-    public Double getCachedBalance(UUID playerUuid) {
+    public VersionedBalance getCachedBalance(UUID playerUuid) {
         try (Jedis jedis = jedisPool.getResource()) {
             String value = jedis.get(ECONOMY_CACHE_PREFIX + playerUuid.toString());
-            return value != null ? Double.parseDouble(value) : null;
+            return value != null ? parseVersionedBalance(value) : null;
+        } catch (NumberFormatException e) {
+            // Entry written before balances moved to minor units; treat as a miss until it expires
+            return null;
         } catch (Exception e) {
             logger.error("Error getting cached balance for {}", playerUuid, e);
             return null;
         }
     }
     
-    public void setCachedBalance(UUID playerUuid, double balance, int expireSeconds) {
+    public void setCachedBalance(UUID playerUuid, VersionedBalance balance, int expireSeconds) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.setex(ECONOMY_CACHE_PREFIX + playerUuid.toString(), expireSeconds, String.valueOf(balance));
+            writeCachedBalance(jedis, playerUuid, balance, expireSeconds, null);
         } catch (Exception e) {
             logger.error("Error setting cached balance for {}", playerUuid, e);
         }
     }
     
+    private void writeCachedBalance(Jedis jedis, UUID playerUuid, VersionedBalance balance, int expireSeconds, String message) {
+        runScript(jedis, CACHE_SCRIPT,
+                List.of(ECONOMY_CACHE_PREFIX + playerUuid.toString(), LEADERBOARD_KEY),
+                List.of(playerUuid.toString(), Long.toString(balance.getBalance()), Long.toString(balance.getVersion()),
+                        Integer.toString(expireSeconds), message != null ? ECONOMY_CHANNEL : "", message != null ? message : ""));
+    }
+    
+    // "balance" (written before versions existed) or "balance:version"
+    public static VersionedBalance parseVersionedBalance(String value) {
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            return VersionedBalance.unversioned(Long.parseLong(value));
+        }
+        return new VersionedBalance(Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+    }
+    
+    // Streams the shared leaderboard page by page; returns false if it has not been built yet
+    public boolean loadLeaderboard(ObjLongConsumer<UUID> consumer) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            long total = jedis.zcard(LEADERBOARD_KEY);
+            if (total == 0) {
+                return false;
+            }
+            
+            for (long start = 0; start < total; start += LEADERBOARD_PAGE) {
+                List<Tuple> page = jedis.zrangeWithScores(LEADERBOARD_KEY, start, start + LEADERBOARD_PAGE - 1);
+                for (Tuple tuple : page) {
+                    consumer.accept(UUID.fromString(tuple.getElement()), (long) tuple.getScore());
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            logger.error("Error loading economy leaderboard", e);
+            return false;
+        }
+    }
+    
+    public void addToLeaderboard(Map<UUID, Long> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            Map<String, Double> scores = new HashMap<>(balances.size() * 2);
+            for (Map.Entry<UUID, Long> entry : balances.entrySet()) {
+                scores.put(entry.getKey().toString(), (double) entry.getValue());
+            }
+            jedis.zadd(LEADERBOARD_KEY, scores);
+        } catch (Exception e) {
+            logger.error("Error updating economy leaderboard", e);
+        }
+    }
+    
+    public VersionedBalance getAccountBalance(UUID playerUuid) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<String> fields = jedis.hmget(ACCOUNT_PREFIX + playerUuid.toString(), "balance", "version");
+            if (fields.get(0) == null) {
+                return null;
+            }
+            return new VersionedBalance(Long.parseLong(fields.get(0)), fields.get(1) != null ? Long.parseLong(fields.get(1)) : 0L);
+        } catch (Exception e) {
+            logger.error("Error getting account balance for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
+    // Returns what Redis holds afterwards, which is the existing account if it was already loaded
+    public VersionedBalance seedAccount(UUID playerUuid, long balance, long version) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<?> result = (List<?>) runScript(jedis, SEED_SCRIPT,
+                    List.of(ACCOUNT_PREFIX + playerUuid.toString(), LEADERBOARD_KEY),
+                    List.of(playerUuid.toString(), Long.toString(balance), Long.toString(version)));
+            return new VersionedBalance(toLong(result.get(0)), toLong(result.get(1)));
+        } catch (Exception e) {
+            logger.error("Error seeding account for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
+    // Adds delta if the result stays within [minBalance, maxBalance]; maxBalance 0 means no limit
+    public EconomyScriptResult adjustAccountBalance(UUID playerUuid, long delta, long minBalance, long maxBalance, String operation) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = runScript(jedis, ADJUST_SCRIPT,
+                    List.of(ACCOUNT_PREFIX + playerUuid.toString(), CHANGE_STREAM, LEADERBOARD_KEY),
+                    List.of(playerUuid.toString(), Long.toString(delta), Long.toString(minBalance),
+                            Long.toString(maxBalance), operation, ECONOMY_CHANNEL));
+            return EconomyScriptResult.of((List<?>) result);
+        } catch (Exception e) {
+            logger.error("Error adjusting account balance for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
+    public EconomyScriptResult setAccountBalance(UUID playerUuid, long balance, String operation) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = runScript(jedis, SET_SCRIPT,
+                    List.of(ACCOUNT_PREFIX + playerUuid.toString(), CHANGE_STREAM, LEADERBOARD_KEY),
+                    List.of(playerUuid.toString(), Long.toString(balance), operation, ECONOMY_CHANNEL));
+            return EconomyScriptResult.of((List<?>) result);
+        } catch (Exception e) {
+            logger.error("Error setting account balance for {}", playerUuid, e);
+            return null;
+        }
+    }
+    
+    // Replaying a transfer id within a day is answered with ALREADY_APPLIED
+    public EconomyScriptResult transferAccountBalance(String transferId, UUID fromUuid, UUID toUuid, long amount,
+                                                      long minBalance, long maxBalance) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = runScript(jedis, TRANSFER_SCRIPT,
+                    List.of(ACCOUNT_PREFIX + fromUuid.toString(), ACCOUNT_PREFIX + toUuid.toString(),
+                            TRANSFER_PREFIX + transferId, CHANGE_STREAM, LEADERBOARD_KEY),
+                    List.of(fromUuid.toString(), toUuid.toString(), Long.toString(amount), Long.toString(minBalance),
+                            Long.toString(maxBalance), ECONOMY_CHANNEL, Integer.toString(TRANSFER_MARKER_TTL)));
+            return EconomyScriptResult.of((List<?>) result);
+        } catch (Exception e) {
+            logger.error("Error transferring {} from {} to {}", amount, fromUuid, toUuid, e);
+            return null;
+        }
+    }
+    
+    // One pipelined script call per account; the caller publishes a single batch notification
+    public Map<UUID, EconomyScriptResult> adjustAccountBalances(Map<UUID, Long> deltas, long minBalance, long maxBalance, String operation) {
+        Map<UUID, EconomyScriptResult> results = new HashMap<>(deltas.size() * 2);
+        if (deltas.isEmpty()) {
+            return results;
+        }
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            String sha = jedis.scriptLoad(ADJUST_SCRIPT);
+            scriptShas.put(ADJUST_SCRIPT, sha);
+            
+            Pipeline pipeline = jedis.pipelined();
+            Map<UUID, Response<Object>> responses = new HashMap<>(deltas.size() * 2);
+            for (Map.Entry<UUID, Long> entry : deltas.entrySet()) {
+                String playerId = entry.getKey().toString();
+                responses.put(entry.getKey(), pipeline.evalsha(sha,
+                        List.of(ACCOUNT_PREFIX + playerId, CHANGE_STREAM, LEADERBOARD_KEY),
+                        List.of(playerId, Long.toString(entry.getValue()), Long.toString(minBalance),
+                                Long.toString(maxBalance), operation, "")));
+            }
+            pipeline.sync();
+            
+            for (Map.Entry<UUID, Response<Object>> entry : responses.entrySet()) {
+                results.put(entry.getKey(), EconomyScriptResult.of((List<?>) entry.getValue().get()));
+            }
+        } catch (Exception e) {
+            logger.error("Error adjusting {} account balances", deltas.size(), e);
+        }
+        return results;
+    }
+    
+    // Scripts are cached by SHA; after a Redis restart the first call reloads them
+    private Object runScript(Jedis jedis, String script, List<String> keys, List<String> args) {
+        String sha = scriptShas.computeIfAbsent(script, jedis::scriptLoad);
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            scriptShas.put(script, jedis.scriptLoad(script));
+            return jedis.eval(script, keys, args);
+        }
+    }
+    
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof byte[]) {
+            return Long.parseLong(new String((byte[]) value, StandardCharsets.UTF_8));
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+    
+    public void createEconomyChangeGroup() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.xgroupCreate(CHANGE_STREAM, CHANGE_GROUP, new StreamEntryID(), true);
+        } catch (JedisDataException e) {
+            if (!e.getMessage().startsWith("BUSYGROUP")) {
+                logger.error("Error creating economy change consumer group", e);
+            }
+        } catch (Exception e) {
+            logger.error("Error creating economy change consumer group", e);
+        }
+    }
+    
+    // With pending set, re-reads entries this consumer received but never acknowledged
+    public List<StreamEntry> readEconomyChanges(String consumer, int count, boolean pending) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            StreamEntryID from = pending ? new StreamEntryID() : StreamEntryID.UNRECEIVED_ENTRY;
+            List<Map.Entry<String, List<StreamEntry>>> result = jedis.xreadGroup(CHANGE_GROUP, consumer,
+                    XReadGroupParams.xReadGroupParams().count(count), Map.of(CHANGE_STREAM, from));
+            return result == null || result.isEmpty() ? List.of() : result.get(0).getValue();
+        } catch (Exception e) {
+            logger.error("Error reading economy changes", e);
+            return List.of();
+        }
+    }
+    
+    // Takes over entries another server read but did not acknowledge within minIdleMs
+    public List<StreamEntry> claimEconomyChanges(String consumer, long minIdleMs, int count) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Map.Entry<StreamEntryID, List<StreamEntry>> result = jedis.xautoclaim(CHANGE_STREAM, CHANGE_GROUP, consumer,
+                    minIdleMs, new StreamEntryID(), XAutoClaimParams.xAutoClaimParams().count(count));
+            return result.getValue();
+        } catch (Exception e) {
+            logger.error("Error claiming economy changes", e);
+            return List.of();
+        }
+    }
+    
+    // Persisted entries are acknowledged and deleted so the stream only holds unsaved changes
+    public void acknowledgeEconomyChanges(List<StreamEntryID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            StreamEntryID[] idArray = ids.toArray(new StreamEntryID[0]);
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.xack(CHANGE_STREAM, CHANGE_GROUP, idArray);
+            pipeline.xdel(CHANGE_STREAM, idArray);
+            pipeline.sync();
+        } catch (Exception e) {
+            logger.error("Error acknowledging economy changes", e);
+        }
+    }
+    
     public String getCachedInventory(UUID playerUuid, String inventoryName) {
         try (Jedis jedis = jedisPool.getResource()) {
             return jedis.get(INVENTORY_CACHE_PREFIX + playerUuid.toString() + ":" + inventoryName);
@@ -184,6 +598,14 @@ public class RedisManager {
         }
     }
     
+    public void deleteCachedInventory(UUID playerUuid, String inventoryName) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(INVENTORY_CACHE_PREFIX + playerUuid.toString() + ":" + inventoryName);
+        } catch (Exception e) {
+            logger.error("Error deleting cached inventory for {}", playerUuid, e);
+        }
+    }
+    
     public String getCachedEnderChest(UUID playerUuid, String enderChestName) {
         try (Jedis jedis = jedisPool.getResource()) {
             return jedis.get(ENDER_CHEST_CACHE_PREFIX + playerUuid.toString() + ":" + enderChestName);
@@ -202,34 +624,52 @@ public class RedisManager {
     }
     
     private void subscribeToChannel(String channel, Consumer<RedisMessage> callback) {
+        subscribeToRawChannel(channel, message -> {
+            RedisMessage redisMessage = parseMessage(channel, message);
+            if (redisMessage != null) {
+                callback.accept(redisMessage);
+            }
+        });
+    }
+    
+    private void subscribeToRawChannel(String channel, Consumer<String> callback) {
+        JedisPubSub subscriber = new JedisPubSub() {
+            @Override
+            public void onMessage(String channel, String message) {
+                try {
+                    callback.accept(message);
+                } catch (Exception e) {
+                    logger.error("Error processing Redis message: {}", message, e);
+                }
+            }
+            
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+                logger.info("Subscribed to Redis channel: {}", channel);
+            }
+            
+            @Override
+            public void onUnsubscribe(String channel, int subscribedChannels) {
+                logger.info("Unsubscribed from Redis channel: {}", channel);
+            }
+        };
+        subscribers.add(subscriber);
+        
         executorService.submit(() -> {
+            Jedis connection = null;
             try {
-                subscriberJedis = jedisPool.getResource();
-                subscriberJedis.subscribe(new JedisPubSub() {
-                    @Override
-                    public void onMessage(String channel, String message) {
-                        try {
-                            RedisMessage redisMessage = parseMessage(channel, message);
-                            if (redisMessage != null) {
-                                callback.accept(redisMessage);
-                            }
-                        } catch (Exception e) {
-                            logger.error("Error processing Redis message: {}", message, e);
-                        }
-                    }
-                    
-                    @Override
-                    public void onSubscribe(String channel, int subscribedChannels) {
-                        logger.info("Subscribed to Redis channel: {}", channel);
-                    }
-                    
-                    @Override
-                    public void onUnsubscribe(String channel, int subscribedChannels) {
-                        logger.info("Unsubscribed from Redis channel: {}", channel);
-                    }
-                }, channel);
+                connection = jedisPool.getResource();
+                subscriberConnections.add(connection);
+                connection.subscribe(subscriber, channel);
             } catch (Exception e) {
-                logger.error("Error subscribing to Redis channel: {}", channel, e);
+                if (subscribers.contains(subscriber)) {
+                    logger.error("Error subscribing to Redis channel: {}", channel, e);
+                }
+            } finally {
+                // Returned to the pool here once unsubscribed, unless disconnect already closed it
+                if (connection != null && subscriberConnections.remove(connection)) {
+                    connection.close();
+                }
             }
         });
     }
@@ -254,10 +694,14 @@ public class RedisManager {
         return null;
     }
     
-    public CompletableFuture<Void> publishEconomyUpdateAsync(UUID playerUuid, double newBalance, String operation) {
+    public CompletableFuture<Void> publishEconomyUpdateAsync(UUID playerUuid, VersionedBalance newBalance, String operation) {
         return CompletableFuture.runAsync(() -> publishEconomyUpdate(playerUuid, newBalance, operation), executorService);
     }
     
+    public CompletableFuture<Void> publishEconomyUpdatesAsync(Map<UUID, VersionedBalance> balances, String operation) {
+        return CompletableFuture.runAsync(() -> publishEconomyUpdates(balances, operation), executorService);
+    }
+    
     public CompletableFuture<Void> publishInventoryUpdateAsync(UUID playerUuid, String inventoryName, String operation) {
         return CompletableFuture.runAsync(() -> publishInventoryUpdate(playerUuid, inventoryName, operation), executorService);
     }
@@ -266,7 +710,7 @@ public class RedisManager {
         return CompletableFuture.runAsync(() -> publishEnderChestUpdate(playerUuid, enderChestName, operation), executorService);
     }
     
-    public CompletableFuture<Double> getCachedBalanceAsync(UUID playerUuid) {
+    public CompletableFuture<VersionedBalance> getCachedBalanceAsync(UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> getCachedBalance(playerUuid), executorService);
     }
     
@@ -278,6 +722,41 @@ public class RedisManager {
         return CompletableFuture.supplyAsync(() -> getCachedEnderChest(playerUuid, enderChestName), executorService);
     }
     
+    public static class EconomyScriptResult {
+        public static final int MISSING_ACCOUNT = -1;
+        public static final int REJECTED = 0;
+        public static final int APPLIED = 1;
+        public static final int ALREADY_APPLIED = 2;
+        
+        private final int status;
+        private final long balance;
+        private final long version;
+        private final long toBalance;
+        private final long toVersion;
+        
+        private EconomyScriptResult(int status, long balance, long version, long toBalance, long toVersion) {
+            this.status = status;
+            this.balance = balance;
+            this.version = version;
+            this.toBalance = toBalance;
+            this.toVersion = toVersion;
+        }
+        
+        static EconomyScriptResult of(List<?> reply) {
+            return new EconomyScriptResult((int) toLong(reply.get(0)), toLong(reply.get(1)), toLong(reply.get(2)),
+                    reply.size() > 3 ? toLong(reply.get(3)) : 0L, reply.size() > 4 ? toLong(reply.get(4)) : 0L);
+        }
+        
+        public int getStatus() { return status; }
+        public boolean isApplied() { return status == APPLIED; }
+        public boolean isMissingAccount() { return status == MISSING_ACCOUNT; }
+        // For transfers, the sender's balance and version
+        public long getBalance() { return balance; }
+        public long getVersion() { return version; }
+        public long getToBalance() { return toBalance; }
+        public long getToVersion() { return toVersion; }
+    }
+    
     public static class RedisMessage {
         private final String channel;
         private final UUID playerUuid;
@@ -0,0 +1,276 @@
+package com.minecraftplugin.codec;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mockStatic;
+
+class ItemStackCodecTest {
+    
+    @TempDir
+    Path dictionaries;
+    
+    // ItemStack.deserialize needs a running server, so decoded items are rebuilt from their maps
+    private MockedStatic<ItemStack> deserialize;
+    
+    @BeforeEach
+    void setUp() {
+        deserialize = mockStatic(ItemStack.class);
+        deserialize.when(() -> ItemStack.deserialize(anyMap())).thenAnswer(invocation -> new FakeItem(invocation.getArgument(0)));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        deserialize.close();
+    }
+    
+    @Test
+    void roundTripKeepsEmptySlotsAndEveryValueType() {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("display-name", "Ærøskøbing ⚔");
+        meta.put("lore", List.of("first", "second", "first"));
+        meta.put("enchants", Map.of("sharpness", 5, "unbreaking", 3));
+        meta.put("flags", List.of());
+        meta.put("unbreakable", true);
+        meta.put("hidden", false);
+        meta.put("damage", -12);
+        meta.put("created", Long.MIN_VALUE);
+        meta.put("speed", 0.1);
+        meta.put("scale", 1.5f);
+        meta.put("short", (short) -300);
+        meta.put("byte", (byte) -1);
+        meta.put("missing", null);
+        
+        ItemStack[] items = new ItemStack[41];
+        items[0] = item("DIAMOND_SWORD", 1, meta);
+        items[5] = item("STONE", 64, null);
+        items[40] = item("SHIELD", null, null);
+        
+        ItemStack[] decoded = ItemStackCodec.decode(ItemStackCodec.encode(items));
+        assertArrayEquals(items, decoded);
+        assertEquals(meta, ((FakeItem) decoded[0]).fields.get("meta"));
+    }
+    
+    @Test
+    void emptyArraysRoundTrip() {
+        assertArrayEquals(new ItemStack[0], ItemStackCodec.decode(ItemStackCodec.encode(new ItemStack[0])));
+        assertArrayEquals(new ItemStack[36], ItemStackCodec.decode(ItemStackCodec.encode(new ItemStack[36])));
+    }
+    
+    @Test
+    void repeatedStringsAreWrittenOnce() {
+        ItemStack[] one = {item("NETHERITE_PICKAXE", 1, null)};
+        ItemStack[] many = new ItemStack[36];
+        Arrays.fill(many, one[0]);
+        
+        int first = ItemStackCodec.encodeBytes(one).length;
+        int all = ItemStackCodec.encodeBytes(many).length;
+        // Each further item is a gap, flags, a type reference, an amount and a data version
+        assertTrue(all - first <= 35 * 5, "36 items took " + all + " bytes");
+    }
+    
+    @Test
+    void configurationSerializableValuesRoundTripThroughTheirAlias() {
+        Map<String, Object> color = Map.of("RED", 255, "GREEN", 0, "BLUE", 128);
+        try (MockedStatic<ConfigurationSerialization> serialization = mockStatic(ConfigurationSerialization.class)) {
+            serialization.when(() -> ConfigurationSerialization.getAlias(any())).thenReturn("Color");
+            serialization.when(() -> ConfigurationSerialization.deserializeObject(anyMap())).thenAnswer(invocation -> {
+                Map<String, Object> fields = new HashMap<>(invocation.getArgument(0));
+                assertEquals("Color", fields.remove(ConfigurationSerialization.SERIALIZED_TYPE_KEY));
+                return new FakeSerializable(fields);
+            });
+            
+            ItemStack[] items = {item("LEATHER_CHESTPLATE", 1, Map.of("color", new FakeSerializable(color)))};
+            assertArrayEquals(items, ItemStackCodec.decode(ItemStackCodec.encode(items)));
+        }
+    }
+    
+    @Test
+    void compressedRoundTripForEveryAlgorithm() {
+        ItemStack[] items = sampleInventory();
+        for (PayloadCompressor.Algorithm algorithm : PayloadCompressor.Algorithm.values()) {
+            PayloadCompressor compressor = new PayloadCompressor(algorithm, 0, 0, dictionaries, null);
+            assertArrayEquals(items, ItemStackCodec.decode(ItemStackCodec.encode(items, compressor), compressor), algorithm.name());
+        }
+    }
+    
+    @Test
+    void deltaHoldsOnlyChangedSlotsAndAppliesOnItsBase() {
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.NONE, 0, 0, dictionaries, null);
+        ItemStack[] previous = sampleInventory();
+        ItemStack[] items = previous.clone();
+        items[2] = item("GOLDEN_APPLE", 3, null);
+        items[3] = null;
+        items[30] = item("TORCH", 16, null);
+        
+        String delta = ItemStackCodec.encodeDelta(previous, items, "keyframe-1", compressor);
+        assertTrue(Base64.getDecoder().decode(delta).length < ItemStackCodec.encodeBytes(items).length / 2);
+        assertTrue(ItemStackCodec.isDelta(delta, compressor));
+        assertFalse(ItemStackCodec.isDelta(ItemStackCodec.encode(items, compressor), compressor));
+        assertFalse(ItemStackCodec.isDelta("[null]", compressor));
+        
+        ItemStack[] decoded = ItemStackCodec.decode(delta, compressor, base -> "keyframe-1".equals(base) ? previous : null);
+        assertArrayEquals(items, decoded);
+        // Unchanged slots come from the base as they are
+        assertSame(previous[0], decoded[0]);
+        assertNull(decoded[3]);
+        
+        assertThrows(IllegalStateException.class, () -> ItemStackCodec.decode(delta, compressor, base -> null));
+        assertThrows(IllegalArgumentException.class,
+                () -> ItemStackCodec.encodeDelta(previous, Arrays.copyOf(items, 40), "keyframe-1", compressor));
+    }
+    
+    @Test
+    void unchangedDeltaIsEmpty() {
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.NONE, 0, 0, dictionaries, null);
+        ItemStack[] items = sampleInventory();
+        String delta = ItemStackCodec.encodeDelta(items, items.clone(), "base", compressor);
+        assertArrayEquals(items, ItemStackCodec.decode(delta, compressor, base -> items));
+    }
+    
+    @Test
+    void joinedSlotsDecodeLikeAFullArray() {
+        ItemStack[] items = sampleInventory();
+        Map<Integer, byte[]> slots = new HashMap<>();
+        for (int slot = 0; slot < items.length; slot++) {
+            if (items[slot] != null) {
+                slots.put(slot, ItemStackCodec.encodeSlot(items[slot]));
+            }
+        }
+        // Records outside the inventory are ignored
+        slots.put(-1, ItemStackCodec.encodeSlot(item("DIRT", 1, null)));
+        slots.put(items.length, ItemStackCodec.encodeSlot(item("DIRT", 1, null)));
+        
+        String joined = ItemStackCodec.joinSlots(items.length, slots);
+        assertArrayEquals(items, ItemStackCodec.decode(joined));
+        assertArrayEquals(items, ItemStackCodec.decode(joined,
+                new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, dictionaries, null)));
+    }
+    
+    @Test
+    void legacyJsonIsRecognisedAndRead() {
+        assertTrue(ItemStackCodec.isLegacy("[null,null]"));
+        assertTrue(ItemStackCodec.isLegacy("\n  [\n    null\n  ]"));
+        assertTrue(ItemStackCodec.isLegacy("null"));
+        assertFalse(ItemStackCodec.isLegacy(""));
+        assertFalse(ItemStackCodec.isLegacy(ItemStackCodec.encode(sampleInventory())));
+        
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, dictionaries, null);
+        assertArrayEquals(new ItemStack[3], ItemStackCodec.decode("[\n  null,\n  null,\n  null\n]"));
+        assertArrayEquals(new ItemStack[2], ItemStackCodec.decode("[null,null]", compressor));
+        assertArrayEquals(new ItemStack[2], ItemStackCodec.decode("[null,null]", compressor, base -> null));
+    }
+    
+    @Test
+    void corruptPayloadsAreRejected() {
+        byte[] encoded = ItemStackCodec.encodeBytes(sampleInventory());
+        assertThrows(IllegalArgumentException.class, () -> ItemStackCodec.decodeBytes(Arrays.copyOf(encoded, encoded.length / 2)));
+        assertThrows(IllegalArgumentException.class, () -> ItemStackCodec.decodeBytes("XX".getBytes()));
+        
+        byte[] future = encoded.clone();
+        future[2] = 99;
+        assertThrows(IllegalArgumentException.class, () -> ItemStackCodec.decodeBytes(future));
+    }
+    
+    private static ItemStack[] sampleInventory() {
+        ItemStack[] items = new ItemStack[41];
+        items[0] = item("DIAMOND_SWORD", 1, Map.of("display-name", "Blade", "enchants", Map.of("sharpness", 5)));
+        items[1] = item("BREAD", 32, null);
+        items[2] = item("STONE", 64, null);
+        items[3] = item("STONE", 64, null);
+        for (int slot = 9; slot < 27; slot++) {
+            items[slot] = item("COBBLESTONE", 64, null);
+        }
+        items[36] = item("IRON_BOOTS", 1, Map.of("Damage", 40));
+        items[39] = item("IRON_HELMET", 1, Map.of("Damage", 12));
+        return items;
+    }
+    
+    // Mirrors ItemStack.serialize(): amount is left out when it is 1
+    private static ItemStack item(String type, Integer amount, Map<String, Object> meta) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("v", 3953);
+        fields.put("type", type);
+        if (amount != null && amount != 1) {
+            fields.put("amount", amount);
+        }
+        if (meta != null) {
+            fields.put("meta", meta);
+        }
+        return new FakeItem(fields);
+    }
+    
+    private static final class FakeItem extends ItemStack {
+        private final Map<String, Object> fields;
+        
+        FakeItem(Map<String, Object> fields) {
+            this.fields = new LinkedHashMap<>(fields);
+        }
+        
+        @Override
+        public Map<String, Object> serialize() {
+            return fields;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FakeItem item && fields.equals(item.fields);
+        }
+        
+        @Override
+        public int hashCode() {
+            return fields.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return "FakeItem" + fields;
+        }
+    }
+    
+    private static final class FakeSerializable implements ConfigurationSerializable {
+        private final Map<String, Object> fields;
+        
+        FakeSerializable(Map<String, Object> fields) {
+            this.fields = Map.copyOf(fields);
+        }
+        
+        @Override
+        public Map<String, Object> serialize() {
+            return fields;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FakeSerializable serializable && fields.equals(serializable.fields);
+        }
+        
+        @Override
+        public int hashCode() {
+            return fields.hashCode();
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.minecraftplugin.codec;
+
+import com.github.luben.zstd.Zstd;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadCompressorTest {
+    
+    private static final String[] TYPES = {"DIAMOND_SWORD", "COBBLESTONE", "OAK_LOG", "TORCH", "BREAD", "IRON_PICKAXE",
+                                           "NETHERITE_HELMET", "REDSTONE", "GOLDEN_APPLE", "ENCHANTED_BOOK"};
+    private static final String[] KEYS = {"display-name", "lore", "enchants", "Damage", "repair-cost", "meta-type"};
+    
+    @TempDir
+    Path directory;
+    
+    private final MemoryStore store = new MemoryStore();
+    
+    @ParameterizedTest
+    @EnumSource(PayloadCompressor.Algorithm.class)
+    void roundTripWithoutDictionary(PayloadCompressor.Algorithm algorithm) {
+        PayloadCompressor compressor = new PayloadCompressor(algorithm, 0, 0, directory, null, store);
+        byte[] payload = payload(new Random(1), 40);
+        
+        byte[] compressed = compressor.compress(payload);
+        assertEquals(algorithm != PayloadCompressor.Algorithm.NONE, PayloadCompressor.isCompressed(compressed));
+        if (algorithm != PayloadCompressor.Algorithm.NONE) {
+            assertTrue(compressed.length < payload.length);
+            assertEquals(0, dictionaryId(compressed));
+        }
+        assertArrayEquals(payload, compressor.decompress(compressed));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(PayloadCompressor.Algorithm.class)
+    void roundTripWithDictionary(PayloadCompressor.Algorithm algorithm) {
+        train("items");
+        PayloadCompressor compressor = new PayloadCompressor(algorithm, 0, 0, directory, "items", store);
+        PayloadCompressor plain = new PayloadCompressor(algorithm, 0, 0, directory, null, store);
+        byte[] payload = payload(new Random(2), 4);
+        
+        byte[] compressed = compressor.compress(payload);
+        assertArrayEquals(payload, compressor.decompress(compressed));
+        assertArrayEquals(payload, plain.decompress(compressed));
+        if (algorithm == PayloadCompressor.Algorithm.DEFLATE || algorithm == PayloadCompressor.Algorithm.ZSTD) {
+            assertNotEquals(0, dictionaryId(compressed));
+            // Small payloads are where a dictionary pays off
+            assertTrue(compressed.length < plain.compress(payload).length);
+        } else {
+            assertFalse(usesDictionary(compressed));
+        }
+    }
+    
+    @Test
+    void smallAndIncompressiblePayloadsAreStoredRaw() {
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 512, directory, null, store);
+        byte[] small = Arrays.copyOf(payload(new Random(3), 40), 100);
+        assertSame(small, compressor.compress(small));
+        
+        byte[] random = new byte[4096];
+        new Random(4).nextBytes(random);
+        assertArrayEquals(random, compressor.compress(random));
+        assertArrayEquals(random, compressor.decompress(random));
+    }
+    
+    @Test
+    void dictionaryMissingFromTheStoreIsNotUsedForWriting() throws Exception {
+        train("items");
+        byte[] dictionary = Files.readAllBytes(directory.resolve("items.dict"));
+        store.clear();
+        store.failSaves = true;
+        
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, "items", store);
+        assertTrue(dictionary.length > 0);
+        assertFalse(usesDictionary(compressor.compress(payload(new Random(5), 4))));
+        
+        // Without a store at all nothing could read it elsewhere either
+        PayloadCompressor unshared = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, "items");
+        assertFalse(usesDictionary(unshared.compress(payload(new Random(5), 4))));
+    }
+    
+    @Test
+    void trainingFailsWhenTheStoreRefusesTheDictionary() {
+        store.failSaves = true;
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, null, store);
+        assertFalse(compressor.trainDictionary("items", samples(), 16 * 1024));
+        assertFalse(Files.exists(directory.resolve("items.dict")));
+        assertTrue(store.dictionaries.isEmpty());
+    }
+    
+    @Test
+    void dictionariesFromOtherServersAreLoadedFromTheStoreOnDemand(@TempDir Path otherDirectory) {
+        train("items");
+        PayloadCompressor writer = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, "items", store);
+        byte[] payload = payload(new Random(6), 4);
+        byte[] compressed = writer.compress(payload);
+        
+        PayloadCompressor reader = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, otherDirectory, null, store);
+        int loadsBefore = store.loads;
+        assertArrayEquals(payload, reader.decompress(compressed));
+        assertArrayEquals(payload, reader.decompress(compressed));
+        assertEquals(loadsBefore + 1, store.loads);
+        
+        PayloadCompressor isolated = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, otherDirectory, null);
+        assertThrows(IllegalStateException.class, () -> isolated.decompress(compressed));
+    }
+    
+    @Test
+    void configuredDictionaryMissingLocallyIsFetchedByName(@TempDir Path otherDirectory) {
+        train("items");
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.DEFLATE, 0, 0, otherDirectory, "items", store);
+        byte[] payload = payload(new Random(7), 4);
+        byte[] compressed = compressor.compress(payload);
+        assertEquals(store.dictionaries.keySet().iterator().next(), dictionaryId(compressed));
+        assertArrayEquals(payload, compressor.decompress(compressed));
+    }
+    
+    // What a server without the native library does with Zstd payloads from other servers
+    @Test
+    void portableZstdDecoderReadsNativeOutput() {
+        byte[] payload = payload(new Random(8), 40);
+        byte[] body = Zstd.compress(payload, 3);
+        assertArrayEquals(payload, PayloadCompressor.unzstd(body, payload.length, null, false));
+        
+        // Dictionary payloads still need the native library
+        train("items");
+        PayloadCompressor.Dictionary dictionary = new PayloadCompressor.Dictionary("items", store.dictionaries.values().iterator().next());
+        assertThrows(IllegalStateException.class, () -> PayloadCompressor.unzstd(body, payload.length, dictionary, false));
+    }
+    
+    @Test
+    void corruptHeadersAreRejected() {
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, null, store);
+        byte[] compressed = compressor.compress(payload(new Random(9), 40));
+        
+        byte[] unknownAlgorithm = compressed.clone();
+        unknownAlgorithm[2] = 42;
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(unknownAlgorithm));
+        
+        byte[] hugeLength = {'Z', 'C', 3, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(hugeLength));
+    }
+    
+    private void train(String name) {
+        PayloadCompressor trainer = new PayloadCompressor(PayloadCompressor.Algorithm.ZSTD, 0, 0, directory, null, store);
+        assertTrue(trainer.trainDictionary(name, samples(), 16 * 1024));
+    }
+    
+    private static List<byte[]> samples() {
+        Random random = new Random(42);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(payload(random, 1 + random.nextInt(8)));
+        }
+        return samples;
+    }
+    
+    // Shaped like codec output: repeated type and meta names with varying counts
+    private static byte[] payload(Random random, int items) {
+        StringBuilder text = new StringBuilder("IS\u0001");
+        for (int i = 0; i < items; i++) {
+            text.append((char) random.nextInt(4)).append(TYPES[random.nextInt(TYPES.length)]).append((char) (1 + random.nextInt(64)));
+            for (int k = random.nextInt(3); k > 0; k--) {
+                text.append(KEYS[random.nextInt(KEYS.length)]).append(':').append(random.nextInt(6));
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+    
+    private static boolean usesDictionary(byte[] data) {
+        return PayloadCompressor.isCompressed(data) && dictionaryId(data) != 0;
+    }
+    
+    // The dictionary id from the header, which follows the magic and the algorithm
+    private static int dictionaryId(byte[] compressed) {
+        int value = 0;
+        for (int position = 3, shift = 0; ; position++, shift += 7) {
+            value |= (compressed[position] & 0x7F) << shift;
+            if ((compressed[position] & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static final class MemoryStore implements PayloadCompressor.DictionaryStore {
+        private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> byName = new ConcurrentHashMap<>();
+        private volatile boolean failSaves;
+        private volatile int loads;
+        
+        @Override
+        public boolean save(int id, String name, byte[] data) {
+            if (failSaves) {
+                return false;
+            }
+            dictionaries.putIfAbsent(id, data);
+            byName.put(name, data);
+            return true;
+        }
+        
+        @Override
+        public byte[] load(int id) {
+            loads++;
+            return dictionaries.get(id);
+        }
+        
+        @Override
+        public byte[] loadByName(String name) {
+            return byName.get(name);
+        }
+        
+        void clear() {
+            dictionaries.clear();
+            byName.clear();
+        }
+    }
+} 
\ No newline at end of file
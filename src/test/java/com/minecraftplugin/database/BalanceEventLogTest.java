@@ -0,0 +1,103 @@
+package com.minecraftplugin.database;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceEventLogTest {
+    
+    private static final int MAX_QUEUED = 100000;
+    
+    private MongoCollection<Document> events;
+    private MongoCollection<Document> snapshots;
+    private BalanceEventLog eventLog;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        events = mock(MongoCollection.class);
+        snapshots = mock(MongoCollection.class);
+        when(events.getNamespace()).thenReturn(new MongoNamespace("test", "balance_events"));
+        when(snapshots.getNamespace()).thenReturn(new MongoNamespace("test", "balance_snapshots"));
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getCollection("balance_events")).thenReturn(events);
+        when(database.getCollection("balance_snapshots")).thenReturn(snapshots);
+        
+        // No timed flushes, and batches larger than the queue so nothing flushes by itself
+        eventLog = new BalanceEventLog(database, 100, 3_600_000L, MAX_QUEUED * 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        eventLog.shutdown();
+    }
+    
+    @Test
+    void droppedEventsAreCountedAndTheAccountIsSnapshottedAtItsNextChange() {
+        UUID filler = UUID.randomUUID();
+        for (int seq = 1; seq <= MAX_QUEUED; seq++) {
+            eventLog.recordDelta(filler, seq, 1, "batch");
+        }
+        
+        UUID player = UUID.randomUUID();
+        eventLog.recordDelta(player, 7, 5, "batch");
+        eventLog.recordDelta(player, 8, 5, "batch");
+        assertEquals(2, eventLog.getDroppedEvents());
+        
+        // seq 9 is not on the snapshot interval, but follows a gap
+        eventLog.flush();
+        eventLog.recordDelta(player, 9, 5, 120, "credit");
+        eventLog.flush();
+        
+        List<Document> written = writtenSnapshots();
+        assertEquals(1, written.size());
+        assertEquals(player.toString(), written.get(0).getString("player_uuid"));
+        assertEquals(9L, written.get(0).getLong("seq"));
+        assertEquals(120L, written.get(0).getLong("balance"));
+        
+        // Only once
+        eventLog.recordDelta(player, 10, 5, 125, "credit");
+        eventLog.flush();
+        assertEquals(1, writtenSnapshots().size());
+    }
+    
+    @Test
+    void pendingSnapshotsKeepOnlyTheNewestPerAccount() {
+        UUID player = UUID.randomUUID();
+        eventLog.recordOpen(player, 0);
+        eventLog.recordSet(player, 200, 50);
+        eventLog.recordSet(player, 100, 10);
+        eventLog.flush();
+        
+        List<Document> written = writtenSnapshots();
+        assertEquals(1, written.size());
+        assertEquals(200L, written.get(0).getLong("seq"));
+        assertEquals(0, eventLog.getDroppedEvents());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Document> writtenSnapshots() {
+        ArgumentCaptor<List<Document>> captor = ArgumentCaptor.forClass(List.class);
+        verify(snapshots, atLeastOnce()).insertMany(captor.capture(), any());
+        List<Document> written = new ArrayList<>();
+        captor.getAllValues().forEach(written::addAll);
+        return written;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,343 @@
+package com.minecraftplugin.database;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Two-phase transfers against an in-memory stand-in for the two collections, which understands
+// just the filters and updates TransferLedger uses. Hooks run another caller at the exact point
+// where two callers used to apply the same pending entry side by side.
+class TransferLedgerTest {
+    
+    private static final String TRANSFER_ID = "transfer-1";
+    
+    private final UUID from = UUID.randomUUID();
+    private final UUID to = UUID.randomUUID();
+    
+    private FakeCollection transfers;
+    private FakeCollection accounts;
+    private TransferLedger ledger;
+    
+    @BeforeEach
+    void setUp() {
+        transfers = new FakeCollection();
+        accounts = new FakeCollection();
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getCollection("economy_transfers")).thenReturn(transfers.collection);
+        when(database.getCollection("economy")).thenReturn(accounts.collection);
+        // No setName, so a standalone server and two-phase transfers
+        when(database.runCommand(any(Bson.class))).thenReturn(new Document());
+        ledger = new TransferLedger(mock(MongoClient.class), database, mock(BalanceEventLog.class));
+        
+        accounts.insert(new Document("player_uuid", from.toString()).append("balance", 1000L).append("seq", 0L));
+        accounts.insert(new Document("player_uuid", to.toString()).append("balance", 0L).append("seq", 0L));
+    }
+    
+    @Test
+    void transferMovesTheMoneyOnceAndCleansUp() {
+        assertEquals(TransferLedger.TransferStatus.APPLIED, ledger.transfer(TRANSFER_ID, from, to, 100L, 0L).getStatus());
+        assertEquals(TransferLedger.TransferStatus.ALREADY_APPLIED, ledger.transfer(TRANSFER_ID, from, to, 100L, 0L).getStatus());
+        assertMovedOnce();
+        
+        assertEquals(TransferLedger.TransferStatus.INSUFFICIENT_FUNDS, ledger.transfer("transfer-2", from, to, 5000L, 0L).getStatus());
+        assertEquals("canceled", transfers.find("transfer-2").getString("state"));
+        assertEquals(900L, balance(from));
+    }
+    
+    // Recovery lists the entry while it is pending, then a retry finishes it before recovery gets to it
+    @Test
+    void recoveryDoesNotReapplyAnEntryFinishedAfterItWasListed() {
+        crashedAfterDebit();
+        transfers.afterCall(1, () -> assertTrue(ledger.transfer(TRANSFER_ID, from, to, 100L, 0L).isSuccess()));
+        
+        ledger.recover(0L);
+        assertMovedOnce();
+    }
+    
+    // Recovery runs right after the retry has found the entry pending and taken it over, and leaves it alone
+    @Test
+    void retryAndRecoveryDoNotApplyTheSameEntryTogether() {
+        crashedAfterDebit();
+        transfers.afterCall(2, () -> ledger.recover(0L));
+        
+        assertTrue(ledger.transfer(TRANSFER_ID, from, to, 100L, 0L).isSuccess());
+        ledger.recover(0L);
+        assertMovedOnce();
+    }
+    
+    @Test
+    void retryOfAnEntryAnotherCallerIsApplyingFailsWithoutTouchingBalances() {
+        transfers.insert(entry(System.currentTimeMillis()).append("owner", "someone-else")
+                .append("lease_until", System.currentTimeMillis() + 60_000L));
+        
+        assertEquals(TransferLedger.TransferStatus.FAILED, ledger.transfer(TRANSFER_ID, from, to, 100L, 0L).getStatus());
+        assertEquals(1000L, balance(from));
+        assertEquals(0L, balance(to));
+        assertEquals("pending", transfers.find(TRANSFER_ID).getString("state"));
+    }
+    
+    // A server died after debiting the sender; its lease ran out long ago
+    private void crashedAfterDebit() {
+        transfers.insert(entry(System.currentTimeMillis() - 60_000L).append("owner", "crashed")
+                .append("lease_until", System.currentTimeMillis() - 45_000L));
+        Document sender = accounts.findBy("player_uuid", from.toString());
+        sender.put("balance", 900L);
+        sender.put("pending_transfers", List.of(TRANSFER_ID));
+        accounts.replace(sender);
+    }
+    
+    private Document entry(long createdAt) {
+        return new Document("_id", TRANSFER_ID)
+                .append("from_uuid", from.toString())
+                .append("to_uuid", to.toString())
+                .append("amount", 100L)
+                .append("state", "pending")
+                .append("created_at", createdAt)
+                .append("updated_at", createdAt);
+    }
+    
+    private void assertMovedOnce() {
+        assertEquals(900L, balance(from));
+        assertEquals(100L, balance(to));
+        assertEquals("done", transfers.find(TRANSFER_ID).getString("state"));
+        for (UUID player : List.of(from, to)) {
+            Object tags = accounts.findBy("player_uuid", player.toString()).get("pending_transfers");
+            assertTrue(tags == null || ((Collection<?>) tags).isEmpty(), "tags left on " + player + ": " + tags);
+        }
+    }
+    
+    private long balance(UUID player) {
+        return accounts.findBy("player_uuid", player.toString()).getLong("balance");
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static final class FakeCollection {
+        private final MongoCollection<Document> collection = mock(MongoCollection.class);
+        private final Map<BsonValue, BsonDocument> documents = new LinkedHashMap<>();
+        private int calls;
+        private int hookCall;
+        private Runnable hook;
+        
+        FakeCollection() {
+            when(collection.insertOne(any(Document.class))).thenAnswer(invocation -> {
+                BsonDocument doc = toBson(invocation.getArgument(0));
+                if (documents.containsKey(doc.get("_id"))) {
+                    after(null);
+                    throw new MongoWriteException(new WriteError(11000, "duplicate key", new BsonDocument()), new ServerAddress());
+                }
+                documents.put(doc.get("_id"), doc);
+                return after(null);
+            });
+            when(collection.find(any(Bson.class))).thenAnswer(invocation -> {
+                List<Document> found = new ArrayList<>();
+                for (BsonDocument doc : matching(invocation.getArgument(0))) {
+                    found.add(toDocument(doc));
+                }
+                FindIterable<Document> iterable = mock(FindIterable.class);
+                when(iterable.projection(any())).thenReturn(iterable);
+                when(iterable.first()).thenAnswer(first -> after(found.isEmpty() ? null : found.get(0)));
+                when(iterable.into(any())).thenAnswer(into -> {
+                    List<Document> target = into.getArgument(0);
+                    target.addAll(found);
+                    return after(target);
+                });
+                return iterable;
+            });
+            when(collection.findOneAndUpdate(any(Bson.class), any(Bson.class), any())).thenAnswer(invocation -> {
+                List<BsonDocument> found = matching(invocation.getArgument(0));
+                if (found.isEmpty()) {
+                    return after(null);
+                }
+                apply(found.get(0), invocation.getArgument(1));
+                return after(toDocument(found.get(0)));
+            });
+            when(collection.updateOne(any(Bson.class), any(Bson.class))).thenAnswer(invocation -> {
+                List<BsonDocument> found = matching(invocation.getArgument(0));
+                if (!found.isEmpty()) {
+                    apply(found.get(0), invocation.getArgument(1));
+                }
+                return after(UpdateResult.acknowledged(found.size(), (long) found.size(), null));
+            });
+            when(collection.updateMany(any(Bson.class), any(Bson.class))).thenAnswer(invocation -> {
+                List<BsonDocument> found = matching(invocation.getArgument(0));
+                found.forEach(doc -> apply(doc, invocation.getArgument(1)));
+                return after(UpdateResult.acknowledged(found.size(), (long) found.size(), null));
+            });
+        }
+        
+        // Runs hook once, right after the n-th call on this collection has taken effect
+        void afterCall(int n, Runnable hook) {
+            this.hookCall = calls + n;
+            this.hook = hook;
+        }
+        
+        private <T> T after(T result) {
+            if (++calls == hookCall && hook != null) {
+                Runnable running = hook;
+                hook = null;
+                running.run();
+            }
+            return result;
+        }
+        
+        void insert(Document doc) {
+            Document copy = new Document(doc);
+            copy.putIfAbsent("_id", UUID.randomUUID().toString());
+            BsonDocument bson = toBson(copy);
+            documents.put(bson.get("_id"), bson);
+        }
+        
+        void replace(Document doc) {
+            BsonDocument bson = toBson(doc);
+            documents.put(bson.get("_id"), bson);
+        }
+        
+        Document find(String id) {
+            return findBy("_id", id);
+        }
+        
+        Document findBy(String field, String value) {
+            for (BsonDocument doc : documents.values()) {
+                if (doc.containsKey(field) && doc.get(field).isString() && doc.getString(field).getValue().equals(value)) {
+                    return toDocument(doc);
+                }
+            }
+            return null;
+        }
+        
+        private List<BsonDocument> matching(Bson filter) {
+            BsonDocument rendered = filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+            List<BsonDocument> found = new ArrayList<>();
+            for (BsonDocument doc : documents.values()) {
+                if (matches(doc, rendered)) {
+                    found.add(doc);
+                }
+            }
+            return found;
+        }
+        
+        private static boolean matches(BsonDocument doc, BsonDocument filter) {
+            for (Map.Entry<String, BsonValue> clause : filter.entrySet()) {
+                String key = clause.getKey();
+                if (key.equals("$and") || key.equals("$or")) {
+                    boolean any = false;
+                    boolean all = true;
+                    for (BsonValue part : clause.getValue().asArray()) {
+                        boolean match = matches(doc, part.asDocument());
+                        any |= match;
+                        all &= match;
+                    }
+                    if (key.equals("$and") ? !all : !any) {
+                        return false;
+                    }
+                } else if (!matchesField(doc.get(key), clause.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static boolean matchesField(BsonValue actual, BsonValue condition) {
+            if (!condition.isDocument() || condition.asDocument().isEmpty() || !condition.asDocument().getFirstKey().startsWith("$")) {
+                return equalsOrContains(actual, condition);
+            }
+            for (Map.Entry<String, BsonValue> operator : condition.asDocument().entrySet()) {
+                BsonValue operand = operator.getValue();
+                boolean match = switch (operator.getKey()) {
+                    case "$ne" -> !equalsOrContains(actual, operand);
+                    case "$gte" -> actual != null && compare(actual, operand) >= 0;
+                    case "$lt" -> actual != null && compare(actual, operand) < 0;
+                    case "$exists" -> (actual != null) == operand.asBoolean().getValue();
+                    case "$in" -> operand.asArray().stream().anyMatch(value -> equalsOrContains(actual, value));
+                    default -> throw new UnsupportedOperationException(operator.getKey());
+                };
+                if (!match) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static boolean equalsOrContains(BsonValue actual, BsonValue expected) {
+            if (actual == null) {
+                return false;
+            }
+            if (actual.isArray()) {
+                return actual.asArray().stream().anyMatch(value -> equalsOrContains(value, expected));
+            }
+            if (actual.isNumber() && expected.isNumber()) {
+                return compare(actual, expected) == 0;
+            }
+            return actual.equals(expected);
+        }
+        
+        private static int compare(BsonValue a, BsonValue b) {
+            return Long.compare(a.asNumber().longValue(), b.asNumber().longValue());
+        }
+        
+        private static void apply(BsonDocument doc, Bson update) {
+            BsonDocument rendered = update.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+            for (Map.Entry<String, BsonValue> operator : rendered.entrySet()) {
+                for (Map.Entry<String, BsonValue> field : operator.getValue().asDocument().entrySet()) {
+                    String name = field.getKey();
+                    BsonValue value = field.getValue();
+                    switch (operator.getKey()) {
+                        case "$set" -> doc.put(name, value);
+                        case "$unset" -> doc.remove(name);
+                        case "$inc" -> doc.put(name, new BsonInt64(
+                                (doc.containsKey(name) ? doc.get(name).asNumber().longValue() : 0L) + value.asNumber().longValue()));
+                        case "$push" -> {
+                            BsonArray array = doc.containsKey(name) ? doc.getArray(name) : new BsonArray();
+                            array.add(value);
+                            doc.put(name, array);
+                        }
+                        case "$pull" -> {
+                            if (doc.containsKey(name)) {
+                                doc.getArray(name).removeIf(element -> element.equals(value));
+                            }
+                        }
+                        default -> throw new UnsupportedOperationException(operator.getKey());
+                    }
+                }
+            }
+        }
+        
+        private static BsonDocument toBson(Document doc) {
+            return doc.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        }
+        
+        private static Document toDocument(BsonDocument doc) {
+            return new DocumentCodec().decode(new BsonDocumentReader(doc.clone()), DecoderContext.builder().build());
+        }
+    }
+} 
\ No newline at end of file
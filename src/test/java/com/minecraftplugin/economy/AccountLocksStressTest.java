@@ -0,0 +1,102 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Transfers between random accounts under the striped locks, the way EconomyManager runs them,
+// at 1, 8 and 64 threads. Money must be conserved; the throughput is printed for comparison. In
+// the "hot" runs every transfer touches one shared account, like a server bank or shop owner.
+class AccountLocksStressTest {
+    
+    private static final int ACCOUNTS = 1024;
+    private static final long INITIAL_BALANCE = 1_000_000L;
+    private static final long RUN_MILLIS = 500L;
+    
+    @ParameterizedTest(name = "{0} threads, hot account: {1}")
+    @CsvSource({"1, false", "8, false", "64, false", "1, true", "8, true", "64, true"})
+    void transfersConserveMoneyUnderContention(int threads, boolean hotAccount) throws Exception {
+        AccountLocks locks = new AccountLocks();
+        UUID[] players = new UUID[ACCOUNTS];
+        long[] balances = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            players[i] = UUID.randomUUID();
+            balances[i] = INITIAL_BALANCE;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        long elapsedNanos;
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    start.await();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+                    long operations = 0;
+                    while ((operations & 0xFF) != 0 || System.nanoTime() < deadline) {
+                        int from = hotAccount ? 0 : random.nextInt(ACCOUNTS);
+                        int to = random.nextInt(ACCOUNTS);
+                        if (from == to) {
+                            continue;
+                        }
+                        if (hotAccount && random.nextBoolean()) {
+                            int swap = from;
+                            from = to;
+                            to = swap;
+                        }
+                        long amount = 1 + random.nextInt(100);
+                        
+                        locks.lockBoth(players[from], players[to]);
+                        try {
+                            if (balances[from] >= amount) {
+                                balances[from] -= amount;
+                                balances[to] += amount;
+                            }
+                        } finally {
+                            locks.unlockBoth(players[from], players[to]);
+                        }
+                        operations++;
+                    }
+                    return operations;
+                }));
+            }
+            
+            long startNanos = System.nanoTime();
+            start.countDown();
+            long operations = 0;
+            for (Future<Long> future : futures) {
+                operations += future.get(60, TimeUnit.SECONDS);
+            }
+            elapsedNanos = System.nanoTime() - startNanos;
+            
+            System.out.printf("AccountLocks stress: %2d threads, hot account %-5s: %,12.0f transfers/s%n",
+                              threads, hotAccount, operations * 1e9 / elapsedNanos);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        long total = 0;
+        int[] all = locks.lockAll(List.of(players));
+        try {
+            for (long balance : balances) {
+                total += balance;
+            }
+        } finally {
+            locks.unlockAll(all);
+        }
+        assertEquals(ACCOUNTS * INITIAL_BALANCE, total);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountLocksTest {
+    
+    @Test
+    void lockIsReentrantAndOwnedByTheLockingThread() throws Exception {
+        AccountLocks locks = new AccountLocks();
+        UUID player = UUID.randomUUID();
+        
+        locks.lock(player);
+        locks.lock(player);
+        assertTrue(locks.isHeldByCurrentThread(player));
+        
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            assertFalse(other.submit(() -> locks.isHeldByCurrentThread(player)).get());
+        } finally {
+            other.shutdownNow();
+        }
+        
+        locks.unlock(player);
+        assertTrue(locks.isHeldByCurrentThread(player));
+        locks.unlock(player);
+        assertFalse(locks.isHeldByCurrentThread(player));
+    }
+    
+    @Test
+    void lockBlocksOtherThreadsOnTheSameAccount() throws Exception {
+        AccountLocks locks = new AccountLocks();
+        UUID player = UUID.randomUUID();
+        AtomicBoolean acquired = new AtomicBoolean();
+        
+        locks.lock(player);
+        Thread waiter = new Thread(() -> {
+            locks.lock(player);
+            acquired.set(true);
+            locks.unlock(player);
+        });
+        waiter.start();
+        waiter.join(200);
+        assertFalse(acquired.get());
+        
+        locks.unlock(player);
+        waiter.join(5000);
+        assertTrue(acquired.get());
+    }
+    
+    @Test
+    void lockBothOnOneStripeLocksOnce() {
+        // A single stripe, so both accounts always share it
+        AccountLocks locks = new AccountLocks(1);
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        
+        locks.lockBoth(from, to);
+        assertTrue(locks.isHeldByCurrentThread(from));
+        locks.unlockBoth(from, to);
+        assertFalse(locks.isHeldByCurrentThread(to));
+    }
+    
+    @Test
+    void opposingTransfersDoNotDeadlock() throws Exception {
+        AccountLocks locks = new AccountLocks(16);
+        UUID[] players = new UUID[8];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                boolean forward = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        UUID a = players[i % players.length];
+                        UUID b = players[(i + 1) % players.length];
+                        UUID from = forward ? a : b;
+                        UUID to = forward ? b : a;
+                        locks.lockBoth(from, to);
+                        locks.unlockBoth(from, to);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void lockAllCoversDuplicateStripesAndReleasesEverything() {
+        AccountLocks locks = new AccountLocks(4);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            players.add(UUID.randomUUID());
+        }
+        
+        int[] locked = locks.lockAll(players);
+        assertTrue(locked.length <= 4);
+        for (UUID player : players) {
+            assertTrue(locks.isHeldByCurrentThread(player));
+        }
+        
+        locks.unlockAll(locked);
+        for (UUID player : players) {
+            assertFalse(locks.isHeldByCurrentThread(player));
+        }
+    }
+    
+    @Test
+    void readModifyWriteUnderTheLockLosesNoUpdates() throws Exception {
+        AccountLocks locks = new AccountLocks();
+        UUID player = UUID.randomUUID();
+        long[] balance = {0};
+        int threads = 8;
+        int increments = 20_000;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < increments; i++) {
+                        locks.lock(player);
+                        try {
+                            long current = balance[0];
+                            balance[0] = current + 1;
+                        } finally {
+                            locks.unlock(player);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        locks.lock(player);
+        try {
+            assertEquals((long) threads * increments, balance[0]);
+        } finally {
+            locks.unlock(player);
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceCacheTest {
+    
+    private static final long MISSING = -1L;
+    
+    @Test
+    void getCountsHitsAndMisses() {
+        BalanceCache cache = new BalanceCache(100, 0);
+        UUID player = UUID.randomUUID();
+        
+        assertEquals(MISSING, cache.get(player, MISSING));
+        assertTrue(cache.put(player, new VersionedBalance(250L, 1L)));
+        assertEquals(250L, cache.get(player, MISSING));
+        
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    void olderVersionsNeverReplaceNewerOnes() {
+        BalanceCache cache = new BalanceCache(100, 0);
+        UUID player = UUID.randomUUID();
+        
+        assertTrue(cache.put(player, new VersionedBalance(100L, 5L)));
+        assertFalse(cache.put(player, new VersionedBalance(50L, 4L)));
+        assertFalse(cache.putIfPresent(player, new VersionedBalance(50L, 3L)));
+        assertEquals(100L, cache.get(player, MISSING));
+        
+        // Unknown versions always apply
+        assertTrue(cache.put(player, VersionedBalance.unversioned(75L)));
+        assertEquals(75L, cache.get(player, MISSING));
+        assertTrue(cache.putIfPresent(player, new VersionedBalance(80L, 6L)));
+        assertEquals(80L, cache.get(player, MISSING));
+    }
+    
+    @Test
+    void putIfPresentIgnoresUncachedPlayers() {
+        BalanceCache cache = new BalanceCache(100, 0);
+        UUID player = UUID.randomUUID();
+        
+        assertTrue(cache.putIfPresent(player, new VersionedBalance(10L, 1L)));
+        assertFalse(cache.containsKey(player));
+    }
+    
+    @Test
+    void adjustIfPresentStaysWithinBounds() {
+        BalanceCache cache = new BalanceCache(100, 0);
+        UUID player = UUID.randomUUID();
+        
+        assertEquals(BalanceStore.ABSENT, cache.adjustIfPresent(player, 10L, 0L, 0L));
+        cache.put(player, new VersionedBalance(100L, 1L));
+        
+        assertEquals(150L, cache.adjustIfPresent(player, 50L, 0L, 200L));
+        assertEquals(BalanceStore.ABSENT, cache.adjustIfPresent(player, 100L, 0L, 200L));
+        assertEquals(BalanceStore.ABSENT, cache.adjustIfPresent(player, -151L, 0L, 200L));
+        assertEquals(0L, cache.adjustIfPresent(player, -150L, 0L, 200L));
+        // No upper limit
+        assertEquals(1_000_000L, cache.adjustIfPresent(player, 1_000_000L, 0L, 0L));
+    }
+    
+    @Test
+    void oneOffLookupsDoNotDisplaceFrequentlyReadPlayers() {
+        int size = 64;
+        BalanceCache cache = new BalanceCache(size, 0);
+        List<UUID> active = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            UUID player = UUID.randomUUID();
+            active.add(player);
+            cache.put(player, new VersionedBalance(i, 1L));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (UUID player : active) {
+                cache.get(player, MISSING);
+            }
+        }
+        
+        for (int i = 0; i < 200; i++) {
+            UUID stranger = UUID.randomUUID();
+            cache.get(stranger, MISSING);
+            cache.put(stranger, new VersionedBalance(1L, 1L));
+        }
+        
+        assertEquals(size, cache.size());
+        for (UUID player : active) {
+            assertTrue(cache.containsKey(player));
+        }
+        assertEquals(200, cache.getRejectionCount());
+    }
+    
+    @Test
+    void aFrequentNewcomerIsAdmittedOverAColdEntry() {
+        int size = 16;
+        BalanceCache cache = new BalanceCache(size, 0);
+        for (int i = 0; i < size; i++) {
+            cache.put(UUID.randomUUID(), new VersionedBalance(i, 1L));
+        }
+        
+        UUID popular = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            cache.get(popular, MISSING);
+        }
+        cache.put(popular, new VersionedBalance(42L, 1L));
+        
+        assertEquals(42L, cache.get(popular, MISSING));
+        assertEquals(size, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+    
+    @Test
+    void idleEntriesExpire() throws InterruptedException {
+        BalanceCache cache = new BalanceCache(100, 50L);
+        UUID idle = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        cache.put(idle, new VersionedBalance(1L, 1L));
+        cache.put(other, new VersionedBalance(2L, 1L));
+        
+        Thread.sleep(120L);
+        assertEquals(MISSING, cache.get(idle, MISSING));
+        assertEquals(1, cache.expireEntries());
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+    
+    @Test
+    void removeAndClear() {
+        BalanceCache cache = new BalanceCache(100, 0);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        cache.put(first, new VersionedBalance(1L, 5L));
+        cache.put(second, new VersionedBalance(2L, 2L));
+        
+        cache.remove(first);
+        assertFalse(cache.containsKey(first));
+        // A removed entry forgets its version too
+        assertTrue(cache.put(first, new VersionedBalance(3L, 1L)));
+        assertEquals(3L, cache.get(first, MISSING));
+        
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    void evictionNeverLeavesAVersionBehind() throws InterruptedException {
+        BalanceCache cache = new BalanceCache(32, 0);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            players.add(UUID.randomUUID());
+        }
+        
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    UUID player = players.get(random.nextInt(players.size()));
+                    cache.get(player, MISSING);
+                    cache.put(player, new VersionedBalance(i, 1000L + i));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(30_000L);
+            assertFalse(worker.isAlive());
+        }
+        
+        // Every cached balance still carries its version, so an older one is rejected
+        for (UUID player : players) {
+            if (cache.containsKey(player)) {
+                assertFalse(cache.putIfPresent(player, new VersionedBalance(-1L, 1L)));
+            }
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks the skip list's ranks and pages against a plain sorted list after random updates
+class BalanceLeaderboardTest {
+    
+    // Highest balance first, ties by UUID bits as the leaderboard orders them
+    private static final Comparator<Map.Entry<UUID, Long>> ORDER = Comparator
+            .comparing((Map.Entry<UUID, Long> e) -> e.getValue(), Comparator.reverseOrder())
+            .thenComparingLong(e -> e.getKey().getMostSignificantBits())
+            .thenComparingLong(e -> e.getKey().getLeastSignificantBits());
+    
+    @Test
+    void emptyBoard() {
+        BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+        assertEquals(0, leaderboard.size());
+        assertEquals(0L, leaderboard.getRank(UUID.randomUUID()));
+        assertTrue(leaderboard.getTop(0, 10).isEmpty());
+    }
+    
+    @Test
+    void ranksFollowBalancesAndTiesAreBrokenByUuid() {
+        BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+        UUID low = new UUID(0L, 1L);
+        UUID high = new UUID(0L, 2L);
+        UUID rich = new UUID(5L, 5L);
+        leaderboard.update(high, 100L);
+        leaderboard.update(low, 100L);
+        leaderboard.update(rich, 500L);
+        
+        assertEquals(1L, leaderboard.getRank(rich));
+        assertEquals(2L, leaderboard.getRank(low));
+        assertEquals(3L, leaderboard.getRank(high));
+        
+        leaderboard.update(high, 1000L);
+        assertEquals(1L, leaderboard.getRank(high));
+        assertEquals(3L, leaderboard.getRank(low));
+        
+        leaderboard.remove(rich);
+        assertEquals(0L, leaderboard.getRank(rich));
+        assertEquals(BalanceStore.ABSENT, leaderboard.getBalance(rich));
+        assertEquals(2L, leaderboard.getRank(low));
+        assertEquals(2, leaderboard.size());
+    }
+    
+    @Test
+    void updateIfAbsentNeverOverwritesALiveBalance() {
+        BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+        UUID player = UUID.randomUUID();
+        leaderboard.update(player, 50L);
+        leaderboard.updateIfAbsent(player, 10L);
+        assertEquals(50L, leaderboard.getBalance(player));
+        assertEquals(1, leaderboard.size());
+    }
+    
+    @Test
+    void randomUpdatesMatchASortedReference() {
+        Random random = new Random(42);
+        BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+        Map<UUID, Long> reference = new HashMap<>();
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            players.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        
+        for (int round = 0; round < 20; round++) {
+            for (int op = 0; op < 500; op++) {
+                UUID player = players.get(random.nextInt(players.size()));
+                // A narrow range, so many balances tie
+                long balance = random.nextInt(50) - 10;
+                switch (random.nextInt(5)) {
+                    case 0 -> {
+                        leaderboard.remove(player);
+                        reference.remove(player);
+                    }
+                    case 1 -> {
+                        leaderboard.updateIfAbsent(player, balance);
+                        reference.putIfAbsent(player, balance);
+                    }
+                    default -> {
+                        leaderboard.update(player, balance);
+                        reference.put(player, balance);
+                    }
+                }
+            }
+            assertMatches(reference, leaderboard, random);
+        }
+    }
+    
+    private static void assertMatches(Map<UUID, Long> reference, BalanceLeaderboard leaderboard, Random random) {
+        List<Map.Entry<UUID, Long>> sorted = new ArrayList<>(reference.entrySet());
+        sorted.sort(ORDER);
+        assertEquals(sorted.size(), leaderboard.size());
+        
+        List<BalanceLeaderboard.Entry> all = leaderboard.getTop(0, sorted.size() + 10);
+        assertEquals(sorted.size(), all.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            BalanceLeaderboard.Entry entry = all.get(i);
+            assertEquals(sorted.get(i).getKey(), entry.getPlayerUuid());
+            assertEquals((long) sorted.get(i).getValue(), entry.getBalance());
+            assertEquals(i + 1L, entry.getRank());
+            assertEquals(i + 1L, leaderboard.getRank(entry.getPlayerUuid()));
+            assertEquals((long) sorted.get(i).getValue(), leaderboard.getBalance(entry.getPlayerUuid()));
+        }
+        
+        // Pages starting anywhere, including past the end
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(sorted.size() + 5);
+            int limit = 1 + random.nextInt(30);
+            List<BalanceLeaderboard.Entry> page = leaderboard.getTop(offset, limit);
+            int expected = Math.max(0, Math.min(limit, sorted.size() - offset));
+            assertEquals(expected, page.size());
+            for (int j = 0; j < page.size(); j++) {
+                assertEquals(sorted.get(offset + j).getKey(), page.get(j).getPlayerUuid());
+                assertEquals(offset + j + 1L, page.get(j).getRank());
+            }
+        }
+    }
+} 
\ No newline at end of file
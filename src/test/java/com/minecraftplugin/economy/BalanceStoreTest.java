@@ -0,0 +1,212 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceStoreTest {
+    
+    @Test
+    void putGetAndRemove() {
+        BalanceStore store = new BalanceStore();
+        UUID player = UUID.randomUUID();
+        
+        assertEquals(BalanceStore.ABSENT, store.get(player, BalanceStore.ABSENT));
+        assertFalse(store.containsKey(player));
+        
+        store.put(player, 1250);
+        assertEquals(1250, store.get(player, BalanceStore.ABSENT));
+        assertTrue(store.containsKey(player));
+        assertEquals(1, store.size());
+        
+        store.put(player, -40);
+        assertEquals(-40, store.get(player, BalanceStore.ABSENT));
+        assertEquals(1, store.size());
+        
+        assertTrue(store.remove(player));
+        assertFalse(store.remove(player));
+        assertEquals(7, store.get(player, 7));
+        assertTrue(store.isEmpty());
+    }
+    
+    @Test
+    void keysDifferingInOneHalfAreDistinct() {
+        BalanceStore store = new BalanceStore();
+        UUID a = new UUID(1, 2);
+        UUID b = new UUID(1, 3);
+        UUID c = new UUID(2, 2);
+        
+        store.put(a, 10);
+        store.put(b, 20);
+        store.put(c, 30);
+        
+        assertEquals(10, store.get(a, 0));
+        assertEquals(20, store.get(b, 0));
+        assertEquals(30, store.get(c, 0));
+    }
+    
+    @Test
+    void growsPastInitialCapacity() {
+        // One small segment, so every insert lands in the same table and forces repeated rehashes
+        BalanceStore store = new BalanceStore(1, 16);
+        Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            UUID player = UUID.randomUUID();
+            store.put(player, i);
+            expected.put(player, (long) i);
+        }
+        
+        assertEquals(expected.size(), store.size());
+        expected.forEach((player, value) -> assertEquals(value, store.get(player, BalanceStore.ABSENT)));
+    }
+    
+    @Test
+    void removedSlotsAreReusedWithoutLosingOtherKeys() {
+        BalanceStore store = new BalanceStore(1, 16);
+        List<UUID> kept = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            UUID player = UUID.randomUUID();
+            store.put(player, i);
+            kept.add(player);
+        }
+        
+        // Churn far more keys than the table holds; tombstones must be cleaned up, not accumulate
+        // until probes stop terminating, and must never hide keys stored behind them
+        for (int round = 0; round < 50_000; round++) {
+            UUID churned = UUID.randomUUID();
+            store.put(churned, round);
+            assertEquals(round, store.get(churned, BalanceStore.ABSENT));
+            assertTrue(store.remove(churned));
+            assertFalse(store.containsKey(churned));
+        }
+        
+        assertEquals(kept.size(), store.size());
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals(i, store.get(kept.get(i), BalanceStore.ABSENT));
+        }
+    }
+    
+    @Test
+    void addAndGetStartsFromInitialValue() {
+        BalanceStore store = new BalanceStore();
+        UUID player = UUID.randomUUID();
+        
+        assertEquals(150, store.addAndGet(player, 50, 100));
+        assertEquals(125, store.addAndGet(player, -25, 100));
+        assertEquals(125, store.get(player, 0));
+    }
+    
+    @Test
+    void concurrentAddAndGetLosesNoUpdates() throws Exception {
+        BalanceStore store = new BalanceStore(4, 16);
+        int threads = 8;
+        int increments = 20_000;
+        UUID[] players = new UUID[64];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < increments; i++) {
+                        // Every thread touches every key, and the first touches race to insert
+                        store.addAndGet(players[(i + offset) % players.length], 1, 0);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        long total = 0;
+        for (UUID player : players) {
+            total += store.get(player, 0);
+        }
+        assertEquals((long) threads * increments, total);
+        assertEquals(players.length, store.size());
+    }
+    
+    @Test
+    void readersSeeEveryKeyWhileWritersRehash() throws Exception {
+        BalanceStore store = new BalanceStore(1, 16);
+        UUID[] stable = new UUID[32];
+        for (int i = 0; i < stable.length; i++) {
+            stable[i] = UUID.randomUUID();
+            store.put(stable[i], i);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    store.put(UUID.randomUUID(), i);
+                }
+            });
+            Future<Integer> reader = executor.submit(() -> {
+                int misses = 0;
+                while (!writer.isDone()) {
+                    for (int i = 0; i < stable.length; i++) {
+                        if (store.get(stable[i], -1) != i) {
+                            misses++;
+                        }
+                    }
+                }
+                return misses;
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            assertEquals(0, reader.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void forEachAndSampleVisitLiveEntriesOnly() {
+        BalanceStore store = new BalanceStore(4, 64);
+        Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            UUID player = UUID.randomUUID();
+            store.put(player, i);
+            expected.put(player, (long) i);
+        }
+        UUID removed = expected.keySet().iterator().next();
+        store.remove(removed);
+        expected.remove(removed);
+        
+        Map<UUID, Long> seen = new HashMap<>();
+        store.forEach((msb, lsb, value) -> seen.put(new UUID(msb, lsb), value));
+        assertEquals(expected, seen);
+        
+        List<UUID> sampled = new ArrayList<>();
+        store.sample(10, (msb, lsb, value) -> {
+            UUID player = new UUID(msb, lsb);
+            assertEquals(expected.get(player), value);
+            sampled.add(player);
+        });
+        assertEquals(10, sampled.size());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EconomyJournalTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void recoversUncommittedSegmentsWithDeltasCoalesced() throws Exception {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        
+        EconomyJournal journal = new EconomyJournal(directory);
+        journal.open();
+        journal.append(alice, 500);
+        journal.append(bob, 100);
+        journal.append(alice, -200);
+        EconomyJournal.Segment sealed = journal.rotate();
+        journal.append(bob, 25);
+        journal.sync();
+        // Simulate a crash: the segments are never committed and the journal is never closed
+        
+        EconomyJournal restarted = new EconomyJournal(directory);
+        List<EconomyJournal.RecoveredSegment> recovered = restarted.recover();
+        
+        assertEquals(2, recovered.size());
+        EconomyJournal.RecoveredSegment first = recovered.stream()
+                .filter(segment -> segment.getSegment().getBatchId().equals(sealed.getBatchId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(300, first.getDeltas().get(alice, 0));
+        assertEquals(100, first.getDeltas().get(bob, 0));
+    }
+    
+    @Test
+    void committedSegmentsAreNotReplayed() throws Exception {
+        EconomyJournal journal = new EconomyJournal(directory);
+        journal.open();
+        journal.append(UUID.randomUUID(), 10);
+        journal.commit(journal.rotate());
+        journal.close();
+        
+        assertTrue(new EconomyJournal(directory).recover().isEmpty());
+    }
+    
+    @Test
+    void truncatedTailRecordIsIgnored() throws Exception {
+        UUID player = UUID.randomUUID();
+        EconomyJournal journal = new EconomyJournal(directory);
+        journal.open();
+        journal.append(player, 42);
+        EconomyJournal.Segment sealed = journal.rotate();
+        journal.close();
+        Files.write(sealed.getPath(), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        
+        List<EconomyJournal.RecoveredSegment> recovered = new EconomyJournal(directory).recover();
+        assertEquals(1, recovered.size());
+        assertEquals(42, recovered.get(0).getDeltas().get(player, 0));
+    }
+    
+    @Test
+    void journalIdSurvivesRestartsAndDiffersPerDirectory(@TempDir Path other) throws Exception {
+        EconomyJournal journal = new EconomyJournal(directory);
+        journal.open();
+        String id = journal.getJournalId();
+        journal.close();
+        
+        EconomyJournal restarted = new EconomyJournal(directory);
+        restarted.open();
+        assertEquals(id, restarted.getJournalId());
+        restarted.close();
+        
+        EconomyJournal elsewhere = new EconomyJournal(other);
+        elsewhere.open();
+        assertNotEquals(id, elsewhere.getJournalId());
+        elsewhere.close();
+    }
+    
+    @Test
+    void syncWithNothingAppendedOrAfterCloseIsHarmless() throws Exception {
+        EconomyJournal journal = new EconomyJournal(directory);
+        journal.open();
+        journal.sync();
+        journal.append(UUID.randomUUID(), 1);
+        journal.close();
+        journal.sync();
+        
+        assertFalse(new EconomyJournal(directory).recover().isEmpty());
+    }
+} 
\ No newline at end of file
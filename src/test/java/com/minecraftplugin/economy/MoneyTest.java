@@ -0,0 +1,69 @@
+package com.minecraftplugin.economy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    
+    @Test
+    void ofMajorRoundsToTheNearestCent() {
+        assertEquals(1000_00, Money.ofMajor(1000.0));
+        assertEquals(10, Money.ofMajor(0.1));
+        // 0.29 * 100 is 28.999999999999996 as a double
+        assertEquals(29, Money.ofMajor(0.29));
+        assertEquals(-1_50, Money.ofMajor(-1.5));
+        assertEquals(1, Money.ofMajor(0.005));
+    }
+    
+    @Test
+    void ofMajorRejectsNonFiniteAndOutOfRangeAmounts() {
+        assertThrows(ArithmeticException.class, () -> Money.ofMajor(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> Money.ofMajor(Double.POSITIVE_INFINITY));
+        assertThrows(ArithmeticException.class, () -> Money.ofMajor(1e18));
+    }
+    
+    @Test
+    void parseIsExact() {
+        assertEquals(12_34, Money.parse("12.34"));
+        assertEquals(12_30, Money.parse(" 12.3 "));
+        assertEquals(5_00, Money.parse("5"));
+        assertEquals(-7_05, Money.parse("-7.05"));
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+    }
+    
+    @Test
+    void parseRejectsFractionsOfACentAndGarbage() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.005"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(" "));
+        assertThrows(NumberFormatException.class, () -> Money.parse(null));
+    }
+    
+    @Test
+    void formatPadsCentsAndKeepsTheSign() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("12.34", Money.format(12_34));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-12.30", Money.format(-12_30));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+    
+    @Test
+    void formatAndParseRoundTrip() {
+        for (long cents : new long[]{0, 1, 99, 100, 123_456_789, -42, Long.MAX_VALUE}) {
+            assertEquals(cents, Money.parse(Money.format(cents)));
+        }
+    }
+    
+    @Test
+    void arithmeticFailsInsteadOfOverflowing() {
+        assertEquals(3_00, Money.add(1_00, 2_00));
+        assertEquals(-1_00, Money.subtract(1_00, 2_00));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+    }
+} 
\ No newline at end of file
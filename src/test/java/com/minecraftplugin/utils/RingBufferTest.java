@@ -0,0 +1,139 @@
+package com.minecraftplugin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+    
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new RingBuffer<>(0).capacity());
+        assertEquals(2, new RingBuffer<>(1).capacity());
+        assertEquals(8, new RingBuffer<>(5).capacity());
+        assertEquals(8, new RingBuffer<>(8).capacity());
+        assertEquals(1024, new RingBuffer<>(1000).capacity());
+    }
+    
+    @Test
+    void fullBufferRefusesUntilTheConsumerFreesASlot() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+        
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+        
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+    
+    @Test
+    void keepsOrderAcrossManyLaps() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        // 3 in, 3 out never lines up with the capacity, so every slot index is reused at every offset
+        for (int lap = 0; lap < 1000; lap++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(buffer.offer(next++));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, buffer.poll());
+            }
+        }
+        assertNull(buffer.poll());
+    }
+    
+    @Test
+    void drainToStopsAtTheLimit() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained::add, 4));
+        assertEquals(List.of(0, 1, 2, 3), drained);
+        assertEquals(2, buffer.drainTo(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertEquals(0, buffer.drainTo(drained::add, 10));
+    }
+    
+    @Test
+    void concurrentProducersWrapAroundWithoutLosingOrReorderingItems() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        // Small enough that every producer wraps thousands of times and often finds it full
+        RingBuffer<Long> buffer = new RingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<Integer>> refusals = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long producer = p;
+                refusals.add(executor.submit(() -> {
+                    start.await();
+                    int refused = 0;
+                    for (long i = 0; i < perProducer; i++) {
+                        Long item = producer << 32 | i;
+                        while (!buffer.offer(item)) {
+                            refused++;
+                            // Yield rather than spin: on few cores a spinning thread can keep a producer
+                            // that has claimed a slot but not filled it from ever running
+                            Thread.yield();
+                        }
+                    }
+                    return refused;
+                }));
+            }
+            start.countDown();
+            
+            // Each producer's items must come out in the order it offered them
+            long[] nextExpected = new long[producers];
+            long received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received < (long) producers * perProducer) {
+                Long item = buffer.poll();
+                if (item == null) {
+                    assertTrue(System.nanoTime() < deadline, "timed out after " + received + " items");
+                    Thread.yield();
+                    continue;
+                }
+                int producer = (int) (item >>> 32);
+                assertEquals(nextExpected[producer], item & 0xffffffffL, "producer " + producer);
+                nextExpected[producer]++;
+                received++;
+            }
+            
+            int refused = 0;
+            for (Future<Integer> result : refusals) {
+                refused += result.get(5, TimeUnit.SECONDS);
+            }
+            assertTrue(refused > 0, "the buffer never filled up");
+            assertNull(buffer.poll());
+            assertEquals(0, buffer.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.minecraftplugin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    
+    @Test
+    void concurrentLoadsOfOneKeyRunTheLoaderOnce() throws Exception {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> flights.load("player", () -> {
+                    calls.incrementAndGet();
+                    awaitQuietly(release);
+                    return 42;
+                })));
+            }
+            // Let every caller reach the flight before the loader finishes
+            Thread.sleep(200);
+            release.countDown();
+            
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+    
+    @Test
+    void finishedLoadsAreNotRemembered() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        
+        assertEquals(1, flights.load("player", calls::incrementAndGet));
+        assertEquals(2, flights.load("player", calls::incrementAndGet));
+        assertEquals(3, flights.load("other", calls::incrementAndGet));
+    }
+    
+    @Test
+    void joinersSeeTheLoadersExceptionAndTheNextLoadRetries() throws Exception {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        IllegalStateException failure = new IllegalStateException("database down");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> flights.load("player", () -> {
+                started.countDown();
+                awaitQuietly(release);
+                throw failure;
+            }));
+            started.await();
+            Future<Integer> joiner = executor.submit(() -> flights.load("player", () -> 0));
+            Thread.sleep(200);
+            release.countDown();
+            
+            assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS)).getCause());
+            Throwable joined = assertThrows(ExecutionException.class, () -> joiner.get(10, TimeUnit.SECONDS)).getCause();
+            assertSame(failure, joined);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(7, flights.load("player", () -> 7));
+    }
+    
+    @Test
+    void loadAsyncSharesTheFutureUntilItCompletes() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        
+        CompletableFuture<Integer> first = flights.loadAsync("player", () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<Integer> second = flights.loadAsync("player", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(0);
+        });
+        assertSame(first, second);
+        
+        pending.complete(5);
+        assertEquals(5, first.join());
+        assertEquals(1, calls.get());
+        
+        assertEquals(9, flights.loadAsync("player", () -> CompletableFuture.completedFuture(9)).join());
+    }
+    
+    @Test
+    void loadAsyncReportsLoaderFailuresThroughTheFuture() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        
+        CompletableFuture<Integer> thrown = flights.loadAsync("player", () -> {
+            throw new IllegalArgumentException("bad key");
+        });
+        assertTrue(thrown.isCompletedExceptionally());
+        
+        CompletableFuture<Integer> failed = flights.loadAsync("player",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("timeout")));
+        assertTrue(failed.isCompletedExceptionally());
+        
+        // Neither failure stays in flight
+        assertEquals(3, flights.loadAsync("player", () -> CompletableFuture.completedFuture(3)).join());
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+} 
\ No newline at end of file